@@ -0,0 +1,186 @@
+package io.sniffy;
+
+import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.socket.Protocol;
+import io.sniffy.util.RingBuffer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves aggregation of global statistics (top SQL queries and socket statistics) off the caller thread
+ * Events are published into a preallocated {@link RingBuffer} and consumed by a single background daemon thread
+ *
+ * Idle consumer blocks until a producer publishes an event and wakes it up; since publishing doesn't issue a full
+ * fence, a wake up can be missed in a rare race, so the wait is bounded by {@link #MAX_IDLE_PARK_NANOS}
+ *
+ * @see SniffyConfiguration#isAsyncEventProcessing()
+ * @since 3.1.10
+ */
+class AsyncEventProcessor implements Runnable, RingBuffer.EventHandler<AsyncEventProcessor.Event> {
+
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int SQL_TIME = 0;
+    private static final int SOCKET = 1;
+
+    static final class Event {
+
+        private int type;
+
+        private String sql;
+        private long elapsedTime;
+
+        private Protocol protocol;
+        private InetSocketAddress address;
+        private int connectionId;
+        private long bytesDown;
+        private long bytesUp;
+
+        private void clear() {
+            sql = null;
+            elapsedTime = 0;
+            protocol = null;
+            address = null;
+            connectionId = 0;
+            bytesDown = 0;
+            bytesUp = 0;
+        }
+
+    }
+
+    private static volatile AsyncEventProcessor instance;
+
+    private final RingBuffer<Event> ringBuffer;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicBoolean idle = new AtomicBoolean();
+    private volatile Thread consumerThread;
+
+    private AsyncEventProcessor(int capacity) {
+        ringBuffer = new RingBuffer<Event>(capacity, new RingBuffer.EventFactory<Event>() {
+            @Override
+            public Event newInstance() {
+                return new Event();
+            }
+        });
+    }
+
+    /**
+     * @return asynchronous processor or null if {@link SniffyConfiguration#getAsyncEventQueueCapacity()} isn't positive
+     * and events should be processed in caller thread
+     */
+    static AsyncEventProcessor getInstance() {
+        if (null == instance) {
+            int capacity = SniffyConfiguration.INSTANCE.getAsyncEventQueueCapacity();
+            if (capacity <= 0) return null;
+            synchronized (AsyncEventProcessor.class) {
+                if (null == instance) {
+                    AsyncEventProcessor asyncEventProcessor = new AsyncEventProcessor(capacity);
+                    Thread thread = new Thread(asyncEventProcessor, "Sniffy Async Event Processor");
+                    thread.setDaemon(true);
+                    asyncEventProcessor.consumerThread = thread;
+                    thread.start();
+                    instance = asyncEventProcessor;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return number of events dropped since the asynchronous processor was started
+     */
+    static long getDroppedEventsCount() {
+        AsyncEventProcessor asyncEventProcessor = instance;
+        return null == asyncEventProcessor ? 0 : asyncEventProcessor.dropped.get();
+    }
+
+    /**
+     * @return false if the queue is full and event should be processed in caller thread
+     * @see SniffyConfiguration#isAsyncEventDropOnFull()
+     */
+    boolean publishSqlTime(String sql, long elapsedTime) {
+        long sequence = ringBuffer.next();
+        if (-1 == sequence) return drop();
+        Event event = ringBuffer.get(sequence);
+        event.type = SQL_TIME;
+        event.sql = sql;
+        event.elapsedTime = elapsedTime;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * @return false if the queue is full and event should be processed in caller thread
+     * @see SniffyConfiguration#isAsyncEventDropOnFull()
+     */
+    boolean publishSocket(Protocol protocol, InetSocketAddress address, int connectionId,
+                          long elapsedTime, long bytesDown, long bytesUp) {
+        long sequence = ringBuffer.next();
+        if (-1 == sequence) return drop();
+        Event event = ringBuffer.get(sequence);
+        event.type = SOCKET;
+        event.protocol = protocol;
+        event.address = address;
+        event.connectionId = connectionId;
+        event.elapsedTime = elapsedTime;
+        event.bytesDown = bytesDown;
+        event.bytesUp = bytesUp;
+        publish(sequence);
+        return true;
+    }
+
+    private boolean drop() {
+        if (SniffyConfiguration.INSTANCE.isAsyncEventDropOnFull()) {
+            dropped.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void publish(long sequence) {
+        ringBuffer.publish(sequence);
+        if (idle.get() && idle.compareAndSet(true, false)) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        try {
+            if (SOCKET == event.type) {
+                Sniffy.logSocketImpl(event.protocol, event.address, event.connectionId,
+                        event.elapsedTime, event.bytesDown, event.bytesUp);
+            } else {
+                Sniffy.logSqlTimeImpl(event.sql, event.elapsedTime);
+            }
+        } finally {
+            event.clear();
+        }
+    }
+
+    @Override
+    public void run() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            try {
+                if (0 == ringBuffer.drain(this)) {
+                    idle.set(true);
+                    // recheck after announcing idle state so that events published concurrently aren't left waiting
+                    if (0 == ringBuffer.drain(this)) {
+                        LockSupport.parkNanos(this, MAX_IDLE_PARK_NANOS);
+                    }
+                    idle.set(false);
+                }
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -1,51 +1,103 @@
 package io.sniffy;
 
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
 import io.sniffy.configuration.SniffyConfiguration;
 import io.sniffy.socket.NetworkPacket;
 import io.sniffy.socket.SocketMetaData;
 import io.sniffy.socket.SocketStats;
+import io.sniffy.sql.BindParameters;
+import io.sniffy.sql.NPlusOneDetector;
+import io.sniffy.sql.SqlStatement;
 import io.sniffy.sql.SqlStats;
 import io.sniffy.sql.StatementMetaData;
+import io.sniffy.util.StripedLong;
 
+import java.util.ArrayList;
 import java.util.Deque;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @since 3.1
  */
 public abstract class BaseSpy<C extends BaseSpy<C>> {
 
+    /**
+     * Approximate number of bytes retained by a map entry and its key besides SQL, statistics and captured traffic
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int NETWORK_PACKET_OVERHEAD = 64;
+
+    /**
+     * Maximum number of threads tracked by N+1 query detectors; detectors of least recently active threads are evicted
+     */
+    private static final int MAX_N_PLUS_ONE_DETECTORS = 256;
+
     private final SpyConfiguration spyConfiguration;
 
-    protected volatile ConcurrentLinkedHashMap<StatementMetaData, SqlStats> executedStatements =
-            new ConcurrentLinkedHashMap.Builder<StatementMetaData, SqlStats>().
-                    maximumWeightedCapacity(Long.MAX_VALUE).
-                    build();
+    protected volatile ConcurrentLinkedHashMap<StatementMetaData, SqlStats> executedStatements;
+
+    protected volatile ConcurrentLinkedHashMap<SocketMetaData, SocketStats> socketOperations;
 
-    protected volatile ConcurrentLinkedHashMap<SocketMetaData, SocketStats> socketOperations =
-            new ConcurrentLinkedHashMap.Builder<SocketMetaData, SocketStats>().
-                    maximumWeightedCapacity(Long.MAX_VALUE).
-                    build();
+    protected volatile ConcurrentLinkedHashMap<SocketMetaData, Deque<NetworkPacket>> networkTraffic;
 
-    protected volatile ConcurrentLinkedHashMap<SocketMetaData, Deque<NetworkPacket>> networkTraffic =
-            new ConcurrentLinkedHashMap.Builder<SocketMetaData, Deque<NetworkPacket>>().
-                    maximumWeightedCapacity(Long.MAX_VALUE).
-                    build();
+    /**
+     * Statistics of entries evicted from maps above once {@link SpyConfiguration#getMemoryBudget()} is exceeded
+     * {@link ConcurrentLinkedHashMap} supports LRU eviction only, so least recently updated entries are considered the
+     * least valuable ones; their statistics are kept in summarized form
+     * @since 3.1.10
+     */
+    private volatile SqlStats evictedSqlStats;
+    private volatile SocketStats evictedSocketStats;
+    private final StripedLong evictedEntries = new StripedLong();
+    private final StripedLong evictedNetworkTrafficBytes = new StripedLong();
+
+    /**
+     * N+1 query detectors for recently active threads which executed statements captured by this spy
+     * Patterns detected by evicted detectors are merged into {@link #evictedNPlusOneQueries} without thread information
+     * @since 3.1.10
+     */
+    private volatile ConcurrentLinkedHashMap<ThreadMetaData, NPlusOneDetector> nPlusOneDetectors;
+    private volatile List<NPlusOneDetector.Entry> evictedNPlusOneQueries;
 
     protected void addNetworkTraffic(SocketMetaData socketMetaData, boolean sent, long timestamp, String stackTrace, byte[] traffic, int off, int len) {
+        if (!accepts(socketMetaData)) return;
+        ConcurrentLinkedHashMap<SocketMetaData, Deque<NetworkPacket>> networkTraffic = this.networkTraffic;
         Deque<NetworkPacket> networkPackets = networkTraffic.get(socketMetaData);
         if (null == networkPackets) {
-            networkTraffic.putIfAbsent(socketMetaData, networkPackets = new LinkedList<NetworkPacket>());
+            Deque<NetworkPacket> newNetworkPackets = new NetworkPackets();
+            networkPackets = networkTraffic.putIfAbsent(socketMetaData, newNetworkPackets);
+            if (null == networkPackets) {
+                networkPackets = newNetworkPackets;
+            }
         }
-        NetworkPacket lastPacket = networkPackets.peekLast();
-        if (null == lastPacket || !lastPacket.combine(sent, timestamp, stackTrace, traffic, off, len, SniffyConfiguration.INSTANCE.getPacketMergeThreshold())) {
-            networkPackets.add(new NetworkPacket(sent, timestamp, stackTrace, traffic, off, len));
+        NetworkPackets packets = (NetworkPackets) networkPackets;
+        packets.capture(sent, timestamp, stackTrace, traffic, off, len);
+        if (spyConfiguration.hasMemoryBudget() && packets.needsReweighing()) {
+            // weight is computed on write only
+            networkTraffic.replace(socketMetaData, networkPackets);
         }
     }
 
     protected BaseSpy(SpyConfiguration spyConfiguration) {
         this.spyConfiguration = spyConfiguration;
+        resetExecutedStatements();
+        resetSocketOpertions();
+        resetNetworkTraffic();
+    }
+
+    /**
+     * @return memory budget of a single map; the budget is split evenly between captured event types
+     */
+    private long getMemoryBudget() {
+        if (!spyConfiguration.hasMemoryBudget()) return Long.MAX_VALUE;
+        int maps = (spyConfiguration.isCaptureJdbc() ? 1 : 0) +
+                (spyConfiguration.isCaptureNetwork() ? 1 : 0) +
+                (spyConfiguration.isCaptureNetworkTraffic() ? 1 : 0);
+        return Math.max(1, spyConfiguration.getMemoryBudget() / Math.max(1, maps));
     }
 
     public C reset() {
@@ -64,44 +116,347 @@ public abstract class BaseSpy<C extends BaseSpy<C>> {
     }
 
     protected void resetExecutedStatements() {
-        executedStatements =
+        final SqlStats evictedSqlStats = new SqlStats(0, 0, 0, 0, 0);
+        ConcurrentLinkedHashMap.Builder<StatementMetaData, SqlStats> builder =
                 new ConcurrentLinkedHashMap.Builder<StatementMetaData, SqlStats>().
-                        maximumWeightedCapacity(Long.MAX_VALUE).
-                        build();
+                        maximumWeightedCapacity(getMemoryBudget());
+        if (spyConfiguration.hasMemoryBudget()) {
+            builder.weigher(new EntryWeigher<StatementMetaData, SqlStats>() {
+                @Override
+                public int weightOf(StatementMetaData statementMetaData, SqlStats sqlStats) {
+                    return estimateWeight(statementMetaData.getSql(), sqlStats);
+                }
+            }).listener(new EvictionListener<StatementMetaData, SqlStats>() {
+                @Override
+                public void onEviction(StatementMetaData statementMetaData, SqlStats sqlStats) {
+                    evictedSqlStats.accumulate(sqlStats);
+                    evictedEntries.increment();
+                }
+            });
+        }
+        executedStatements = builder.build();
+        this.evictedSqlStats = evictedSqlStats;
+
+        final List<NPlusOneDetector.Entry> evictedNPlusOneQueries = new ArrayList<NPlusOneDetector.Entry>();
+        nPlusOneDetectors = new ConcurrentLinkedHashMap.Builder<ThreadMetaData, NPlusOneDetector>().
+                maximumWeightedCapacity(MAX_N_PLUS_ONE_DETECTORS).
+                listener(new EvictionListener<ThreadMetaData, NPlusOneDetector>() {
+                    @Override
+                    public void onEviction(ThreadMetaData threadMetaData, NPlusOneDetector nPlusOneDetector) {
+                        List<NPlusOneDetector.Entry> entries = nPlusOneDetector.getEntries();
+                        if (entries.isEmpty()) return;
+                        synchronized (evictedNPlusOneQueries) {
+                            entries.addAll(evictedNPlusOneQueries);
+                            evictedNPlusOneQueries.clear();
+                            evictedNPlusOneQueries.addAll(NPlusOneDetector.merge(entries));
+                        }
+                    }
+                }).
+                build();
+        this.evictedNPlusOneQueries = evictedNPlusOneQueries;
     }
 
     protected void resetSocketOpertions() {
-        socketOperations = new ConcurrentLinkedHashMap.Builder<SocketMetaData, SocketStats>().
-                maximumWeightedCapacity(Long.MAX_VALUE).
-                build();
+        final SocketStats evictedSocketStats = new SocketStats(0, 0, 0);
+        ConcurrentLinkedHashMap.Builder<SocketMetaData, SocketStats> builder =
+                new ConcurrentLinkedHashMap.Builder<SocketMetaData, SocketStats>().
+                        maximumWeightedCapacity(getMemoryBudget());
+        if (spyConfiguration.hasMemoryBudget()) {
+            builder.weigher(new EntryWeigher<SocketMetaData, SocketStats>() {
+                @Override
+                public int weightOf(SocketMetaData socketMetaData, SocketStats socketStats) {
+                    return estimateWeight(null, socketStats);
+                }
+            }).listener(new EvictionListener<SocketMetaData, SocketStats>() {
+                @Override
+                public void onEviction(SocketMetaData socketMetaData, SocketStats socketStats) {
+                    evictedSocketStats.accumulate(socketStats);
+                    evictedEntries.increment();
+                }
+            });
+        }
+        socketOperations = builder.build();
+        this.evictedSocketStats = evictedSocketStats;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    protected void resetNetworkTraffic() {
+        ConcurrentLinkedHashMap.Builder<SocketMetaData, Deque<NetworkPacket>> builder =
+                new ConcurrentLinkedHashMap.Builder<SocketMetaData, Deque<NetworkPacket>>().
+                        maximumWeightedCapacity(getMemoryBudget());
+        if (spyConfiguration.hasMemoryBudget()) {
+            builder.weigher(new EntryWeigher<SocketMetaData, Deque<NetworkPacket>>() {
+                @Override
+                public int weightOf(SocketMetaData socketMetaData, Deque<NetworkPacket> networkPackets) {
+                    return ((NetworkPackets) networkPackets).weigh();
+                }
+            }).listener(new EvictionListener<SocketMetaData, Deque<NetworkPacket>>() {
+                @Override
+                public void onEviction(SocketMetaData socketMetaData, Deque<NetworkPacket> networkPackets) {
+                    evictedNetworkTrafficBytes.add(((NetworkPackets) networkPackets).bytes.get());
+                    evictedEntries.increment();
+                }
+            });
+        }
+        networkTraffic = builder.build();
+    }
+
+    /**
+     * Stack traces aren't weighed since entries refer to them by identifier in {@link io.sniffy.util.StackTraceRegistry}
+     */
+    private static int estimateWeight(String sql, SocketStats socketStats) {
+        long weight = ENTRY_OVERHEAD + socketStats.weigh();
+        if (null != sql) weight += 2L * sql.length();
+        return clampToInt(weight);
     }
 
+    private static int clampToInt(long weight) {
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
 
-    protected void addExecutedStatement(StatementMetaData statementMetaData, long elapsedTime, int bytesDown, int bytesUp, int rowsUpdated) {
+    /**
+     * @return summarized statistics of statements evicted due to {@link SpyConfiguration#getMemoryBudget()}
+     * @since 3.1.10
+     */
+    public SqlStats getEvictedSqlStats() {
+        return evictedSqlStats;
+    }
+
+    /**
+     * @return summarized statistics of socket operations evicted due to {@link SpyConfiguration#getMemoryBudget()}
+     * @since 3.1.10
+     */
+    public SocketStats getEvictedSocketStats() {
+        return evictedSocketStats;
+    }
+
+    /**
+     * @return number of statements, socket operations and network connections evicted due to
+     * {@link SpyConfiguration#getMemoryBudget()}
+     * @since 3.1.10
+     */
+    public long getEvictedEntries() {
+        return evictedEntries.get();
+    }
+
+    /**
+     * @return number of bytes of captured network traffic evicted due to {@link SpyConfiguration#getMemoryBudget()}
+     * @since 3.1.10
+     */
+    public long getEvictedNetworkTrafficBytes() {
+        return evictedNetworkTrafficBytes.get();
+    }
+
+    /**
+     * Capture-time filtering; see {@link SpyConfiguration.Builder#captureThreads(ThreadMatcher)}
+     * @since 3.1.10
+     */
+    protected boolean accepts(StatementMetaData statementMetaData) {
+        return spyConfiguration.acceptsThread(statementMetaData.getThreadMetaData());
+    }
+
+    /**
+     * Capture-time filtering; see {@link SpyConfiguration.Builder#captureThreads(ThreadMatcher)}
+     * and {@link SpyConfiguration.Builder#captureAddresses(io.sniffy.socket.AddressMatcher)}
+     * @since 3.1.10
+     */
+    protected boolean accepts(SocketMetaData socketMetaData) {
+        return spyConfiguration.acceptsThread(socketMetaData.getThreadMetaData()) &&
+                spyConfiguration.acceptsAddress(socketMetaData.getAddress());
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     */
+    protected void addExecutedStatement(StatementMetaData statementMetaData, long elapsedTime, long bytesDown, long bytesUp, int rowsUpdated) {
+        if (!accepts(statementMetaData)) return;
+        SqlStats sqlStats = getOrCreateSqlStats(statementMetaData);
+        sqlStats.accumulateSample(elapsedTime, bytesDown, bytesUp, rowsUpdated, statementMetaData.getSamplingWeight());
+        reweigh(executedStatements, statementMetaData, sqlStats);
+        detectNPlusOne(statementMetaData);
+    }
+
+    /**
+     * Batches aren't passed here since statements are sent to the database in a single round trip
+     * @see SniffyConfiguration#getNPlusOneThreshold()
+     */
+    private void detectNPlusOne(StatementMetaData statementMetaData) {
+        if (SqlStatement.SYSTEM == statementMetaData.getQuery() || SniffyConfiguration.INSTANCE.getNPlusOneThreshold() < 0) return;
+        ThreadMetaData threadMetaData = statementMetaData.getThreadMetaData();
+        ConcurrentLinkedHashMap<ThreadMetaData, NPlusOneDetector> nPlusOneDetectors = this.nPlusOneDetectors;
+        NPlusOneDetector nPlusOneDetector = nPlusOneDetectors.get(threadMetaData);
+        if (null == nPlusOneDetector) {
+            NPlusOneDetector newNPlusOneDetector = new NPlusOneDetector(threadMetaData);
+            nPlusOneDetector = nPlusOneDetectors.putIfAbsent(threadMetaData, newNPlusOneDetector);
+            if (null == nPlusOneDetector) {
+                nPlusOneDetector = newNPlusOneDetector;
+            }
+        }
+        nPlusOneDetector.record(statementMetaData);
+    }
+
+    /**
+     * @return statements executed repeatedly in N+1 pattern by any thread
+     * @see NPlusOneDetector
+     * @since 3.1.10
+     */
+    public List<NPlusOneDetector.Entry> getNPlusOneQueries() {
+        return getNPlusOneQueries(Threads.ANY);
+    }
+
+    /**
+     * Patterns detected in threads which were evicted from the detectors are reported for {@link Threads#ANY} only
+     * @return statements executed repeatedly in N+1 pattern by threads matching given matcher
+     * @see NPlusOneDetector
+     * @since 3.1.10
+     */
+    public List<NPlusOneDetector.Entry> getNPlusOneQueries(ThreadMatcher threadMatcher) {
+        List<NPlusOneDetector.Entry> entries = new ArrayList<NPlusOneDetector.Entry>();
+        for (NPlusOneDetector nPlusOneDetector : nPlusOneDetectors.values()) {
+            if (threadMatcher.matches(nPlusOneDetector.getThreadMetaData())) {
+                entries.addAll(nPlusOneDetector.getEntries());
+            }
+        }
+        if (Threads.ANY == threadMatcher) {
+            List<NPlusOneDetector.Entry> evictedNPlusOneQueries = this.evictedNPlusOneQueries;
+            synchronized (evictedNPlusOneQueries) {
+                entries.addAll(evictedNPlusOneQueries);
+            }
+        }
+        return NPlusOneDetector.merge(entries);
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param batchSize number of statements in the batch
+     * @since 3.1.10
+     */
+    protected void addExecutedBatch(StatementMetaData statementMetaData, long elapsedTime, long bytesDown, long bytesUp, int rowsUpdated,
+                                    int batchSize, int successNoInfoStatements, int failedStatements) {
+        if (!accepts(statementMetaData)) return;
+        SqlStats sqlStats = getOrCreateSqlStats(statementMetaData);
+        sqlStats.accumulateSample(elapsedTime, bytesDown, bytesUp, rowsUpdated, statementMetaData.getSamplingWeight());
+        sqlStats.enableBatchStats().record(batchSize, successNoInfoStatements, failedStatements, statementMetaData.getSamplingWeight());
+        reweigh(executedStatements, statementMetaData, sqlStats);
+    }
+
+    private SqlStats getOrCreateSqlStats(StatementMetaData statementMetaData) {
         SqlStats sqlStats = executedStatements.get(statementMetaData);
         if (null == sqlStats) {
-            sqlStats = executedStatements.putIfAbsent(statementMetaData, new SqlStats(elapsedTime, bytesDown, bytesUp, rowsUpdated, 1));
+            SqlStats newSqlStats = new SqlStats(0, 0, 0, 0, 0);
+            if (SniffyConfiguration.INSTANCE.isLatencyHistograms()) {
+                newSqlStats.enableLatencyHistogram();
+            }
+            sqlStats = executedStatements.putIfAbsent(statementMetaData, newSqlStats);
+            if (null == sqlStats) {
+                sqlStats = newSqlStats;
+            }
         }
+        return sqlStats;
+    }
+
+    protected void addReturnedRow(StatementMetaData statementMetaData) {
+        addReturnedRows(statementMetaData, 1);
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    protected void addReturnedRows(StatementMetaData statementMetaData, int rows) {
+        SqlStats sqlStats = executedStatements.get(statementMetaData);
         if (null != sqlStats) {
-            sqlStats.accumulate(elapsedTime, bytesDown, bytesUp, rowsUpdated, 1);
+            sqlStats.addRows((long) rows * statementMetaData.getSamplingWeight());
         }
     }
 
-    protected void addReturnedRow(StatementMetaData statementMetaData) {
+    /**
+     * @since 3.1.10
+     */
+    protected void addBindParameters(StatementMetaData statementMetaData, BindParameters bindParameters) {
         SqlStats sqlStats = executedStatements.get(statementMetaData);
         if (null != sqlStats) {
-            sqlStats.accumulate(0, 0, 0, 1, 0);
+            sqlStats.retainBindParameters(bindParameters);
+            reweigh(executedStatements, statementMetaData, sqlStats);
+        }
+        NPlusOneDetector nPlusOneDetector = nPlusOneDetectors.get(statementMetaData.getThreadMetaData());
+        if (null != nPlusOneDetector) {
+            nPlusOneDetector.recordBindParameters(statementMetaData, bindParameters);
         }
     }
 
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     */
     protected void addSocketOperation(SocketMetaData socketMetaData, long elapsedTime, int bytesDown, int bytesUp) {
+        if (!accepts(socketMetaData)) return;
         SocketStats socketStats = socketOperations.get(socketMetaData);
         if (null == socketStats) {
-            socketStats = socketOperations.putIfAbsent(socketMetaData, new SocketStats(elapsedTime, bytesDown, bytesUp));
+            SocketStats newSocketStats = new SocketStats(0, 0, 0);
+            if (SniffyConfiguration.INSTANCE.isLatencyHistograms()) {
+                newSocketStats.enableLatencyHistogram();
+            }
+            socketStats = socketOperations.putIfAbsent(socketMetaData, newSocketStats);
+            if (null == socketStats) {
+                socketStats = newSocketStats;
+            }
+        }
+        socketStats.accumulateSample(elapsedTime, bytesDown, bytesUp, socketMetaData.getSamplingWeight());
+        reweigh(socketOperations, socketMetaData, socketStats);
+    }
+
+    /**
+     * Weight is computed on write only, so statistics which grew since they were weighed are written again
+     */
+    private <K, V extends SocketStats> void reweigh(ConcurrentLinkedHashMap<K, V> map, K key, V stats) {
+        if (spyConfiguration.hasMemoryBudget() && stats.needsReweighing()) {
+            map.replace(key, stats);
+        }
+    }
+
+    /**
+     * Network packets captured for a single connection together with their size used for weighing map entries
+     *
+     * Packets can be added by several threads sharing a connection; merging with the last packet is done under the
+     * monitor of this deque. Map entry is re-weighed only after it grew by 1/8 since previous weighing, so captured
+     * traffic can exceed the memory budget by at most 12.5%
+     */
+    private static class NetworkPackets extends LinkedBlockingDeque<NetworkPacket> {
+
+        private static final long serialVersionUID = 7455243916357946539L;
+
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong weight = new AtomicLong();
+
+        private void capture(boolean sent, long timestamp, String stackTrace, byte[] traffic, int off, int len) {
+            synchronized (this) {
+                NetworkPacket lastPacket = peekLast();
+                if (null == lastPacket || !lastPacket.combine(sent, timestamp, stackTrace, traffic, off, len, SniffyConfiguration.INSTANCE.getPacketMergeThreshold())) {
+                    add(new NetworkPacket(sent, timestamp, stackTrace, traffic, off, len));
+                }
+            }
+            bytes.addAndGet(len);
+        }
+
+        private long estimateWeight() {
+            return ENTRY_OVERHEAD + (long) size() * NETWORK_PACKET_OVERHEAD + bytes.get();
         }
-        if (null != socketStats) {
-            socketStats.accumulate(elapsedTime, bytesDown, bytesUp);
+
+        /**
+         * @return true if this thread should update weight of the map entry
+         */
+        private boolean needsReweighing() {
+            long weight = this.weight.get();
+            return estimateWeight() - weight > weight / 8 && this.weight.compareAndSet(weight, estimateWeight());
+        }
+
+        private int weigh() {
+            long weight = estimateWeight();
+            this.weight.set(weight);
+            return clampToInt(weight);
         }
+
     }
 
 }
@@ -0,0 +1,105 @@
+package io.sniffy;
+
+import io.sniffy.socket.SocketStats;
+
+/**
+ * Socket operations performed by a single thread inside intercepted JDBC methods
+ *
+ * Each JDBC method pushes a frame on enter and pops it on exit. Socket operations are attributed to the innermost
+ * frame only, so nested JDBC calls (say a wrapped data source calling a wrapped driver) neither overwrite nor count
+ * twice the traffic of enclosing calls. Frames are preallocated and reused, hence entering a JDBC method doesn't
+ * allocate anything once the stack has grown to the maximum nesting depth of the thread.
+ *
+ * Not thread safe; each thread uses its own instance
+ *
+ * @since 3.1.10
+ */
+class JdbcSocketStatsStack {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] bytesDown = new long[INITIAL_CAPACITY];
+    private long[] bytesUp = new long[INITIAL_CAPACITY];
+    // frames with external accumulator (see Sniffy.enterJdbcMethod(SocketStats)) store bytes there
+    private SocketStats[] accumulators = new SocketStats[INITIAL_CAPACITY];
+
+    private int depth;
+
+    private long poppedBytesDown;
+    private long poppedBytesUp;
+
+    boolean isEmpty() {
+        return 0 == depth;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param accumulator external accumulator for socket operations or null to accumulate them in this stack
+     */
+    void push(SocketStats accumulator) {
+        if (depth == bytesDown.length) {
+            grow();
+        }
+        bytesDown[depth] = 0;
+        bytesUp[depth] = 0;
+        accumulators[depth] = accumulator;
+        depth++;
+    }
+
+    void accumulate(long elapsedTime, int bytesDown, int bytesUp) {
+        int top = depth - 1;
+        SocketStats accumulator = accumulators[top];
+        if (null != accumulator) {
+            accumulator.accumulateNanos(elapsedTime, bytesDown, bytesUp);
+        } else {
+            this.bytesDown[top] += Math.max(bytesDown, 0);
+            this.bytesUp[top] += Math.max(bytesUp, 0);
+        }
+    }
+
+    /**
+     * Removes innermost frame; bytes accumulated in it are available via {@link #getPoppedBytesDown()} and
+     * {@link #getPoppedBytesUp()} until next call to this method
+     * @return false if stack was empty
+     */
+    boolean pop() {
+        if (0 == depth) {
+            poppedBytesDown = 0;
+            poppedBytesUp = 0;
+            return false;
+        }
+        depth--;
+        poppedBytesDown = bytesDown[depth];
+        poppedBytesUp = bytesUp[depth];
+        accumulators[depth] = null;
+        return true;
+    }
+
+    long getPoppedBytesDown() {
+        return poppedBytesDown;
+    }
+
+    long getPoppedBytesUp() {
+        return poppedBytesUp;
+    }
+
+    private void grow() {
+        int capacity = bytesDown.length * 2;
+
+        long[] bytesDown = new long[capacity];
+        System.arraycopy(this.bytesDown, 0, bytesDown, 0, depth);
+        this.bytesDown = bytesDown;
+
+        long[] bytesUp = new long[capacity];
+        System.arraycopy(this.bytesUp, 0, bytesUp, 0, depth);
+        this.bytesUp = bytesUp;
+
+        SocketStats[] accumulators = new SocketStats[capacity];
+        System.arraycopy(this.accumulators, 0, accumulators, 0, depth);
+        this.accumulators = accumulators;
+    }
+
+}
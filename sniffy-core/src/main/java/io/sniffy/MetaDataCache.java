@@ -0,0 +1,110 @@
+package io.sniffy;
+
+import io.sniffy.socket.Protocol;
+import io.sniffy.socket.SocketMetaData;
+import io.sniffy.sql.SqlStatement;
+import io.sniffy.sql.StatementMetaData;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Canonical immutable {@link ThreadMetaData}, {@link StatementMetaData} and {@link SocketMetaData} instances
+ *
+ * Spies store statistics in maps keyed by metadata and the same key is produced again and again by the same call site,
+ * so instead of creating a new key (together with a new {@link ThreadMetaData} and {@link java.lang.ref.WeakReference})
+ * for each event, the key is looked up in a small direct-mapped table by thread, SQL text (or protocol, address and
+ * connection id), stack trace id and sampling weight. On a miss the slot is overwritten, so recording an event with
+ * a recently seen key doesn't allocate.
+ *
+ * Tables are shared by all threads and have a fixed size, so memory footprint doesn't grow with the number of threads
+ * (including short-lived virtual threads). Threads are identified by id and compared by identity; thread name and
+ * group are captured when {@link ThreadMetaData} is created, hence a renamed thread keeps reporting the previous name
+ * until its slot is reused.
+ *
+ * Racy single-check cache; entries are immutable and safely published via final fields
+ *
+ * @since 3.1.10
+ */
+class MetaDataCache {
+
+    private static final int THREADS_CAPACITY = 256;
+    private static final int CAPACITY = 1024;
+
+    private final ThreadMetaData[] threads = new ThreadMetaData[THREADS_CAPACITY];
+    private final StatementMetaData[] statements = new StatementMetaData[CAPACITY];
+    private final SocketMetaData[] sockets = new SocketMetaData[CAPACITY];
+
+    /**
+     * @return metadata of current thread
+     */
+    ThreadMetaData getThreadMetaData() {
+        Thread thread = Thread.currentThread();
+        long threadId = thread.getId();
+
+        int slot = slot((int) (threadId ^ (threadId >>> 32))) & (THREADS_CAPACITY - 1);
+
+        ThreadMetaData threadMetaData = threads[slot];
+        if (null == threadMetaData ||
+                threadMetaData.getThreadId() != threadId ||
+                threadMetaData.getThreadReference().get() != thread) {
+            threadMetaData = new ThreadMetaData(thread);
+            threads[slot] = threadMetaData;
+        }
+        return threadMetaData;
+    }
+
+    StatementMetaData getStatementMetaData(String sql, SqlStatement query, int stackTraceId, int samplingWeight) {
+        ThreadMetaData threadMetaData = getThreadMetaData();
+
+        int hashCode = null == sql ? 0 : sql.hashCode();
+        hashCode = 31 * hashCode + threadMetaData.hashCode();
+        hashCode = 31 * hashCode + stackTraceId;
+        hashCode = 31 * hashCode + samplingWeight;
+        int slot = slot(hashCode) & (CAPACITY - 1);
+
+        StatementMetaData statementMetaData = statements[slot];
+        //noinspection StringEquality
+        if (null == statementMetaData ||
+                statementMetaData.getThreadMetaData() != threadMetaData ||
+                statementMetaData.getQuery() != query ||
+                statementMetaData.getStackTraceId() != stackTraceId ||
+                statementMetaData.getSamplingWeight() != samplingWeight ||
+                (statementMetaData.getSql() != sql && (null == sql || !sql.equals(statementMetaData.getSql())))) {
+            statementMetaData = new StatementMetaData(sql, query, stackTraceId, threadMetaData, samplingWeight);
+            statements[slot] = statementMetaData;
+        }
+        return statementMetaData;
+    }
+
+    SocketMetaData getSocketMetaData(Protocol protocol, InetSocketAddress address, int connectionId, int stackTraceId, int samplingWeight) {
+        ThreadMetaData threadMetaData = getThreadMetaData();
+
+        int hashCode = address.hashCode();
+        hashCode = 31 * hashCode + threadMetaData.hashCode();
+        hashCode = 31 * hashCode + connectionId;
+        hashCode = 31 * hashCode + stackTraceId;
+        hashCode = 31 * hashCode + samplingWeight;
+        int slot = slot(hashCode) & (CAPACITY - 1);
+
+        SocketMetaData socketMetaData = sockets[slot];
+        if (null == socketMetaData ||
+                socketMetaData.getThreadMetaData() != threadMetaData ||
+                socketMetaData.getProtocol() != protocol ||
+                socketMetaData.getConnectionId() != connectionId ||
+                socketMetaData.getStackTraceId() != stackTraceId ||
+                socketMetaData.getSamplingWeight() != samplingWeight ||
+                !address.equals(socketMetaData.getAddress())) {
+            socketMetaData = new SocketMetaData(protocol, address, connectionId, stackTraceId, threadMetaData, samplingWeight);
+            sockets[slot] = socketMetaData;
+        }
+        return socketMetaData;
+    }
+
+    private static int slot(int hashCode) {
+        hashCode ^= (hashCode >>> 16);
+        hashCode *= 0x85ebca6b;
+        hashCode ^= (hashCode >>> 13);
+        return hashCode;
+    }
+
+}
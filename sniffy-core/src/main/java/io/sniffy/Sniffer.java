@@ -1,7 +1,8 @@
 package io.sniffy;
 
+import io.sniffy.util.StripedLong;
+
 import java.util.concurrent.Callable;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @see Sniffy
@@ -10,7 +11,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public final class Sniffer extends Sniffy {
 
     @Deprecated
-    public final static AtomicInteger executedStatementsGlobalCounter = new AtomicInteger();
+    public final static StripedLong executedStatementsGlobalCounter = new StripedLong();
 
     @Deprecated
     private Sniffer() {
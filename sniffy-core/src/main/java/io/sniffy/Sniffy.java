@@ -1,25 +1,32 @@
 package io.sniffy;
 
 import com.codahale.metrics.Timer;
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import io.sniffy.configuration.SamplingPolicy;
 import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.socket.AddressMatcher;
+import io.sniffy.socket.GlobalSocketStats;
 import io.sniffy.socket.Protocol;
 import io.sniffy.socket.SnifferSocketImplFactory;
 import io.sniffy.socket.SocketMetaData;
 import io.sniffy.socket.SocketStats;
+import io.sniffy.sql.BindParameters;
+import io.sniffy.sql.SlowQueryJournal;
+import io.sniffy.sql.SqlFingerprint;
 import io.sniffy.sql.SqlStatement;
 import io.sniffy.sql.SqlUtil;
 import io.sniffy.sql.StatementMetaData;
+import io.sniffy.sql.TopSqlTracker;
+import io.sniffy.util.StackTraceRegistry;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
-import java.util.Iterator;
-import java.util.Queue;
+import java.util.Arrays;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -42,6 +49,11 @@ public class Sniffy {
 
     public static final int TOP_SQL_CAPACITY = 1024;
 
+    /**
+     * @since 3.1.10
+     */
+    public static final int TOP_SOCKET_CAPACITY = 256;
+
     /**
      * Indicates if Sniffy potentially has global (non thread-local) spies registered
      * Once set to true it is never reseted to false
@@ -62,21 +74,87 @@ public class Sniffy {
      */
     private static volatile boolean hasThreadLocalSpies = false;
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final WeakReference<Spy>[] NO_SPIES = new WeakReference[0];
+
+    /**
+     * Copy-on-write snapshot of registered global spies; it is replaced under {@link #registeredSpiesLock} only
+     * Spies collected by GC are skipped by notification loops and purged once they appear in {@link #collectedSpies}
+     * reference queue, see {@link #purgeCollectedSpies()}
+     *
+     * @since 3.1.10
+     */
     //@VisibleForTesting
-    protected static final Queue<WeakReference<Spy>> registeredSpies =
-            new ConcurrentLinkedQueue<WeakReference<Spy>>();
-    //@VisibleForTesting
-    protected static final ConcurrentMap<Long, WeakReference<CurrentThreadSpy>> currentThreadSpies =
-            new ConcurrentHashMap<Long, WeakReference<CurrentThreadSpy>>();
+    protected static volatile WeakReference<Spy>[] registeredSpies = NO_SPIES;
 
+    private static final Object registeredSpiesLock = new Object();
 
-    // TODO: add globalSocketStats
-    protected static volatile ConcurrentLinkedHashMap<String, Timer> globalSqlStats =
-            new ConcurrentLinkedHashMap.Builder<String, Timer>().
-                    maximumWeightedCapacity(SniffyConfiguration.INSTANCE.getTopSqlCapacity()).
-                    build();
+    private static final ReferenceQueue<Object> collectedSpies = new ReferenceQueue<Object>();
 
-    private static ThreadLocal<SocketStats> socketStatsAccumulator = new ThreadLocal<SocketStats>();
+    /**
+     * Spy bound to current thread by {@link #spyCurrentThread()}
+     * The binding is a plain thread local, so it doesn't box thread ids on lookup and is discarded together with a thread
+     * (including short-lived virtual threads) even if the spy was never closed
+     *
+     * @since 3.1.10
+     */
+    private static final ThreadLocal<WeakReference<CurrentThreadSpy>> currentThreadSpy =
+            new ThreadLocal<WeakReference<CurrentThreadSpy>>();
+
+    /**
+     * Aggregated configuration of all global (non thread-local) spies
+     * Recomputed only when a spy is registered, closed or collected so reading it on I/O path is a single volatile read
+     *
+     * @since 3.1.10
+     */
+    private static volatile SpyConfiguration globalSpyConfiguration = SpyConfiguration.disabled();
+
+    /**
+     * Address filters of all global spies or null if at least one of them captures any address
+     * Allows rejecting socket events before capturing stack trace and building metadata
+     *
+     * @since 3.1.10
+     */
+    private static volatile AddressMatcher[] globalAddressMatchers = null;
+
+    /**
+     * Thread filters of all global spies or null if at least one of them captures any thread
+     * Allows rejecting events of other threads before building metadata
+     *
+     * @since 3.1.10
+     */
+    private static volatile ThreadMatcher[] globalThreadMatchers = null;
+
+
+    /**
+     * @since 3.1.10
+     */
+    protected static volatile GlobalSocketStats globalSocketStats =
+            new GlobalSocketStats(SniffyConfiguration.INSTANCE.getTopSocketCapacity());
+
+    protected static volatile TopSqlTracker topSqlTracker =
+            new TopSqlTracker(SniffyConfiguration.INSTANCE.getTopSqlCapacity());
+
+    /**
+     * @deprecated use {@link #topSqlTracker} instead
+     */
+    @Deprecated
+    protected static final ConcurrentMap<String, Timer> globalSqlStats = new TopSqlTimers();
+
+    /**
+     * @since 3.1.10
+     */
+    private static volatile SlowQueryJournal slowQueryJournal;
+    private static volatile Throwable slowQueryJournalFailure;
+
+    private static ThreadLocal<JdbcSocketStatsStack> jdbcSocketStats = new ThreadLocal<JdbcSocketStatsStack>() {
+        @Override
+        protected JdbcSocketStatsStack initialValue() {
+            return new JdbcSocketStatsStack();
+        }
+    };
+
+    private static final MetaDataCache metaDataCache = new MetaDataCache();
 
     public final static AtomicInteger CONNECTION_ID_SEQUENCE = new AtomicInteger();
 
@@ -124,12 +202,16 @@ public class Sniffy {
 
             @Override
             public void propertyChange(PropertyChangeEvent evt) {
-                ConcurrentLinkedHashMap<String, Timer> oldValues = globalSqlStats;
-                globalSqlStats =
-                        new ConcurrentLinkedHashMap.Builder<String, Timer>().
-                                maximumWeightedCapacity(SniffyConfiguration.INSTANCE.getTopSqlCapacity()).
-                                build();
-                globalSqlStats.putAll(oldValues);
+                topSqlTracker = new TopSqlTracker(SniffyConfiguration.INSTANCE.getTopSqlCapacity(), topSqlTracker);
+            }
+
+        });
+
+        SniffyConfiguration.INSTANCE.addTopSocketCapacityListener(new PropertyChangeListener() {
+
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                globalSocketStats = new GlobalSocketStats(SniffyConfiguration.INSTANCE.getTopSocketCapacity(), globalSocketStats);
             }
 
         });
@@ -218,105 +300,384 @@ public class Sniffy {
         }
     }
 
-    // TODO: call this method via Disruptor or something
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     * @see #logSqlTimeNanos(String, long)
+     */
     public static void logSqlTime(String sql, long elapsedTime) {
+        logSqlTimeNanos(sql, TimeUnit.MILLISECONDS.toNanos(elapsedTime));
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @since 3.1.10
+     */
+    public static void logSqlTimeNanos(String sql, long elapsedTime) {
         if (SniffyConfiguration.INSTANCE.getTopSqlCapacity() <= 0) return;
-        String normalizedSql = SqlUtil.normalizeInStatement(sql);
-        Timer timer = globalSqlStats.get(normalizedSql);
-        if (null == timer) {
-            Timer newTimer = new Timer();
-            newTimer.update(elapsedTime, TimeUnit.MILLISECONDS);
-            timer = globalSqlStats.putIfAbsent(normalizedSql, newTimer);
-        }
-        if (null != timer) {
-            timer.update(elapsedTime, TimeUnit.MILLISECONDS);
+        if (SniffyConfiguration.INSTANCE.isAsyncEventProcessing()) {
+            AsyncEventProcessor asyncEventProcessor = AsyncEventProcessor.getInstance();
+            if (null != asyncEventProcessor && asyncEventProcessor.publishSqlTime(sql, elapsedTime)) {
+                return;
+            }
         }
+        logSqlTimeImpl(sql, elapsedTime);
+    }
+
+    static void logSqlTimeImpl(String sql, long elapsedTime) {
+        topSqlTracker.record(SqlFingerprint.of(sql), elapsedTime);
+    }
+
+    /**
+     * @return number of events dropped because asynchronous event queue was full
+     * @see SniffyConfiguration#isAsyncEventProcessing()
+     * @since 3.1.10
+     */
+    public static long getDroppedEventsCount() {
+        return AsyncEventProcessor.getDroppedEventsCount();
+    }
+
+    /**
+     * @return most frequently executed queries grouped by fingerprint
+     * @see SniffyConfiguration#getTopSqlCapacity()
+     * @since 3.1.10
+     */
+    public static TopSqlTracker getTopSqlTracker() {
+        return topSqlTracker;
     }
 
+    /**
+     * @return read-only view of {@link #getTopSqlTracker()}; only {@link ConcurrentMap#clear()} is supported
+     * @deprecated use {@link #getTopSqlTracker()} instead
+     */
+    @Deprecated
     public static ConcurrentMap<String, Timer> getGlobalSqlStats() {
         return globalSqlStats;
     }
 
+    /**
+     * @return journal of slow statements or null if it is disabled or cannot be opened
+     * @see SniffyConfiguration#getSlowQueryThreshold()
+     * @see #getSlowQueryJournalFailure()
+     * @since 3.1.10
+     */
+    public static SlowQueryJournal getSlowQueryJournal() {
+        if (null == slowQueryJournal && null == slowQueryJournalFailure && SniffyConfiguration.INSTANCE.getSlowQueryThreshold() >= 0) {
+            synchronized (Sniffy.class) {
+                if (null == slowQueryJournal && null == slowQueryJournalFailure) {
+                    try {
+                        slowQueryJournal = SlowQueryJournal.open(SniffyConfiguration.INSTANCE.getSlowQueryJournalSize());
+                    } catch (IOException e) {
+                        slowQueryJournalFailure = e;
+                    } catch (RuntimeException e) {
+                        slowQueryJournalFailure = e;
+                    }
+                }
+            }
+        }
+        return slowQueryJournal;
+    }
+
+    /**
+     * @return exception thrown while opening the slow query journal or null; journal isn't opened again after a failure
+     * @since 3.1.10
+     */
+    public static Throwable getSlowQueryJournalFailure() {
+        return slowQueryJournalFailure;
+    }
+
+    /**
+     * Appends statement to the slow query journal if it took longer than {@link SniffyConfiguration#getSlowQueryThreshold()};
+     * must be called right after {@link #executeStatement(String, SqlStatement, long, int, int)} or
+     * {@link #exitJdbcMethod()} since it takes socket operations popped by them
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param bindParameters parameters of prepared statement or null
+     * @since 3.1.10
+     */
+    public static void logSlowStatement(String sql, long elapsedTime, int stackTraceId, int rowsUpdated, BindParameters bindParameters) {
+        int threshold = SniffyConfiguration.INSTANCE.getSlowQueryThreshold();
+        if (threshold < 0 || elapsedTime < TimeUnit.MILLISECONDS.toNanos(threshold)) return;
+
+        SlowQueryJournal slowQueryJournal = getSlowQueryJournal();
+        if (null != slowQueryJournal) {
+            JdbcSocketStatsStack jdbcSocketStatsStack = jdbcSocketStats.get();
+            slowQueryJournal.append(
+                    System.currentTimeMillis(), sql, elapsedTime, rowsUpdated,
+                    jdbcSocketStatsStack.getPoppedBytesDown(), jdbcSocketStatsStack.getPoppedBytesUp(),
+                    Thread.currentThread(), stackTraceId, bindParameters
+            );
+        }
+    }
+
+    /**
+     * @return socket operations of all threads grouped by remote address
+     * @see SniffyConfiguration#getTopSocketCapacity()
+     * @since 3.1.10
+     */
+    public static GlobalSocketStats getGlobalSocketStats() {
+        return globalSocketStats;
+    }
+
     protected static WeakReference<Spy> registerSpy(Spy spy) {
         hasGlobalSpies = true;
-        WeakReference<Spy> spyReference = new WeakReference<Spy>(spy);
-        registeredSpies.add(spyReference);
+        WeakReference<Spy> spyReference = new WeakReference<Spy>(spy, collectedSpies);
+        synchronized (registeredSpiesLock) {
+            WeakReference<Spy>[] spies = registeredSpies;
+            if (drainCollectedSpies()) {
+                spies = liveSpies(spies, null);
+            }
+            WeakReference<Spy>[] newSpies = Arrays.copyOf(spies, spies.length + 1);
+            newSpies[spies.length] = spyReference;
+            setRegisteredSpies(newSpies);
+        }
         return spyReference;
     }
 
     protected static WeakReference<CurrentThreadSpy> registerCurrentThreadSpy(CurrentThreadSpy spy) {
         hasThreadLocalSpies = true;
         WeakReference<CurrentThreadSpy> spyReference = new WeakReference<CurrentThreadSpy>(spy);
-        currentThreadSpies.put(Thread.currentThread().getId(), spyReference);
+        currentThreadSpy.set(spyReference);
         return spyReference;
     }
 
     protected static void removeSpyReference(WeakReference<Spy> spyReference) {
-        registeredSpies.remove(spyReference);
+        synchronized (registeredSpiesLock) {
+            drainCollectedSpies();
+            // purges collected spies as well even if they weren't enqueued yet
+            setRegisteredSpies(liveSpies(registeredSpies, spyReference));
+        }
     }
 
     protected static void removeCurrentThreadSpyReference() {
-        currentThreadSpies.remove(Thread.currentThread().getId());
+        currentThreadSpy.remove();
     }
 
-    private static void notifyListeners(StatementMetaData statementMetaData, long elapsedTime, int bytesDown, int bytesUp, int rowsUpdated) {
+    /**
+     * @return spy bound to current thread or null
+     * @since 3.1.10
+     */
+    private static CurrentThreadSpy getCurrentThreadSpy() {
+        WeakReference<CurrentThreadSpy> spyReference = currentThreadSpy.get();
+        if (null == spyReference) return null;
+        CurrentThreadSpy spy = spyReference.get();
+        if (null == spy) {
+            currentThreadSpy.remove();
+        }
+        return spy;
+    }
 
-        if (hasGlobalSpies) {
-            Iterator<WeakReference<Spy>> iterator = registeredSpies.iterator();
-            while (iterator.hasNext()) {
-                WeakReference<Spy> spyReference = iterator.next();
-                Spy spy = spyReference.get();
-                if (null == spy) {
-                    iterator.remove();
-                } else {
-                    spy.addExecutedStatement(statementMetaData, elapsedTime, bytesDown, bytesUp, rowsUpdated);
+    /**
+     * Removes spies collected by GC from {@link #registeredSpies} if any of them were enqueued to
+     * {@link #collectedSpies}; doesn't acquire any locks if reference queue is empty
+     * Called after notification loop which came across a collected spy
+     * @since 3.1.10
+     */
+    private static void purgeCollectedSpies() {
+        if (null == collectedSpies.poll()) return;
+        synchronized (registeredSpiesLock) {
+            drainCollectedSpies();
+            setRegisteredSpies(liveSpies(registeredSpies, null));
+        }
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    //@VisibleForTesting
+    protected static void removeAllSpies() {
+        synchronized (registeredSpiesLock) {
+            drainCollectedSpies();
+            setRegisteredSpies(NO_SPIES);
+        }
+    }
+
+    /**
+     * @return true if at least one spy was collected since previous call
+     */
+    private static boolean drainCollectedSpies() {
+        boolean collected = false;
+        while (null != collectedSpies.poll()) {
+            collected = true;
+        }
+        return collected;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static WeakReference<Spy>[] liveSpies(WeakReference<Spy>[] spies, WeakReference<Spy> excludedSpyReference) {
+        int count = 0;
+        WeakReference<Spy>[] liveSpies = new WeakReference[spies.length];
+        for (WeakReference<Spy> spyReference : spies) {
+            if (spyReference != excludedSpyReference && null != spyReference.get()) {
+                liveSpies[count++] = spyReference;
+            }
+        }
+        return count == spies.length ? spies : Arrays.copyOf(liveSpies, count);
+    }
+
+    /**
+     * Publishes new snapshot of global spies and rebuilds {@link #globalSpyConfiguration}
+     * Should be called while holding {@link #registeredSpiesLock}
+     * @since 3.1.10
+     */
+    private static void setRegisteredSpies(WeakReference<Spy>[] spies) {
+        SpyConfiguration spyConfiguration = SpyConfiguration.disabled();
+        AddressMatcher[] addressMatchers = new AddressMatcher[spies.length];
+        int addressMatchersCount = 0;
+        ThreadMatcher[] threadMatchers = new ThreadMatcher[spies.length];
+        int threadMatchersCount = 0;
+        for (WeakReference<Spy> spyReference : spies) {
+            Spy<?> spy = spyReference.get();
+            if (null != spy) {
+                spyConfiguration = spyConfiguration.or(spy.getSpyConfiguration());
+                if (null != addressMatchers) {
+                    if (spy.getSpyConfiguration().hasAddressFilter()) {
+                        addressMatchers[addressMatchersCount++] = spy.getSpyConfiguration().getAddressMatcher();
+                    } else {
+                        addressMatchers = null;
+                    }
+                }
+                if (null != threadMatchers) {
+                    if (spy.getSpyConfiguration().hasThreadFilter()) {
+                        threadMatchers[threadMatchersCount++] = spy.getSpyConfiguration().getThreadMatcher();
+                    } else {
+                        threadMatchers = null;
+                    }
                 }
             }
         }
+        registeredSpies = spies;
+        globalSpyConfiguration = spyConfiguration;
+        globalAddressMatchers = null == addressMatchers ? null : Arrays.copyOf(addressMatchers, addressMatchersCount);
+        globalThreadMatchers = null == threadMatchers ? null : Arrays.copyOf(threadMatchers, threadMatchersCount);
+    }
+
+    /**
+     * @return true if at least one spy captures events of current thread
+     * @since 3.1.10
+     */
+    private static boolean isThreadCaptured() {
+
+        ThreadMatcher[] threadMatchers = globalThreadMatchers;
+        if (null == threadMatchers) return true;
+
+        if (hasThreadLocalSpies && null != getCurrentThreadSpy()) return true;
+
+        ThreadMetaData threadMetaData = metaDataCache.getThreadMetaData();
+        for (ThreadMatcher threadMatcher : threadMatchers) {
+            if (threadMatcher.matches(threadMetaData)) return true;
+        }
+
+        return false;
+
+    }
+
+    /**
+     * @return true if at least one spy applicable to current thread captures given address
+     * @since 3.1.10
+     */
+    private static boolean isAddressCaptured(InetSocketAddress address) {
+
+        AddressMatcher[] addressMatchers = globalAddressMatchers;
+        if (null == addressMatchers || null == address) return true;
+
+        for (AddressMatcher addressMatcher : addressMatchers) {
+            if (addressMatcher.matches(address)) return true;
+        }
 
         if (hasThreadLocalSpies) {
-            Long threadId = Thread.currentThread().getId();
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy && spy.getSpyConfiguration().acceptsAddress(address)) return true;
+        }
+
+        return false;
+
+    }
+
+    /**
+     * @param batchSize number of statements in executed batch or -1 if statement wasn't executed as a batch
+     */
+    private static void notifyListeners(StatementMetaData statementMetaData, long elapsedTime, long bytesDown, long bytesUp, int rowsUpdated,
+                                        int batchSize, int successNoInfoStatements, int failedStatements) {
 
-            WeakReference<CurrentThreadSpy> spyReference = currentThreadSpies.get(threadId);
-            if (null != spyReference) {
-                CurrentThreadSpy spy = spyReference.get();
+        if (hasGlobalSpies) {
+            boolean hasCollectedSpies = false;
+            for (WeakReference<Spy> spyReference : registeredSpies) {
+                Spy<?> spy = spyReference.get();
                 if (null == spy) {
-                    currentThreadSpies.remove(threadId);
+                    hasCollectedSpies = true;
+                } else if (batchSize < 0) {
+                    spy.addExecutedStatement(statementMetaData, elapsedTime, bytesDown, bytesUp, rowsUpdated);
                 } else {
+                    spy.addExecutedBatch(statementMetaData, elapsedTime, bytesDown, bytesUp, rowsUpdated,
+                            batchSize, successNoInfoStatements, failedStatements);
+                }
+            }
+            if (hasCollectedSpies) {
+                purgeCollectedSpies();
+            }
+        }
+
+        if (hasThreadLocalSpies) {
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy) {
+                if (batchSize < 0) {
                     spy.addExecutedStatement(statementMetaData, elapsedTime, bytesDown, bytesUp, rowsUpdated);
+                } else {
+                    spy.addExecutedBatch(statementMetaData, elapsedTime, bytesDown, bytesUp, rowsUpdated,
+                            batchSize, successNoInfoStatements, failedStatements);
                 }
             }
         }
 
     }
 
-    private static void notifyListeners(StatementMetaData statementMetaData) {
+    private static void notifyListeners(StatementMetaData statementMetaData, int rows) {
 
         if (hasGlobalSpies) {
-            Iterator<WeakReference<Spy>> iterator = registeredSpies.iterator();
-            while (iterator.hasNext()) {
-                WeakReference<Spy> spyReference = iterator.next();
-                Spy spy = spyReference.get();
+            boolean hasCollectedSpies = false;
+            for (WeakReference<Spy> spyReference : registeredSpies) {
+                Spy<?> spy = spyReference.get();
                 if (null == spy) {
-                    iterator.remove();
+                    hasCollectedSpies = true;
                 } else {
-                    spy.addReturnedRow(statementMetaData);
+                    spy.addReturnedRows(statementMetaData, rows);
                 }
             }
+            if (hasCollectedSpies) {
+                purgeCollectedSpies();
+            }
         }
 
         if (hasThreadLocalSpies) {
-            Long threadId = Thread.currentThread().getId();
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy) {
+                spy.addReturnedRows(statementMetaData, rows);
+            }
+        }
+
+    }
+
+    private static void notifyListeners(StatementMetaData statementMetaData, BindParameters bindParameters) {
 
-            WeakReference<CurrentThreadSpy> spyReference = currentThreadSpies.get(threadId);
-            if (null != spyReference) {
-                CurrentThreadSpy spy = spyReference.get();
+        if (hasGlobalSpies) {
+            boolean hasCollectedSpies = false;
+            for (WeakReference<Spy> spyReference : registeredSpies) {
+                Spy<?> spy = spyReference.get();
                 if (null == spy) {
-                    currentThreadSpies.remove(threadId);
+                    hasCollectedSpies = true;
                 } else {
-                    spy.addReturnedRow(statementMetaData);
+                    spy.addBindParameters(statementMetaData, bindParameters);
                 }
             }
+            if (hasCollectedSpies) {
+                purgeCollectedSpies();
+            }
+        }
+
+        if (hasThreadLocalSpies) {
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy) {
+                spy.addBindParameters(statementMetaData, bindParameters);
+            }
         }
 
     }
@@ -324,29 +685,24 @@ public class Sniffy {
     private static void notifyListeners(SocketMetaData socketMetaData, long elapsedTime, int bytesDown, int bytesUp) {
 
         if (hasGlobalSpies) {
-            Iterator<WeakReference<Spy>> iterator = registeredSpies.iterator();
-            while (iterator.hasNext()) {
-                WeakReference<Spy> spyReference = iterator.next();
-                Spy spy = spyReference.get();
+            boolean hasCollectedSpies = false;
+            for (WeakReference<Spy> spyReference : registeredSpies) {
+                Spy<?> spy = spyReference.get();
                 if (null == spy) {
-                    iterator.remove();
+                    hasCollectedSpies = true;
                 } else {
                     spy.addSocketOperation(socketMetaData, elapsedTime, bytesDown, bytesUp);
                 }
             }
+            if (hasCollectedSpies) {
+                purgeCollectedSpies();
+            }
         }
 
         if (hasThreadLocalSpies) {
-            Long threadId = Thread.currentThread().getId();
-
-            WeakReference<CurrentThreadSpy> spyReference = currentThreadSpies.get(threadId);
-            if (null != spyReference) {
-                CurrentThreadSpy spy = spyReference.get();
-                if (null == spy) {
-                    currentThreadSpies.remove(threadId);
-                } else {
-                    spy.addSocketOperation(socketMetaData, elapsedTime, bytesDown, bytesUp);
-                }
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy) {
+                spy.addSocketOperation(socketMetaData, elapsedTime, bytesDown, bytesUp);
             }
         }
     }
@@ -354,29 +710,24 @@ public class Sniffy {
     private static void notifyListeners(SocketMetaData socketMetaData, boolean sent, long timestamp, String stackTrace, byte[] traffic, int off, int len) {
 
         if (hasGlobalSpies) {
-            Iterator<WeakReference<Spy>> iterator = registeredSpies.iterator();
-            while (iterator.hasNext()) {
-                WeakReference<Spy> spyReference = iterator.next();
-                Spy spy = spyReference.get();
+            boolean hasCollectedSpies = false;
+            for (WeakReference<Spy> spyReference : registeredSpies) {
+                Spy<?> spy = spyReference.get();
                 if (null == spy) {
-                    iterator.remove();
+                    hasCollectedSpies = true;
                 } else {
                     spy.addNetworkTraffic(socketMetaData, sent, timestamp, stackTrace, traffic, off, len);
                 }
             }
+            if (hasCollectedSpies) {
+                purgeCollectedSpies();
+            }
         }
 
         if (hasThreadLocalSpies) {
-            Long threadId = Thread.currentThread().getId();
-
-            WeakReference<CurrentThreadSpy> spyReference = currentThreadSpies.get(threadId);
-            if (null != spyReference) {
-                CurrentThreadSpy spy = spyReference.get();
-                if (null == spy) {
-                    currentThreadSpies.remove(threadId);
-                } else {
-                    spy.addNetworkTraffic(socketMetaData, sent, timestamp, stackTrace, traffic, off, len);
-                }
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy) {
+                spy.addNetworkTraffic(socketMetaData, sent, timestamp, stackTrace, traffic, off, len);
             }
         }
     }
@@ -388,46 +739,21 @@ public class Sniffy {
     }
 
     /**
+     * @return effective configuration of spies applicable to current thread; doesn't allocate new objects
      * @since 3.1.10
      */
     public static SpyConfiguration getEffectiveSpyConfiguration() {
 
-        SpyConfiguration.Builder builder = SpyConfiguration.builder().
-                captureJdbc(false).
-                captureNetwork(false).
-                captureNetworkTraffic(false).
-                captureStackTraces(false);
-
-        if (hasGlobalSpies) {
-            if (!registeredSpies.isEmpty()) {
-                Iterator<WeakReference<Spy>> iterator = registeredSpies.iterator();
-                while (iterator.hasNext()) {
-                    WeakReference<Spy> spyReference = iterator.next();
-                    Spy spy = spyReference.get();
-                    if (null == spy) {
-                        iterator.remove();
-                    } else {
-                        builder = builder.or(spy.getSpyConfiguration());
-                    }
-                }
-            }
-        }
+        SpyConfiguration effectiveSpyConfiguration = globalSpyConfiguration;
 
         if (hasThreadLocalSpies) {
-            Long threadId = Thread.currentThread().getId();
-
-            WeakReference<CurrentThreadSpy> spyReference = currentThreadSpies.get(threadId);
-            if (null != spyReference) {
-                CurrentThreadSpy spy = spyReference.get();
-                if (null == spy) {
-                    currentThreadSpies.remove(threadId);
-                } else {
-                    builder = builder.or(spy.getSpyConfiguration());
-                }
+            CurrentThreadSpy spy = getCurrentThreadSpy();
+            if (null != spy) {
+                effectiveSpyConfiguration = effectiveSpyConfiguration.or(spy.getSpyConfiguration());
             }
         }
 
-        return builder.build();
+        return effectiveSpyConfiguration;
 
     }
 
@@ -448,24 +774,63 @@ public class Sniffy {
 
     }
 
+    private static void logGlobalSocketStats(Protocol protocol, InetSocketAddress address, int connectionId,
+                                             long elapsedTime, long bytesDown, long bytesUp) {
+        if (null == address || globalSocketStats.getCapacity() <= 0) return;
+        if (SniffyConfiguration.INSTANCE.isAsyncEventProcessing()) {
+            AsyncEventProcessor asyncEventProcessor = AsyncEventProcessor.getInstance();
+            if (null != asyncEventProcessor &&
+                    asyncEventProcessor.publishSocket(protocol, address, connectionId, elapsedTime, bytesDown, bytesUp)) {
+                return;
+            }
+        }
+        logSocketImpl(protocol, address, connectionId, elapsedTime, bytesDown, bytesUp);
+    }
+
+    static void logSocketImpl(Protocol protocol, InetSocketAddress address, int connectionId,
+                              long elapsedTime, long bytesDown, long bytesUp) {
+        globalSocketStats.accumulate(protocol, address, connectionId, elapsedTime, bytesDown, bytesUp);
+    }
+
     // TODO: merge with logTraffic
     public static void logSocket(int connectionId, InetSocketAddress address, long elapsedTime, int bytesDown, int bytesUp) {
         logSocket(connectionId, address, elapsedTime, bytesDown, bytesUp, true);
     }
 
     // TODO: merge with logTraffic
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     * @see #logSocketNanos(int, InetSocketAddress, long, int, int, boolean)
+     */
     public static void logSocket(int connectionId, InetSocketAddress address, long elapsedTime, int bytesDown, int bytesUp, boolean captureStackTraces) {
+        logSocketNanos(connectionId, address, TimeUnit.MILLISECONDS.toNanos(elapsedTime), bytesDown, bytesUp, captureStackTraces);
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @since 3.1.10
+     */
+    public static void logSocketNanos(int connectionId, InetSocketAddress address, long elapsedTime, int bytesDown, int bytesUp, boolean captureStackTraces) {
+
+        logGlobalSocketStats(Protocol.TCP, address, connectionId, elapsedTime, bytesDown, bytesUp);
 
         // do not track JDBC socket operations
-        SocketStats socketStats = socketStatsAccumulator.get();
-        if (null != socketStats) {
-            socketStats.accumulate(elapsedTime, bytesDown, bytesUp);
-        } else {
+        JdbcSocketStatsStack jdbcSocketStatsStack = jdbcSocketStats.get();
+        if (!jdbcSocketStatsStack.isEmpty()) {
+            jdbcSocketStatsStack.accumulate(elapsedTime, bytesDown, bytesUp);
+        } else if (isAddressCaptured(address) && isThreadCaptured()) {
+            int samplingWeight = SniffyConfiguration.INSTANCE.getSamplingPolicy().sampleSocket(address);
+            if (SamplingPolicy.NOT_SAMPLED == samplingWeight) return;
+
             // build stackTrace
-            String stackTrace = captureStackTraces ? printStackTrace(getTraceTillPackage("java.net")) : null; // TODO: is stacktrace different for NIO and NIO2 ?
+            int stackTraceId = captureStackTraces ?
+                    StackTraceRegistry.INSTANCE.register(getTraceTillPackage("java.net")) : // TODO: is stacktrace different for NIO and NIO2 ?
+                    StackTraceRegistry.NO_STACK_TRACE;
 
             // increment counters
-            SocketMetaData socketMetaData = new SocketMetaData(address, connectionId, stackTrace, Thread.currentThread());
+            SocketMetaData socketMetaData = metaDataCache.getSocketMetaData(
+                    Protocol.TCP, address, connectionId, stackTraceId, samplingWeight
+            );
 
             // notify listeners
             notifyListeners(socketMetaData, elapsedTime, bytesDown, bytesUp);
@@ -474,97 +839,255 @@ public class Sniffy {
 
     public static void logTraffic(int connectionId, InetSocketAddress address, boolean sent, Protocol protocol, byte[] traffic, int off, int len, boolean captureStackTraces) {
 
+        if (!isAddressCaptured(address) || !isThreadCaptured()) return;
+
         // build stackTrace
-        String stackTrace = captureStackTraces ? printStackTrace(getTraceTillPackage("java.net")) : null;
+        String stackTrace = captureStackTraces ?
+                StackTraceRegistry.INSTANCE.getStackTrace(StackTraceRegistry.INSTANCE.register(getTraceTillPackage("java.net"))) :
+                null;
 
-        SocketMetaData socketMetaData = new SocketMetaData(protocol, address, connectionId, null, Thread.currentThread()); // TODO: move stackTrace from SocketMetaData
+        SocketMetaData socketMetaData = metaDataCache.getSocketMetaData(
+                protocol, address, connectionId, StackTraceRegistry.NO_STACK_TRACE, 1
+        ); // TODO: move stackTrace from SocketMetaData
 
         // notify listeners
         notifyListeners(socketMetaData, sent, System.currentTimeMillis(), stackTrace, traffic, off, len);
 
     }
 
+    /**
+     * Starts attributing socket operations of current thread to a JDBC method; calls can be nested and each call must be
+     * followed by {@link #exitJdbcMethodNanos(Method, long, Method)} or {@link #executeStatement(String, SqlStatement, long, int, int)}
+     */
     public static void enterJdbcMethod() {
-        // TODO: check if it supports reentrant calls
-        socketStatsAccumulator.set(new SocketStats(0, 0, 0));
+        jdbcSocketStats.get().push(null);
     }
 
     public static void exitJdbcMethod(Method method, long elapsedTime) {
         exitJdbcMethod(method, elapsedTime, null);
     }
 
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     * @see #exitJdbcMethodNanos(Method, long, Method)
+     */
     public static void exitJdbcMethod(Method method, long elapsedTime, Method implMethod) {
+        exitJdbcMethodNanos(method, TimeUnit.MILLISECONDS.toNanos(elapsedTime), implMethod);
+    }
 
-        SniffyMode sniffyMode = Sniffy.getSniffyMode();
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @since 3.1.10
+     */
+    public static void exitJdbcMethodNanos(Method method, long elapsedTime) {
+        exitJdbcMethodNanos(method, elapsedTime, null);
+    }
 
-        if (sniffyMode.isEnabled()) {
-            // get accumulated socket stats
-            SocketStats socketStats = socketStatsAccumulator.get();
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @since 3.1.10
+     */
+    public static void exitJdbcMethodNanos(Method method, long elapsedTime, Method implMethod) {
+        // get accumulated socket stats
+        JdbcSocketStatsStack jdbcSocketStatsStack = jdbcSocketStats.get();
+        if (jdbcSocketStatsStack.pop()) {
+            logJdbcMethod(method, elapsedTime, implMethod, jdbcSocketStatsStack.getPoppedBytesDown(), jdbcSocketStatsStack.getPoppedBytesUp());
+        }
+    }
+
+    /**
+     * Accumulates socket operations of current thread into given stats instead of a new accumulator;
+     * used by callers which aggregate multiple JDBC calls and publish them later as a single event
+     * @see #exitJdbcMethod()
+     * @see #readDatabaseRows(Method, long, SocketStats, StatementMetaData, int, Method)
+     * @since 3.1.10
+     */
+    public static void enterJdbcMethod(SocketStats socketStats) {
+        jdbcSocketStats.get().push(socketStats);
+    }
 
-            if (null != socketStats) {
+    /**
+     * Stops accumulating socket operations of current thread without publishing them
+     * @see #enterJdbcMethod(SocketStats)
+     * @since 3.1.10
+     */
+    public static void exitJdbcMethod() {
+        jdbcSocketStats.get().pop();
+    }
 
-                if (socketStats.bytesDown.longValue() > 0 || socketStats.bytesUp.longValue() > 0) {
-                    String stackTrace = null;
-                    if (sniffyMode.isCaptureStackTraces()) {
-                        try {
-                            stackTrace = printStackTrace(null == implMethod ?
-                                    getTraceForProxiedMethod(method) :
-                                    getTraceForImplementingMethod(method, implMethod)
-                            );
-                        } catch (ClassNotFoundException e) {
-                            e.printStackTrace();
-                        }
+    private static void logJdbcMethod(Method method, long elapsedTime, Method implMethod, long bytesDown, long bytesUp) {
+
+        SniffyMode sniffyMode = Sniffy.getSniffyMode();
+
+        if (sniffyMode.isEnabled()) {
+            if ((bytesDown > 0 || bytesUp > 0) && isThreadCaptured()) {
+                int stackTraceId = StackTraceRegistry.NO_STACK_TRACE;
+                if (sniffyMode.isCaptureStackTraces()) {
+                    try {
+                        stackTraceId = StackTraceRegistry.INSTANCE.register(null == implMethod ?
+                                getTraceForProxiedMethod(method) :
+                                getTraceForImplementingMethod(method, implMethod)
+                        );
+                    } catch (ClassNotFoundException e) {
+                        e.printStackTrace();
                     }
-                    StatementMetaData statementMetaData = new StatementMetaData(
-                            method.getDeclaringClass().getSimpleName() + "." + method.getName() + "()",
-                            SqlStatement.SYSTEM,
-                            stackTrace,
-                            Thread.currentThread()
-                    );
-                    notifyListeners(
-                            statementMetaData,
-                            elapsedTime,
-                            socketStats.bytesDown.intValue(),
-                            socketStats.bytesUp.intValue(),
-                            0
-                    );
                 }
-
+                StatementMetaData statementMetaData = metaDataCache.getStatementMetaData(
+                        method.getDeclaringClass().getSimpleName() + "." + method.getName() + "()",
+                        SqlStatement.SYSTEM,
+                        stackTraceId,
+                        1
+                );
+                notifyListeners(
+                        statementMetaData,
+                        elapsedTime,
+                        bytesDown,
+                        bytesUp,
+                        0,
+                        -1, 0, 0
+                );
             }
         }
-
-        socketStatsAccumulator.remove();
     }
 
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     * @see #readDatabaseRowNanos(Method, long, StatementMetaData, Method)
+     */
     public static void readDatabaseRow(Method method, long elapsedTime, StatementMetaData statementMetaData) {
-        exitJdbcMethod(method, elapsedTime);
+        readDatabaseRowNanos(method, TimeUnit.MILLISECONDS.toNanos(elapsedTime), statementMetaData, null);
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param implMethod method implementing {@code method} in Sniffy wrapper class; used for capturing stack trace
+     * @since 3.1.10
+     */
+    public static void readDatabaseRowNanos(Method method, long elapsedTime, StatementMetaData statementMetaData, Method implMethod) {
+        exitJdbcMethodNanos(method, elapsedTime, implMethod);
+
+        if (null != statementMetaData) {
+            notifyListeners(statementMetaData, 1);
+        }
+    }
+
+    /**
+     * Publishes rows read from a result set together with time and socket operations accumulated while reading them
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param socketStats socket operations accumulated using {@link #enterJdbcMethod(SocketStats)}
+     * @param implMethod method implementing {@code method} in Sniffy wrapper class or null for proxies
+     * @since 3.1.10
+     */
+    public static void readDatabaseRows(Method method, long elapsedTime, SocketStats socketStats, StatementMetaData statementMetaData, int rows, Method implMethod) {
+        logJdbcMethod(method, elapsedTime, implMethod, socketStats.bytesDown.longValue(), socketStats.bytesUp.longValue());
+
+        if (rows > 0 && null != statementMetaData) {
+            notifyListeners(statementMetaData, rows);
+        }
+    }
+
+    /**
+     * Attaches parameters of a slow or sampled execution to the statement recorded by spies
+     * @see io.sniffy.configuration.SniffyConfiguration#isCaptureParameters()
+     * @since 3.1.10
+     */
+    public static void retainBindParameters(StatementMetaData statementMetaData, BindParameters bindParameters) {
+        if (null != statementMetaData) {
+            notifyListeners(statementMetaData, bindParameters);
+        }
+    }
+
+    /**
+     * Counts a statement which wasn't sampled without notifying spies and stops attributing socket operations to it
+     * @see SamplingPolicy#NOT_SAMPLED
+     * @since 3.1.10
+     */
+    public static void skipStatement() {
+        countExecutedStatement();
+        jdbcSocketStats.get().pop();
+    }
 
-        notifyListeners(statementMetaData);
+    private static void countExecutedStatement() {
+        Sniffer.executedStatementsGlobalCounter.increment();
     }
 
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     */
     public static StatementMetaData executeStatement(String sql, long elapsedTime, String stackTrace) {
         return executeStatement(sql, elapsedTime, stackTrace, 0);
     }
 
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     */
     public static StatementMetaData executeStatement(String sql, long elapsedTime, String stackTrace, int rowsUpdated) {
+        return executeStatement(sql, SqlUtil.guessQueryType(sql), TimeUnit.MILLISECONDS.toNanos(elapsedTime), StackTraceRegistry.INSTANCE.register(stackTrace), rowsUpdated);
+    }
+
+    /**
+     * @param query type of query; usually computed once per prepared statement
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param stackTraceId identifier of stack trace in {@link StackTraceRegistry}
+     * @since 3.1.10
+     */
+    public static StatementMetaData executeStatement(String sql, SqlStatement query, long elapsedTime, int stackTraceId, int rowsUpdated) {
+        return executeStatement(sql, query, elapsedTime, stackTraceId, rowsUpdated, 1);
+    }
+
+    /**
+     * @param samplingWeight number of executions represented by this sampled one
+     * @return metadata of recorded statement or null if no spy captures current thread
+     * @see SamplingPolicy
+     * @since 3.1.10
+     */
+    public static StatementMetaData executeStatement(String sql, SqlStatement query, long elapsedTime, int stackTraceId, int rowsUpdated, int samplingWeight) {
+        return executeStatement(sql, query, elapsedTime, stackTraceId, rowsUpdated, -1, 0, 0, samplingWeight);
+    }
+
+    /**
+     * Records a batch executed using {@link java.sql.Statement#executeBatch()} as a single statement
+     * @param sql SQL representing the whole batch
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param batchSize number of statements in the batch
+     * @param rowsUpdated sum of positive update counts
+     * @param successNoInfoStatements number of {@link java.sql.Statement#SUCCESS_NO_INFO} update counts
+     * @param failedStatements number of {@link java.sql.Statement#EXECUTE_FAILED} update counts
+     * @see io.sniffy.sql.SqlStats#getBatchStats()
+     * @since 3.1.10
+     */
+    public static StatementMetaData executeBatch(String sql, SqlStatement query, long elapsedTime, int stackTraceId,
+                                                 int batchSize, int rowsUpdated, int successNoInfoStatements, int failedStatements,
+                                                 int samplingWeight) {
+        return executeStatement(sql, query, elapsedTime, stackTraceId, rowsUpdated,
+                Math.max(0, batchSize), successNoInfoStatements, failedStatements, samplingWeight);
+    }
+
+    private static StatementMetaData executeStatement(String sql, SqlStatement query, long elapsedTime, int stackTraceId, int rowsUpdated,
+                                                      int batchSize, int successNoInfoStatements, int failedStatements,
+                                                      int samplingWeight) {
         // increment global counter
-        Sniffer.executedStatementsGlobalCounter.incrementAndGet();
+        countExecutedStatement();
 
         // get accumulated socket stats
-        SocketStats socketStats = socketStatsAccumulator.get();
+        JdbcSocketStatsStack jdbcSocketStatsStack = jdbcSocketStats.get();
+        jdbcSocketStatsStack.pop();
+
+        if (!isThreadCaptured()) return null;
 
         // notify listeners
-        StatementMetaData statementMetaData = new StatementMetaData(sql, SqlUtil.guessQueryType(sql), stackTrace, Thread.currentThread());
+        StatementMetaData statementMetaData = metaDataCache.getStatementMetaData(sql, query, stackTraceId, samplingWeight);
         notifyListeners(
                 statementMetaData,
                 elapsedTime,
-                null == socketStats ? 0 : socketStats.bytesDown.intValue(),
-                null == socketStats ? 0 : socketStats.bytesUp.intValue(),
-                rowsUpdated
+                jdbcSocketStatsStack.getPoppedBytesDown(),
+                jdbcSocketStatsStack.getPoppedBytesUp(),
+                rowsUpdated,
+                batchSize,
+                successNoInfoStatements,
+                failedStatements
         );
 
-        socketStatsAccumulator.remove();
-
         return statementMetaData;
     }
 
@@ -5,6 +5,7 @@ import io.sniffy.socket.*;
 import io.sniffy.sql.SqlStats;
 import io.sniffy.sql.StatementMetaData;
 import io.sniffy.util.ExceptionUtil;
+import io.sniffy.util.StackTraceRegistry;
 import io.sniffy.util.StringUtil;
 
 import java.io.Closeable;
@@ -162,7 +163,7 @@ public class Spy<C extends Spy<C>> extends LegacySpy<C> implements Closeable {
                     socketMetaData = new SocketMetaData(
                             originalSocketMetaData.getProtocol(), originalSocketMetaData.getAddress(),
                             !groupingOptions.isGroupByConnection() ? -1 : originalSocketMetaData.getConnectionId(),
-                            !groupingOptions.isGroupByStackTrace() ? null : originalSocketMetaData.getStackTrace(),
+                            !groupingOptions.isGroupByStackTrace() ? StackTraceRegistry.NO_STACK_TRACE : originalSocketMetaData.getStackTraceId(),
                             !groupingOptions.isGroupByThread() ? null : originalSocketMetaData.getThreadMetaData()
                     );
 
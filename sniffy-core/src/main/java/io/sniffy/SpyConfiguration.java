@@ -1,19 +1,92 @@
 package io.sniffy;
 
 import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.socket.AddressMatcher;
+import io.sniffy.socket.AddressMatchers;
+
+import java.net.InetSocketAddress;
 
 public class SpyConfiguration {
 
+    private static final int CAPTURE_STACK_TRACES = 1;
+    private static final int CAPTURE_NETWORK = 1 << 1;
+    private static final int CAPTURE_NETWORK_TRAFFIC = 1 << 2;
+    private static final int CAPTURE_JDBC = 1 << 3;
+
+    /**
+     * Canonical immutable instances for each combination of capture flags
+     * Used by {@link Sniffy} for building effective configuration without allocations
+     *
+     * @since 3.1.10
+     */
+    private static final SpyConfiguration[] EFFECTIVE_SPY_CONFIGURATIONS = new SpyConfiguration[1 << 4];
+
+    static {
+        for (int i = 0; i < EFFECTIVE_SPY_CONFIGURATIONS.length; i++) {
+            EFFECTIVE_SPY_CONFIGURATIONS[i] = new SpyConfiguration(
+                    0 != (i & CAPTURE_STACK_TRACES),
+                    0 != (i & CAPTURE_NETWORK),
+                    0 != (i & CAPTURE_NETWORK_TRAFFIC),
+                    0 != (i & CAPTURE_JDBC)
+            );
+        }
+    }
+
     private final boolean captureStackTraces;
     private final boolean captureNetwork;
     private final boolean captureNetworkTraffic;
     private final boolean captureJdbc;
 
+    /**
+     * Filters evaluated at capture time; null means any thread or address
+     * @since 3.1.10
+     */
+    private final ThreadMatcher threadMatcher;
+    private final AddressMatcher addressMatcher;
+
+    /**
+     * Approximate number of bytes which can be retained by captured statements, socket operations and network traffic
+     * @since 3.1.10
+     */
+    private final long memoryBudget;
+
+    private final int captureMask;
+
     private SpyConfiguration(boolean captureStackTraces, boolean captureNetwork, boolean captureNetworkTraffic, boolean captureJdbc) {
+        this(captureStackTraces, captureNetwork, captureNetworkTraffic, captureJdbc, null, null, Long.MAX_VALUE);
+    }
+
+    private SpyConfiguration(boolean captureStackTraces, boolean captureNetwork, boolean captureNetworkTraffic, boolean captureJdbc,
+                             ThreadMatcher threadMatcher, AddressMatcher addressMatcher, long memoryBudget) {
         this.captureStackTraces = captureStackTraces;
         this.captureNetwork = captureNetwork;
         this.captureNetworkTraffic = captureNetworkTraffic;
         this.captureJdbc = captureJdbc;
+        this.threadMatcher = threadMatcher;
+        this.addressMatcher = addressMatcher;
+        this.memoryBudget = memoryBudget;
+        this.captureMask =
+                (captureStackTraces ? CAPTURE_STACK_TRACES : 0) |
+                (captureNetwork ? CAPTURE_NETWORK : 0) |
+                (captureNetworkTraffic ? CAPTURE_NETWORK_TRAFFIC : 0) |
+                (captureJdbc ? CAPTURE_JDBC : 0);
+    }
+
+    /**
+     * @return shared configuration with all capture flags disabled
+     * @since 3.1.10
+     */
+    static SpyConfiguration disabled() {
+        return EFFECTIVE_SPY_CONFIGURATIONS[0];
+    }
+
+    /**
+     * Combines capture flags of this and given configuration; doesn't allocate new objects
+     * @return shared configuration with capture flags enabled in either this or given configuration
+     * @since 3.1.10
+     */
+    SpyConfiguration or(SpyConfiguration that) {
+        return EFFECTIVE_SPY_CONFIGURATIONS[captureMask | that.captureMask];
     }
 
     public boolean isCaptureStackTraces() {
@@ -32,6 +105,66 @@ public class SpyConfiguration {
         return captureJdbc;
     }
 
+    /**
+     * @since 3.1.10
+     */
+    public ThreadMatcher getThreadMatcher() {
+        return null == threadMatcher ? Threads.ANY : threadMatcher;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public AddressMatcher getAddressMatcher() {
+        return null == addressMatcher ? AddressMatchers.anyAddressMatcher() : addressMatcher;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public boolean hasThreadFilter() {
+        return null != threadMatcher;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public boolean hasAddressFilter() {
+        return null != addressMatcher;
+    }
+
+    /**
+     * @return approximate number of bytes which can be retained by the spy or {@link Long#MAX_VALUE} if unbounded
+     * @see Builder#memoryBudget(long)
+     * @since 3.1.10
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public boolean hasMemoryBudget() {
+        return Long.MAX_VALUE != memoryBudget;
+    }
+
+    /**
+     * @return true if events from given thread should be captured
+     * @since 3.1.10
+     */
+    public boolean acceptsThread(ThreadMetaData threadMetaData) {
+        return null == threadMatcher || null == threadMetaData || threadMatcher.matches(threadMetaData);
+    }
+
+    /**
+     * @return true if events for given remote address should be captured
+     * @since 3.1.10
+     */
+    public boolean acceptsAddress(InetSocketAddress address) {
+        return null == addressMatcher || null == address || addressMatcher.matches(address);
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -43,6 +176,11 @@ public class SpyConfiguration {
         private boolean captureNetworkTraffic;
         private boolean captureJdbc;
 
+        private ThreadMatcher threadMatcher;
+        private AddressMatcher addressMatcher;
+
+        private long memoryBudget = Long.MAX_VALUE;
+
         public Builder() {
             captureJdbc = SniffyConfiguration.INSTANCE.isMonitorJdbc();
             captureNetwork = SniffyConfiguration.INSTANCE.isMonitorSocket();
@@ -70,6 +208,46 @@ public class SpyConfiguration {
             return this;
         }
 
+        /**
+         * Events from threads not matching given matcher are rejected at capture time
+         * {@link Threads#CURRENT} and {@link Threads#OTHERS} are resolved relative to the thread calling {@link #build()}
+         * @since 3.1.10
+         */
+        public Builder captureThreads(ThreadMatcher threadMatcher) {
+            this.threadMatcher = threadMatcher;
+            return this;
+        }
+
+        /**
+         * Network events for remote addresses not matching given matcher are rejected at capture time
+         * @since 3.1.10
+         */
+        public Builder captureAddresses(AddressMatcher addressMatcher) {
+            this.addressMatcher = addressMatcher;
+            return this;
+        }
+
+        /**
+         * @since 3.1.10
+         */
+        public Builder captureAddress(String address) {
+            return captureAddresses(AddressMatchers.exactAddressMatcher(address));
+        }
+
+        /**
+         * Limits memory retained by the spy; once the limit is reached least recently updated statements, socket
+         * operations and network traffic are evicted and summarized
+         * The budget is split evenly between captured event types (JDBC, network and network traffic)
+         * @param memoryBudget approximate number of bytes or {@link Long#MAX_VALUE} for unbounded spy
+         * @see BaseSpy#getEvictedSqlStats()
+         * @since 3.1.10
+         */
+        public Builder memoryBudget(long memoryBudget) {
+            if (memoryBudget <= 0) throw new IllegalArgumentException("Memory budget must be positive");
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
         public Builder or(SpyConfiguration spyConfiguration) {
             return captureStackTraces(captureStackTraces || spyConfiguration.captureStackTraces).
                     captureNetwork(captureNetwork || spyConfiguration.captureNetwork).
@@ -78,7 +256,48 @@ public class SpyConfiguration {
         }
 
         public SpyConfiguration build() {
-            return new SpyConfiguration(captureStackTraces, captureNetwork, captureNetworkTraffic, captureJdbc);
+            return new SpyConfiguration(
+                    captureStackTraces, captureNetwork, captureNetworkTraffic, captureJdbc,
+                    bindThreadMatcher(threadMatcher), addressMatcher, memoryBudget
+            );
+        }
+
+        private static ThreadMatcher bindThreadMatcher(ThreadMatcher threadMatcher) {
+            if (Threads.ANY == threadMatcher) {
+                return null;
+            } else if (Threads.CURRENT == threadMatcher) {
+                return new ThreadIdMatcher(Thread.currentThread().getId(), true);
+            } else if (Threads.OTHERS == threadMatcher) {
+                return new ThreadIdMatcher(Thread.currentThread().getId(), false);
+            } else {
+                return threadMatcher;
+            }
+        }
+
+    }
+
+    /**
+     * Thread matcher bound to the thread which has created the configuration
+     * @since 3.1.10
+     */
+    private static final class ThreadIdMatcher implements ThreadMatcher {
+
+        private final long threadId;
+        private final boolean sameThread;
+
+        private ThreadIdMatcher(long threadId, boolean sameThread) {
+            this.threadId = threadId;
+            this.sameThread = sameThread;
+        }
+
+        @Override
+        public boolean matches(ThreadMetaData threadMetaData) {
+            return sameThread == (threadId == threadMetaData.getThreadId());
+        }
+
+        @Override
+        public void describe(StringBuilder appendable) {
+            appendable.append(sameThread ? " thread " : " threads other than ").append(threadId);
         }
 
     }
@@ -0,0 +1,193 @@
+package io.sniffy;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import io.sniffy.sql.TopSqlTracker;
+import io.sniffy.util.LatencyHistogram;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read-only view of {@link Sniffy#getTopSqlTracker()} in the format of former {@code Sniffy.globalSqlStats}
+ *
+ * Keys are SQL fingerprints ordered by count descending; values are {@link Timer} instances backed by the tracked
+ * entries, so they reflect executions recorded after the view was obtained. Durations are reported in nanoseconds
+ * like {@link Timer} does. Histograms don't retain individual values, hence {@link Snapshot#getValues()} returns
+ * recorded minimum, median and maximum and standard deviation isn't available.
+ *
+ * Only {@link #clear()} is supported among modifying operations
+ *
+ * @since 3.1.10
+ */
+@Deprecated
+class TopSqlTimers extends AbstractMap<String, Timer> implements ConcurrentMap<String, Timer> {
+
+    @Override
+    public Timer get(Object key) {
+        if (!(key instanceof String)) return null;
+        TopSqlTracker.Entry entry = Sniffy.getTopSqlTracker().get((String) key);
+        return null == entry ? null : new EntryTimer(entry);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && null != Sniffy.getTopSqlTracker().get((String) key);
+    }
+
+    @Override
+    public int size() {
+        return Sniffy.getTopSqlTracker().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return Sniffy.getTopSqlTracker().isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        Sniffy.getTopSqlTracker().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Timer>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Timer>>() {
+
+            @Override
+            public Iterator<Map.Entry<String, Timer>> iterator() {
+                final Iterator<TopSqlTracker.Entry> iterator = Sniffy.getTopSqlTracker().getTopSql().iterator();
+                return new Iterator<Map.Entry<String, Timer>>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Timer> next() {
+                        TopSqlTracker.Entry entry = iterator.next();
+                        return new SimpleImmutableEntry<String, Timer>(entry.getSql(), new EntryTimer(entry));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                };
+            }
+
+            @Override
+            public int size() {
+                return TopSqlTimers.this.size();
+            }
+
+        };
+    }
+
+    @Override
+    public Timer putIfAbsent(String key, Timer value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean replace(String key, Timer oldValue, Timer newValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Timer replace(String key, Timer value) {
+        throw new UnsupportedOperationException();
+    }
+
+    private static class EntryTimer extends Timer {
+
+        private final TopSqlTracker.Entry entry;
+
+        private EntryTimer(TopSqlTracker.Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public long getCount() {
+            return entry.getCount();
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return new HistogramSnapshot(entry.getLatencyHistogram(), entry.getElapsedTime());
+        }
+
+    }
+
+    private static class HistogramSnapshot extends Snapshot {
+
+        private final LatencyHistogram latencyHistogram;
+        private final long count;
+        private final double mean;
+
+        private HistogramSnapshot(LatencyHistogram latencyHistogram, long elapsedTime) {
+            this.latencyHistogram = new LatencyHistogram(latencyHistogram);
+            this.count = this.latencyHistogram.getCount();
+            this.mean = 0 == count ? 0 : (double) elapsedTime / count;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return latencyHistogram.getValueAtPercentile(quantile * 100);
+        }
+
+        @Override
+        public long[] getValues() {
+            return 0 == count ? new long[0] : new long[]{getMin(), latencyHistogram.getP50(), getMax()};
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return latencyHistogram.getMax();
+        }
+
+        @Override
+        public double getMean() {
+            return mean;
+        }
+
+        @Override
+        public long getMin() {
+            return latencyHistogram.getMin();
+        }
+
+        @Override
+        public double getStdDev() {
+            return 0;
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            PrintWriter printWriter = new PrintWriter(output);
+            for (long value : getValues()) {
+                printWriter.println(value);
+            }
+            printWriter.flush();
+        }
+
+    }
+
+}
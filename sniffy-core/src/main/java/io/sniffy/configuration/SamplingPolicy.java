@@ -0,0 +1,221 @@
+package io.sniffy.configuration;
+
+import io.sniffy.sql.SqlFingerprint;
+import io.sniffy.util.StripedLong;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides which SQL statements and socket operations are captured with full metadata (stack trace, thread, e.t.c.)
+ *
+ * Each decision returns a sampling weight: {@link #NOT_SAMPLED} for events which are only counted by
+ * {@link #getUnsampledCount()}, or the number of events represented by the sampled one. Spies multiply sampled
+ * statistics by this weight, so aggregated counts, time and traffic remain unbiased estimates of actual values.
+ *
+ * Statements are keyed by {@link SqlFingerprint} and socket operations by remote address; per-key counters are stored
+ * in a fixed table of {@value #KEY_COUNTERS} slots, so keys colliding in the table share their counters.
+ *
+ * Supported policies and their text representation (see {@link #parse(String)}):
+ * <ul>
+ *     <li>{@code all} - every event is sampled; default</li>
+ *     <li>{@code rate:0.01} - each event is sampled with given probability which is rounded to 1/M</li>
+ *     <li>{@code reservoir:10} - first 10 events for each key are sampled; after that i-th event is sampled with
+ *     probability about 10/i, so the number of samples grows logarithmically like in reservoir sampling</li>
+ *     <li>{@code first:100:1000} - first 100 events for each key are sampled and then every 1000th</li>
+ * </ul>
+ *
+ * @since 3.1.10
+ */
+public abstract class SamplingPolicy {
+
+    public static final int NOT_SAMPLED = 0;
+
+    private static final int KEY_COUNTERS = 4096;
+
+    private static final SamplingPolicy ALL = new SamplingPolicy("all") {
+
+        @Override
+        public int sampleStatement(String sql) {
+            return 1;
+        }
+
+        @Override
+        public int sampleSocket(InetSocketAddress address) {
+            return 1;
+        }
+
+        @Override
+        protected int sample(long key) {
+            return 1;
+        }
+
+    };
+
+    private static final ThreadLocal<long[]> RANDOM_STATE = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[]{mix(System.nanoTime() ^ Thread.currentThread().getId()) | 1};
+        }
+    };
+
+    private final String description;
+
+    private final StripedLong sampledCount = new StripedLong();
+    private final StripedLong unsampledCount = new StripedLong();
+
+    private SamplingPolicy(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return policy which samples every event
+     */
+    public static SamplingPolicy all() {
+        return ALL;
+    }
+
+    /**
+     * @param rate probability of sampling an event; rounded to 1/M where M is integer
+     */
+    public static SamplingPolicy rate(double rate) {
+        if (rate >= 1) return ALL;
+        if (rate <= 0) throw new IllegalArgumentException("Sampling rate must be positive");
+        final int oneIn = (int) Math.min(Integer.MAX_VALUE, Math.round(1 / rate));
+        return new SamplingPolicy("rate:" + rate) {
+            @Override
+            protected int sample(long key) {
+                return 0 == nextRandom() % oneIn ? oneIn : NOT_SAMPLED;
+            }
+        };
+    }
+
+    /**
+     * @param size number of events for each key which are always sampled
+     */
+    public static SamplingPolicy reservoir(final int size) {
+        if (size <= 0) throw new IllegalArgumentException("Reservoir size must be positive");
+        final AtomicLongArray counters = new AtomicLongArray(KEY_COUNTERS);
+        return new SamplingPolicy("reservoir:" + size) {
+            @Override
+            protected int sample(long key) {
+                long count = counters.incrementAndGet(getSlot(key));
+                if (count <= size) return 1;
+                // sampling with probability 1/W and weight W keeps estimates unbiased
+                long weight = (count + size - 1) / size;
+                if (weight > Integer.MAX_VALUE) weight = Integer.MAX_VALUE;
+                return 0 == nextRandom() % weight ? (int) weight : NOT_SAMPLED;
+            }
+        };
+    }
+
+    /**
+     * @param first number of events for each key which are always sampled
+     * @param oneIn sample every oneIn-th event for each key after the first ones
+     */
+    public static SamplingPolicy firstThenOneIn(final int first, final int oneIn) {
+        if (first < 0 || oneIn <= 0) throw new IllegalArgumentException("Invalid sampling parameters");
+        final AtomicLongArray counters = new AtomicLongArray(KEY_COUNTERS);
+        return new SamplingPolicy("first:" + first + ":" + oneIn) {
+            @Override
+            protected int sample(long key) {
+                long count = counters.incrementAndGet(getSlot(key));
+                if (count <= first) return 1;
+                return 0 == (count - first) % oneIn ? oneIn : NOT_SAMPLED;
+            }
+        };
+    }
+
+    /**
+     * @param policy text representation of policy like {@code all}, {@code rate:0.01}, {@code reservoir:10} or
+     *               {@code first:100:1000}
+     * @throws IllegalArgumentException if policy cannot be parsed
+     */
+    public static SamplingPolicy parse(String policy) {
+        if (null == policy) return ALL;
+        String[] parts = policy.trim().toLowerCase().split(":");
+        try {
+            if ("all".equals(parts[0]) && 1 == parts.length) {
+                return ALL;
+            } else if ("rate".equals(parts[0]) && 2 == parts.length) {
+                return rate(Double.parseDouble(parts[1]));
+            } else if ("reservoir".equals(parts[0]) && 2 == parts.length) {
+                return reservoir(Integer.parseInt(parts[1]));
+            } else if ("first".equals(parts[0]) && 3 == parts.length) {
+                return firstThenOneIn(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sampling policy " + policy, e);
+        }
+        throw new IllegalArgumentException("Invalid sampling policy " + policy);
+    }
+
+    /**
+     * @return sampling weight for executed SQL statement or {@link #NOT_SAMPLED}
+     */
+    public int sampleStatement(String sql) {
+        SqlFingerprint sqlFingerprint = SqlFingerprint.of(sql);
+        return count(sample(null == sqlFingerprint ? 0 : sqlFingerprint.getHash()));
+    }
+
+    /**
+     * @return sampling weight for socket operation with given remote address or {@link #NOT_SAMPLED}
+     */
+    public int sampleSocket(InetSocketAddress address) {
+        return count(sample(null == address ? 0 : address.hashCode()));
+    }
+
+    protected abstract int sample(long key);
+
+    /**
+     * @return number of events sampled by this policy; always 0 for {@link #all()}
+     */
+    public long getSampledCount() {
+        return sampledCount.get();
+    }
+
+    /**
+     * @return number of events rejected by this policy
+     */
+    public long getUnsampledCount() {
+        return unsampledCount.get();
+    }
+
+    private int count(int samplingWeight) {
+        if (NOT_SAMPLED == samplingWeight) {
+            unsampledCount.increment();
+        } else {
+            sampledCount.increment();
+        }
+        return samplingWeight;
+    }
+
+    private static int getSlot(long key) {
+        return (int) (mix(key) >>> 32) & (KEY_COUNTERS - 1);
+    }
+
+    /**
+     * @return non-negative pseudo random number from xorshift generator of current thread
+     */
+    private static long nextRandom() {
+        long[] state = RANDOM_STATE.get();
+        long x = state[0];
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        state[0] = x;
+        return x & Long.MAX_VALUE;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+}
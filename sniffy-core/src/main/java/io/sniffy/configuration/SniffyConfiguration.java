@@ -30,11 +30,91 @@ public enum SniffyConfiguration {
      */
     private volatile int topSqlCapacity;
 
+    /**
+     * @since 3.1.10
+     */
+    private volatile int topSocketCapacity;
+
     /**
      * @since 3.1.10
      */
     private volatile int packetMergeThreshold;
 
+    /**
+     * @since 3.1.10
+     */
+    private volatile boolean asyncEventProcessing;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int asyncEventQueueCapacity;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile boolean asyncEventDropOnFull;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int stackTraceMaxDepth;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile String stackTraceExcludedPackages;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile boolean jdbcWrappers;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile boolean latencyHistograms;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile SamplingPolicy samplingPolicy;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile boolean captureParameters;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int parametersThreshold;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile SamplingPolicy parametersSamplingPolicy;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int parameterMaxLength;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int slowQueryThreshold;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int slowQueryJournalSize;
+
+    /**
+     * @since 3.1.10
+     */
+    private volatile int nPlusOneThreshold;
+
     private volatile Boolean filterEnabled;
     private volatile String excludePattern;
 
@@ -86,6 +166,13 @@ public enum SniffyConfiguration {
         } catch (NumberFormatException e) {
             topSqlCapacity = 0;
         }
+        try {
+            topSocketCapacity = Integer.parseInt(getProperty(
+                    "io.sniffy.topSocketCapacity", "IO_SNIFFY_TOP_SOCKET_CAPACITY", "256"
+            ));
+        } catch (NumberFormatException e) {
+            topSocketCapacity = 0;
+        }
         try {
             packetMergeThreshold = Integer.parseInt(getProperty(
                     "io.sniffy.packetMergeThreshold", "IO_SNIFFY_PACKET_MERGE_THRESHOLD", "500"
@@ -94,6 +181,95 @@ public enum SniffyConfiguration {
             packetMergeThreshold = 0;
         }
 
+        asyncEventProcessing = Boolean.parseBoolean(getProperty(
+                "io.sniffy.asyncEventProcessing", "IO_SNIFFY_ASYNC_EVENT_PROCESSING", "false"
+        ));
+        try {
+            asyncEventQueueCapacity = Integer.parseInt(getProperty(
+                    "io.sniffy.asyncEventQueueCapacity", "IO_SNIFFY_ASYNC_EVENT_QUEUE_CAPACITY", "16384"
+            ));
+            if (asyncEventQueueCapacity <= 0) asyncEventQueueCapacity = 16384;
+        } catch (NumberFormatException e) {
+            asyncEventQueueCapacity = 16384;
+        }
+        asyncEventDropOnFull = Boolean.parseBoolean(getProperty(
+                "io.sniffy.asyncEventDropOnFull", "IO_SNIFFY_ASYNC_EVENT_DROP_ON_FULL", "true"
+        ));
+
+        try {
+            stackTraceMaxDepth = Integer.parseInt(getProperty(
+                    "io.sniffy.stackTraceMaxDepth", "IO_SNIFFY_STACK_TRACE_MAX_DEPTH", "0"
+            ));
+        } catch (NumberFormatException e) {
+            stackTraceMaxDepth = 0;
+        }
+        stackTraceExcludedPackages = getProperty(
+                "io.sniffy.stackTraceExcludedPackages", "IO_SNIFFY_STACK_TRACE_EXCLUDED_PACKAGES", null
+        );
+
+        jdbcWrappers = Boolean.parseBoolean(getProperty(
+                "io.sniffy.jdbcWrappers", "IO_SNIFFY_JDBC_WRAPPERS", "false"
+        ));
+
+        latencyHistograms = Boolean.parseBoolean(getProperty(
+                "io.sniffy.latencyHistograms", "IO_SNIFFY_LATENCY_HISTOGRAMS", "false"
+        ));
+
+        try {
+            samplingPolicy = SamplingPolicy.parse(getProperty(
+                    "io.sniffy.sampling", "IO_SNIFFY_SAMPLING", "all"
+            ));
+        } catch (IllegalArgumentException e) {
+            samplingPolicy = SamplingPolicy.all();
+        }
+
+        captureParameters = Boolean.parseBoolean(getProperty(
+                "io.sniffy.captureParameters", "IO_SNIFFY_CAPTURE_PARAMETERS", "false"
+        ));
+        try {
+            parametersThreshold = Integer.parseInt(getProperty(
+                    "io.sniffy.parametersThreshold", "IO_SNIFFY_PARAMETERS_THRESHOLD", "1000"
+            ));
+        } catch (NumberFormatException e) {
+            parametersThreshold = 1000;
+        }
+        String parametersSampling = getProperty("io.sniffy.parametersSampling", "IO_SNIFFY_PARAMETERS_SAMPLING");
+        try {
+            parametersSamplingPolicy = null == parametersSampling ? null : SamplingPolicy.parse(parametersSampling);
+        } catch (IllegalArgumentException e) {
+            parametersSamplingPolicy = null;
+        }
+        try {
+            parameterMaxLength = Integer.parseInt(getProperty(
+                    "io.sniffy.parameterMaxLength", "IO_SNIFFY_PARAMETER_MAX_LENGTH", "256"
+            ));
+        } catch (NumberFormatException e) {
+            parameterMaxLength = 256;
+        }
+
+        try {
+            slowQueryThreshold = Integer.parseInt(getProperty(
+                    "io.sniffy.slowQueryThreshold", "IO_SNIFFY_SLOW_QUERY_THRESHOLD", "-1"
+            ));
+        } catch (NumberFormatException e) {
+            slowQueryThreshold = -1;
+        }
+        try {
+            slowQueryJournalSize = Integer.parseInt(getProperty(
+                    "io.sniffy.slowQueryJournalSize", "IO_SNIFFY_SLOW_QUERY_JOURNAL_SIZE", "16777216"
+            ));
+        } catch (NumberFormatException e) {
+            slowQueryJournalSize = 16777216;
+        }
+
+        try {
+            nPlusOneThreshold = Integer.parseInt(getProperty(
+                    "io.sniffy.nPlusOneThreshold", "IO_SNIFFY_N_PLUS_ONE_THRESHOLD", "-1"
+            ));
+        } catch (NumberFormatException e) {
+            nPlusOneThreshold = -1;
+        }
+
         String filterEnabled = getProperty("io.sniffy.filterEnabled", "IO_SNIFFY_FILTER_ENABLED");
         this.filterEnabled = null == filterEnabled ? null : Boolean.parseBoolean(filterEnabled);
         excludePattern = getProperty("io.sniffy.excludePattern", "IO_SNIFFY_EXCLUDE_PATTERN", null);
@@ -233,6 +409,23 @@ public enum SniffyConfiguration {
         pcs.firePropertyChange("topSqlCapacity", oldValue, topSqlCapacity);
     }
 
+    /**
+     * @return maximum number of remote addresses in global socket statistics; 0 disables them
+     * @since 3.1.10
+     */
+    public int getTopSocketCapacity() {
+        return topSocketCapacity;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setTopSocketCapacity(int topSocketCapacity) {
+        int oldValue = this.topSocketCapacity;
+        this.topSocketCapacity = topSocketCapacity;
+        pcs.firePropertyChange("topSocketCapacity", oldValue, topSocketCapacity);
+    }
+
     /**
      * @since 3.1.10
      */
@@ -263,6 +456,20 @@ public enum SniffyConfiguration {
         this.pcs.removePropertyChangeListener("topSqlCapacity", listener);
     }
 
+    /**
+     * @since 3.1.10
+     */
+    public void addTopSocketCapacityListener(PropertyChangeListener listener) {
+        this.pcs.addPropertyChangeListener("topSocketCapacity", listener);
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void removeTopSocketCapacityListener(PropertyChangeListener listener) {
+        this.pcs.removePropertyChangeListener("topSocketCapacity", listener);
+    }
+
     /**
      * @since 3.1.10
      */
@@ -277,6 +484,242 @@ public enum SniffyConfiguration {
         this.pcs.removePropertyChangeListener("packetMergeThreshold", listener);
     }
 
+    /**
+     * If enabled, global statistics (like top SQL queries and socket statistics) are aggregated in a background thread
+     * @since 3.1.10
+     */
+    public boolean isAsyncEventProcessing() {
+        return asyncEventProcessing;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setAsyncEventProcessing(boolean asyncEventProcessing) {
+        this.asyncEventProcessing = asyncEventProcessing;
+    }
+
+    /**
+     * Capacity of the asynchronous event queue; it is applied when the queue is created on the first event
+     * Events are processed in caller thread while capacity set using {@link #setAsyncEventQueueCapacity(int)} isn't positive
+     * @since 3.1.10
+     */
+    public int getAsyncEventQueueCapacity() {
+        return asyncEventQueueCapacity;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setAsyncEventQueueCapacity(int asyncEventQueueCapacity) {
+        this.asyncEventQueueCapacity = asyncEventQueueCapacity;
+    }
+
+    /**
+     * If true events are dropped when the asynchronous event queue is full; otherwise they're processed in caller thread
+     * @since 3.1.10
+     */
+    public boolean isAsyncEventDropOnFull() {
+        return asyncEventDropOnFull;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setAsyncEventDropOnFull(boolean asyncEventDropOnFull) {
+        this.asyncEventDropOnFull = asyncEventDropOnFull;
+    }
+
+    /**
+     * Maximum number of frames stored for captured stack traces; 0 or negative value means unlimited
+     * @since 3.1.10
+     */
+    public int getStackTraceMaxDepth() {
+        return stackTraceMaxDepth;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setStackTraceMaxDepth(int stackTraceMaxDepth) {
+        this.stackTraceMaxDepth = stackTraceMaxDepth;
+    }
+
+    /**
+     * Comma separated list of class name prefixes; matching frames are removed from captured stack traces
+     * @since 3.1.10
+     */
+    public String getStackTraceExcludedPackages() {
+        return stackTraceExcludedPackages;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setStackTraceExcludedPackages(String stackTraceExcludedPackages) {
+        this.stackTraceExcludedPackages = stackTraceExcludedPackages;
+    }
+
+    /**
+     * If true JDBC objects are wrapped with generated delegating classes instead of dynamic proxies;
+     * only execute and cursor navigation methods are instrumented in this mode
+     * @since 3.1.10
+     */
+    public boolean isJdbcWrappers() {
+        return jdbcWrappers;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setJdbcWrappers(boolean jdbcWrappers) {
+        this.jdbcWrappers = jdbcWrappers;
+    }
+
+    /**
+     * If true statistics collected by spies for each statement and socket include latency histogram
+     * @see io.sniffy.socket.SocketStats#getLatencyHistogram()
+     * @since 3.1.10
+     */
+    public boolean isLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setLatencyHistograms(boolean latencyHistograms) {
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    /**
+     * @return policy deciding which statements and socket operations are captured with stack traces and metadata
+     * @since 3.1.10
+     */
+    public SamplingPolicy getSamplingPolicy() {
+        return samplingPolicy;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setSamplingPolicy(SamplingPolicy samplingPolicy) {
+        this.samplingPolicy = null == samplingPolicy ? SamplingPolicy.all() : samplingPolicy;
+    }
+
+    /**
+     * If true values bound to prepared statements are captured and retained for slow or sampled executions
+     * @see #getParametersThreshold()
+     * @see #getParametersSamplingPolicy()
+     * @see io.sniffy.sql.SqlStats#getBindParameters()
+     * @since 3.1.10
+     */
+    public boolean isCaptureParameters() {
+        return captureParameters;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setCaptureParameters(boolean captureParameters) {
+        this.captureParameters = captureParameters;
+    }
+
+    /**
+     * @return parameters are retained for executions which took at least this number of milliseconds; negative value
+     * disables threshold
+     * @since 3.1.10
+     */
+    public int getParametersThreshold() {
+        return parametersThreshold;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setParametersThreshold(int parametersThreshold) {
+        this.parametersThreshold = parametersThreshold;
+    }
+
+    /**
+     * @return policy selecting executions which retain parameters regardless of their duration or null
+     * @since 3.1.10
+     */
+    public SamplingPolicy getParametersSamplingPolicy() {
+        return parametersSamplingPolicy;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setParametersSamplingPolicy(SamplingPolicy parametersSamplingPolicy) {
+        this.parametersSamplingPolicy = parametersSamplingPolicy;
+    }
+
+    /**
+     * @return maximum number of characters of a string parameter or bytes of a binary parameter retained
+     * @since 3.1.10
+     */
+    public int getParameterMaxLength() {
+        return parameterMaxLength;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setParameterMaxLength(int parameterMaxLength) {
+        this.parameterMaxLength = parameterMaxLength;
+    }
+
+    /**
+     * @return statements which took at least this number of milliseconds are appended to slow query journal; negative
+     * value disables the journal
+     * @see io.sniffy.Sniffy#getSlowQueryJournal()
+     * @since 3.1.10
+     */
+    public int getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setSlowQueryThreshold(int slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    /**
+     * @return size of slow query journal file in bytes; takes effect when journal is opened
+     * @since 3.1.10
+     */
+    public int getSlowQueryJournalSize() {
+        return slowQueryJournalSize;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setSlowQueryJournalSize(int slowQueryJournalSize) {
+        this.slowQueryJournalSize = slowQueryJournalSize;
+    }
+
+    /**
+     * @return statements executed repeatedly more than this number of times in N+1 pattern are reported by
+     * Sniffy filter; negative value (default) disables N+1 detection, which adds a small cost to every statement
+     * @see io.sniffy.sql.NPlusOneDetector
+     * @since 3.1.10
+     */
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void setNPlusOneThreshold(int nPlusOneThreshold) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
     // filter enabled
 
     public Boolean getFilterEnabled() {
@@ -59,21 +59,20 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
 
     private void estimateReceiveBuffer() {
         if (-1 == getReceiveBufferSize()) {
+            Integer defaultReceiveBufferSize = CompatSnifferSocketImpl.defaultReceiveBufferSize;
             if (null == defaultReceiveBufferSize) {
-                synchronized (CompatSnifferSocketImpl.class) {
-                    if (null == defaultReceiveBufferSize) {
-                        try {
-                            Object o = delegate.getOption(SocketOptions.SO_RCVBUF);
-                            if (o instanceof Integer) {
-                                defaultReceiveBufferSize = (Integer) o;
-                            } else {
-                                defaultReceiveBufferSize = 0;
-                            }
-                        } catch (SocketException e) {
-                            defaultReceiveBufferSize = 0;
-                        }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    Object o = delegate.getOption(SocketOptions.SO_RCVBUF);
+                    if (o instanceof Integer) {
+                        defaultReceiveBufferSize = (Integer) o;
+                    } else {
+                        defaultReceiveBufferSize = 0;
                     }
+                } catch (SocketException e) {
+                    defaultReceiveBufferSize = 0;
                 }
+                CompatSnifferSocketImpl.defaultReceiveBufferSize = defaultReceiveBufferSize;
             }
             setReceiveBufferSize(defaultReceiveBufferSize);
         }
@@ -81,40 +80,39 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
 
     private void estimateSendBuffer() {
         if (-1 == getSendBufferSize()) {
+            Integer defaultSendBufferSize = CompatSnifferSocketImpl.defaultSendBufferSize;
             if (null == defaultSendBufferSize) {
-                synchronized (CompatSnifferSocketImpl.class) {
-                    if (null == defaultSendBufferSize) {
-                        try {
-                            Object o = delegate.getOption(SocketOptions.SO_SNDBUF);
-                            if (o instanceof Integer) {
-                                defaultSendBufferSize = (Integer) o;
-                            } else {
-                                defaultSendBufferSize = 0;
-                            }
-                        } catch (SocketException e) {
-                            defaultSendBufferSize = 0;
-                        }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    Object o = delegate.getOption(SocketOptions.SO_SNDBUF);
+                    if (o instanceof Integer) {
+                        defaultSendBufferSize = (Integer) o;
+                    } else {
+                        defaultSendBufferSize = 0;
                     }
+                } catch (SocketException e) {
+                    defaultSendBufferSize = 0;
                 }
+                CompatSnifferSocketImpl.defaultSendBufferSize = defaultSendBufferSize;
             }
             setSendBufferSize(defaultSendBufferSize);
         }
     }
 
     @Deprecated
-    public void logSocket(long millis) {
-        logSocket(millis, 0, 0);
+    public void logSocket(long elapsedTimeNanos) {
+        logSocket(elapsedTimeNanos, 0, 0);
     }
 
     @Deprecated
-    public void logSocket(long millis, int bytesDown, int bytesUp) {
+    public void logSocket(long elapsedTimeNanos, int bytesDown, int bytesUp) {
 
         if (!SniffyConfiguration.INSTANCE.getSocketCaptureEnabled()) return;
 
-        if (null != address && (millis > 0 || bytesDown > 0 || bytesUp > 0)) {
+        if (null != address && (elapsedTimeNanos > 0 || bytesDown > 0 || bytesUp > 0)) {
             Sniffy.SniffyMode sniffyMode = Sniffy.getSniffyMode();
             if (sniffyMode.isEnabled()) {
-                Sniffy.logSocket(id, address, millis, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
+                Sniffy.logSocketNanos(id, address, elapsedTimeNanos, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
             }
         }
     }
@@ -174,93 +172,93 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
 
     @Override
     protected void sendUrgentData(int data) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             checkConnectionAllowed(1);
             super.sendUrgentData(data);
         } finally {
-            logSocket(System.currentTimeMillis() - start, 0, 1);
+            logSocket(System.nanoTime() - start, 0, 1);
             logTraffic(true, Protocol.TCP, new byte[]{(byte) data}, 0, 1);
         }
     }
 
     @Override
     protected void shutdownInput() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.shutdownInput();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void shutdownOutput() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.shutdownOutput();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected FileDescriptor getFileDescriptor() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.getFileDescriptor();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected InetAddress getInetAddress() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.getInetAddress();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected int getPort() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.getPort();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected boolean supportsUrgentData() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.supportsUrgentData();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected int getLocalPort() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.getLocalPort();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public String toString() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.toString();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
@@ -268,131 +266,131 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
 
     @Override
     protected void setPerformancePreferences(int connectionTime, int latency, int bandwidth) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.setPerformancePreferences(connectionTime, latency, bandwidth);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void create(boolean stream) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.create(stream);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void connect(String host, int port) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             checkConnectionAllowed(this.address = new InetSocketAddress(host, port));
             super.connect(host, port);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void connect(InetAddress address, int port) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             checkConnectionAllowed(this.address = new InetSocketAddress(address, port));
             super.connect(address, port);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void connect(SocketAddress address, int timeout) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             if (address instanceof InetSocketAddress) {
                 checkConnectionAllowed(this.address = (InetSocketAddress) address);
             }
             super.connect(address, timeout);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void bind(InetAddress host, int port) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.bind(host, port); // TODO: should we check connectivity enabled here as well ?
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void listen(int backlog) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.listen(backlog);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void accept(SocketImpl s) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.accept(s);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected InputStream getInputStream() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         estimateReceiveBuffer();
         checkConnectionAllowed();
         try {
             return new SnifferInputStream(this, super.getInputStream());
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected OutputStream getOutputStream() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         estimateSendBuffer();
         checkConnectionAllowed();
         try {
             return new SnifferOutputStream(this, super.getOutputStream());
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected int available() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.available();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected void close() throws IOException {
         checkConnectionAllowed(1);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.close();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
@@ -400,7 +398,7 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
 
     @Override
     public void setOption(int optID, Object value) throws SocketException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.setOption(optID, value);
 
@@ -419,17 +417,17 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
             }
 
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public Object getOption(int optID) throws SocketException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.getOption(optID);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
@@ -487,31 +485,31 @@ class CompatSnifferSocketImpl extends CompatSniffySocketImplAdapter implements S
     /*
     @Override
     protected <T> void setOption(java.net.SocketOption<T> name, T value) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.setOption(name, value);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected <T> T getOption(java.net.SocketOption<T> name) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.getOption(name);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     protected Set<java.net.SocketOption<?>> supportedOptions() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.supportedOptions();
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
     */
@@ -0,0 +1,243 @@
+package io.sniffy.socket;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Always-on statistics of socket operations grouped by protocol and remote address
+ *
+ * Number of tracked addresses is bounded using Space-Saving algorithm ranked by total elapsed time: an operation with
+ * an address which isn't tracked evicts the address with the lowest rank when the table is full, and the new address
+ * inherits the evicted rank as its error, so addresses with heavy traffic aren't evicted by a stream of one-off
+ * addresses. Statistics of evicted addresses are aggregated in {@link #getOverflowStats()}; operations recorded
+ * concurrently with eviction of their address might be lost.
+ *
+ * Candidate for eviction is found using a min-heap ordered by snapshots of ranks; elapsed time only grows, so a stale
+ * key is a lower bound and the root key is refreshed and sifted down until it's accurate.
+ *
+ * Lookup uses the {@link InetSocketAddress} passed by the caller, so recording an operation with already tracked
+ * address doesn't allocate and doesn't lock.
+ *
+ * @see io.sniffy.configuration.SniffyConfiguration#getTopSocketCapacity()
+ * @since 3.1.10
+ */
+public class GlobalSocketStats {
+
+    private final int capacity;
+
+    // indexed by Protocol.ordinal()
+    private final ConcurrentMap<InetSocketAddress, HostSocketStats>[] hostSocketStats;
+
+    private volatile int size;
+
+    private volatile HostSocketStats overflowStats;
+
+    // min-heap of tracked addresses by snapshot of rank; guarded by this
+    private final HostSocketStats[] heap;
+    private final long[] heapRanks;
+    private final long[] heapErrors;
+
+    public GlobalSocketStats(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ConcurrentMap<InetSocketAddress, HostSocketStats>[] hostSocketStats = new ConcurrentMap[Protocol.values().length];
+        this.hostSocketStats = hostSocketStats;
+        for (int i = 0; i < hostSocketStats.length; i++) {
+            hostSocketStats[i] = new ConcurrentHashMap<InetSocketAddress, HostSocketStats>();
+        }
+        this.overflowStats = new HostSocketStats(null, null);
+        this.heap = new HostSocketStats[this.capacity];
+        this.heapRanks = new long[this.capacity];
+        this.heapErrors = new long[this.capacity];
+    }
+
+    /**
+     * Creates an instance with given capacity and copies statistics from another instance
+     */
+    public GlobalSocketStats(int capacity, GlobalSocketStats that) {
+        this(capacity);
+        for (HostSocketStats stats : that.getHostSocketStats()) {
+            if (size < this.capacity) {
+                hostSocketStats[stats.getProtocol().ordinal()].put(stats.getAddress(), stats);
+                heap[size++] = stats;
+            } else {
+                overflowStats.accumulate(stats);
+            }
+        }
+        overflowStats.accumulate(that.overflowStats);
+        for (int i = 0; i < size; i++) {
+            heapRanks[i] = heap[i].elapsedTimeNanos.longValue();
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     */
+    public void accumulate(Protocol protocol, InetSocketAddress address, int connectionId,
+                           long elapsedTime, long bytesDown, long bytesUp) {
+        if (0 == capacity || null == address) return;
+
+        ConcurrentMap<InetSocketAddress, HostSocketStats> map = hostSocketStats[protocol.ordinal()];
+        HostSocketStats stats = map.get(address);
+        if (null == stats) {
+            stats = getOrCreate(map, protocol, address);
+        }
+        stats.accumulateNanos(connectionId, elapsedTime, bytesDown, bytesUp);
+    }
+
+    private synchronized HostSocketStats getOrCreate(ConcurrentMap<InetSocketAddress, HostSocketStats> map,
+                                                     Protocol protocol, InetSocketAddress address) {
+        HostSocketStats stats = map.get(address);
+        if (null == stats) {
+            stats = new HostSocketStats(protocol, address);
+            if (size >= capacity) {
+                long error = refreshHeapRoot();
+                HostSocketStats evicted = heap[0];
+                hostSocketStats[evicted.getProtocol().ordinal()].remove(evicted.getAddress());
+                overflowStats.accumulate(evicted);
+                heap[0] = stats;
+                heapErrors[0] = error;
+                heapRanks[0] = error;
+                siftDown(0);
+            } else {
+                heap[size] = stats;
+                heapErrors[size] = 0;
+                heapRanks[size] = 0;
+                siftUp(size++);
+            }
+            map.put(address, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Refreshes stale keys until root of the heap holds address with the lowest rank
+     * @return rank of the root address
+     */
+    private long refreshHeapRoot() {
+        while (true) {
+            long rank = heapErrors[0] + heap[0].elapsedTimeNanos.longValue();
+            if (rank == heapRanks[0]) return rank;
+            heapRanks[0] = rank;
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int index) {
+        HostSocketStats stats = heap[index];
+        long rank = heapRanks[index];
+        long error = heapErrors[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapRanks[parent] <= rank) break;
+            move(parent, index);
+            index = parent;
+        }
+        heap[index] = stats;
+        heapRanks[index] = rank;
+        heapErrors[index] = error;
+    }
+
+    private void siftDown(int index) {
+        HostSocketStats stats = heap[index];
+        long rank = heapRanks[index];
+        long error = heapErrors[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heapRanks[child + 1] < heapRanks[child]) {
+                child++;
+            }
+            if (rank <= heapRanks[child]) break;
+            move(child, index);
+            index = child;
+        }
+        heap[index] = stats;
+        heapRanks[index] = rank;
+        heapErrors[index] = error;
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        heapRanks[to] = heapRanks[from];
+        heapErrors[to] = heapErrors[from];
+    }
+
+    /**
+     * @return statistics for given remote address or null if it isn't tracked
+     */
+    public HostSocketStats get(Protocol protocol, InetSocketAddress address) {
+        return hostSocketStats[protocol.ordinal()].get(address);
+    }
+
+    /**
+     * @return statistics of tracked addresses ordered by total elapsed time descending; elapsed times are captured
+     * once before sorting, so statistics updated concurrently are ordered by their values at the moment of the call
+     */
+    public List<HostSocketStats> getHostSocketStats() {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>(size);
+        for (ConcurrentMap<InetSocketAddress, HostSocketStats> map : hostSocketStats) {
+            for (HostSocketStats stats : map.values()) {
+                snapshots.add(new Snapshot(stats));
+            }
+        }
+        Collections.sort(snapshots, new Comparator<Snapshot>() {
+            @Override
+            public int compare(Snapshot o1, Snapshot o2) {
+                return o1.elapsedTime > o2.elapsedTime ? -1 : (o1.elapsedTime == o2.elapsedTime ? 0 : 1);
+            }
+        });
+        List<HostSocketStats> result = new ArrayList<HostSocketStats>(snapshots.size());
+        for (Snapshot snapshot : snapshots) {
+            result.add(snapshot.stats);
+        }
+        return result;
+    }
+
+    /**
+     * @return operations with addresses which were evicted from this instance or didn't fit into it when it was copied
+     */
+    public HostSocketStats getOverflowStats() {
+        return overflowStats;
+    }
+
+    public synchronized void clear() {
+        for (ConcurrentMap<InetSocketAddress, HostSocketStats> map : hostSocketStats) {
+            map.clear();
+        }
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        size = 0;
+        overflowStats = new HostSocketStats(null, null);
+    }
+
+    private static final class Snapshot {
+
+        private final HostSocketStats stats;
+        private final long elapsedTime;
+
+        private Snapshot(HostSocketStats stats) {
+            this.stats = stats;
+            this.elapsedTime = stats.elapsedTimeNanos.longValue();
+        }
+
+    }
+
+}
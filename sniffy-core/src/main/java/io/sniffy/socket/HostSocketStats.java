@@ -0,0 +1,65 @@
+package io.sniffy.socket;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Socket operations with a single remote address aggregated across all threads
+ *
+ * Latency histogram is always enabled
+ *
+ * @see GlobalSocketStats
+ * @since 3.1.10
+ */
+public class HostSocketStats extends SocketStats {
+
+    private final Protocol protocol;
+    private final InetSocketAddress address;
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicInteger lastConnectionId = new AtomicInteger(-1);
+
+    /**
+     * @param address remote address or null for operations which didn't fit into {@link GlobalSocketStats}
+     */
+    public HostSocketStats(Protocol protocol, InetSocketAddress address) {
+        super(0, 0, 0);
+        this.protocol = protocol;
+        this.address = address;
+        enableLatencyHistogram();
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     */
+    public void accumulateNanos(int connectionId, long elapsedTime, long bytesDown, long bytesUp) {
+        accumulateNanos(elapsedTime, bytesDown, bytesUp);
+        // connection ids grow monotonically, so a connection is new if its id is larger than any id seen before
+        int lastConnectionId;
+        while (connectionId > (lastConnectionId = this.lastConnectionId.get())) {
+            if (this.lastConnectionId.compareAndSet(lastConnectionId, connectionId)) {
+                connections.incrementAndGet();
+                break;
+            }
+        }
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Connection is counted when its first operation is observed; if two connections to the same address were opened
+     * concurrently and the older one was used after the newer one, it isn't counted
+     * @return approximate number of connections
+     */
+    public long getConnections() {
+        return connections.get();
+    }
+
+}
@@ -23,7 +23,7 @@ class SnifferInputStream extends InputStream {
     @Override
     public int read() throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int bytesDown = 0;
         try {
             int read = delegate.read();
@@ -38,7 +38,7 @@ class SnifferInputStream extends InputStream {
             return read;
         } finally {
             sleepIfRequired(bytesDown);
-            snifferSocket.logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+            snifferSocket.logSocket(System.nanoTime() - start, bytesDown, 0);
         }
     }
 
@@ -86,7 +86,7 @@ class SnifferInputStream extends InputStream {
     @Override
     public int read(byte[] b) throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int bytesDown = 0;
         try {
             bytesDown = delegate.read(b);
@@ -100,14 +100,14 @@ class SnifferInputStream extends InputStream {
             return bytesDown;
         } finally {
             sleepIfRequired(bytesDown);
-            snifferSocket.logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+            snifferSocket.logSocket(System.nanoTime() - start, bytesDown, 0);
         }
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int bytesDown = 0;
         try {
             bytesDown = delegate.read(b, off, len);
@@ -122,73 +122,73 @@ class SnifferInputStream extends InputStream {
         } finally {
             sleepIfRequired(bytesDown);
             //snifferSocket.logTraffic(false, Protocol.TCP, b, off, bytesDown); // TODO
-            snifferSocket.logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+            snifferSocket.logSocket(System.nanoTime() - start, bytesDown, 0);
         }
     }
 
     @Override
     public long skip(long n) throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return super.skip(n);
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public int available() throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return delegate.available();
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void close() throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.close();
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void mark(int readlimit) {
         // TODO: support this method in case it is supported in future by SocketInputStream; at least print a warning
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.mark(readlimit);
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void reset() throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.reset();
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public boolean markSupported() {
         // TODO: support this method in case it is supported in future by SocketInputStream; at least print a warning
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return delegate.markSupported();
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
@@ -23,7 +23,7 @@ class SnifferOutputStream extends OutputStream {
     @Override
     public void write(int b) throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.write(b);
             snifferSocket.logTraffic(
@@ -33,7 +33,7 @@ class SnifferOutputStream extends OutputStream {
             );
         } finally {
             sleepIfRequired(1);
-            snifferSocket.logSocket(System.currentTimeMillis() - start, 0, 1);
+            snifferSocket.logSocket(System.nanoTime() - start, 0, 1);
         }
     }
 
@@ -79,7 +79,7 @@ class SnifferOutputStream extends OutputStream {
     @Override
     public void write(byte[] b) throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.write(b);
             snifferSocket.logTraffic(
@@ -89,14 +89,14 @@ class SnifferOutputStream extends OutputStream {
             );
         } finally {
             sleepIfRequired(b.length);
-            snifferSocket.logSocket(System.currentTimeMillis() - start, 0, b.length);
+            snifferSocket.logSocket(System.nanoTime() - start, 0, b.length);
         }
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.write(b, off, len);
             snifferSocket.logTraffic(
@@ -106,29 +106,29 @@ class SnifferOutputStream extends OutputStream {
             );
         } finally {
             sleepIfRequired(len);
-            snifferSocket.logSocket(System.currentTimeMillis() - start, 0, len);
+            snifferSocket.logSocket(System.nanoTime() - start, 0, len);
         }
     }
 
     @Override
     public void flush() throws IOException {
         snifferSocket.checkConnectionAllowed(1);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.flush();
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void close() throws IOException {
         snifferSocket.checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             delegate.close();
         } finally {
-            snifferSocket.logSocket(System.currentTimeMillis() - start);
+            snifferSocket.logSocket(System.nanoTime() - start);
         }
     }
 
@@ -26,39 +26,39 @@ class SnifferSocketImpl extends CompatSnifferSocketImpl {
 
     //@Override
     protected <T> void setOption(SocketOption<T> name, T value) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             ReflectionUtil.invokeMethod(SocketImpl.class, delegate, "setOption", SocketOption.class, name, Object.class, value, Void.TYPE);
         } catch (Exception e) {
             throw ExceptionUtil.processException(e);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     //@Override
     @SuppressWarnings("unchecked")
     protected <T> T getOption(SocketOption<T> name) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return (T) ReflectionUtil.invokeMethod(SocketImpl.class, delegate, "getOption", SocketOption.class, name, Object.class);
         } catch (Exception e) {
             throw ExceptionUtil.processException(e);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     //@Override
     @SuppressWarnings("unchecked")
     protected Set<SocketOption<?>> supportedOptions() {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             return (Set<SocketOption<?>>) ReflectionUtil.invokeMethod(SocketImpl.class, delegate, "supportedOptions", Set.class);
         } catch (Exception e) {
             throw ExceptionUtil.processException(e);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
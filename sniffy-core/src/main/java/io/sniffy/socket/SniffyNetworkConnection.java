@@ -36,10 +36,10 @@ public interface SniffyNetworkConnection {
 
     void setSendBufferSize(int sendBufferSize);
 
-    void logSocket(long millis);
+    void logSocket(long elapsedTimeNanos);
 
     @Deprecated
-    void logSocket(long millis, int bytesDown, int bytesUp);
+    void logSocket(long elapsedTimeNanos, int bytesDown, int bytesUp);
 
     // TODO: add
     void logTraffic(boolean sent, Protocol protocol, byte[] traffic, int off, int len);
@@ -58,16 +58,15 @@ public class SniffySocket extends SniffySocketAdapter implements SniffyNetworkCo
 
     private void estimateReceiveBuffer() {
         if (-1 == receiveBufferSize) {
+            Integer defaultReceiveBufferSize = SniffySocket.defaultReceiveBufferSize;
             if (null == defaultReceiveBufferSize) {
-                synchronized (SnifferSocketImpl.class) {
-                    if (null == defaultReceiveBufferSize) {
-                        try {
-                            defaultReceiveBufferSize = super.getReceiveBufferSize();
-                        } catch (SocketException e) {
-                            defaultReceiveBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultReceiveBufferSize = super.getReceiveBufferSize();
+                } catch (SocketException e) {
+                    defaultReceiveBufferSize = 0;
                 }
+                SniffySocket.defaultReceiveBufferSize = defaultReceiveBufferSize;
             }
             receiveBufferSize = defaultReceiveBufferSize;
         }
@@ -75,31 +74,30 @@ public class SniffySocket extends SniffySocketAdapter implements SniffyNetworkCo
 
     private void estimateSendBuffer() {
         if (-1 == sendBufferSize) {
+            Integer defaultSendBufferSize = SniffySocket.defaultSendBufferSize;
             if (null == defaultSendBufferSize) {
-                synchronized (SnifferSocketImpl.class) {
-                    if (null == defaultSendBufferSize) {
-                        try {
-                            defaultSendBufferSize = super.getSendBufferSize();
-                        } catch (SocketException e) {
-                            defaultSendBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultSendBufferSize = super.getSendBufferSize();
+                } catch (SocketException e) {
+                    defaultSendBufferSize = 0;
                 }
+                SniffySocket.defaultSendBufferSize = defaultSendBufferSize;
             }
             sendBufferSize = defaultSendBufferSize;
         }
     }
 
     @Deprecated
-    public void logSocket(long millis) {
-        logSocket(millis, 0, 0);
+    public void logSocket(long elapsedTimeNanos) {
+        logSocket(elapsedTimeNanos, 0, 0);
     }
 
     @Deprecated
-    public void logSocket(long millis, int bytesDown, int bytesUp) {
+    public void logSocket(long elapsedTimeNanos, int bytesDown, int bytesUp) {
         Sniffy.SniffyMode sniffyMode = Sniffy.getSniffyMode();
-        if (sniffyMode.isEnabled() && null != address && (millis > 0 || bytesDown > 0 || bytesUp > 0)) {
-            Sniffy.logSocket(id, address, millis, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
+        if (sniffyMode.isEnabled() && null != address && (elapsedTimeNanos > 0 || bytesDown > 0 || bytesUp > 0)) {
+            Sniffy.logSocketNanos(id, address, elapsedTimeNanos, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
         }
     }
 
@@ -155,37 +153,37 @@ public class SniffySocket extends SniffySocketAdapter implements SniffyNetworkCo
 
     @Override
     public void connect(SocketAddress address) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             if (address instanceof InetSocketAddress) {
                 checkConnectionAllowed(this.address = (InetSocketAddress) address);
             }
             super.connect(address);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void connect(SocketAddress address, int timeout) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             if (address instanceof InetSocketAddress) {
                 checkConnectionAllowed(this.address = (InetSocketAddress) address);
             }
             super.connect(address, timeout);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void bind(SocketAddress bindpoint) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             super.bind(bindpoint); // TODO: should we check connectivity enabled here as well ?
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
@@ -196,36 +194,36 @@ public class SniffySocket extends SniffySocketAdapter implements SniffyNetworkCo
 
     @Override
     public InputStream getInputStream() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         estimateReceiveBuffer();
         checkConnectionAllowed();
         try {
             return new SnifferInputStream(this, super.getInputStream());
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public OutputStream getOutputStream() throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         estimateSendBuffer();
         checkConnectionAllowed();
         try {
             return new SnifferOutputStream(this, super.getOutputStream());
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
     @Override
     public void sendUrgentData(int data) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             checkConnectionAllowed(1);
             super.sendUrgentData(data);
         } finally {
-            logSocket(System.currentTimeMillis() - start, 0, 1);
+            logSocket(System.nanoTime() - start, 0, 1);
             logTraffic(true, Protocol.TCP, new byte[]{(byte) data}, 0, 1);
         }
     }
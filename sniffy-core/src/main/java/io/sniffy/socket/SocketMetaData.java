@@ -1,6 +1,7 @@
 package io.sniffy.socket;
 
 import io.sniffy.ThreadMetaData;
+import io.sniffy.util.StackTraceRegistry;
 
 import java.net.InetSocketAddress;
 
@@ -15,12 +16,27 @@ public class SocketMetaData {
     public final InetSocketAddress address;
     @Deprecated
     public final int connectionId;
+    /**
+     * Set only by constructors accepting rendered stack trace and null otherwise
+     * @deprecated use {@link #getStackTrace()} which renders stack trace registered in {@link StackTraceRegistry}
+     */
     @Deprecated
     public final String stackTrace;
     @Deprecated
     public final long ownerThreadId;
     private final ThreadMetaData threadMetaData;
 
+    /**
+     * @since 3.1.10
+     */
+    private final int stackTraceId;
+
+    /**
+     * Number of operations represented by the one described by this instance; doesn't affect equality
+     * @since 3.1.10
+     */
+    private final int samplingWeight;
+
     private final int hashCode;
 
     public SocketMetaData(Protocol protocol, InetSocketAddress address, int connectionId) {
@@ -36,12 +52,35 @@ public class SocketMetaData {
     }
 
     public SocketMetaData(Protocol protocol, InetSocketAddress address, int connectionId, String stackTrace, ThreadMetaData threadMetaData) {
+        this(protocol, address, connectionId, stackTrace, StackTraceRegistry.INSTANCE.register(stackTrace), threadMetaData, 1);
+    }
+
+    /**
+     * @param stackTraceId identifier of stack trace in {@link StackTraceRegistry}
+     * @since 3.1.10
+     */
+    public SocketMetaData(Protocol protocol, InetSocketAddress address, int connectionId, int stackTraceId, ThreadMetaData threadMetaData) {
+        this(protocol, address, connectionId, stackTraceId, threadMetaData, 1);
+    }
+
+    /**
+     * @param samplingWeight number of operations represented by this sampled one
+     * @see io.sniffy.configuration.SamplingPolicy
+     * @since 3.1.10
+     */
+    public SocketMetaData(Protocol protocol, InetSocketAddress address, int connectionId, int stackTraceId, ThreadMetaData threadMetaData, int samplingWeight) {
+        this(protocol, address, connectionId, null, stackTraceId, threadMetaData, samplingWeight);
+    }
+
+    private SocketMetaData(Protocol protocol, InetSocketAddress address, int connectionId, String stackTrace, int stackTraceId, ThreadMetaData threadMetaData, int samplingWeight) {
         this.protocol = protocol;
         this.address = address;
         this.connectionId = connectionId;
-        this.stackTrace = null == stackTrace ? null : stackTrace.intern();
+        this.stackTrace = stackTrace;
+        this.stackTraceId = stackTraceId;
         this.threadMetaData = threadMetaData;
         this.ownerThreadId = null == threadMetaData ? -1 : threadMetaData.getThreadId();
+        this.samplingWeight = samplingWeight;
         hashCode = computeHashCode();
     }
 
@@ -49,7 +88,7 @@ public class SocketMetaData {
         int result = address.hashCode();
         result = 31 * result + protocol.hashCode();
         result = 31 * result + connectionId;
-        result = 31 * result + System.identityHashCode(stackTrace);
+        result = 31 * result + stackTraceId;
         result = 31 * result + (int)(ownerThreadId ^ (ownerThreadId >>> 32));
         return result;
     }
@@ -65,8 +104,7 @@ public class SocketMetaData {
         if (ownerThreadId != that.ownerThreadId) return false;
         if (!protocol.equals(that.protocol)) return false;
         if (!address.equals(that.address)) return false;
-        //noinspection StringEquality
-        return stackTrace == that.stackTrace;
+        return stackTraceId == that.stackTraceId;
 
     }
 
@@ -90,9 +128,29 @@ public class SocketMetaData {
         return connectionId;
     }
 
+    /**
+     * @return stack trace rendered by {@link StackTraceRegistry} or null if it wasn't captured
+     */
     @Deprecated
     public String getStackTrace() {
-        return stackTrace;
+        return StackTraceRegistry.INSTANCE.getStackTrace(stackTraceId);
+    }
+
+    /**
+     * @return identifier of stack trace in {@link StackTraceRegistry}
+     * @since 3.1.10
+     */
+    public int getStackTraceId() {
+        return stackTraceId;
+    }
+
+    /**
+     * @return number of operations represented by this one
+     * @see io.sniffy.configuration.SamplingPolicy
+     * @since 3.1.10
+     */
+    public int getSamplingWeight() {
+        return samplingWeight;
     }
 
     public ThreadMetaData getThreadMetaData() {
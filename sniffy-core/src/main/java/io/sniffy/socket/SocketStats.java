@@ -1,34 +1,185 @@
 package io.sniffy.socket;
 
-import java.util.concurrent.atomic.AtomicLong;
+import io.sniffy.util.LatencyHistogram;
+import io.sniffy.util.StripedLong;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * @since 3.1
  */
 public class SocketStats {
 
-    public final AtomicLong elapsedTime = new AtomicLong();
-    public final AtomicLong bytesDown = new AtomicLong();
-    public final AtomicLong bytesUp = new AtomicLong();
+    /**
+     * Total elapsed time in nanoseconds
+     * @since 3.1.10
+     */
+    public final StripedLong elapsedTimeNanos = new StripedLong();
+
+    /**
+     * Total elapsed time in milliseconds; derived from {@link #elapsedTimeNanos} so sub-millisecond operations add up
+     */
+    public final Number elapsedTime = new ElapsedTimeMillis(elapsedTimeNanos);
+
+    public final StripedLong bytesDown = new StripedLong();
+    public final StripedLong bytesUp = new StripedLong();
+
+    private volatile LatencyHistogram latencyHistogram;
+
+    private static final AtomicLongFieldUpdater<SocketStats> WEIGHED_SIZE =
+            AtomicLongFieldUpdater.newUpdater(SocketStats.class, "weighedSize");
+
+    // retained size when these statistics were weighed last time by a memory bounded map
+    private volatile long weighedSize;
 
     public SocketStats(SocketStats that) {
         accumulate(that);
     }
 
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     */
     public SocketStats(long elapsedTime, long bytesDown, long bytesUp) {
-        this.elapsedTime.set(elapsedTime);
-        this.bytesDown.set(Math.max(bytesDown, 0));
-        this.bytesUp.set(Math.max(bytesUp, 0));
+        this.elapsedTimeNanos.add(TimeUnit.MILLISECONDS.toNanos(elapsedTime));
+        this.bytesDown.add(Math.max(bytesDown, 0));
+        this.bytesUp.add(Math.max(bytesUp, 0));
+    }
+
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     */
+    public void accumulate(long elapsedTime, long bytesDown, long bytesUp) {
+        accumulateNanos(TimeUnit.MILLISECONDS.toNanos(elapsedTime), bytesDown, bytesUp);
     }
 
-    public void accumulate(long elapsedTime, int bytesDown, int bytesUp) {
-        this.elapsedTime.addAndGet(elapsedTime);
-        this.bytesDown.addAndGet(Math.max(bytesDown, 0));
-        this.bytesUp.addAndGet(Math.max(bytesUp, 0));
+    /**
+     * Adds a single operation; it is recorded in latency histogram if the latter is enabled
+     * @since 3.1.10
+     */
+    public void accumulateNanos(long elapsedTimeNanos, long bytesDown, long bytesUp) {
+        accumulateSample(elapsedTimeNanos, bytesDown, bytesUp, 1);
+    }
+
+    /**
+     * Adds an operation which represents {@code samplingWeight} operations with the same duration and traffic
+     * @see io.sniffy.configuration.SamplingPolicy
+     * @since 3.1.10
+     */
+    public void accumulateSample(long elapsedTimeNanos, long bytesDown, long bytesUp, int samplingWeight) {
+        this.elapsedTimeNanos.add(elapsedTimeNanos * samplingWeight);
+        if (bytesDown > 0) this.bytesDown.add(bytesDown * samplingWeight);
+        if (bytesUp > 0) this.bytesUp.add(bytesUp * samplingWeight);
+        LatencyHistogram latencyHistogram = this.latencyHistogram;
+        if (null != latencyHistogram) {
+            latencyHistogram.record(elapsedTimeNanos, samplingWeight);
+        }
     }
 
     public void accumulate(SocketStats that) {
-        accumulate(that.elapsedTime.longValue(), that.bytesDown.intValue(), that.bytesUp.intValue());
+        this.elapsedTimeNanos.add(that.elapsedTimeNanos.longValue());
+        this.bytesDown.add(that.bytesDown.longValue());
+        this.bytesUp.add(that.bytesUp.longValue());
+        LatencyHistogram latencyHistogram = that.latencyHistogram;
+        if (null != latencyHistogram) {
+            enableLatencyHistogram().merge(latencyHistogram);
+        }
+    }
+
+    /**
+     * Operations accumulated before this call aren't recorded in histogram
+     * @return latency histogram of this instance
+     * @since 3.1.10
+     */
+    public LatencyHistogram enableLatencyHistogram() {
+        LatencyHistogram latencyHistogram = this.latencyHistogram;
+        if (null == latencyHistogram) {
+            synchronized (this) {
+                latencyHistogram = this.latencyHistogram;
+                if (null == latencyHistogram) {
+                    this.latencyHistogram = latencyHistogram = new LatencyHistogram();
+                }
+            }
+        }
+        return latencyHistogram;
+    }
+
+    /**
+     * @return approximate number of bytes retained by these statistics including counters and latency histogram
+     * @since 3.1.10
+     */
+    public long getRetainedSize() {
+        return 64 + 24 +
+                elapsedTimeNanos.getRetainedSize() + bytesDown.getRetainedSize() + bytesUp.getRetainedSize() +
+                (null == latencyHistogram ? 0 : LatencyHistogram.getRetainedSize());
+    }
+
+    /**
+     * Memory bounded maps compute weight of an entry when it's written only; these statistics grow when counters are
+     * striped, histograms or parameters are retained, so the entry should be written again once they grow by 1/8
+     * @return true if retained size grew by more than 1/8 since {@link #weigh()} and the caller should re-weigh the entry
+     * @since 3.1.10
+     */
+    public boolean needsReweighing() {
+        long weighedSize = this.weighedSize;
+        long retainedSize = getRetainedSize();
+        return retainedSize - weighedSize > weighedSize / 8 && WEIGHED_SIZE.compareAndSet(this, weighedSize, retainedSize);
+    }
+
+    /**
+     * @return retained size which is remembered for {@link #needsReweighing()}
+     * @since 3.1.10
+     */
+    public long weigh() {
+        long retainedSize = getRetainedSize();
+        weighedSize = retainedSize;
+        return retainedSize;
+    }
+
+    /**
+     * @return histogram of individual operation durations or null if it wasn't enabled
+     * @see #enableLatencyHistogram()
+     * @since 3.1.10
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    private static class ElapsedTimeMillis extends Number {
+
+        private static final long serialVersionUID = 3872660827929582835L;
+
+        private final StripedLong elapsedTimeNanos;
+
+        private ElapsedTimeMillis(StripedLong elapsedTimeNanos) {
+            this.elapsedTimeNanos = elapsedTimeNanos;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) longValue();
+        }
+
+        @Override
+        public long longValue() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedTimeNanos.longValue());
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) longValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return (double) longValue();
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(longValue());
+        }
+
     }
 
 }
@@ -0,0 +1,152 @@
+package io.sniffy.sql;
+
+import io.sniffy.util.StripedLong;
+
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics of batches executed using {@link Statement#executeBatch()}: histogram of batch sizes and summary of update
+ * counts returned by the driver
+ *
+ * Batch sizes are stored in power-of-two buckets, so percentiles are reported as the upper bound of a bucket (capped by
+ * the maximum batch size). All methods are lock-free.
+ *
+ * @see SqlStats#getBatchStats()
+ * @since 3.1.10
+ */
+public class BatchStats {
+
+    private static final int BUCKETS = 32;
+
+    // bucket i contains batch sizes in range [2^(i-1), 2^i - 1]; bucket 0 contains empty batches
+    private final AtomicLongArray batchSizes = new AtomicLongArray(BUCKETS);
+
+    private final StripedLong batches = new StripedLong();
+    private final StripedLong statements = new StripedLong();
+    private final StripedLong successNoInfoStatements = new StripedLong();
+    private final StripedLong failedStatements = new StripedLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    public BatchStats() {
+    }
+
+    public BatchStats(BatchStats that) {
+        accumulate(that);
+    }
+
+    /**
+     * @param batchSize number of statements in the batch
+     * @param successNoInfoStatements number of statements with {@link Statement#SUCCESS_NO_INFO} update count
+     * @param failedStatements number of statements with {@link Statement#EXECUTE_FAILED} update count
+     * @param samplingWeight number of batches represented by this one
+     */
+    public void record(int batchSize, int successNoInfoStatements, int failedStatements, int samplingWeight) {
+        if (batchSize < 0) batchSize = 0;
+        batchSizes.addAndGet(getIndex(batchSize), samplingWeight);
+        batches.add(samplingWeight);
+        if (0 != batchSize) statements.add((long) batchSize * samplingWeight);
+        if (0 != successNoInfoStatements) this.successNoInfoStatements.add((long) successNoInfoStatements * samplingWeight);
+        if (0 != failedStatements) this.failedStatements.add((long) failedStatements * samplingWeight);
+        updateMax(batchSize);
+    }
+
+    public void accumulate(BatchStats that) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = that.batchSizes.get(i);
+            if (0 != count) batchSizes.addAndGet(i, count);
+        }
+        batches.add(that.batches.get());
+        statements.add(that.statements.get());
+        successNoInfoStatements.add(that.successNoInfoStatements.get());
+        failedStatements.add(that.failedStatements.get());
+        updateMax(that.maxBatchSize.get());
+    }
+
+    /**
+     * @return number of executed batches
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return total number of statements in executed batches
+     */
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public long getSuccessNoInfoStatements() {
+        return successNoInfoStatements.get();
+    }
+
+    public long getFailedStatements() {
+        return failedStatements.get();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getMeanBatchSize() {
+        long batches = getBatches();
+        return 0 == batches ? 0 : (double) getStatements() / batches;
+    }
+
+    /**
+     * @param percentile percentile in range [0, 100]
+     * @return upper bound of batch size below which given percentage of batches falls
+     */
+    public long getBatchSizePercentile(double percentile) {
+        long totalCount = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            totalCount += batchSizes.get(i);
+        }
+        if (0 == totalCount) return 0;
+
+        long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += batchSizes.get(i);
+            if (count >= countAtPercentile) {
+                return Math.min(0 == i ? 0 : (1L << i) - 1, getMaxBatchSize());
+            }
+        }
+        return getMaxBatchSize();
+    }
+
+    /**
+     * @return number of executed batches per power-of-two size bucket; element i counts batches with sizes below 2^i
+     * and not below 2^(i-1)
+     */
+    public long[] getBatchSizeHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = batchSizes.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return approximate number of bytes retained by these statistics
+     */
+    public long getRetainedSize() {
+        return 64 + 40 + 8L * BUCKETS + 24 +
+                batches.getRetainedSize() + statements.getRetainedSize() +
+                successNoInfoStatements.getRetainedSize() + failedStatements.getRetainedSize();
+    }
+
+    private static int getIndex(int batchSize) {
+        return 32 - Integer.numberOfLeadingZeros(batchSize);
+    }
+
+    private void updateMax(long batchSize) {
+        long max;
+        while (batchSize > (max = maxBatchSize.get())) {
+            if (maxBatchSize.compareAndSet(max, batchSize)) break;
+        }
+    }
+
+}
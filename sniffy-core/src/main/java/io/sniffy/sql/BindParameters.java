@@ -0,0 +1,84 @@
+package io.sniffy.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Values of prepared statement parameters retained for a slow or sampled execution
+ *
+ * Values are rendered to strings and truncated when retained; streams and LOBs are represented by their type (and
+ * length if known) and are never read.
+ *
+ * @see io.sniffy.configuration.SniffyConfiguration#isCaptureParameters()
+ * @see SqlStats#getBindParameters()
+ * @since 3.1.10
+ */
+public class BindParameters {
+
+    private final String[] values;
+    private final boolean truncated;
+    private final long elapsedTime;
+
+    /**
+     * @param values rendered parameter values starting with the first parameter; null for parameters which weren't set
+     * @param truncated true if statement has more parameters than could be captured
+     * @param elapsedTime elapsed time of execution in nanoseconds
+     */
+    public BindParameters(String[] values, boolean truncated, long elapsedTime) {
+        this.values = values;
+        this.truncated = truncated;
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * @return rendered parameter values starting with the first parameter; null for parameters which weren't set
+     */
+    public List<String> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    /**
+     * @return true if statement has more parameters than could be captured
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return elapsed time of execution in nanoseconds
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return approximate number of bytes retained by rendered values
+     */
+    public long getRetainedSize() {
+        long retainedSize = 48 + 8L * values.length;
+        for (String value : values) {
+            if (null != value) retainedSize += 40 + 2L * value.length();
+        }
+        return retainedSize;
+    }
+
+    /**
+     * @return true if given parameters have the same rendered values
+     */
+    boolean hasSameValues(BindParameters that) {
+        return truncated == that.truncated && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(null == values[i] ? "?" : values[i]);
+        }
+        if (truncated) sb.append(values.length > 0 ? ", ..." : "...");
+        return sb.append("]").toString();
+    }
+
+}
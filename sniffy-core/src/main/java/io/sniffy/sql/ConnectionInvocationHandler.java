@@ -13,25 +13,26 @@ class ConnectionInvocationHandler extends SniffyInvocationHandler<Connection> {
         super(null, delegate, url, userName);
     }
 
-    public Object invokeImpl(Connection proxy, String methodName, Method method, Object[] args) throws Throwable {
+    @Override
+    Object invokeImpl(Connection proxy, JdbcMethodType methodType, Method method, Object[] args) throws Throwable {
 
         checkConnectionAllowed(); // TODO: move to invokeTarget() ???
 
         Object result = invokeTarget(method, args);
 
-        if (CREATE_STATEMENT_METHOD.equals(methodName)) {
+        if (JdbcMethodType.CREATE_STATEMENT == methodType) {
             return Proxy.newProxyInstance(
                     ConnectionInvocationHandler.class.getClassLoader(),
                     new Class[]{Statement.class},
                     new StatementInvocationHandler<Statement>((Statement) result, connectionProxy, url, userName)
             );
-        } else if (PREPARE_STATEMENT_METHOD.equals(methodName)) {
+        } else if (JdbcMethodType.PREPARE_STATEMENT == methodType) {
             return Proxy.newProxyInstance(
                     ConnectionInvocationHandler.class.getClassLoader(),
                     new Class[]{PreparedStatement.class},
                     new PreparedStatementInvocationHandler<PreparedStatement>((PreparedStatement) result, connectionProxy, url, userName, String.class.cast(args[0]))
             );
-        } else if (PREPARE_CALL_METHOD.equals(methodName)) {
+        } else if (JdbcMethodType.PREPARE_CALL == methodType) {
             return Proxy.newProxyInstance(
                     ConnectionInvocationHandler.class.getClassLoader(),
                     new Class[]{CallableStatement.class},
@@ -33,12 +33,11 @@ public class JdbcInvocationHandler<T extends Wrapper> implements InvocationHandl
     @SuppressWarnings("unchecked")
     public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
-        String methodName = method.getName();
-        Class<?> returnType = method.getReturnType();
+        JdbcMethodType methodType = JdbcMethodType.of(method);
 
-        if (connectionProxy != null && GET_CONNECTION_METHOD.equals(methodName) && returnType.isAssignableFrom(Connection.class)) {
+        if (connectionProxy != null && JdbcMethodType.GET_CONNECTION == methodType) {
             return connectionProxy;
-        } else if (EQUALS_METHOD.equals(methodName)) {
+        } else if (JdbcMethodType.EQUALS == methodType) {
             Object that = args[0];
             if (null == that) {
                 return FALSE;
@@ -53,34 +52,43 @@ public class JdbcInvocationHandler<T extends Wrapper> implements InvocationHandl
                 return invokeTargetImpl(method, args);
             }
         } else {
-            return invokeImpl((T) proxy, methodName, method, args);
+            return invokeImpl((T) proxy, methodType, method, args);
         }
     }
 
+    /**
+     * Handlers in this package override this method in order to reuse already resolved method type
+     * @since 3.1.10
+     */
+    Object invokeImpl(T proxy, JdbcMethodType methodType, Method method, Object[] args) throws Throwable {
+        return invokeImpl(proxy, method.getName(), method, args);
+    }
+
     protected Object invokeImpl(T proxy, String methodName, Method method, Object[] args) throws Throwable {
         Object result = invokeTarget(method, args);
 
-        if (CREATE_STATEMENT_METHOD.equals(methodName)) {
-            return Proxy.newProxyInstance(
-                    ConnectionInvocationHandler.class.getClassLoader(),
-                    new Class[]{Statement.class},
-                    new JdbcInvocationHandler<Statement>(connectionProxy, (Statement) result)
-            );
-        } else if (PREPARE_STATEMENT_METHOD.equals(methodName)) {
-            return Proxy.newProxyInstance(
-                    ConnectionInvocationHandler.class.getClassLoader(),
-                    new Class[]{PreparedStatement.class},
-                    new JdbcInvocationHandler<PreparedStatement>(connectionProxy, (PreparedStatement) result)
-            );
-        } else if (PREPARE_CALL_METHOD.equals(methodName)) {
-            return Proxy.newProxyInstance(
-                    ConnectionInvocationHandler.class.getClassLoader(),
-                    new Class[]{CallableStatement.class},
-                    new JdbcInvocationHandler<CallableStatement>(connectionProxy, (CallableStatement) result)
-            );
-        } else {
-            // TODO: proxy other classes which might have getConnection method like getDatabaseMetaData() and others
-            return result;
+        switch (JdbcMethodType.of(method)) {
+            case CREATE_STATEMENT:
+                return Proxy.newProxyInstance(
+                        ConnectionInvocationHandler.class.getClassLoader(),
+                        new Class[]{Statement.class},
+                        new JdbcInvocationHandler<Statement>(connectionProxy, (Statement) result)
+                );
+            case PREPARE_STATEMENT:
+                return Proxy.newProxyInstance(
+                        ConnectionInvocationHandler.class.getClassLoader(),
+                        new Class[]{PreparedStatement.class},
+                        new JdbcInvocationHandler<PreparedStatement>(connectionProxy, (PreparedStatement) result)
+                );
+            case PREPARE_CALL:
+                return Proxy.newProxyInstance(
+                        ConnectionInvocationHandler.class.getClassLoader(),
+                        new Class[]{CallableStatement.class},
+                        new JdbcInvocationHandler<CallableStatement>(connectionProxy, (CallableStatement) result)
+                );
+            default:
+                // TODO: proxy other classes which might have getConnection method like getDatabaseMetaData() and others
+                return result;
         }
     }
 
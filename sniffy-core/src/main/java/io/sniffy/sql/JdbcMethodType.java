@@ -0,0 +1,110 @@
+package io.sniffy.sql;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Classifies JDBC methods intercepted by {@link JdbcInvocationHandler} and its subclasses
+ *
+ * Dynamic proxy classes pass the same {@link Method} instances on every invocation, so the type of each method is
+ * computed from its name once and then resolved with a single identity lookup.
+ *
+ * @since 3.1.10
+ */
+enum JdbcMethodType {
+    GET_CONNECTION,
+    EQUALS,
+    CREATE_STATEMENT,
+    PREPARE_STATEMENT,
+    PREPARE_CALL,
+    EXECUTE_SQL,
+    EXECUTE_UPDATE,
+    ADD_BATCH,
+    CLEAR_BATCH,
+    EXECUTE_BATCH,
+    SET_PARAMETER,
+    CLEAR_PARAMETERS,
+    READ_ROW,
+    CLOSE,
+    OTHER;
+
+    // copy-on-write; the number of distinct Method instances is bounded by number of proxy classes and their methods
+    private static volatile Map<Method, JdbcMethodType> methodTypes = new IdentityHashMap<Method, JdbcMethodType>();
+
+    // copy-on-write; parameter type names of SET_PARAMETER methods, like "String" for setString
+    private static volatile Map<Method, String> parameterTypes = new IdentityHashMap<Method, String>();
+
+    static JdbcMethodType of(Method method) {
+        JdbcMethodType methodType = methodTypes.get(method);
+        if (null == methodType) {
+            methodType = parse(method);
+            register(method, methodType);
+        }
+        return methodType;
+    }
+
+    /**
+     * @return name of parameter type set by given {@link #SET_PARAMETER} method, like "String" for setString
+     */
+    static String parameterType(Method method) {
+        String parameterType = parameterTypes.get(method);
+        if (null == parameterType) {
+            of(method);
+            parameterType = parameterTypes.get(method);
+        }
+        return parameterType;
+    }
+
+    private static synchronized void register(Method method, JdbcMethodType methodType) {
+        if (SET_PARAMETER == methodType) {
+            Map<Method, String> parameterTypes = new IdentityHashMap<Method, String>(JdbcMethodType.parameterTypes);
+            parameterTypes.put(method, method.getName().substring(3));
+            JdbcMethodType.parameterTypes = parameterTypes;
+        }
+        Map<Method, JdbcMethodType> methodTypes = new IdentityHashMap<Method, JdbcMethodType>(JdbcMethodType.methodTypes);
+        methodTypes.put(method, methodType);
+        JdbcMethodType.methodTypes = methodTypes;
+    }
+
+    //@VisibleForTesting
+    static JdbcMethodType parse(Method method) {
+        String methodName = method.getName();
+        if (JdbcInvocationHandler.GET_CONNECTION_METHOD.equals(methodName)) {
+            return method.getReturnType().isAssignableFrom(Connection.class) ? GET_CONNECTION : OTHER;
+        } else if (JdbcInvocationHandler.EQUALS_METHOD.equals(methodName)) {
+            return 1 == method.getParameterTypes().length ? EQUALS : OTHER;
+        } else if (JdbcInvocationHandler.CREATE_STATEMENT_METHOD.equals(methodName)) {
+            return CREATE_STATEMENT;
+        } else if (JdbcInvocationHandler.PREPARE_STATEMENT_METHOD.equals(methodName)) {
+            return PREPARE_STATEMENT;
+        } else if (JdbcInvocationHandler.PREPARE_CALL_METHOD.equals(methodName)) {
+            return PREPARE_CALL;
+        } else if ("execute".equals(methodName) || "executeQuery".equals(methodName)) {
+            return EXECUTE_SQL;
+        } else if ("executeUpdate".equals(methodName) || "executeLargeUpdate".equals(methodName)) {
+            return EXECUTE_UPDATE;
+        } else if ("addBatch".equals(methodName)) {
+            return ADD_BATCH;
+        } else if ("clearBatch".equals(methodName)) {
+            return CLEAR_BATCH;
+        } else if ("executeBatch".equals(methodName) || "executeLargeBatch".equals(methodName)) {
+            return EXECUTE_BATCH;
+        } else if (methodName.startsWith("set") && method.getParameterTypes().length >= 2 &&
+                Integer.TYPE == method.getParameterTypes()[0]) {
+            return SET_PARAMETER;
+        } else if ("clearParameters".equals(methodName)) {
+            return CLEAR_PARAMETERS;
+        } else if ("next".equals(methodName) || "previous".equals(methodName) ||
+                "first".equals(methodName) || "last".equals(methodName) ||
+                "absolute".equals(methodName) || "relative".equals(methodName)) {
+            return READ_ROW;
+        } else if ("close".equals(methodName)) {
+            return 0 == method.getParameterTypes().length ? CLOSE : OTHER;
+        } else {
+            return OTHER;
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package io.sniffy.sql;
+
+import java.sql.Connection;
+
+/**
+ * Creates delegating {@link SniffyConnection} matching JDBC version of the running JRE
+ *
+ * This version is used on Java 6 - 8 and when classes aren't loaded from a multi-release jar; JDBC 4.3 methods added
+ * in Java 9 are forwarded by the version located in {@code src/main/java9} and packaged as a multi-release class
+ *
+ * @since 3.1.10
+ */
+class JdbcSupport {
+
+    private JdbcSupport() {
+    }
+
+    static SniffyConnection newConnection(Connection delegate, String url, String userName) {
+        return new SniffyConnection(delegate, url, userName);
+    }
+
+}
@@ -0,0 +1,299 @@
+package io.sniffy.sql;
+
+import io.sniffy.ThreadMetaData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental detector of N+1 query patterns in statements executed by a single thread
+ *
+ * Detector keeps a small window of recently executed statement fingerprints and counts executions of each one while
+ * it stays in the window; the window is ordered by last execution, so a statement repeated in a loop together with a
+ * few other statements is still tracked as a single run. Once a fingerprint is evicted from the window, its run is
+ * finished and reported if it was executed at least {@value #MIN_EXECUTIONS} times.
+ *
+ * Executions of the same literal SQL without bind parameters aren't counted as repetitions, since they don't look up
+ * different rows. Executions of a statement with parameter markers are counted unless their bind parameters were
+ * retained (see {@link io.sniffy.configuration.SniffyConfiguration#isCaptureParameters()}) and are the same as the
+ * ones retained for the previous execution; parameters which weren't retained are assumed to differ.
+ *
+ * Detection is disabled unless {@link io.sniffy.configuration.SniffyConfiguration#getNPlusOneThreshold()} is
+ * non-negative. When enabled, each statement costs a lookup of detector by thread and a synchronized scan of
+ * {@value #WINDOW_SIZE} slots without allocation; fingerprint is built once per {@link StatementMetaData} instance.
+ *
+ * Detector is supposed to be updated by a single thread; it is synchronized so that it can be read by other threads
+ *
+ * @see io.sniffy.BaseSpy#getNPlusOneQueries()
+ * @since 3.1.10
+ */
+public class NPlusOneDetector {
+
+    static final int WINDOW_SIZE = 8;
+    static final int MIN_EXECUTIONS = 2;
+
+    private final ThreadMetaData threadMetaData;
+
+    // window of runs; unused slots have null statement
+    private final long[] fingerprints = new long[WINDOW_SIZE];
+    private final StatementMetaData[] statements = new StatementMetaData[WINDOW_SIZE];
+    private final String[] lastSql = new String[WINDOW_SIZE];
+    private final boolean[] parameterized = new boolean[WINDOW_SIZE];
+    private final int[] executions = new int[WINDOW_SIZE];
+    private final long[] lastExecution = new long[WINDOW_SIZE];
+    private final BindParameters[] previousBindParameters = new BindParameters[WINDOW_SIZE];
+    private final BindParameters[] lastBindParameters = new BindParameters[WINDOW_SIZE];
+
+    private long sequence;
+
+    // last recorded statement and number of its executions which can be discounted once its parameters are known
+    private StatementMetaData lastStatement;
+    private int lastSlot;
+    private int lastUndecided;
+
+    // finished runs grouped by fingerprint and stack trace of the first statement in a run
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>();
+
+    public NPlusOneDetector(ThreadMetaData threadMetaData) {
+        this.threadMetaData = threadMetaData;
+    }
+
+    public ThreadMetaData getThreadMetaData() {
+        return threadMetaData;
+    }
+
+    public synchronized void record(StatementMetaData statementMetaData) {
+        SqlFingerprint sqlFingerprint = statementMetaData.getSqlFingerprint();
+        if (null == sqlFingerprint) return;
+        String sql = statementMetaData.getSql();
+        long fingerprint = sqlFingerprint.getHash();
+        int samplingWeight = statementMetaData.getSamplingWeight();
+
+        sequence++;
+
+        int leastRecent = 0;
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            if (null == statements[i]) {
+                leastRecent = i;
+                break;
+            }
+            if (fingerprints[i] == fingerprint) {
+                int undecided = 0;
+                //noinspection StringEquality
+                if (sql != lastSql[i] && !sql.equals(lastSql[i])) {
+                    executions[i] += samplingWeight;
+                    lastSql[i] = sql;
+                } else if (parameterized[i]) {
+                    executions[i] += samplingWeight;
+                    undecided = samplingWeight;
+                }
+                previousBindParameters[i] = lastBindParameters[i];
+                lastBindParameters[i] = null;
+                lastExecution[i] = sequence;
+                recorded(statementMetaData, i, undecided);
+                return;
+            }
+            if (lastExecution[i] < lastExecution[leastRecent]) {
+                leastRecent = i;
+            }
+        }
+
+        finishRun(leastRecent, entries);
+
+        fingerprints[leastRecent] = fingerprint;
+        statements[leastRecent] = statementMetaData;
+        lastSql[leastRecent] = sql;
+        parameterized[leastRecent] = sqlFingerprint.getParameterCount() > 0;
+        executions[leastRecent] = samplingWeight;
+        lastExecution[leastRecent] = sequence;
+        previousBindParameters[leastRecent] = null;
+        lastBindParameters[leastRecent] = null;
+        recorded(statementMetaData, leastRecent, 0);
+    }
+
+    private void recorded(StatementMetaData statementMetaData, int slot, int undecided) {
+        lastStatement = statementMetaData;
+        lastSlot = slot;
+        lastUndecided = undecided;
+    }
+
+    /**
+     * Discounts the last recorded execution of given statement if it was bound to the same parameters as the previous one
+     * @param bindParameters parameters retained for the last execution of given statement
+     */
+    public synchronized void recordBindParameters(StatementMetaData statementMetaData, BindParameters bindParameters) {
+        if (null == lastStatement || !lastStatement.equals(statementMetaData)) return;
+        lastBindParameters[lastSlot] = bindParameters;
+        BindParameters previous = previousBindParameters[lastSlot];
+        if (lastUndecided > 0 && null != previous && previous.hasSameValues(bindParameters)) {
+            executions[lastSlot] -= lastUndecided;
+        }
+        lastUndecided = 0;
+    }
+
+    /**
+     * @return N+1 patterns detected so far including runs which are still in progress
+     */
+    public synchronized List<Entry> getEntries() {
+        Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>();
+        for (Map.Entry<Key, Entry> entry : this.entries.entrySet()) {
+            entries.put(entry.getKey(), new Entry(entry.getValue()));
+        }
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            finishRun(i, entries);
+        }
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    private void finishRun(int i, Map<Key, Entry> entries) {
+        StatementMetaData statementMetaData = statements[i];
+        if (null == statementMetaData || executions[i] < MIN_EXECUTIONS) return;
+
+        Key key = new Key(fingerprints[i], statementMetaData.getStackTraceId());
+        Entry entry = entries.get(key);
+        if (null == entry) {
+            entries.put(key, entry = new Entry(statementMetaData.getSqlFingerprint().getFingerprint(), statementMetaData.getStackTrace()));
+        }
+        entry.addRun(executions[i]);
+    }
+
+    /**
+     * Combines entries detected by different threads or scopes
+     */
+    public static List<Entry> merge(List<Entry> entries) {
+        Map<Entry, Entry> merged = new LinkedHashMap<Entry, Entry>();
+        for (Entry entry : entries) {
+            Entry existing = merged.get(entry);
+            if (null == existing) {
+                merged.put(entry, new Entry(entry));
+            } else {
+                existing.accumulate(entry);
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<Entry>(merged.values()));
+    }
+
+    private static class Key {
+
+        private final long fingerprint;
+        private final int stackTraceId;
+
+        private Key(long fingerprint, int stackTraceId) {
+            this.fingerprint = fingerprint;
+            this.stackTraceId = stackTraceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return fingerprint == key.fingerprint && stackTraceId == key.stackTraceId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (fingerprint ^ (fingerprint >>> 32)) + stackTraceId;
+        }
+
+    }
+
+    /**
+     * Statement executed repeatedly from the same place; entries are equal if they have the same SQL and stack trace
+     */
+    public static class Entry {
+
+        private final String sql;
+        private final String stackTrace;
+
+        private int count;
+        private int runs;
+        private long totalCount;
+
+        public Entry(String sql, String stackTrace) {
+            this.sql = sql;
+            this.stackTrace = stackTrace;
+        }
+
+        public Entry(Entry that) {
+            this(that.sql, that.stackTrace);
+            accumulate(that);
+        }
+
+        void addRun(int executions) {
+            count = Math.max(count, executions);
+            runs++;
+            totalCount += executions;
+        }
+
+        void accumulate(Entry that) {
+            count = Math.max(count, that.count);
+            runs += that.runs;
+            totalCount += that.totalCount;
+        }
+
+        /**
+         * @return fingerprint of the repeated statement
+         * @see SqlFingerprint#getFingerprint()
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return stack trace of the first statement in the run or null if stack traces weren't captured
+         */
+        public String getStackTrace() {
+            return stackTrace;
+        }
+
+        /**
+         * @return largest number of executions in a single run
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return number of detected runs
+         */
+        public int getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return number of executions in all detected runs
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Entry entry = (Entry) o;
+
+            if (!sql.equals(entry.sql)) return false;
+            return null == stackTrace ? null == entry.stackTrace : stackTrace.equals(entry.stackTrace);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + (null == stackTrace ? 0 : stackTrace.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return sql + " /*" + count + " times*/";
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.sniffy.sql;
+
+import io.sniffy.SniffyAssertionError;
+import io.sniffy.Threads;
+
+import java.util.Collections;
+import java.util.List;
+
+import static io.sniffy.util.StringUtil.LINE_SEPARATOR;
+
+/**
+ * @see SqlQueries#noNPlusOne(int)
+ * @since 3.1.10
+ */
+public class NPlusOneQueriesError extends SniffyAssertionError {
+
+    private static final long serialVersionUID = -8135584816486861797L;
+
+    private final Threads threadMatcher;
+    private final int threshold;
+    private final List<NPlusOneDetector.Entry> nPlusOneQueries;
+
+    public NPlusOneQueriesError(Threads threadMatcher, int threshold, List<NPlusOneDetector.Entry> nPlusOneQueries) {
+        super(buildDetailMessage(threadMatcher, threshold, nPlusOneQueries));
+        this.threadMatcher = threadMatcher;
+        this.threshold = threshold;
+        this.nPlusOneQueries = Collections.unmodifiableList(nPlusOneQueries);
+    }
+
+    private static String buildDetailMessage(Threads threadMatcher, int threshold, List<NPlusOneDetector.Entry> nPlusOneQueries) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Expected at most ").append(threshold).append(" repeated executions of the same statement");
+        threadMatcher.describe(sb);
+        sb.append(LINE_SEPARATOR);
+        sb.append("Observed N+1 queries:").append(LINE_SEPARATOR);
+        for (NPlusOneDetector.Entry entry : nPlusOneQueries) {
+            sb.append(entry.getSql()).append("; /*").append(entry.getCount()).append(" times*/").append(LINE_SEPARATOR);
+            if (null != entry.getStackTrace()) {
+                sb.append(entry.getStackTrace()).append(LINE_SEPARATOR);
+            }
+        }
+        return sb.toString();
+    }
+
+    public Threads getThreadMatcher() {
+        return threadMatcher;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public List<NPlusOneDetector.Entry> getNPlusOneQueries() {
+        return nPlusOneQueries;
+    }
+
+}
@@ -0,0 +1,214 @@
+package io.sniffy.sql;
+
+import io.sniffy.Sniffy;
+import io.sniffy.configuration.SamplingPolicy;
+import io.sniffy.configuration.SniffyConfiguration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parameters bound to a single prepared statement; see {@link SniffyConfiguration#isCaptureParameters()}
+ *
+ * Values are stored in fixed-size arrays allocated once per statement and reused by subsequent executions: primitives
+ * are kept unboxed and objects are kept by reference, so binding a parameter doesn't allocate. Values are rendered and
+ * truncated only when they are retained by {@link #retain(StatementMetaData, String, long)}.
+ *
+ * Not thread safe; JDBC statements aren't supposed to be shared between threads
+ *
+ * @since 3.1.10
+ */
+class ParameterSlots {
+
+    static final int CAPACITY = 64;
+
+    private static final byte NONE = 0;
+    private static final byte NULL = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte OBJECT = 5;
+    private static final byte STREAM = 6;
+    private static final byte LOB = 7;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final byte[] types = new byte[CAPACITY];
+    private final long[] primitives = new long[CAPACITY];
+    private final Object[] objects = new Object[CAPACITY];
+
+    // number of slots which might be set
+    private int count;
+    private boolean truncated;
+
+    /**
+     * @return slots if parameters capture is enabled, otherwise null
+     */
+    static ParameterSlots create() {
+        return SniffyConfiguration.INSTANCE.isCaptureParameters() ? new ParameterSlots() : null;
+    }
+
+    void setNull(int parameterIndex) {
+        set(parameterIndex, NULL, 0, null);
+    }
+
+    void setLong(int parameterIndex, long value) {
+        set(parameterIndex, LONG, value, null);
+    }
+
+    void setDouble(int parameterIndex, double value) {
+        set(parameterIndex, DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    void setBoolean(int parameterIndex, boolean value) {
+        set(parameterIndex, BOOLEAN, value ? 1 : 0, null);
+    }
+
+    void setObject(int parameterIndex, Object value) {
+        set(parameterIndex, null == value ? NULL : OBJECT, 0, value);
+    }
+
+    /**
+     * @param type name of stream type, like "BinaryStream"; stream itself is never read
+     * @param length declared length or -1 if unknown
+     */
+    void setStream(int parameterIndex, String type, long length) {
+        set(parameterIndex, STREAM, length, type);
+    }
+
+    /**
+     * @param type name of LOB type, like "Blob"; LOB itself is never read
+     */
+    void setLob(int parameterIndex, String type) {
+        set(parameterIndex, LOB, 0, type);
+    }
+
+    /**
+     * Captures parameter bound using a {@code setXxx(int parameterIndex, ...)} method invoked via dynamic proxy
+     * @see JdbcMethodType#SET_PARAMETER
+     */
+    void set(Method method, Object[] args) {
+        int parameterIndex = (Integer) args[0];
+        String type = JdbcMethodType.parameterType(method);
+        if ("Null".equals(type)) {
+            setNull(parameterIndex);
+        } else if (type.endsWith("Stream")) {
+            setStream(parameterIndex, type, args.length > 2 && args[2] instanceof Number ? ((Number) args[2]).longValue() : -1);
+        } else if ("Blob".equals(type) || "Clob".equals(type) || "NClob".equals(type) ||
+                "SQLXML".equals(type) || "Ref".equals(type) || "Array".equals(type)) {
+            setLob(parameterIndex, type);
+        } else {
+            setObject(parameterIndex, args[1]);
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            types[i] = NONE;
+            objects[i] = null;
+        }
+        count = 0;
+        truncated = false;
+    }
+
+    boolean isEmpty() {
+        return 0 == count && !truncated;
+    }
+
+    /**
+     * Renders parameters if execution took longer than {@link SniffyConfiguration#getParametersThreshold()} or was
+     * selected by {@link SniffyConfiguration#getParametersSamplingPolicy()}, and publishes them to spies unless the
+     * statement itself wasn't sampled
+     * @param statementMetaData recorded statement or null if it wasn't sampled
+     * @param elapsedTime elapsed time in nanoseconds
+     * @return rendered parameters or null if they weren't retained
+     */
+    BindParameters retain(StatementMetaData statementMetaData, String sql, long elapsedTime) {
+        if (isEmpty()) return null;
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+        if (!sniffyConfiguration.isCaptureParameters()) return null;
+
+        int threshold = sniffyConfiguration.getParametersThreshold();
+        SamplingPolicy samplingPolicy = sniffyConfiguration.getParametersSamplingPolicy();
+        if ((threshold >= 0 && elapsedTime >= TimeUnit.MILLISECONDS.toNanos(threshold)) ||
+                (null != samplingPolicy && SamplingPolicy.NOT_SAMPLED != samplingPolicy.sampleStatement(sql))) {
+            BindParameters bindParameters = snapshot(elapsedTime, sniffyConfiguration.getParameterMaxLength());
+            if (null != statementMetaData) {
+                Sniffy.retainBindParameters(statementMetaData, bindParameters);
+            }
+            return bindParameters;
+        }
+        return null;
+    }
+
+    //@VisibleForTesting
+    BindParameters snapshot(long elapsedTime, int maxLength) {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = render(i, maxLength);
+        }
+        return new BindParameters(values, truncated, elapsedTime);
+    }
+
+    private void set(int parameterIndex, byte type, long primitive, Object object) {
+        int i = parameterIndex - 1;
+        if (i < 0) return;
+        if (i >= CAPACITY) {
+            truncated = true;
+            return;
+        }
+        types[i] = type;
+        primitives[i] = primitive;
+        objects[i] = object;
+        if (i >= count) count = i + 1;
+    }
+
+    private String render(int i, int maxLength) {
+        switch (types[i]) {
+            case NULL:
+                return "NULL";
+            case LONG:
+                return Long.toString(primitives[i]);
+            case DOUBLE:
+                return Double.toString(Double.longBitsToDouble(primitives[i]));
+            case BOOLEAN:
+                return 0 != primitives[i] ? "true" : "false";
+            case STREAM:
+                return primitives[i] >= 0 ?
+                        "<" + objects[i] + " length=" + primitives[i] + ">" :
+                        "<" + objects[i] + ">";
+            case LOB:
+                return "<" + objects[i] + ">";
+            case OBJECT:
+                return render(objects[i], maxLength);
+            default:
+                return null;
+        }
+    }
+
+    private static String render(Object value, int maxLength) {
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            int length = Math.min(bytes.length, maxLength);
+            StringBuilder sb = new StringBuilder(2 * length + 2).append("0x");
+            for (int i = 0; i < length; i++) {
+                sb.append(HEX[(bytes[i] >> 4) & 0xF]).append(HEX[bytes[i] & 0xF]);
+            }
+            if (bytes.length > length) sb.append("... (").append(bytes.length).append(" bytes)");
+            return sb.toString();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        } else {
+            String s = String.valueOf(value);
+            StringBuilder sb = new StringBuilder(Math.min(s.length(), maxLength) + 2).append('\'');
+            if (s.length() > maxLength) {
+                sb.append(s, 0, maxLength).append("...");
+            } else {
+                sb.append(s);
+            }
+            return sb.append('\'').toString();
+        }
+    }
+
+}
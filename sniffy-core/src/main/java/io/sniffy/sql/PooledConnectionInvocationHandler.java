@@ -5,7 +5,6 @@ import io.sniffy.Sniffy;
 import javax.sql.PooledConnection;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 
 class PooledConnectionInvocationHandler implements InvocationHandler {
@@ -32,7 +31,7 @@ class PooledConnectionInvocationHandler implements InvocationHandler {
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
         if ("getConnection".equals(method.getName())) {
-            long start = System.currentTimeMillis();
+            long start = System.nanoTime();
             try {
                 Sniffy.enterJdbcMethod();
 
@@ -43,13 +42,9 @@ class PooledConnectionInvocationHandler implements InvocationHandler {
 
                 SniffyDriver.checkConnectionAllowed(targetConnection, url, userName);
 
-                return Connection.class.cast(Proxy.newProxyInstance(
-                        PooledConnectionInvocationHandler.class.getClassLoader(),
-                        new Class[]{Connection.class},
-                        new ConnectionInvocationHandler(targetConnection, url, userName)
-                ));
+                return SniffyDriver.wrapConnection(targetConnection, url, userName);
             } finally {
-                Sniffy.exitJdbcMethod(GET_CONNECTION_METHOD, System.currentTimeMillis() - start);
+                Sniffy.exitJdbcMethodNanos(GET_CONNECTION_METHOD, System.nanoTime() - start);
             }
         } else {
             return method.invoke(delegate, args);
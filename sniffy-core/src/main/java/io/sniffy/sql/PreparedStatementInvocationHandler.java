@@ -8,19 +8,23 @@ class PreparedStatementInvocationHandler<T extends PreparedStatement> extends St
 
     private final String sql;
 
+    private volatile SqlStatement queryType;
+
+    private ParameterSlots parameterSlots;
+
     PreparedStatementInvocationHandler(T delegate, Connection sniffyConnectionProxy, String url, String userName, String sql) {
         super(delegate, sniffyConnectionProxy, url, userName);
         this.sql = sql;
     }
 
     @Override
-    public Object invokeImpl(T proxy, String methodName, Method method, Object[] args) throws Throwable {
+    Object invokeImpl(T proxy, JdbcMethodType methodType, Method method, Object[] args) throws Throwable {
 
         checkConnectionAllowed();
 
         Object result;
 
-        switch (StatementMethodType.parse(method.getName())) {
+        switch (methodType) {
             case ADD_BATCH:
                 addBatch(sql);
                 result = invokeTarget(method, args);
@@ -29,8 +33,21 @@ class PreparedStatementInvocationHandler<T extends PreparedStatement> extends St
                 clearBatch();
                 result = invokeTarget(method, args);
                 break;
+            case SET_PARAMETER:
+                ParameterSlots parameterSlots = getParameterSlots();
+                if (null != parameterSlots) {
+                    parameterSlots.set(method, args);
+                }
+                result = invokeTarget(method, args);
+                break;
+            case CLEAR_PARAMETERS:
+                if (null != this.parameterSlots) {
+                    this.parameterSlots.clear();
+                }
+                result = invokeTarget(method, args);
+                break;
             case EXECUTE_BATCH:
-                result = invokeTargetAndRecord(method, args, getBatchedSql(), true);
+                result = invokeTargetAndRecordBatch(method, args);
                 break;
             case EXECUTE_UPDATE:
                 result = invokeTargetAndRecord(method, args, null != args && args.length > 0 ? String.class.cast(args[0]) : sql, true);
@@ -38,7 +55,13 @@ class PreparedStatementInvocationHandler<T extends PreparedStatement> extends St
             case EXECUTE_SQL:
                 result =  invokeTargetAndRecord(method, args, null != args && args.length > 0 ? String.class.cast(args[0]) : sql, false);
                 break;
-            case OTHER:
+            case CLOSE:
+                try {
+                    result = invokeTarget(method, args);
+                } finally {
+                    flushResultSetRows();
+                }
+                break;
             default:
                 result = invokeTarget(method, args);
                 break;
@@ -49,7 +72,33 @@ class PreparedStatementInvocationHandler<T extends PreparedStatement> extends St
     }
 
     @Override
-    protected synchronized String getBatchedSql() {
+    protected SqlStatement getQueryType(String sql) {
+        //noinspection StringEquality
+        if (sql != this.sql) return super.getQueryType(sql);
+        SqlStatement queryType = this.queryType;
+        if (null == queryType) {
+            this.queryType = queryType = SqlUtil.guessQueryType(sql);
+        }
+        return queryType;
+    }
+
+    private ParameterSlots getParameterSlots() {
+        if (null == parameterSlots) {
+            parameterSlots = ParameterSlots.create();
+        }
+        return parameterSlots;
+    }
+
+    @Override
+    protected BindParameters retainBindParameters(String sql, long elapsedTime) {
+        //noinspection StringEquality
+        return null != parameterSlots && sql == this.sql ?
+                parameterSlots.retain(lastStatementMetaData, sql, elapsedTime) :
+                null;
+    }
+
+    @Override
+    protected String getBatchedSql() {
         String batchedSql = super.getBatchedSql();
         return null == batchedSql ? sql : batchedSql;
     }
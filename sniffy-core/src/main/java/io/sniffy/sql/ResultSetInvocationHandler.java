@@ -1,7 +1,5 @@
 package io.sniffy.sql;
 
-import io.sniffy.Sniffy;
-
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -9,23 +7,27 @@ import java.sql.ResultSet;
 // TODO: create a dedicated handler for RowSet
 class ResultSetInvocationHandler<T extends ResultSet> extends SniffyInvocationHandler<T> {
 
-    private final StatementMetaData statementMetaData;
+    private final ResultSetRowsAccumulator rowsAccumulator;
 
     ResultSetInvocationHandler(T delegate, Connection connectionProxy, String url, String userName, StatementMetaData statementMetaData) {
         super(connectionProxy, delegate, url, userName);
-        this.statementMetaData = statementMetaData;
+        this.rowsAccumulator = new ResultSetRowsAccumulator(statementMetaData);
     }
 
     @Override
-    public Object invokeImpl(T proxy, String methodName, Method method, Object[] args) throws Throwable {
+    Object invokeImpl(T proxy, JdbcMethodType methodType, Method method, Object[] args) throws Throwable {
 
         checkConnectionAllowed();
 
         // TODO: consider using fetch size for exact calculations
-        if ("next".equals(methodName) || "previous".equals(methodName) ||
-                "first".equals(methodName) || "last".equals(methodName) ||
-                "absolute".equals(methodName) || "relative".equals(methodName)) {
+        if (JdbcMethodType.READ_ROW == methodType) {
             return invokeTargetAndRecord(method, args);
+        } else if (JdbcMethodType.CLOSE == methodType) {
+            try {
+                return invokeTarget(method, args);
+            } finally {
+                flushRows();
+            }
         } else {
             return invokeTarget(method, args);
         }
@@ -34,21 +36,28 @@ class ResultSetInvocationHandler<T extends ResultSet> extends SniffyInvocationHa
 
     protected Object invokeTargetAndRecord(Method method, Object[] args) throws Throwable {
 
-        if (Sniffy.hasSpies()) {
-            long start = System.currentTimeMillis();
+        if (rowsAccumulator.enter()) {
+            long start = System.nanoTime();
+            boolean hasRow = false;
             try {
-                Sniffy.enterJdbcMethod();
                 Object result = invokeTargetImpl(method, args);
-                if (Boolean.TRUE.equals(result)) {
-                    Sniffy.readDatabaseRow(method, System.currentTimeMillis() - start, statementMetaData);
-                }
+                hasRow = Boolean.TRUE.equals(result);
                 return result;
             } finally {
-                Sniffy.exitJdbcMethod(method, System.currentTimeMillis() - start);
+                rowsAccumulator.exit(method, null, System.nanoTime() - start, hasRow);
             }
         } else {
             return invokeTargetImpl(method, args);
         }
 
     }
+
+    /**
+     * Publishes rows read since previous call to this method
+     * @since 3.1.10
+     */
+    void flushRows() {
+        rowsAccumulator.flush();
+    }
+
 }
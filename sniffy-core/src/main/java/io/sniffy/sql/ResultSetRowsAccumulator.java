@@ -0,0 +1,77 @@
+package io.sniffy.sql;
+
+import io.sniffy.Sniffy;
+import io.sniffy.SpyConfiguration;
+import io.sniffy.socket.SocketStats;
+
+import java.lang.reflect.Method;
+
+/**
+ * Counts rows read from a single {@link java.sql.ResultSet} locally and publishes them together with elapsed time and
+ * socket operations as a single event when result set is closed, exhausted or its statement is executed again
+ *
+ * Result sets are not thread safe, so no synchronization is used here
+ *
+ * @since 3.1.10
+ */
+class ResultSetRowsAccumulator {
+
+    private final StatementMetaData statementMetaData;
+
+    private boolean started;
+
+    // null if there were no spies when reading of current portion of rows started
+    private SocketStats socketStats;
+
+    private Method method;
+    private Method implMethod;
+    private long elapsedTime;
+    private int rows;
+
+    ResultSetRowsAccumulator(StatementMetaData statementMetaData) {
+        this.statementMetaData = statementMetaData;
+    }
+
+    /**
+     * @return true if navigation method should be measured and followed by {@link #exit(Method, Method, long, boolean)}
+     */
+    boolean enter() {
+        if (!started) {
+            started = true;
+            SpyConfiguration spyConfiguration = Sniffy.getEffectiveSpyConfiguration();
+            if (spyConfiguration.isCaptureJdbc() || spyConfiguration.isCaptureNetwork()) {
+                socketStats = new SocketStats(0, 0, 0);
+            }
+        }
+        if (null == socketStats) {
+            return false;
+        }
+        Sniffy.enterJdbcMethod(socketStats);
+        return true;
+    }
+
+    void exit(Method method, Method implMethod, long elapsedTime, boolean hasRow) {
+        Sniffy.exitJdbcMethod();
+        this.method = method;
+        this.implMethod = implMethod;
+        this.elapsedTime += elapsedTime;
+        if (hasRow) {
+            rows++;
+        } else {
+            flush();
+        }
+    }
+
+    void flush() {
+        if (null != socketStats && null != method) {
+            Sniffy.readDatabaseRows(method, elapsedTime, socketStats, statementMetaData, rows, implMethod);
+        }
+        started = false;
+        socketStats = null;
+        method = null;
+        implMethod = null;
+        elapsedTime = 0;
+        rows = 0;
+    }
+
+}
@@ -0,0 +1,625 @@
+package io.sniffy.sql;
+
+import io.sniffy.util.IOUtil;
+import io.sniffy.util.ReflectionUtil;
+import io.sniffy.util.StackTraceRegistry;
+import sun.misc.Unsafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journal of slow statements stored in a fixed-size memory-mapped ring file, so it survives application restarts
+ *
+ * Writers reserve space in the ring using a single atomic counter (logical offset which grows forever) and write a
+ * record directly into the mapped buffer; there are no locks, no file writes and no allocations. Each record starts
+ * with its own logical offset (masked, so it's unlikely to match record contents) which is written last: a record is valid only if the stored offset matches its position
+ * in the current or previous lap of the ring, so partially written and overwritten records are skipped by the reader.
+ *
+ * Writers invalidate the offset of a reserved record before writing its body and publish it with an ordered write
+ * afterwards. Readers copy a record and check its offset and the head again, seqlock-style, dropping records which were
+ * overwritten while being copied; a checksum of the record body catches records damaged by a stalled writer which was
+ * lapped by other writers. All lengths are validated before a copied record is decoded. Records which don't fit into a
+ * quarter of the ring are truncated, so appending a statement never fails.
+ *
+ * Statement fingerprints and stack traces are written as separate dictionary records once and then referenced by id;
+ * a dictionary record is written again when the previous one is about to be overwritten.
+ *
+ * File layout: header ({@value #HEADER_SIZE} bytes) followed by records aligned to 8 bytes.
+ *
+ * @see io.sniffy.configuration.SniffyConfiguration#getSlowQueryThreshold()
+ * @see io.sniffy.Sniffy#getSlowQueryJournal()
+ * @since 3.1.10
+ */
+public class SlowQueryJournal {
+
+    public static final String FILE_NAME = "slowQueries.journal";
+
+    private static final int MAGIC = 0x534E5153; // SNQS
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int CAPACITY_POSITION = 8;
+    private static final int HEAD_POSITION = 16;
+    static final int HEADER_SIZE = 32;
+
+    // record header: long offset, char length, byte type, byte kind, int checksum of the record body
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int MAX_RECORD_LENGTH = Character.MAX_VALUE & ~7;
+
+    private static final byte STATEMENT_RECORD = 1;
+    private static final byte TEXT_RECORD = 2;
+
+    private static final byte FINGERPRINT_TEXT = 1;
+    private static final byte STACK_TRACE_TEXT = 2;
+
+    // epoch, timestamp, fingerprint, elapsed time, bytes down, bytes up, thread id, rows updated, stack trace id, thread name and parameters lengths
+    private static final int STATEMENT_RECORD_SIZE = RECORD_HEADER_SIZE + 7 * 8 + 4 + 4 + 2 + 2;
+    // epoch, id, length
+    private static final int TEXT_RECORD_SIZE = RECORD_HEADER_SIZE + 8 + 8 + 4;
+
+    static final int MAX_THREAD_NAME_LENGTH = 128;
+    static final int MAX_PARAMETERS_LENGTH = 4096;
+    static final int MAX_TEXT_LENGTH = 16384;
+
+    private static final int DICTIONARY_SIZE = 1024;
+
+    // offset stored in a record which is being written
+    private static final long UNCOMMITTED = -1;
+
+    // stored offsets are masked, so small offsets of early laps don't match small numbers in record bodies
+    private static final long OFFSET_MASK = 0x5A5A5A5A5A5A5A5AL;
+
+    private static final boolean BIG_ENDIAN = ByteOrder.BIG_ENDIAN == ByteOrder.nativeOrder();
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel fileChannel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private final int maxRecordLength;
+
+    // address of the mapped buffer used for ordered access to record offsets; 0 if Unsafe isn't available
+    private final long address;
+
+    // accessed to order plain buffer reads and writes around record offsets
+    private volatile int fence;
+
+    private final AtomicLong head = new AtomicLong();
+
+    // identifies records written by this instance; stack trace ids are only unique within the same epoch
+    private final long epoch;
+
+    // direct-mapped tables: id and logical offset of the last dictionary record written for it
+    private final long[] fingerprintIds = new long[DICTIONARY_SIZE];
+    private final long[] fingerprintOffsets = new long[DICTIONARY_SIZE];
+    private final int[] stackTraceIds = new int[DICTIONARY_SIZE];
+    private final long[] stackTraceOffsets = new long[DICTIONARY_SIZE];
+
+    /**
+     * Opens journal in default location under {@link IOUtil#getApplicationSniffyFolder()}
+     * @param size size of the journal file in bytes
+     */
+    public static SlowQueryJournal open(int size) throws IOException {
+        return new SlowQueryJournal(new File(IOUtil.getApplicationSniffyFolder(), FILE_NAME), size);
+    }
+
+    /**
+     * Opens existing journal or creates a new one; existing journal is reset if it has different size
+     * @param size size of the journal file in bytes
+     * @throws IOException if file cannot be mapped or is used by another process
+     */
+    public SlowQueryJournal(File file, int size) throws IOException {
+        if (size < HEADER_SIZE + 1024) throw new IllegalArgumentException("Journal size must be at least 1 KB");
+
+        this.file = file;
+        this.capacity = (size - HEADER_SIZE) & ~7L;
+        this.maxRecordLength = (int) Math.min(capacity / 4, MAX_RECORD_LENGTH) & ~7;
+        this.epoch = System.currentTimeMillis();
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            fileChannel = randomAccessFile.getChannel();
+            fileLock = fileChannel.tryLock();
+            if (null == fileLock) {
+                throw new IOException("Slow query journal " + file + " is used by another process");
+            }
+            boolean existing = randomAccessFile.length() == size;
+            if (!existing) {
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(size);
+            }
+            buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            IOUtil.closeSilently(randomAccessFile);
+            throw e;
+        }
+        address = getAddress(buffer);
+
+        if (MAGIC == buffer.getInt(MAGIC_POSITION) &&
+                VERSION == buffer.getInt(VERSION_POSITION) &&
+                capacity == buffer.getLong(CAPACITY_POSITION)) {
+            head.set(recoverHead(buffer.getLong(HEAD_POSITION)));
+        } else {
+            buffer.putLong(HEAD_POSITION, 0);
+            buffer.putLong(CAPACITY_POSITION, capacity);
+            buffer.putInt(VERSION_POSITION, VERSION);
+            buffer.putInt(MAGIC_POSITION, MAGIC);
+        }
+    }
+
+    /**
+     * Head stored in the file header is updated after records are written and might be behind the last record
+     */
+    private long recoverHead(long storedHead) {
+        long head = storedHead & ~7L;
+        for (;;) {
+            long position = head % capacity;
+            if (isCommitted(head, position)) {
+                head += buffer.getChar(HEADER_SIZE + (int) position + 8);
+            } else if (0 != position && isCommitted(head + capacity - position, 0)) {
+                // writer skipped the tail of the ring
+                head += capacity - position;
+            } else {
+                return head;
+            }
+        }
+    }
+
+    private boolean isCommitted(long offset, long position) {
+        return position + RECORD_HEADER_SIZE <= capacity &&
+                getOffset(HEADER_SIZE + (int) position) == offset &&
+                isValidLength(position, buffer.getChar(HEADER_SIZE + (int) position + 8));
+    }
+
+    private static long getAddress(Buffer buffer) {
+        Unsafe unsafe = ReflectionUtil.UNSAFE;
+        if (null == unsafe || !buffer.isDirect()) return 0;
+        try {
+            return unsafe.getLong(buffer, unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address")));
+        } catch (NoSuchFieldException e) {
+            return 0;
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads offset of the record at given buffer index; subsequent reads of the record aren't reordered before it
+     */
+    private long getOffset(int index) {
+        long offset;
+        if (0 == address) {
+            offset = buffer.getLong(index);
+            //noinspection UnusedDeclaration
+            int acquire = fence;
+        } else {
+            offset = ReflectionUtil.UNSAFE.getLongVolatile(null, address + index);
+            if (!BIG_ENDIAN) offset = Long.reverseBytes(offset);
+        }
+        return offset ^ OFFSET_MASK;
+    }
+
+    /**
+     * Marks the record at given buffer index as uncommitted before its body is overwritten
+     */
+    private void invalidate(int index) {
+        if (0 == address) {
+            buffer.putLong(index, UNCOMMITTED);
+            fence = 0;
+        } else {
+            ReflectionUtil.UNSAFE.putLongVolatile(null, address + index, UNCOMMITTED);
+        }
+        //noinspection UnusedDeclaration
+        int acquire = fence;
+    }
+
+    /**
+     * Publishes the record at given buffer index; preceding writes of the record aren't reordered after it
+     */
+    private void putOffset(int index, long offset) {
+        offset ^= OFFSET_MASK;
+        if (0 == address) {
+            fence = 0;
+            buffer.putLong(index, offset);
+        } else {
+            ReflectionUtil.UNSAFE.putOrderedLong(null, address + index, BIG_ENDIAN ? offset : Long.reverseBytes(offset));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a statement to the journal
+     * Texts which don't fit into a record are truncated
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param rowsUpdated update count of the statement
+     * @param stackTraceId identifier of stack trace in {@link StackTraceRegistry} or {@link StackTraceRegistry#NO_STACK_TRACE}
+     * @param bindParameters parameters of prepared statement or null
+     */
+    public void append(long timestamp, String sql, long elapsedTime, int rowsUpdated, long bytesDown, long bytesUp,
+                       Thread thread, int stackTraceId, BindParameters bindParameters) {
+
+        SqlFingerprint sqlFingerprint = SqlFingerprint.of(sql);
+        long fingerprintId = null == sqlFingerprint ? 0 : sqlFingerprint.getHash();
+        if (null != sqlFingerprint) {
+            int slot = slot(fingerprintId);
+            if (fingerprintIds[slot] != fingerprintId || isStale(fingerprintOffsets[slot])) {
+                fingerprintOffsets[slot] = appendText(FINGERPRINT_TEXT, fingerprintId, sqlFingerprint.getFingerprint());
+                fingerprintIds[slot] = fingerprintId;
+            }
+        }
+
+        if (StackTraceRegistry.NO_STACK_TRACE != stackTraceId) {
+            int slot = slot(stackTraceId);
+            if (stackTraceIds[slot] != stackTraceId || isStale(stackTraceOffsets[slot])) {
+                String stackTrace = StackTraceRegistry.INSTANCE.getStackTrace(stackTraceId);
+                if (null != stackTrace) {
+                    stackTraceOffsets[slot] = appendText(STACK_TRACE_TEXT, stackTraceId, stackTrace);
+                    stackTraceIds[slot] = stackTraceId;
+                }
+            }
+        }
+
+        String threadName = thread.getName();
+        int threadNameLength = Math.min(threadName.length(), MAX_THREAD_NAME_LENGTH);
+        // rendering parameters allocates, but they are only retained for slow or sampled executions anyway
+        String parameters = null == bindParameters ? null : bindParameters.toString();
+        int parametersLength = null == parameters ? 0 : Math.min(parameters.length(), MAX_PARAMETERS_LENGTH);
+        int maxLength = (maxRecordLength - STATEMENT_RECORD_SIZE) / 2;
+        threadNameLength = Math.min(threadNameLength, maxLength);
+        parametersLength = Math.min(parametersLength, maxLength - threadNameLength);
+
+        int length = align(STATEMENT_RECORD_SIZE + 2 * (threadNameLength + parametersLength));
+        long offset = reserve(length);
+        int position = HEADER_SIZE + (int) (offset % capacity);
+        invalidate(position);
+
+        int p = position + RECORD_HEADER_SIZE;
+        buffer.putLong(p, epoch);
+        buffer.putLong(p + 8, timestamp);
+        buffer.putLong(p + 16, fingerprintId);
+        buffer.putLong(p + 24, elapsedTime);
+        buffer.putLong(p + 32, bytesDown);
+        buffer.putLong(p + 40, bytesUp);
+        buffer.putLong(p + 48, thread.getId());
+        buffer.putInt(p + 56, rowsUpdated);
+        buffer.putInt(p + 60, stackTraceId);
+        buffer.putShort(p + 64, (short) threadNameLength);
+        buffer.putShort(p + 66, (short) parametersLength);
+        p = putChars(p + 68, threadName, threadNameLength);
+        putChars(p, parameters, parametersLength);
+
+        commit(offset, position, length, STATEMENT_RECORD, (byte) 0);
+    }
+
+    private long appendText(byte kind, long id, String text) {
+        int textLength = Math.min(Math.min(text.length(), MAX_TEXT_LENGTH), (maxRecordLength - TEXT_RECORD_SIZE) / 2);
+        int length = align(TEXT_RECORD_SIZE + 2 * textLength);
+        long offset = reserve(length);
+        int position = HEADER_SIZE + (int) (offset % capacity);
+        invalidate(position);
+
+        int p = position + RECORD_HEADER_SIZE;
+        buffer.putLong(p, epoch);
+        buffer.putLong(p + 8, id);
+        buffer.putInt(p + 16, textLength);
+        putChars(p + 20, text, textLength);
+
+        commit(offset, position, length, TEXT_RECORD, kind);
+        return offset;
+    }
+
+    /**
+     * @param length record length which doesn't exceed {@link #maxRecordLength}
+     * @return logical offset of reserved space; reserved space never wraps around the end of the ring
+     */
+    private long reserve(int length) {
+        for (;;) {
+            long head = this.head.get();
+            long position = head % capacity;
+            // skip the tail of the ring if record doesn't fit
+            long offset = position + length > capacity ? head + capacity - position : head;
+            if (this.head.compareAndSet(head, offset + length)) {
+                return offset;
+            }
+        }
+    }
+
+    private void commit(long offset, int position, int length, byte type, byte kind) {
+        buffer.putChar(position + 8, (char) length);
+        buffer.put(position + 10, type);
+        buffer.put(position + 11, kind);
+        buffer.putInt(position + 12, checksum(buffer, position + RECORD_HEADER_SIZE, position + length));
+        putOffset(position, offset);
+        buffer.putLong(HEAD_POSITION, head.get());
+    }
+
+    private boolean isStale(long offset) {
+        return head.get() - offset > capacity / 2;
+    }
+
+    private int putChars(int position, String s, int length) {
+        for (int i = 0; i < length; i++, position += 2) {
+            buffer.putChar(position, s.charAt(i));
+        }
+        return position;
+    }
+
+    private static String getChars(ByteBuffer record, int position, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++, position += 2) {
+            chars[i] = record.getChar(position);
+        }
+        return new String(chars);
+    }
+
+    private boolean isValidLength(long position, int length) {
+        return length >= RECORD_HEADER_SIZE && length <= maxRecordLength && 0 == (length & 7) && position + length <= capacity;
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        long checksum = 0;
+        for (int i = from; i < to; i += 8) {
+            checksum = (checksum ^ buffer.getLong(i)) * 0x9E3779B97F4A7C15L;
+        }
+        return (int) (checksum ^ (checksum >>> 32));
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+
+    private static int slot(long id) {
+        id ^= (id >>> 33);
+        id *= 0xff51afd7ed558ccdL;
+        id ^= (id >>> 33);
+        return (int) id & (DICTIONARY_SIZE - 1);
+    }
+
+    /**
+     * Discards all records
+     */
+    public void clear() {
+        for (;;) {
+            long head = this.head.get();
+            // positions in the ring are compared against the current and previous laps, so skip two laps
+            long cleared = head - head % capacity + 2 * capacity;
+            if (this.head.compareAndSet(head, cleared)) {
+                buffer.putLong(HEAD_POSITION, cleared);
+                break;
+            }
+        }
+        for (int i = 0; i < DICTIONARY_SIZE; i++) {
+            fingerprintIds[i] = 0;
+            stackTraceIds[i] = StackTraceRegistry.NO_STACK_TRACE;
+        }
+    }
+
+    /**
+     * Decodes records from the oldest to the newest; records which are being written concurrently might be skipped
+     */
+    public List<Entry> getEntries() {
+
+        long head = this.head.get();
+        long headPosition = head % capacity;
+        long lapStart = head - headPosition;
+
+        List<Entry> entries = new ArrayList<Entry>();
+        Map<Long, String> fingerprints = new HashMap<Long, String>();
+        Map<Long, Map<Integer, String>> stackTraces = new HashMap<Long, Map<Integer, String>>();
+
+        // previous lap from head to the end of the ring followed by current lap from the start of the ring to head
+        scan(headPosition, capacity, lapStart - capacity, entries, fingerprints, stackTraces);
+        scan(0, headPosition, lapStart, entries, fingerprints, stackTraces);
+
+        for (Entry entry : entries) {
+            entry.sql = fingerprints.get(entry.fingerprintId);
+            Map<Integer, String> epochStackTraces = stackTraces.get(entry.epoch);
+            entry.stackTrace = null == epochStackTraces ? null : epochStackTraces.get(entry.stackTraceId);
+        }
+
+        return Collections.unmodifiableList(entries);
+    }
+
+    private void scan(long from, long to, long lapStart, List<Entry> entries,
+                      Map<Long, String> fingerprints, Map<Long, Map<Integer, String>> stackTraces) {
+        if (lapStart < 0) return;
+        ByteBuffer source = buffer.duplicate();
+        long position = from;
+        while (position + RECORD_HEADER_SIZE <= to) {
+            int p = HEADER_SIZE + (int) position;
+            long offset = lapStart + position;
+            if (getOffset(p) != offset) {
+                position += 8;
+                continue;
+            }
+            int length = buffer.getChar(p + 8);
+            if (!isValidLength(position, length) || position + length > to) {
+                position += 8;
+                continue;
+            }
+            byte[] record = new byte[length];
+            source.position(p);
+            source.get(record);
+            fence = 0;
+            ByteBuffer copy = ByteBuffer.wrap(record);
+            if (getOffset(p) != offset || head.get() - offset > capacity ||
+                    copy.getInt(12) != checksum(copy, RECORD_HEADER_SIZE, length)) {
+                // overwritten while being copied, either by a record at the same position or by overlapping records,
+                // or overwritten by a writer which was lapped by other writers while writing its own record
+                position += 8;
+                continue;
+            }
+            decode(copy, length, entries, fingerprints, stackTraces);
+            position += length;
+        }
+    }
+
+    /**
+     * Decodes a copied record; records with inconsistent lengths are ignored
+     */
+    private static void decode(ByteBuffer record, int length, List<Entry> entries,
+                               Map<Long, String> fingerprints, Map<Long, Map<Integer, String>> stackTraces) {
+        byte type = record.get(10);
+        byte kind = record.get(11);
+        int p = RECORD_HEADER_SIZE;
+        if (STATEMENT_RECORD == type && STATEMENT_RECORD_SIZE <= length) {
+            int threadNameLength = record.getShort(p + 64);
+            int parametersLength = record.getShort(p + 66);
+            if (threadNameLength < 0 || parametersLength < 0 ||
+                    STATEMENT_RECORD_SIZE + 2 * (threadNameLength + parametersLength) > length) {
+                return;
+            }
+            Entry entry = new Entry();
+            entry.epoch = record.getLong(p);
+            entry.timestamp = record.getLong(p + 8);
+            entry.fingerprintId = record.getLong(p + 16);
+            entry.elapsedTime = record.getLong(p + 24);
+            entry.bytesDown = record.getLong(p + 32);
+            entry.bytesUp = record.getLong(p + 40);
+            entry.threadId = record.getLong(p + 48);
+            entry.rowsUpdated = record.getInt(p + 56);
+            entry.stackTraceId = record.getInt(p + 60);
+            entry.threadName = getChars(record, p + 68, threadNameLength);
+            entry.parameters = 0 == parametersLength ? null :
+                    getChars(record, p + 68 + 2 * threadNameLength, parametersLength);
+            entries.add(entry);
+        } else if (TEXT_RECORD == type && TEXT_RECORD_SIZE <= length) {
+            int textLength = record.getInt(p + 16);
+            if (textLength < 0 || TEXT_RECORD_SIZE + 2L * textLength > length) {
+                return;
+            }
+            long epoch = record.getLong(p);
+            long id = record.getLong(p + 8);
+            String text = getChars(record, p + 20, textLength);
+            if (FINGERPRINT_TEXT == kind) {
+                fingerprints.put(id, text);
+            } else {
+                Map<Integer, String> epochStackTraces = stackTraces.get(epoch);
+                if (null == epochStackTraces) {
+                    stackTraces.put(epoch, epochStackTraces = new HashMap<Integer, String>());
+                }
+                epochStackTraces.put((int) id, text);
+            }
+        }
+    }
+
+    /**
+     * Flushes the journal and releases the file lock; journal must not be used after it's closed
+     * @throws IOException if the file lock cannot be released; the file is closed anyway
+     */
+    public void close() throws IOException {
+        try {
+            buffer.force();
+            fileLock.release();
+        } finally {
+            IOUtil.closeSilently(randomAccessFile);
+        }
+    }
+
+    /**
+     * Slow statement decoded from the journal
+     */
+    public static class Entry {
+
+        private long epoch;
+        private long timestamp;
+        private long fingerprintId;
+        private String sql;
+        private long elapsedTime;
+        private int rowsUpdated;
+        private long bytesDown;
+        private long bytesUp;
+        private long threadId;
+        private String threadName;
+        private int stackTraceId;
+        private String stackTrace;
+        private String parameters;
+
+        /**
+         * @return time when statement was executed in milliseconds since epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return {@link SqlFingerprint#getHash()} of the statement
+         */
+        public long getFingerprintId() {
+            return fingerprintId;
+        }
+
+        /**
+         * @return fingerprint of the statement or null if it was overwritten
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return elapsed time in nanoseconds
+         */
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+
+        /**
+         * @return update count of the statement; result set rows aren't counted
+         */
+        public int getRowsUpdated() {
+            return rowsUpdated;
+        }
+
+        public long getBytesDown() {
+            return bytesDown;
+        }
+
+        public long getBytesUp() {
+            return bytesUp;
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * @return stack trace or null if it wasn't captured or was overwritten
+         */
+        public String getStackTrace() {
+            return stackTrace;
+        }
+
+        /**
+         * @return rendered bind parameters or null if they weren't captured
+         * @see BindParameters#toString()
+         */
+        public String getParameters() {
+            return parameters;
+        }
+
+    }
+
+}
@@ -9,8 +9,10 @@ import java.io.PrintWriter;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -71,6 +73,21 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
     private final XADataSource xaDataSource;
     private final ConnectionPoolDataSource connectionPoolDataSource;
 
+    /**
+     * URL and user name of connections returned by {@link #getConnection()}; resolved from the first connection since
+     * connection metadata might require a round trip to the database
+     * @see #invalidateMetaDataCache()
+     * @since 3.1.10
+     */
+    private volatile ConnectionMetaData connectionMetaData;
+
+    /**
+     * URLs of connections returned by {@link #getConnection(String, String)} grouped by user name; passwords aren't
+     * retained since they don't affect connection URL
+     * @since 3.1.10
+     */
+    private final ConcurrentHashMap<String, String> urlsByUserName = new ConcurrentHashMap<String, String>();
+
     @SuppressWarnings("unchecked")
     public static <
             T extends CommonDataSource,
@@ -93,7 +110,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return dataSource.getConnection();
 
         Connection delegateConnection;
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         String url;
         String userName;
@@ -102,20 +119,20 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
             Sniffy.enterJdbcMethod();
             delegateConnection = dataSource.getConnection();
 
-            // TODO: cache these parameters
-            url = delegateConnection.getMetaData().getURL();
-            userName = delegateConnection.getMetaData().getUserName();
+            ConnectionMetaData connectionMetaData = this.connectionMetaData;
+            if (null == connectionMetaData) {
+                DatabaseMetaData metaData = delegateConnection.getMetaData();
+                this.connectionMetaData = connectionMetaData = new ConnectionMetaData(metaData.getURL(), metaData.getUserName());
+            }
+            url = connectionMetaData.url;
+            userName = connectionMetaData.userName;
 
             SniffyDriver.checkConnectionAllowed(url, userName);
         } finally {
-            Sniffy.exitJdbcMethod(GET_CONNECTION_METHOD, System.currentTimeMillis() - start, GET_CONNECTION_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(GET_CONNECTION_METHOD, System.nanoTime() - start, GET_CONNECTION_METHOD_IMPL);
         }
 
-        return Connection.class.cast(Proxy.newProxyInstance(
-                SniffyDriver.class.getClassLoader(),
-                new Class[]{Connection.class},
-                new ConnectionInvocationHandler(delegateConnection, url, userName)
-        ));
+        return SniffyDriver.wrapConnection(delegateConnection, url, userName);
     }
 
     @Override
@@ -126,7 +143,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return dataSource.getConnection(userName, password);
 
         Connection delegateConnection;
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         String url;
 
@@ -134,18 +151,21 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
             Sniffy.enterJdbcMethod();
             delegateConnection = dataSource.getConnection(userName, password);
 
-            url = delegateConnection.getMetaData().getURL();
+            String key = null == userName ? "" : userName;
+            url = urlsByUserName.get(key);
+            if (null == url) {
+                url = delegateConnection.getMetaData().getURL();
+                if (null != url) {
+                    urlsByUserName.put(key, url);
+                }
+            }
 
             SniffyDriver.checkConnectionAllowed(url, userName);
         } finally {
-            Sniffy.exitJdbcMethod(GET_CONNECTION_WITH_CREDENTIALS_METHOD, System.currentTimeMillis() - start, GET_CONNECTION_WITH_CREDENTIALS_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(GET_CONNECTION_WITH_CREDENTIALS_METHOD, System.nanoTime() - start, GET_CONNECTION_WITH_CREDENTIALS_METHOD_IMPL);
         }
 
-        return Connection.class.cast(Proxy.newProxyInstance(
-                SniffyDriver.class.getClassLoader(),
-                new Class[]{Connection.class},
-                new ConnectionInvocationHandler(delegateConnection, url, userName)
-        ));
+        return SniffyDriver.wrapConnection(delegateConnection, url, userName);
     }
 
     @Override
@@ -155,7 +175,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
 
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return xaDataSource.getXAConnection();
 
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         try {
             Sniffy.enterJdbcMethod();
@@ -165,7 +185,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
                     new PooledConnectionInvocationHandler(xaDataSource.getXAConnection())
             ));
         } finally {
-            Sniffy.exitJdbcMethod(GET_XA_CONNECTION_METHOD, System.currentTimeMillis() - start, GET_XA_CONNECTION_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(GET_XA_CONNECTION_METHOD, System.nanoTime() - start, GET_XA_CONNECTION_METHOD_IMPL);
         }
 
     }
@@ -177,7 +197,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
 
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return xaDataSource.getXAConnection(user, password);
 
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         try {
             Sniffy.enterJdbcMethod();
@@ -187,7 +207,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
                     new PooledConnectionInvocationHandler(xaDataSource.getXAConnection(user, password))
             ));
         } finally {
-            Sniffy.exitJdbcMethod(GET_XA_CONNECTION_WITH_CREDENTIALS_METHOD, System.currentTimeMillis() - start, GET_XA_CONNECTION_WITH_CREDENTIALS_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(GET_XA_CONNECTION_WITH_CREDENTIALS_METHOD, System.nanoTime() - start, GET_XA_CONNECTION_WITH_CREDENTIALS_METHOD_IMPL);
         }
 
     }
@@ -199,7 +219,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
 
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return connectionPoolDataSource.getPooledConnection();
 
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         try {
             Sniffy.enterJdbcMethod();
@@ -209,7 +229,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
                     new PooledConnectionInvocationHandler(connectionPoolDataSource.getPooledConnection())
             ));
         } finally {
-            Sniffy.exitJdbcMethod(GET_POOLED_CONNECTION_METHOD, System.currentTimeMillis() - start, GET_POOLED_CONNECTION_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(GET_POOLED_CONNECTION_METHOD, System.nanoTime() - start, GET_POOLED_CONNECTION_METHOD_IMPL);
         }
 
     }
@@ -221,7 +241,7 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
 
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return connectionPoolDataSource.getPooledConnection(user, password);
 
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             Sniffy.enterJdbcMethod();
             return PooledConnection.class.cast(Proxy.newProxyInstance(
@@ -230,11 +250,20 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
                     new PooledConnectionInvocationHandler(connectionPoolDataSource.getPooledConnection(user, password))
             ));
         } finally {
-            Sniffy.exitJdbcMethod(GET_POOLED_CONNECTION_WITH_CREDENTIALS_METHOD, System.currentTimeMillis() - start, GET_POOLED_CONNECTION_WITH_CREDENTIALS_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(GET_POOLED_CONNECTION_WITH_CREDENTIALS_METHOD, System.nanoTime() - start, GET_POOLED_CONNECTION_WITH_CREDENTIALS_METHOD_IMPL);
         }
 
     }
 
+    /**
+     * Discards cached URL and user name of target data source; should be called if target data source is reconfigured
+     * @since 3.1.10
+     */
+    public void invalidateMetaDataCache() {
+        connectionMetaData = null;
+        urlsByUserName.clear();
+    }
+
     @Override
     public PrintWriter getLogWriter() throws SQLException {
         return dataSource.getLogWriter();
@@ -276,4 +305,16 @@ public class SniffyDataSource implements DataSource, XADataSource, ConnectionPoo
         return iface.isAssignableFrom(target.getClass()) || dataSource.isWrapperFor(iface);
     }
 
+    private static class ConnectionMetaData {
+
+        private final String url;
+        private final String userName;
+
+        private ConnectionMetaData(String url, String userName) {
+            this.url = url;
+            this.userName = userName;
+        }
+
+    }
+
 }
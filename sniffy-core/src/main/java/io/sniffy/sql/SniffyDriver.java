@@ -104,6 +104,23 @@ public class SniffyDriver implements Driver, Constants {
         }
     }
 
+    /**
+     * Wraps given connection either with a dynamic proxy or with a delegating class depending on
+     * {@link SniffyConfiguration#isJdbcWrappers()}
+     * @since 3.1.10
+     */
+    static Connection wrapConnection(Connection delegateConnection, String url, String userName) {
+        if (SniffyConfiguration.INSTANCE.isJdbcWrappers()) {
+            return JdbcSupport.newConnection(delegateConnection, url, userName);
+        } else {
+            return Connection.class.cast(Proxy.newProxyInstance(
+                    SniffyDriver.class.getClassLoader(),
+                    new Class[]{Connection.class},
+                    new ConnectionInvocationHandler(delegateConnection, url, userName)
+            ));
+        }
+    }
+
     private static void sleepImpl(int status) throws InterruptedException {
         Thread.sleep(status);
     }
@@ -131,17 +148,13 @@ public class SniffyDriver implements Driver, Constants {
 
         if (!SniffyConfiguration.INSTANCE.isMonitorJdbc()) return originDriver.connect(originUrl, info);
 
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             Sniffy.enterJdbcMethod();
             Connection delegateConnection = originDriver.connect(originUrl, info);
-            return Connection.class.cast(Proxy.newProxyInstance(
-                    SniffyDriver.class.getClassLoader(),
-                    new Class[]{Connection.class},
-                    new ConnectionInvocationHandler(delegateConnection, originUrl, userName)
-            ));
+            return wrapConnection(delegateConnection, originUrl, userName);
         } finally {
-            Sniffy.exitJdbcMethod(CONNECT_METHOD, System.currentTimeMillis() - start, CONNECT_METHOD_IMPL);
+            Sniffy.exitJdbcMethodNanos(CONNECT_METHOD, System.nanoTime() - start, CONNECT_METHOD_IMPL);
         }
     }
 
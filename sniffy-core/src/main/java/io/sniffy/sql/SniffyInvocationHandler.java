@@ -27,12 +27,12 @@ class SniffyInvocationHandler<T extends Wrapper> extends JdbcInvocationHandler<T
     }
 
     protected Object invokeTarget(Method method, Object[] args) throws Throwable {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             Sniffy.enterJdbcMethod();
             return invokeTargetImpl(method, args);
         } finally {
-            Sniffy.exitJdbcMethod(method, System.currentTimeMillis() - start);
+            Sniffy.exitJdbcMethodNanos(method, System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,536 @@
+package io.sniffy.sql;
+
+import io.sniffy.Sniffy;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Delegating {@link PreparedStatement} used instead of dynamic proxy if {@link io.sniffy.configuration.SniffyConfiguration#isJdbcWrappers()} is enabled
+ *
+ * @see PreparedStatementInvocationHandler
+ * @since 3.1.10
+ */
+class SniffyPreparedStatement<T extends PreparedStatement> extends SniffyStatement<T> implements PreparedStatement {
+
+    private final static Method EXECUTE_METHOD =
+            getMethod(PreparedStatement.class, "execute");
+    private final static Method EXECUTE_QUERY_METHOD =
+            getMethod(PreparedStatement.class, "executeQuery");
+    private final static Method EXECUTE_UPDATE_METHOD =
+            getMethod(PreparedStatement.class, "executeUpdate");
+    private final static Method EXECUTE_LARGE_UPDATE_METHOD =
+            getMethod(PreparedStatement.class, "executeLargeUpdate");
+
+    private final static Method EXECUTE_METHOD_IMPL =
+            getMethod(SniffyPreparedStatement.class, "execute");
+    private final static Method EXECUTE_QUERY_METHOD_IMPL =
+            getMethod(SniffyPreparedStatement.class, "executeQuery");
+    private final static Method EXECUTE_UPDATE_METHOD_IMPL =
+            getMethod(SniffyPreparedStatement.class, "executeUpdate");
+    private final static Method EXECUTE_LARGE_UPDATE_METHOD_IMPL =
+            getMethod(SniffyPreparedStatement.class, "executeLargeUpdate");
+
+    protected final String sql;
+
+    private volatile SqlStatement queryType;
+
+    private ParameterSlots parameterSlots;
+
+    SniffyPreparedStatement(T delegate, Connection connection, String url, String userName, String sql) {
+        super(delegate, connection, url, userName);
+        this.sql = sql;
+    }
+
+    @Override
+    protected SqlStatement getQueryType(String sql) {
+        //noinspection StringEquality
+        if (sql != this.sql) return super.getQueryType(sql);
+        SqlStatement queryType = this.queryType;
+        if (null == queryType) {
+            this.queryType = queryType = SqlUtil.guessQueryType(sql);
+        }
+        return queryType;
+    }
+
+    private ParameterSlots getParameterSlots() {
+        if (null == parameterSlots) {
+            parameterSlots = ParameterSlots.create();
+        }
+        return parameterSlots;
+    }
+
+    @Override
+    protected BindParameters retainBindParameters(String sql, long elapsedTime) {
+        //noinspection StringEquality
+        return null != parameterSlots && sql == this.sql ?
+                parameterSlots.retain(lastStatementMetaData, sql, elapsedTime) :
+                null;
+    }
+
+    @Override
+    protected String getBatchedSql() {
+        String batchedSql = super.getBatchedSql();
+        return null == batchedSql ? sql : batchedSql;
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        ResultSet resultSet;
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            resultSet = delegate.executeQuery();
+        } finally {
+            recordStatement(EXECUTE_QUERY_METHOD, EXECUTE_QUERY_METHOD_IMPL, sql, start, 0);
+        }
+        return wrapResultSet(resultSet);
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            int result = delegate.executeUpdate();
+            rowsUpdated = result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_UPDATE_METHOD, EXECUTE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setNull(parameterIndex);
+        delegate.setNull(parameterIndex, sqlType);
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setBoolean(parameterIndex, x);
+        delegate.setBoolean(parameterIndex, x);
+    }
+
+    @Override
+    public void setByte(int parameterIndex, byte x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLong(parameterIndex, x);
+        delegate.setByte(parameterIndex, x);
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLong(parameterIndex, x);
+        delegate.setShort(parameterIndex, x);
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLong(parameterIndex, x);
+        delegate.setInt(parameterIndex, x);
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLong(parameterIndex, x);
+        delegate.setLong(parameterIndex, x);
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setDouble(parameterIndex, x);
+        delegate.setFloat(parameterIndex, x);
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setDouble(parameterIndex, x);
+        delegate.setDouble(parameterIndex, x);
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setBigDecimal(parameterIndex, x);
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setString(parameterIndex, x);
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setBytes(parameterIndex, x);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setDate(parameterIndex, x);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setTime(parameterIndex, x);
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setTimestamp(parameterIndex, x);
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "AsciiStream", length);
+        delegate.setAsciiStream(parameterIndex, x, length);
+    }
+
+    @Override
+    @Deprecated
+    public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "UnicodeStream", length);
+        delegate.setUnicodeStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "BinaryStream", length);
+        delegate.setBinaryStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        if (null != parameterSlots) parameterSlots.clear();
+        delegate.clearParameters();
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setObject(parameterIndex, x, targetSqlType);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setObject(parameterIndex, x);
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            return delegate.execute();
+        } finally {
+            recordStatement(EXECUTE_METHOD, EXECUTE_METHOD_IMPL, sql, start, 0);
+        }
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        addBatchedSql(sql);
+        delegate.addBatch();
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "CharacterStream", length);
+        delegate.setCharacterStream(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setRef(int parameterIndex, Ref x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Ref");
+        delegate.setRef(parameterIndex, x);
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, Blob x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Blob");
+        delegate.setBlob(parameterIndex, x);
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Clob x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Clob");
+        delegate.setClob(parameterIndex, x);
+    }
+
+    @Override
+    public void setArray(int parameterIndex, Array x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Array");
+        delegate.setArray(parameterIndex, x);
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return delegate.getMetaData();
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setDate(parameterIndex, x, cal);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setTime(parameterIndex, x, cal);
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setTimestamp(parameterIndex, x, cal);
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setNull(parameterIndex);
+        delegate.setNull(parameterIndex, sqlType, typeName);
+    }
+
+    @Override
+    public void setURL(int parameterIndex, URL x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setURL(parameterIndex, x);
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return delegate.getParameterMetaData();
+    }
+
+    @Override
+    public void setRowId(int parameterIndex, RowId x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setRowId(parameterIndex, x);
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String value) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, value);
+        delegate.setNString(parameterIndex, value);
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "NCharacterStream", length);
+        delegate.setNCharacterStream(parameterIndex, value, length);
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, NClob value) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "NClob");
+        delegate.setNClob(parameterIndex, value);
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Clob");
+        delegate.setClob(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Blob");
+        delegate.setBlob(parameterIndex, inputStream, length);
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "NClob");
+        delegate.setNClob(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "SQLXML");
+        delegate.setSQLXML(parameterIndex, xmlObject);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "AsciiStream", length);
+        delegate.setAsciiStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "BinaryStream", length);
+        delegate.setBinaryStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "CharacterStream", length);
+        delegate.setCharacterStream(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "AsciiStream", -1);
+        delegate.setAsciiStream(parameterIndex, x);
+    }
+
+    @Override
+    public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "BinaryStream", -1);
+        delegate.setBinaryStream(parameterIndex, x);
+    }
+
+    @Override
+    public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "CharacterStream", -1);
+        delegate.setCharacterStream(parameterIndex, reader);
+    }
+
+    @Override
+    public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setStream(parameterIndex, "NCharacterStream", -1);
+        delegate.setNCharacterStream(parameterIndex, value);
+    }
+
+    @Override
+    public void setClob(int parameterIndex, Reader reader) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Clob");
+        delegate.setClob(parameterIndex, reader);
+    }
+
+    @Override
+    public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "Blob");
+        delegate.setBlob(parameterIndex, inputStream);
+    }
+
+    @Override
+    public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setLob(parameterIndex, "NClob");
+        delegate.setNClob(parameterIndex, reader);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+        ParameterSlots parameterSlots = getParameterSlots();
+        if (null != parameterSlots) parameterSlots.setObject(parameterIndex, x);
+        delegate.setObject(parameterIndex, x, targetSqlType);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long executeLargeUpdate() throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            long result = delegate.executeLargeUpdate();
+            rowsUpdated = (int) result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_LARGE_UPDATE_METHOD, EXECUTE_LARGE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+
+
+}
@@ -0,0 +1,654 @@
+package io.sniffy.sql;
+
+import io.sniffy.Sniffy;
+import io.sniffy.SpyConfiguration;
+import io.sniffy.configuration.SamplingPolicy;
+import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.util.StackTraceRegistry;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+import static io.sniffy.util.StackTraceExtractor.getTraceForImplementingMethod;
+
+/**
+ * Delegating {@link Statement} used instead of dynamic proxy if {@link io.sniffy.configuration.SniffyConfiguration#isJdbcWrappers()} is enabled
+ *
+ * Only execute and batch methods are instrumented; other methods are plain delegating calls
+ *
+ * @see StatementInvocationHandler
+ * @since 3.1.10
+ */
+class SniffyStatement<T extends Statement> implements Statement {
+
+    private final static Method EXECUTE_METHOD =
+            getMethod(Statement.class, "execute", String.class);
+    private final static Method EXECUTE_QUERY_METHOD =
+            getMethod(Statement.class, "executeQuery", String.class);
+    private final static Method EXECUTE_UPDATE_METHOD =
+            getMethod(Statement.class, "executeUpdate", String.class);
+    private final static Method EXECUTE_LARGE_UPDATE_METHOD =
+            getMethod(Statement.class, "executeLargeUpdate", String.class);
+    private final static Method EXECUTE_BATCH_METHOD =
+            getMethod(Statement.class, "executeBatch");
+    private final static Method EXECUTE_LARGE_BATCH_METHOD =
+            getMethod(Statement.class, "executeLargeBatch");
+
+    private final static Method EXECUTE_METHOD_IMPL =
+            getMethod(SniffyStatement.class, "execute", String.class);
+    private final static Method EXECUTE_QUERY_METHOD_IMPL =
+            getMethod(SniffyStatement.class, "executeQuery", String.class);
+    private final static Method EXECUTE_UPDATE_METHOD_IMPL =
+            getMethod(SniffyStatement.class, "executeUpdate", String.class);
+    private final static Method EXECUTE_LARGE_UPDATE_METHOD_IMPL =
+            getMethod(SniffyStatement.class, "executeLargeUpdate", String.class);
+    private final static Method EXECUTE_BATCH_METHOD_IMPL =
+            getMethod(SniffyStatement.class, "executeBatch");
+    private final static Method EXECUTE_LARGE_BATCH_METHOD_IMPL =
+            getMethod(SniffyStatement.class, "executeLargeBatch");
+
+    static Method getMethod(Class<?> clazz, String methodName, Class<?>... arguments) {
+        try {
+            return clazz.getMethod(methodName, arguments);
+        } catch (NoSuchMethodException e) {
+            // method isn't available in current JDBC version and cannot be called
+            return null;
+        }
+    }
+
+    protected final T delegate;
+    protected final Connection connection;
+    protected final String url;
+    protected final String userName;
+
+    private final StatementBatch batch = new StatementBatch();
+
+    StatementMetaData lastStatementMetaData;
+
+    private SniffyResultSet lastResultSet;
+
+    SniffyStatement(T delegate, Connection connection, String url, String userName) {
+        this.delegate = delegate;
+        this.connection = connection;
+        this.url = url;
+        this.userName = userName;
+    }
+
+    protected void checkConnectionAllowed(boolean sleep) throws SQLException {
+        SniffyDriver.checkConnectionAllowed(url, userName, sleep);
+    }
+
+    protected void recordStatement(Method method, Method implMethod, String sql, long start, int rowsUpdated) {
+        record(method, implMethod, sql, System.nanoTime() - start, rowsUpdated, -1, 0, 0);
+    }
+
+    /**
+     * Records executed batch as a single statement if all statements in it have the same SQL, otherwise as a separate
+     * statement for each {@link SqlFingerprint}; elapsed time is split between them proportionally to the number of
+     * statements and socket operations are attributed to the first one
+     * @param batchSize number of statements in executed batch
+     * @since 3.1.10
+     */
+    protected void recordBatch(Method method, Method implMethod, long start, int batchSize) {
+        long elapsedTime = System.nanoTime() - start;
+        int groups = batch.getGroups();
+        if (groups <= 1) {
+            record(method, implMethod, getBatchedSql(), elapsedTime, batch.getRowsUpdated(0),
+                    batchSize, batch.getSuccessNoInfoStatements(0), batch.getFailedStatements(0));
+        } else {
+            for (int group = 0; group < groups; group++) {
+                if (group > 0) {
+                    // each recorded statement exits its own JDBC method
+                    Sniffy.enterJdbcMethod();
+                }
+                int groupSize = batch.size(group);
+                record(method, implMethod, batch.getSql(group), elapsedTime * groupSize / batch.size(), batch.getRowsUpdated(group),
+                        groupSize, batch.getSuccessNoInfoStatements(group), batch.getFailedStatements(group));
+            }
+        }
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param batchSize number of statements in executed batch or -1 if statement wasn't executed as a batch
+     */
+    private void record(Method method, Method implMethod, String sql, long elapsedTime, int rowsUpdated,
+                        int batchSize, int successNoInfoStatements, int failedStatements) {
+        flushResultSetRows();
+        Sniffy.logSqlTimeNanos(sql, elapsedTime);
+        SpyConfiguration spyConfiguration = Sniffy.getEffectiveSpyConfiguration();
+        int samplingWeight = spyConfiguration.isCaptureJdbc() || spyConfiguration.isCaptureNetwork() ?
+                SniffyConfiguration.INSTANCE.getSamplingPolicy().sampleStatement(sql) :
+                SamplingPolicy.NOT_SAMPLED;
+        int stackTraceId = StackTraceRegistry.NO_STACK_TRACE;
+        if (SamplingPolicy.NOT_SAMPLED != samplingWeight) {
+            if (spyConfiguration.isCaptureStackTraces()) {
+                try {
+                    stackTraceId = StackTraceRegistry.INSTANCE.register(getTraceForImplementingMethod(method, implMethod));
+                } catch (ClassNotFoundException e) {
+                    e.printStackTrace();
+                }
+            }
+            lastStatementMetaData = batchSize < 0 ?
+                    Sniffy.executeStatement(sql, getQueryType(sql), elapsedTime, stackTraceId, rowsUpdated, samplingWeight) :
+                    Sniffy.executeBatch(sql, getQueryType(sql), elapsedTime, stackTraceId,
+                            batchSize, rowsUpdated, successNoInfoStatements, failedStatements, samplingWeight);
+        } else {
+            // statements which weren't sampled are only counted
+            lastStatementMetaData = null;
+            Sniffy.skipStatement();
+        }
+        Sniffy.logSlowStatement(sql, elapsedTime, stackTraceId, rowsUpdated, retainBindParameters(sql, elapsedTime));
+    }
+
+    protected SqlStatement getQueryType(String sql) {
+        return SqlUtil.guessQueryType(sql);
+    }
+
+    /**
+     * Retains parameters bound to this statement if execution was slow or sampled
+     * @param elapsedTime elapsed time in nanoseconds
+     * @return retained parameters or null
+     * @since 3.1.10
+     */
+    protected BindParameters retainBindParameters(String sql, long elapsedTime) {
+        return null;
+    }
+
+    protected ResultSet wrapResultSet(ResultSet resultSet) {
+        if (null == resultSet) return null;
+        flushResultSetRows();
+        return lastResultSet = new SniffyResultSet(resultSet, this, url, userName, lastStatementMetaData);
+    }
+
+    /**
+     * Rows read from result set are published when statement is executed again or closed
+     * @since 3.1.10
+     */
+    protected void flushResultSetRows() {
+        SniffyResultSet resultSet = lastResultSet;
+        if (null != resultSet) {
+            lastResultSet = null;
+            resultSet.flushRows();
+        }
+    }
+
+    protected void addBatchedSql(String sql) {
+        batch.add(sql);
+    }
+
+    protected void clearBatchedSql() {
+        batch.clear();
+    }
+
+    /**
+     * @return SQL representing the whole batch if all statements in it have the same SQL
+     */
+    protected String getBatchedSql() {
+        return batch.getSql(0);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return delegate.isWrapperFor(iface);
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        ResultSet resultSet;
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            resultSet = delegate.executeQuery(sql);
+        } finally {
+            recordStatement(EXECUTE_QUERY_METHOD, EXECUTE_QUERY_METHOD_IMPL, sql, start, 0);
+        }
+        return wrapResultSet(resultSet);
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            int result = delegate.executeUpdate(sql);
+            rowsUpdated = result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_UPDATE_METHOD, EXECUTE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            delegate.close();
+        } finally {
+            flushResultSetRows();
+        }
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return delegate.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        delegate.setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return delegate.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        delegate.setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        delegate.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return delegate.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        delegate.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        delegate.cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return delegate.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        delegate.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        delegate.setCursorName(name);
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            return delegate.execute(sql);
+        } finally {
+            recordStatement(EXECUTE_METHOD, EXECUTE_METHOD_IMPL, sql, start, 0);
+        }
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return wrapResultSet(delegate.getResultSet());
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return delegate.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return delegate.getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        delegate.setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return delegate.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        delegate.setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return delegate.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return delegate.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return delegate.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        addBatchedSql(sql);
+        delegate.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        clearBatchedSql();
+        delegate.clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        int batchSize = batch.size();
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            int[] result = delegate.executeBatch();
+            if (null != result) {
+                batchSize = result.length;
+                for (int i = 0; i < result.length; i++) {
+                    batch.addUpdateCount(i, result[i]);
+                }
+            }
+            return result;
+        } finally {
+            try {
+                recordBatch(EXECUTE_BATCH_METHOD, EXECUTE_BATCH_METHOD_IMPL, start, batchSize);
+            } finally {
+                // batch is reset once executeBatch returns
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection;
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return delegate.getMoreResults(current);
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return wrapResultSet(delegate.getGeneratedKeys());
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            int result = delegate.executeUpdate(sql, autoGeneratedKeys);
+            rowsUpdated = result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_UPDATE_METHOD, EXECUTE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            int result = delegate.executeUpdate(sql, columnIndexes);
+            rowsUpdated = result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_UPDATE_METHOD, EXECUTE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            int result = delegate.executeUpdate(sql, columnNames);
+            rowsUpdated = result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_UPDATE_METHOD, EXECUTE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            return delegate.execute(sql, autoGeneratedKeys);
+        } finally {
+            recordStatement(EXECUTE_METHOD, EXECUTE_METHOD_IMPL, sql, start, 0);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            return delegate.execute(sql, columnIndexes);
+        } finally {
+            recordStatement(EXECUTE_METHOD, EXECUTE_METHOD_IMPL, sql, start, 0);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            return delegate.execute(sql, columnNames);
+        } finally {
+            recordStatement(EXECUTE_METHOD, EXECUTE_METHOD_IMPL, sql, start, 0);
+        }
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return delegate.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        delegate.setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return delegate.isPoolable();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public void closeOnCompletion() throws SQLException {
+        delegate.closeOnCompletion();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public boolean isCloseOnCompletion() throws SQLException {
+        return delegate.isCloseOnCompletion();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long getLargeUpdateCount() throws SQLException {
+        return delegate.getLargeUpdateCount();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public void setLargeMaxRows(long max) throws SQLException {
+        delegate.setLargeMaxRows(max);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long getLargeMaxRows() throws SQLException {
+        return delegate.getLargeMaxRows();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long[] executeLargeBatch() throws SQLException {
+        int batchSize = batch.size();
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            long[] result = delegate.executeLargeBatch();
+            if (null != result) {
+                batchSize = result.length;
+                for (int i = 0; i < result.length; i++) {
+                    batch.addUpdateCount(i, result[i]);
+                }
+            }
+            return result;
+        } finally {
+            try {
+                recordBatch(EXECUTE_LARGE_BATCH_METHOD, EXECUTE_LARGE_BATCH_METHOD_IMPL, start, batchSize);
+            } finally {
+                // batch is reset once executeBatch returns
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long executeLargeUpdate(String sql) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            long result = delegate.executeLargeUpdate(sql);
+            rowsUpdated = (int) result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_LARGE_UPDATE_METHOD, EXECUTE_LARGE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            long result = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+            rowsUpdated = (int) result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_LARGE_UPDATE_METHOD, EXECUTE_LARGE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            long result = delegate.executeLargeUpdate(sql, columnIndexes);
+            rowsUpdated = (int) result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_LARGE_UPDATE_METHOD, EXECUTE_LARGE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    @SuppressWarnings("Since15")
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = System.nanoTime();
+        int rowsUpdated = 0;
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            long result = delegate.executeLargeUpdate(sql, columnNames);
+            rowsUpdated = (int) result;
+            return result;
+        } finally {
+            recordStatement(EXECUTE_LARGE_UPDATE_METHOD, EXECUTE_LARGE_UPDATE_METHOD_IMPL, sql, start, rowsUpdated);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj instanceof SniffyStatement && delegate.equals(((SniffyStatement<?>) obj).delegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+}
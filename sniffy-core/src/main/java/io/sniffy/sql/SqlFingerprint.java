@@ -0,0 +1,338 @@
+package io.sniffy.sql;
+
+/**
+ * Canonical form of SQL query used for aggregating statistics of similar queries
+ *
+ * Fingerprint is built by a single pass tokenizer which:
+ * <ul>
+ *     <li>replaces string and numeric literals with {@code ?}</li>
+ *     <li>collapses {@code IN (?, ?, ?)} lists to {@code IN (?)}</li>
+ *     <li>collapses multi-row {@code VALUES (?, ?), (?, ?)} lists to the first row</li>
+ *     <li>removes comments and collapses whitespace</li>
+ * </ul>
+ *
+ * Fingerprints are cached in a bounded cache keyed by original SQL string, so repeated executions of the same
+ * statement don't rebuild the fingerprint; the same instance is checked first, so prepared statements skip comparison
+ *
+ * @since 3.1.10
+ */
+public final class SqlFingerprint {
+
+    private static final int CACHE_SIZE = 1024;
+
+    private static final class CacheEntry {
+
+        private final String sql;
+        private final SqlFingerprint sqlFingerprint;
+
+        private CacheEntry(String sql, SqlFingerprint sqlFingerprint) {
+            this.sql = sql;
+            this.sqlFingerprint = sqlFingerprint;
+        }
+
+    }
+
+    // racy single-check cache; entries are immutable and safely published via final fields
+    private static final CacheEntry[] CACHE = new CacheEntry[CACHE_SIZE];
+
+    private static final int GROUP = 0;
+    private static final int IN_LIST = 1;
+    private static final int VALUES_ROW = 2;
+    private static final int EXTRA_VALUES_ROW = 3;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String fingerprint;
+    private final long hash;
+    private final int parameterCount;
+
+    private SqlFingerprint(String fingerprint, int parameterCount) {
+        this.fingerprint = fingerprint;
+        this.hash = hash(fingerprint);
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * @return fingerprint of given SQL or null if sql is null
+     */
+    public static SqlFingerprint of(String sql) {
+        if (null == sql) return null;
+        int hashCode = sql.hashCode();
+        int index = (hashCode ^ (hashCode >>> 16)) & (CACHE_SIZE - 1);
+        CacheEntry cacheEntry = CACHE[index];
+        //noinspection StringEquality
+        if (null != cacheEntry && (cacheEntry.sql == sql || cacheEntry.sql.equals(sql))) {
+            return cacheEntry.sqlFingerprint;
+        }
+        int[] parameterCount = new int[1];
+        SqlFingerprint sqlFingerprint = new SqlFingerprint(normalize(sql, parameterCount), parameterCount[0]);
+        CACHE[index] = new CacheEntry(sql, sqlFingerprint);
+        return sqlFingerprint;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return 64-bit FNV-1a hash of fingerprint
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return number of JDBC parameter markers in original SQL; question marks inside literals, quoted identifiers and
+     * comments aren't counted
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SqlFingerprint that = (SqlFingerprint) o;
+
+        return hash == that.hash && fingerprint.equals(that.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return fingerprint;
+    }
+
+    private static long hash(String fingerprint) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < fingerprint.length(); i++) {
+            hash ^= fingerprint.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static String normalize(String sql) {
+        return normalize(sql, null);
+    }
+
+    /**
+     * @param parameterCount if not null, its first element is incremented for each JDBC parameter marker
+     */
+    static String normalize(String sql, int[] parameterCount) {
+
+        int length = sql.length();
+        StringBuilder sb = new StringBuilder(length);
+
+        // stack of currently open parentheses
+        int depth = 0;
+        int[] groupTypes = new int[8];
+        int[] groupStarts = new int[8];
+        int[] groupPlaceholders = new int[8]; // -1 if group contains anything besides placeholders and commas
+
+        // position right after the first row of VALUES list
+        int valuesEnd = -1;
+        int valuesDepth = -1;
+
+        boolean pendingSpace = false;
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                i += 2;
+                while (i < length && sql.charAt(i) != '\n' && sql.charAt(i) != '\r') i++;
+                pendingSpace = true;
+                continue;
+            }
+
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i += 2;
+                while (i < length && !(sql.charAt(i) == '*' && i + 1 < length && sql.charAt(i + 1) == '/')) i++;
+                i += 2;
+                pendingSpace = true;
+                continue;
+            }
+
+            if (pendingSpace) {
+                if (sb.length() > 0) sb.append(' ');
+                pendingSpace = false;
+            }
+
+            if (c == '\'') {
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        i++;
+                    }
+                }
+                i++;
+                sb.append('?');
+                if (depth > 0 && groupPlaceholders[depth - 1] >= 0) groupPlaceholders[depth - 1]++;
+            } else if (c == '"' || c == '`' || c == '[') {
+                char closingQuote = c == '[' ? ']' : c;
+                int end = sql.indexOf(closingQuote, i + 1);
+                end = -1 == end ? length : end + 1;
+                sb.append(sql, i, end);
+                i = end;
+                if (depth > 0) groupPlaceholders[depth - 1] = -1;
+            } else if (isNumberStart(sql, i, sb)) {
+                if (c == '-' || c == '+') i++;
+                i = skipNumber(sql, i);
+                sb.append('?');
+                if (depth > 0 && groupPlaceholders[depth - 1] >= 0) groupPlaceholders[depth - 1]++;
+            } else if (c == '?') {
+                i++;
+                sb.append('?');
+                if (null != parameterCount) parameterCount[0]++;
+                if (depth > 0 && groupPlaceholders[depth - 1] >= 0) groupPlaceholders[depth - 1]++;
+            } else if (c == ',') {
+                i++;
+                sb.append(',');
+            } else if (c == '(') {
+                i++;
+                if (depth > 0) groupPlaceholders[depth - 1] = -1;
+                if (depth == groupTypes.length) {
+                    groupTypes = copyOf(groupTypes);
+                    groupStarts = copyOf(groupStarts);
+                    groupPlaceholders = copyOf(groupPlaceholders);
+                }
+                int groupType = GROUP;
+                if (-1 != valuesEnd && depth == valuesDepth && isValuesRowSeparator(sb, valuesEnd)) {
+                    groupType = EXTRA_VALUES_ROW;
+                } else if (endsWithKeyword(sb, "in")) {
+                    groupType = IN_LIST;
+                } else if (endsWithKeyword(sb, "values")) {
+                    groupType = VALUES_ROW;
+                }
+                groupTypes[depth] = groupType;
+                groupStarts[depth] = sb.length();
+                groupPlaceholders[depth] = 0;
+                depth++;
+                sb.append('(');
+            } else if (c == ')') {
+                i++;
+                if (depth > 0) {
+                    depth--;
+                    if (groupTypes[depth] == IN_LIST && groupPlaceholders[depth] > 0) {
+                        int groupStart = groupStarts[depth];
+                        if (sb.charAt(groupStart - 1) == ' ') groupStart--;
+                        sb.setLength(groupStart);
+                        sb.append(" (?)");
+                    } else if (groupTypes[depth] == EXTRA_VALUES_ROW) {
+                        sb.setLength(valuesEnd);
+                    } else if (groupTypes[depth] == VALUES_ROW) {
+                        sb.append(')');
+                        valuesEnd = sb.length();
+                        valuesDepth = depth;
+                    } else {
+                        sb.append(')');
+                    }
+                } else {
+                    sb.append(')');
+                }
+            } else {
+                i++;
+                sb.append(c);
+                if (depth > 0) groupPlaceholders[depth - 1] = -1;
+            }
+        }
+
+        return sb.toString();
+
+    }
+
+    private static int[] copyOf(int[] array) {
+        int[] copy = new int[array.length * 2];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@' || c == '#';
+    }
+
+    private static boolean isNumberStart(String sql, int i, StringBuilder sb) {
+        char c = sql.charAt(i);
+        if (c == '-' || c == '+') {
+            if (i + 1 >= sql.length() || !Character.isDigit(sql.charAt(i + 1))) return false;
+            // sign is a part of literal only if it follows an operator, comma or opening parenthesis
+            int last = sb.length() - 1;
+            if (last >= 0 && sb.charAt(last) == ' ') last--;
+            if (last < 0) return true;
+            char previous = sb.charAt(last);
+            return previous == '(' || previous == ',' || previous == '=' || previous == '<' || previous == '>';
+        }
+        if (!Character.isDigit(c)) return false;
+        // digits inside identifiers like "table1" are not literals
+        return sb.length() == 0 || !isIdentifierPart(sb.charAt(sb.length() - 1));
+    }
+
+    private static int skipNumber(String sql, int i) {
+        int length = sql.length();
+        if (i + 1 < length && sql.charAt(i) == '0' && (sql.charAt(i + 1) == 'x' || sql.charAt(i + 1) == 'X')) {
+            i += 2;
+            while (i < length && Character.digit(sql.charAt(i), 16) >= 0) i++;
+            return i;
+        }
+        while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+        if (i < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int exponent = i + 1;
+            if (exponent < length && (sql.charAt(exponent) == '-' || sql.charAt(exponent) == '+')) exponent++;
+            if (exponent < length && Character.isDigit(sql.charAt(exponent))) {
+                i = exponent;
+                while (i < length && Character.isDigit(sql.charAt(i))) i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return true if only a single comma and whitespace were appended after the first VALUES row
+     */
+    private static boolean isValuesRowSeparator(StringBuilder sb, int valuesEnd) {
+        int commas = 0;
+        for (int i = valuesEnd; i < sb.length(); i++) {
+            char c = sb.charAt(i);
+            if (c == ',') {
+                commas++;
+            } else if (c != ' ') {
+                return false;
+            }
+        }
+        return commas == 1;
+    }
+
+    private static boolean endsWithKeyword(StringBuilder sb, String keyword) {
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') end--;
+        int start = end - keyword.length();
+        if (start < 0) return false;
+        if (start > 0 && isIdentifierPart(sb.charAt(start - 1))) return false;
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toLowerCase(sb.charAt(start + i)) != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+}
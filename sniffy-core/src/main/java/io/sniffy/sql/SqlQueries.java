@@ -4,7 +4,10 @@ import io.sniffy.Sniffy;
 import io.sniffy.SniffyAssertionError;
 import io.sniffy.Spy;
 import io.sniffy.Threads;
+import io.sniffy.configuration.SniffyConfiguration;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static io.sniffy.sql.SqlStatement.ANY;
@@ -69,6 +72,16 @@ public class SqlQueries {
         return new SqlExpectation_MaxRows(maxRows);
     }
 
+    /**
+     * Requires N+1 detection to be enabled via {@link SniffyConfiguration#getNPlusOneThreshold()}
+     * @param threshold maximum number of times a statement can be executed repeatedly in N+1 pattern
+     * @see NPlusOneDetector
+     * @since 3.1.10
+     */
+    public static SqlExpectation_NPlusOne noNPlusOne(int threshold) {
+        return new SqlExpectation_NPlusOne(threshold, Threads.CURRENT);
+    }
+
     public static class SqlExpectation implements Spy.Expectation {
 
         protected final int minQueries;
@@ -123,6 +136,61 @@ public class SqlQueries {
 
     }
 
+    /**
+     * @since 3.1.10
+     */
+    public static class SqlExpectation_NPlusOne implements Spy.Expectation {
+
+        protected final int threshold;
+        protected final Threads threads;
+
+        private SqlExpectation_NPlusOne(int threshold, Threads threads) {
+            if (threshold < 0) throw new IllegalArgumentException("threshold cannot be negative");
+            this.threshold = threshold;
+            this.threads = threads;
+        }
+
+        public SqlExpectation_NPlusOne threads(Threads threads) {
+            return new SqlExpectation_NPlusOne(threshold, threads);
+        }
+
+        public SqlExpectation_NPlusOne currentThread() {
+            return threads(Threads.CURRENT);
+        }
+
+        public SqlExpectation_NPlusOne otherThreads() {
+            return threads(Threads.OTHERS);
+        }
+
+        public SqlExpectation_NPlusOne anyThreads() {
+            return threads(Threads.ANY);
+        }
+
+        @Override
+        public <T extends Spy<T>> Spy<T> verify(Spy<T> spy) throws SniffyAssertionError {
+
+            if (SniffyConfiguration.INSTANCE.getNPlusOneThreshold() < 0) {
+                throw new IllegalStateException("N+1 detection is disabled; set io.sniffy.nPlusOneThreshold to a non-negative value");
+            }
+
+            List<NPlusOneDetector.Entry> nPlusOneQueries = new ArrayList<NPlusOneDetector.Entry>();
+
+            for (NPlusOneDetector.Entry entry : spy.getNPlusOneQueries(threads)) {
+                if (entry.getCount() > threshold) {
+                    nPlusOneQueries.add(entry);
+                }
+            }
+
+            if (!nPlusOneQueries.isEmpty()) {
+                throw new NPlusOneQueriesError(threads, threshold, nPlusOneQueries);
+            }
+
+            return spy;
+
+        }
+
+    }
+
     // queryCount
 
     public static class SqlExpectation_MinQueries extends SqlExpectation_CountQueries {
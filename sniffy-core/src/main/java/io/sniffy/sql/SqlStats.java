@@ -1,39 +1,159 @@
 package io.sniffy.sql;
 
 import io.sniffy.socket.SocketStats;
+import io.sniffy.util.StripedLong;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * @since 3.1
  */
 public class SqlStats extends SocketStats {
 
-    public final AtomicInteger rows = new AtomicInteger();
+    public final StripedLong rows = new StripedLong();
 
     /**
      * Number of queries (or batches) executed
      */
-    public final AtomicInteger queries = new AtomicInteger();
+    public final StripedLong queries = new StripedLong();
+
+    private volatile BatchStats batchStats;
+
+    private static final AtomicReferenceFieldUpdater<SqlStats, BindParameters> BIND_PARAMETERS =
+            AtomicReferenceFieldUpdater.newUpdater(SqlStats.class, BindParameters.class, "bindParameters");
+
+    private volatile BindParameters bindParameters;
 
     public SqlStats(SqlStats that) {
-        this(that.elapsedTime.longValue(), that.bytesDown.longValue(), that.bytesUp.longValue(), that.rows.intValue(), that.queries.intValue());
+        super(that);
+        this.rows.add(that.rows.longValue());
+        this.queries.add(that.queries.longValue());
+        BatchStats batchStats = that.batchStats;
+        if (null != batchStats) {
+            this.batchStats = new BatchStats(batchStats);
+        }
+        this.bindParameters = that.bindParameters;
     }
 
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     */
     public SqlStats(long elapsedTime, long bytesDown, long bytesUp, int rows, int queries) {
         super(elapsedTime, bytesDown, bytesUp);
-        this.rows.set(rows);
-        this.queries.set(queries);
+        this.rows.add(rows);
+        this.queries.add(queries);
     }
 
-    public void accumulate(long elapsedTime, int bytesDown, int bytesUp, int rows, int queries) {
+    /**
+     * @param elapsedTime elapsed time in milliseconds
+     */
+    public void accumulate(long elapsedTime, long bytesDown, long bytesUp, int rows, int queries) {
         super.accumulate(elapsedTime, bytesDown, bytesUp);
-        this.rows.addAndGet(rows);
-        this.queries.addAndGet(queries);
+        if (0 != rows) this.rows.add(rows);
+        if (0 != queries) this.queries.add(queries);
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public void accumulateNanos(long elapsedTimeNanos, long bytesDown, long bytesUp, int rows, int queries) {
+        super.accumulateNanos(elapsedTimeNanos, bytesDown, bytesUp);
+        if (0 != rows) this.rows.add(rows);
+        if (0 != queries) this.queries.add(queries);
+    }
+
+    /**
+     * Adds an execution which represents {@code samplingWeight} executions with the same duration, traffic and rows
+     * @see io.sniffy.configuration.SamplingPolicy
+     * @since 3.1.10
+     */
+    public void accumulateSample(long elapsedTimeNanos, long bytesDown, long bytesUp, int rows, int samplingWeight) {
+        super.accumulateSample(elapsedTimeNanos, bytesDown, bytesUp, samplingWeight);
+        if (0 != rows) this.rows.add((long) rows * samplingWeight);
+        this.queries.add(samplingWeight);
+    }
+
+    /**
+     * Adds rows read after query was executed; doesn't affect latency histogram
+     * @since 3.1.10
+     */
+    public void addRows(long rows) {
+        this.rows.add(rows);
     }
 
     public void accumulate(SqlStats that) {
-        accumulate(that.elapsedTime.longValue(), that.bytesDown.intValue(), that.bytesUp.intValue(), that.rows.intValue(), that.queries.intValue());
+        super.accumulate(that);
+        this.rows.add(that.rows.longValue());
+        this.queries.add(that.queries.longValue());
+        BatchStats batchStats = that.batchStats;
+        if (null != batchStats) {
+            enableBatchStats().accumulate(batchStats);
+        }
+        BindParameters bindParameters = that.bindParameters;
+        if (null != bindParameters) {
+            retainBindParameters(bindParameters);
+        }
+    }
+
+    /**
+     * Creates batch statistics if they weren't created yet
+     * @return batch statistics of this statement
+     * @since 3.1.10
+     */
+    public BatchStats enableBatchStats() {
+        BatchStats batchStats = this.batchStats;
+        if (null == batchStats) {
+            synchronized (this) {
+                batchStats = this.batchStats;
+                if (null == batchStats) {
+                    this.batchStats = batchStats = new BatchStats();
+                }
+            }
+        }
+        return batchStats;
+    }
+
+    /**
+     * @return statistics of batches or null if this statement was never executed using {@link java.sql.Statement#executeBatch()}
+     * @see #enableBatchStats()
+     * @since 3.1.10
+     */
+    public BatchStats getBatchStats() {
+        return batchStats;
+    }
+
+    /**
+     * Keeps given parameters if their execution was slower than execution of currently retained ones
+     * @since 3.1.10
+     */
+    public void retainBindParameters(BindParameters bindParameters) {
+        BindParameters current;
+        do {
+            current = this.bindParameters;
+            if (null != current && current.getElapsedTime() >= bindParameters.getElapsedTime()) return;
+        } while (!BIND_PARAMETERS.compareAndSet(this, current, bindParameters));
+    }
+
+    /**
+     * @return approximate number of bytes retained by these statistics including batch statistics and parameters
+     * @since 3.1.10
+     */
+    @Override
+    public long getRetainedSize() {
+        BatchStats batchStats = this.batchStats;
+        BindParameters bindParameters = this.bindParameters;
+        return super.getRetainedSize() + 24 + rows.getRetainedSize() + queries.getRetainedSize() +
+                (null == batchStats ? 0 : batchStats.getRetainedSize()) +
+                (null == bindParameters ? 0 : bindParameters.getRetainedSize());
+    }
+
+    /**
+     * @return parameters of the slowest execution which retained them or null
+     * @see io.sniffy.configuration.SniffyConfiguration#isCaptureParameters()
+     * @since 3.1.10
+     */
+    public BindParameters getBindParameters() {
+        return bindParameters;
     }
 
 }
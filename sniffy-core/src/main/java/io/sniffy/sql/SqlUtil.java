@@ -11,36 +11,110 @@ public class SqlUtil {
             "\\sin\\s*\\((\\s*\\?\\s*,\\s*)++\\?\\s*\\)", CASE_INSENSITIVE | MULTILINE
     );
 
+    /**
+     * @deprecated use {@link SqlFingerprint#of(String)} instead
+     */
+    @Deprecated
     public static String normalizeInStatement(String sql) {
         return null == sql ? null :
                 NORMALIZE_IN_STATEMENT_PATTERN.matcher(sql).replaceAll(" in (?)").intern();
     }
 
+    /**
+     * Guesses type of SQL query by its first keyword; doesn't allocate any objects
+     *
+     * Leading whitespace, comments and opening parenthesis are skipped.
+     * Common table expressions ({@code WITH ... AS (...)}) are resolved to the verb of the main statement
+     */
     public static SqlStatement guessQueryType(String sql) {
-        // TODO: some queries can start with "WITH" statement
-        // TODO: move to StatementInvocationHandler
-
-        for (int i = 0; i < sql.length(); i++) {
-            if (!Character.isWhitespace(sql.charAt(i))) {
-                String normalized;
-                if (sql.length() > (i + 7)) {
-                    normalized = sql.substring(i, i + 7).toLowerCase();
-                    if ("select ".equals(normalized)) {
-                        return SqlStatement.SELECT;
-                    } else if ("insert ".equals(normalized)) {
-                        return SqlStatement.INSERT;
-                    } else if ("update ".equals(normalized)) {
-                        return SqlStatement.UPDATE;
-                    } else if ("delete ".equals(normalized)) {
-                        return SqlStatement.DELETE;
-                    }
-                }
-                if (sql.length() > (i + 6) && sql.substring(i, i + 6).equalsIgnoreCase("merge ")) {
-                    return SqlStatement.MERGE;
+
+        if (null == sql) return SqlStatement.OTHER;
+
+        int i = skipWhitespaceAndComments(sql, 0, true);
+
+        if (isKeyword(sql, i, "with")) {
+            return guessCommonTableExpressionType(sql, i + 4);
+        }
+
+        SqlStatement sqlStatement = guessVerb(sql, i);
+        return null == sqlStatement ? SqlStatement.OTHER : sqlStatement;
+    }
+
+    private static SqlStatement guessVerb(String sql, int i) {
+        if (isKeyword(sql, i, "select")) {
+            return SqlStatement.SELECT;
+        } else if (isKeyword(sql, i, "insert")) {
+            return SqlStatement.INSERT;
+        } else if (isKeyword(sql, i, "update")) {
+            return SqlStatement.UPDATE;
+        } else if (isKeyword(sql, i, "delete")) {
+            return SqlStatement.DELETE;
+        } else if (isKeyword(sql, i, "merge")) {
+            return SqlStatement.MERGE;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the first verb outside of parenthesis; CTE bodies and column lists are always enclosed in parenthesis
+     */
+    private static SqlStatement guessCommonTableExpressionType(String sql, int i) {
+        int length = sql.length();
+        int depth = 0;
+        while (i < length) {
+            i = skipWhitespaceAndComments(sql, i, false);
+            if (i >= length) break;
+            char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                i = -1 == end ? length : end + 1;
+            } else if (isIdentifierPart(c)) {
+                if (depth == 0) {
+                    SqlStatement sqlStatement = guessVerb(sql, i);
+                    if (null != sqlStatement) return sqlStatement;
                 }
+                while (i < length && isIdentifierPart(sql.charAt(i))) i++;
+            } else {
+                i++;
             }
         }
-
         return SqlStatement.OTHER;
     }
+
+    private static int skipWhitespaceAndComments(String sql, int i, boolean skipParenthesis) {
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c) || (skipParenthesis && c == '(')) {
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                i += 2;
+                while (i < length && sql.charAt(i) != '\n' && sql.charAt(i) != '\r') i++;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = -1 == end ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isKeyword(String sql, int i, String keyword) {
+        int end = i + keyword.length();
+        return sql.regionMatches(true, i, keyword, 0, keyword.length()) &&
+                (end == sql.length() || !isIdentifierPart(sql.charAt(end)));
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
 }
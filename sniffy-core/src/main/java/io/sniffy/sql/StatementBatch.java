@@ -0,0 +1,162 @@
+package io.sniffy.sql;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL statements added to a batch using {@link java.sql.Statement#addBatch(String)} or
+ * {@link java.sql.PreparedStatement#addBatch()}
+ *
+ * Batches usually consist of the same statement repeated many times, so only the first SQL and the batch size are
+ * tracked in this case. If texts differ, statements are split into groups by {@link SqlFingerprint}; each group is
+ * reported as a separate batch using its fingerprint instead of literal values, so that batches of the same shape are
+ * accumulated together.
+ *
+ * Update counts returned by {@link Statement#executeBatch()} are summarized per group and kept until {@link #clear()}
+ *
+ * Not thread safe; JDBC statements aren't supposed to be shared between threads
+ *
+ * @since 3.1.10
+ */
+class StatementBatch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String firstSql;
+    private int size;
+
+    // groups of statements with the same fingerprint; null unless batch mixes different SQL texts
+    private Map<SqlFingerprint, Integer> groupIndexes;
+    private List<SqlFingerprint> groupFingerprints;
+    private int[] groupSizes;
+    // group of each statement in batch
+    private int[] statementGroups;
+
+    // summary of update counts per group
+    private int[] rowsUpdated;
+    private int[] successNoInfoStatements;
+    private int[] failedStatements;
+
+    void add(String sql) {
+        if (null == sql) return;
+
+        if (0 == size++) {
+            firstSql = sql;
+            return;
+        }
+
+        if (null == groupIndexes) {
+            //noinspection StringEquality
+            if (sql == firstSql || sql.equals(firstSql)) return;
+
+            groupIndexes = new HashMap<SqlFingerprint, Integer>();
+            groupFingerprints = new ArrayList<SqlFingerprint>();
+            groupSizes = new int[INITIAL_CAPACITY];
+            statementGroups = new int[Math.max(INITIAL_CAPACITY, 2 * size)];
+            // previous statements have the same SQL and belong to the first group
+            groupSizes[group(SqlFingerprint.of(firstSql))] = size - 1;
+        }
+
+        int group = group(SqlFingerprint.of(sql));
+        groupSizes[group]++;
+        if (size > statementGroups.length) {
+            statementGroups = copyOf(statementGroups, 2 * statementGroups.length);
+        }
+        statementGroups[size - 1] = group;
+    }
+
+    private int group(SqlFingerprint fingerprint) {
+        Integer group = groupIndexes.get(fingerprint);
+        if (null == group) {
+            group = groupFingerprints.size();
+            groupIndexes.put(fingerprint, group);
+            groupFingerprints.add(fingerprint);
+            if (group == groupSizes.length) {
+                groupSizes = copyOf(groupSizes, 2 * groupSizes.length);
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Adds update count returned by {@link Statement#executeBatch()} to the summary of corresponding group
+     * @param statement index of statement in batch
+     */
+    void addUpdateCount(int statement, long updateCount) {
+        int group = null == statementGroups || statement >= size ? 0 : statementGroups[statement];
+        if (null == rowsUpdated || group >= rowsUpdated.length) {
+            int capacity = Math.max(getGroups(), group + 1);
+            rowsUpdated = copyOf(rowsUpdated, capacity);
+            successNoInfoStatements = copyOf(successNoInfoStatements, capacity);
+            failedStatements = copyOf(failedStatements, capacity);
+        }
+        if (updateCount > 0) rowsUpdated[group] += updateCount;
+        else if (Statement.SUCCESS_NO_INFO == updateCount) successNoInfoStatements[group]++;
+        else if (Statement.EXECUTE_FAILED == updateCount) failedStatements[group]++;
+    }
+
+    void clear() {
+        firstSql = null;
+        size = 0;
+        groupIndexes = null;
+        groupFingerprints = null;
+        groupSizes = null;
+        statementGroups = null;
+        if (null != rowsUpdated) {
+            for (int i = 0; i < rowsUpdated.length; i++) {
+                rowsUpdated[i] = 0;
+                successNoInfoStatements[i] = 0;
+                failedStatements[i] = 0;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of groups of statements with different fingerprints; 1 if all statements have the same SQL
+     */
+    int getGroups() {
+        return 0 == size ? 0 : null == groupIndexes ? 1 : groupFingerprints.size();
+    }
+
+    /**
+     * @return SQL representing statements in given group or null if batch is empty
+     */
+    String getSql(int group) {
+        return null == groupIndexes ? firstSql : groupFingerprints.get(group).getFingerprint();
+    }
+
+    /**
+     * @return number of statements in given group
+     */
+    int size(int group) {
+        return null == groupIndexes ? size : groupSizes[group];
+    }
+
+    int getRowsUpdated(int group) {
+        return null == rowsUpdated || group >= rowsUpdated.length ? 0 : rowsUpdated[group];
+    }
+
+    int getSuccessNoInfoStatements(int group) {
+        return null == successNoInfoStatements || group >= successNoInfoStatements.length ? 0 : successNoInfoStatements[group];
+    }
+
+    int getFailedStatements(int group) {
+        return null == failedStatements || group >= failedStatements.length ? 0 : failedStatements[group];
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        if (null != array) {
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        }
+        return copy;
+    }
+
+}
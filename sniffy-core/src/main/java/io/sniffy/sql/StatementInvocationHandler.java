@@ -1,66 +1,44 @@
 package io.sniffy.sql;
 
-import io.sniffy.Sniffer;
 import io.sniffy.Sniffy;
+import io.sniffy.SpyConfiguration;
+import io.sniffy.configuration.SamplingPolicy;
+import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.util.StackTraceRegistry;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
-import java.util.HashMap;
-import java.util.Map;
 
 import static io.sniffy.util.StackTraceExtractor.getTraceForProxiedMethod;
-import static io.sniffy.util.StackTraceExtractor.printStackTrace;
 
 /**
  * @since 3.1
  */
 class StatementInvocationHandler<T extends Statement> extends SniffyInvocationHandler<T> {
 
-    private Map<String, Integer> batchedSql;
+    private final StatementBatch batch = new StatementBatch();
 
     StatementMetaData lastStatementMetaData;
 
+    private ResultSetInvocationHandler<ResultSet> lastResultSetInvocationHandler;
+
     StatementInvocationHandler(T delegate, Connection connectionProxy, String url, String userName) {
         super(connectionProxy, delegate, url, userName);
     }
 
-    protected enum StatementMethodType {
-        EXECUTE_SQL,
-        EXECUTE_UPDATE,
-        ADD_BATCH,
-        CLEAR_BATCH,
-        EXECUTE_BATCH,
-        OTHER;
-
-        static StatementMethodType parse(String methodName) {
-            if ("execute".equals(methodName) || "executeQuery".equals(methodName)) {
-                return EXECUTE_SQL;
-            } else if ("executeUpdate".equals(methodName) ||  "executeLargeUpdate".equals(methodName)) {
-                return EXECUTE_UPDATE;
-            } else if ("addBatch".equals(methodName)) {
-                return ADD_BATCH;
-            } else if ("clearBatch".equals(methodName)) {
-                return CLEAR_BATCH;
-            } else if ("executeBatch".equals(methodName) || "executeLargeBatch".equals(methodName)) {
-                return EXECUTE_BATCH;
-            } else {
-                return OTHER;
-            }
-        }
-    }
-
     // TODO: wrap complex parameters and results like streams and blobs
     // TODO: support methods for Object class such as equals here as well as in other invocation handlers
-    public Object invokeImpl(T proxy, String methodName, Method method, Object[] args) throws Throwable {
+    @Override
+    Object invokeImpl(T proxy, JdbcMethodType methodType, Method method, Object[] args) throws Throwable {
 
         checkConnectionAllowed();
 
         Object result;
 
-        switch (StatementMethodType.parse(methodName)) {
+        switch (methodType) {
             case ADD_BATCH:
                 addBatch(String.class.cast(args[0]));
                 result = invokeTarget(method, args);
@@ -70,7 +48,7 @@ class StatementInvocationHandler<T extends Statement> extends SniffyInvocationHa
                 result = invokeTarget(method, args);
                 break;
             case EXECUTE_BATCH:
-                result = invokeTargetAndRecord(method, args, getBatchedSql(), true);
+                result = invokeTargetAndRecordBatch(method, args);
                 break;
             case EXECUTE_UPDATE:
                 result = invokeTargetAndRecord(method, args, null != args && args.length > 0 ? String.class.cast(args[0]) : null, true);
@@ -78,7 +56,13 @@ class StatementInvocationHandler<T extends Statement> extends SniffyInvocationHa
             case EXECUTE_SQL:
                 result = invokeTargetAndRecord(method, args, null != args && args.length > 0 ? String.class.cast(args[0]) : null, false);
                 break;
-            case OTHER:
+            case CLOSE:
+                try {
+                    result = invokeTarget(method, args);
+                } finally {
+                    flushResultSetRows();
+                }
+                break;
             default:
                 result = invokeTarget(method, args);
                 break;
@@ -90,83 +74,168 @@ class StatementInvocationHandler<T extends Statement> extends SniffyInvocationHa
 
     protected Object proxyResultSet(Object result) {
         if (result instanceof ResultSet) {
+            flushResultSetRows();
+            lastResultSetInvocationHandler =
+                    new ResultSetInvocationHandler<ResultSet>((ResultSet) result, connectionProxy, url, userName, lastStatementMetaData);
             return Proxy.newProxyInstance(
                     ResultSetInvocationHandler.class.getClassLoader(),
                     new Class[]{ResultSet.class},
-                    new ResultSetInvocationHandler<ResultSet>((ResultSet) result, connectionProxy, url, userName, lastStatementMetaData)
+                    lastResultSetInvocationHandler
             );
         } else {
             return result;
         }
     }
 
+    /**
+     * Rows read from result set are published when statement is executed again or closed
+     * @since 3.1.10
+     */
+    protected void flushResultSetRows() {
+        ResultSetInvocationHandler<ResultSet> resultSetInvocationHandler = lastResultSetInvocationHandler;
+        if (null != resultSetInvocationHandler) {
+            lastResultSetInvocationHandler = null;
+            resultSetInvocationHandler.flushRows();
+        }
+    }
+
     protected Object invokeTargetAndRecord(Method method, Object[] args, String sql, boolean isUpdateQuery) throws Throwable {
-        long start = System.currentTimeMillis();
+        flushResultSetRows();
+        long start = System.nanoTime();
         int rowsUpdated = 0;
         try {
             Sniffy.enterJdbcMethod();
             checkConnectionAllowed(true);
             Object result = invokeTargetImpl(method, args);
-            if (isUpdateQuery) {
-                if (result instanceof Number) {
-                    rowsUpdated = ((Number) result).intValue();
-                }
-                if (result instanceof int[]) {
-                    int[] updatedRows = (int[]) result;
-                    for (int i : updatedRows) {
-                        if (i > 0) rowsUpdated += i;
-                    }
+            if (isUpdateQuery && result instanceof Number) {
+                rowsUpdated = ((Number) result).intValue();
+            }
+            return result;
+        } finally {
+            record(method, sql, System.nanoTime() - start, rowsUpdated, -1, 0, 0);
+        }
+    }
+
+    /**
+     * Executes the batch and records it together with batch size and summary of update counts
+     * @see #recordBatch(Method, long, int)
+     * @since 3.1.10
+     */
+    protected Object invokeTargetAndRecordBatch(Method method, Object[] args) throws Throwable {
+        flushResultSetRows();
+        int batchSize = batch.size();
+        long start = System.nanoTime();
+        try {
+            Sniffy.enterJdbcMethod();
+            checkConnectionAllowed(true);
+            Object result = invokeTargetImpl(method, args);
+            if (result instanceof int[]) {
+                int[] updatedRows = (int[]) result;
+                batchSize = updatedRows.length;
+                for (int i = 0; i < updatedRows.length; i++) {
+                    batch.addUpdateCount(i, updatedRows[i]);
                 }
-                if (result instanceof long[]) {
-                    long[] updatedRows = (long[]) result;
-                    for (long i : updatedRows) {
-                        if (i > 0) rowsUpdated += i;
-                    }
+            } else if (result instanceof long[]) {
+                long[] updatedRows = (long[]) result;
+                batchSize = updatedRows.length;
+                for (int i = 0; i < updatedRows.length; i++) {
+                    batch.addUpdateCount(i, updatedRows[i]);
                 }
             }
             return result;
         } finally {
-            // TODO: reuse exitJdbcMethod() instead
-            long elapsedTime = System.currentTimeMillis() - start;
-            Sniffy.logSqlTime(sql, elapsedTime);
-            Sniffy.SniffyMode sniffyMode = Sniffy.getSniffyMode();
-            if (sniffyMode.isEnabled()) {
-                String stackTrace = sniffyMode.isCaptureStackTraces() ? printStackTrace(getTraceForProxiedMethod(method)) : null;
-                lastStatementMetaData = Sniffy.executeStatement(sql, elapsedTime, stackTrace, rowsUpdated);
-            } else {
-                Sniffer.executedStatementsGlobalCounter.incrementAndGet();
+            try {
+                recordBatch(method, start, batchSize);
+            } finally {
+                // batch is reset once executeBatch returns
+                batch.clear();
             }
         }
     }
 
-    protected synchronized void addBatch(String sql) {
-
-        if (null == sql) return;
-
-        if (null == batchedSql) batchedSql = new HashMap<String, Integer>();
+    /**
+     * Records executed batch as a single statement if all statements in it have the same SQL, otherwise as a separate
+     * statement for each {@link SqlFingerprint}; elapsed time is split between them proportionally to the number of
+     * statements and socket operations are attributed to the first one
+     */
+    private void recordBatch(Method method, long start, int batchSize) throws ClassNotFoundException {
+        long elapsedTime = System.nanoTime() - start;
+        int groups = batch.getGroups();
+        if (groups <= 1) {
+            record(method, getBatchedSql(), elapsedTime, batch.getRowsUpdated(0),
+                    batchSize, batch.getSuccessNoInfoStatements(0), batch.getFailedStatements(0));
+        } else {
+            for (int group = 0; group < groups; group++) {
+                if (group > 0) {
+                    // each recorded statement exits its own JDBC method
+                    Sniffy.enterJdbcMethod();
+                }
+                int groupSize = batch.size(group);
+                record(method, batch.getSql(group), elapsedTime * groupSize / batch.size(), batch.getRowsUpdated(group),
+                        groupSize, batch.getSuccessNoInfoStatements(group), batch.getFailedStatements(group));
+            }
+        }
+    }
 
-        Integer count = batchedSql.get(sql);
-        if (null != count) {
-            batchedSql.put(sql, count + 1);
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     * @param batchSize number of statements in executed batch or -1 if statement wasn't executed as a batch
+     */
+    private void record(Method method, String sql, long elapsedTime, int rowsUpdated,
+                        int batchSize, int successNoInfoStatements, int failedStatements) throws ClassNotFoundException {
+        // TODO: reuse exitJdbcMethod() instead
+        Sniffy.logSqlTimeNanos(sql, elapsedTime);
+        SpyConfiguration spyConfiguration = Sniffy.getEffectiveSpyConfiguration();
+        int samplingWeight = spyConfiguration.isCaptureJdbc() || spyConfiguration.isCaptureNetwork() ?
+                SniffyConfiguration.INSTANCE.getSamplingPolicy().sampleStatement(sql) :
+                SamplingPolicy.NOT_SAMPLED;
+        int stackTraceId = StackTraceRegistry.NO_STACK_TRACE;
+        if (SamplingPolicy.NOT_SAMPLED != samplingWeight) {
+            if (spyConfiguration.isCaptureStackTraces()) {
+                stackTraceId = StackTraceRegistry.INSTANCE.register(getTraceForProxiedMethod(method));
+            }
+            lastStatementMetaData = batchSize < 0 ?
+                    Sniffy.executeStatement(sql, getQueryType(sql), elapsedTime, stackTraceId, rowsUpdated, samplingWeight) :
+                    Sniffy.executeBatch(sql, getQueryType(sql), elapsedTime, stackTraceId,
+                            batchSize, rowsUpdated, successNoInfoStatements, failedStatements, samplingWeight);
         } else {
-            batchedSql.put(sql, 1);
+            // statements which weren't sampled are only counted
+            lastStatementMetaData = null;
+            Sniffy.skipStatement();
         }
+        Sniffy.logSlowStatement(sql, elapsedTime, stackTraceId, rowsUpdated, retainBindParameters(sql, elapsedTime));
     }
 
-    protected synchronized void clearBatch() {
-        batchedSql = null;
+    /**
+     * Retains parameters bound to this statement if execution was slow or sampled
+     * @param elapsedTime elapsed time in nanoseconds
+     * @return retained parameters or null
+     * @since 3.1.10
+     */
+    protected BindParameters retainBindParameters(String sql, long elapsedTime) {
+        return null;
     }
 
-    protected synchronized String getBatchedSql() {
-        if (null == batchedSql || batchedSql.isEmpty()) return null;
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, Integer> entry : batchedSql.entrySet()) {
-            if (0 != sb.length()) sb.append("; ");
-            Integer times = entry.getValue();
-            sb.append(entry.getKey());
-            if (times > 1) sb.append(" /*").append(times).append(" times*/");
-        }
-        return sb.toString();
+    /**
+     * @since 3.1.10
+     */
+    protected SqlStatement getQueryType(String sql) {
+        return SqlUtil.guessQueryType(sql);
+    }
+
+    protected void addBatch(String sql) {
+        batch.add(sql);
+    }
+
+    protected void clearBatch() {
+        batch.clear();
+    }
+
+    /**
+     * @return SQL representing the whole batch if all statements in it have the same SQL
+     */
+    protected String getBatchedSql() {
+        return batch.getSql(0);
     }
 
 }
@@ -1,6 +1,7 @@
 package io.sniffy.sql;
 
 import io.sniffy.ThreadMetaData;
+import io.sniffy.util.StackTraceRegistry;
 
 /**
  * Represents an executed query - actual SQL, query type (SELECT, INSERT, e.t.c.) and the calling thread
@@ -12,6 +13,10 @@ public class StatementMetaData {
     public final String sql;
     @Deprecated
     public final SqlStatement query;
+    /**
+     * Set only by constructors accepting rendered stack trace and null otherwise
+     * @deprecated use {@link #getStackTrace()} which renders stack trace registered in {@link StackTraceRegistry}
+     */
     @Deprecated
     public final String stackTrace;
     @Deprecated
@@ -21,27 +26,64 @@ public class StatementMetaData {
 
     private final ThreadMetaData threadMetaData;
 
+    /**
+     * Stack trace is rendered on demand by {@link #getStackTrace()}
+     * @since 3.1.10
+     */
+    private final int stackTraceId;
+
+    /**
+     * Number of executions represented by the one described by this instance; doesn't affect equality
+     * @since 3.1.10
+     */
+    private final int samplingWeight;
 
     private final int hashCode;
 
+    // racy single-check cache; SqlFingerprint is immutable
+    private SqlFingerprint sqlFingerprint;
+
     public StatementMetaData(String sql, SqlStatement query, String stackTrace, Thread ownerThread) {
         this(sql, query, stackTrace, new ThreadMetaData(ownerThread));
     }
 
     public StatementMetaData(String sql, SqlStatement query, String stackTrace, ThreadMetaData threadMetaData) {
-        this.sql = null == sql ? null : sql.intern();
+        this(sql, query, stackTrace, StackTraceRegistry.INSTANCE.register(stackTrace), threadMetaData, 1);
+    }
+
+    /**
+     * @param stackTraceId identifier of stack trace in {@link StackTraceRegistry}
+     * @since 3.1.10
+     */
+    public StatementMetaData(String sql, SqlStatement query, int stackTraceId, ThreadMetaData threadMetaData) {
+        this(sql, query, stackTraceId, threadMetaData, 1);
+    }
+
+    /**
+     * @param samplingWeight number of executions represented by this sampled one
+     * @see io.sniffy.configuration.SamplingPolicy
+     * @since 3.1.10
+     */
+    public StatementMetaData(String sql, SqlStatement query, int stackTraceId, ThreadMetaData threadMetaData, int samplingWeight) {
+        this(sql, query, null, stackTraceId, threadMetaData, samplingWeight);
+    }
+
+    private StatementMetaData(String sql, SqlStatement query, String stackTrace, int stackTraceId, ThreadMetaData threadMetaData, int samplingWeight) {
+        this.sql = sql;
         this.query = query;
-        this.stackTrace = null == stackTrace ? null : stackTrace.intern();
+        this.stackTrace = stackTrace;
+        this.stackTraceId = stackTraceId;
         this.threadMetaData = threadMetaData;
         this.ownerThreadId = threadMetaData.getThreadId();
+        this.samplingWeight = samplingWeight;
 
         hashCode = computeHashCode();
     }
 
     private int computeHashCode() {
-        int result = System.identityHashCode(sql);
+        int result = null == sql ? 0 : sql.hashCode();
         result = 31 * result + query.hashCode();
-        result = 31 * result + System.identityHashCode(stackTrace);
+        result = 31 * result + stackTraceId;
         result = 31 * result + threadMetaData.hashCode();
         return result;
     }
@@ -54,11 +96,9 @@ public class StatementMetaData {
         StatementMetaData that = (StatementMetaData) o;
 
         if (threadMetaData.getThreadId() != that.threadMetaData.getThreadId()) return false;
-        //noinspection StringEquality
-        if (sql != that.sql) return false;
+        if (stackTraceId != that.stackTraceId) return false;
         if (query != that.query) return false;
-        //noinspection StringEquality
-        return stackTrace == that.stackTrace;
+        return null == sql ? null == that.sql : sql.equals(that.sql);
 
     }
 
@@ -67,7 +107,59 @@ public class StatementMetaData {
         return hashCode;
     }
 
+    /**
+     * @since 3.1.10
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @since 3.1.10
+     */
+    public SqlStatement getQuery() {
+        return query;
+    }
+
+    /**
+     * Fingerprint is built on first call and kept by this instance, so cached instances don't look it up again
+     * @return fingerprint of the SQL or null if SQL is null
+     * @since 3.1.10
+     */
+    public SqlFingerprint getSqlFingerprint() {
+        SqlFingerprint sqlFingerprint = this.sqlFingerprint;
+        if (null == sqlFingerprint) {
+            this.sqlFingerprint = sqlFingerprint = SqlFingerprint.of(sql);
+        }
+        return sqlFingerprint;
+    }
+
     public ThreadMetaData getThreadMetaData() {
         return threadMetaData;
     }
+
+    /**
+     * @return identifier of stack trace in {@link StackTraceRegistry}
+     * @since 3.1.10
+     */
+    public int getStackTraceId() {
+        return stackTraceId;
+    }
+
+    /**
+     * @return stack trace rendered by {@link StackTraceRegistry} or null if it wasn't captured
+     * @since 3.1.10
+     */
+    public String getStackTrace() {
+        return StackTraceRegistry.INSTANCE.getStackTrace(stackTraceId);
+    }
+
+    /**
+     * @return number of executions represented by this one
+     * @see io.sniffy.configuration.SamplingPolicy
+     * @since 3.1.10
+     */
+    public int getSamplingWeight() {
+        return samplingWeight;
+    }
 }
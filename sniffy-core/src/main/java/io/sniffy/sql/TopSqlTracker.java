@@ -0,0 +1,353 @@
+package io.sniffy.sql;
+
+import io.sniffy.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks most frequently executed SQL queries grouped by {@link SqlFingerprint}
+ *
+ * Implements Space-Saving algorithm with a count-min sketch admission filter:
+ * <ul>
+ *     <li>queries which are already tracked are counted exactly and without locking</li>
+ *     <li>occurrences of other queries are counted in a count-min sketch of fixed size; such query replaces
+ *     the tracked query with the lowest recent frequency only if its own estimated frequency is higher, so a burst of
+ *     one-off queries cannot evict frequently executed ones</li>
+ *     <li>recent frequencies in the sketch and in tracked entries are halved after each {@code width} untracked
+ *     occurrences, hence queries which are not executed anymore are eventually replaced by new heavy hitters</li>
+ *     <li>count of tracked query may exceed the real one by at most {@link Entry#getError()} which is the number
+ *     of occurrences estimated by the sketch before the query was admitted; sketch overestimates by at most
+ *     {@code 2N / width} where N is number of occurrences counted since last halving with probability 15/16</li>
+ * </ul>
+ *
+ * Candidate for eviction is found using a min-heap of tracked entries ordered by recent frequency. Keys in the heap
+ * are snapshots of frequencies which are updated without locking, but frequencies only grow between halvings, so a
+ * stale key is a lower bound; root key is refreshed and sifted down until it's accurate, hence admission of a new
+ * heavy hitter takes amortized O(log capacity) time
+ *
+ * Latencies of tracked queries are stored in {@link LatencyHistogram} starting from the moment of admission
+ *
+ * @since 3.1.10
+ */
+public class TopSqlTracker {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MIN_SKETCH_WIDTH = 256;
+
+    private final int capacity;
+
+    private final ConcurrentMap<SqlFingerprint, Entry> entries;
+
+    private final int sketchWidth;
+    private final AtomicIntegerArray sketch;
+    private final AtomicInteger sketchSamples = new AtomicInteger();
+
+    // lower bound of smallest recent frequency among tracked entries; it never decreases until next halving
+    private volatile long admissionThreshold;
+
+    // min-heap of tracked entries by snapshot of recent frequency; guarded by this
+    private final Entry[] heap;
+    private final long[] heapFrequencies;
+    private int heapSize;
+
+    public TopSqlTracker(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        this.entries = new ConcurrentHashMap<SqlFingerprint, Entry>(Math.max(16, this.capacity * 4 / 3 + 1));
+        int sketchWidth = MIN_SKETCH_WIDTH;
+        while (sketchWidth < this.capacity * 4 && sketchWidth < (1 << 24)) {
+            sketchWidth <<= 1;
+        }
+        this.sketchWidth = sketchWidth;
+        this.sketch = new AtomicIntegerArray(SKETCH_DEPTH * sketchWidth);
+        this.heap = new Entry[this.capacity];
+        this.heapFrequencies = new long[this.capacity];
+    }
+
+    /**
+     * Creates a tracker with given capacity and copies most frequent entries from another tracker
+     */
+    public TopSqlTracker(int capacity, TopSqlTracker that) {
+        this(capacity);
+        List<Entry> topSql = that.getTopSql();
+        for (int i = 0; i < topSql.size() && i < this.capacity; i++) {
+            Entry entry = topSql.get(i);
+            entries.put(entry.sqlFingerprint, entry);
+            heap[heapSize++] = entry;
+        }
+        rebuildHeap();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @param elapsedTime elapsed time in nanoseconds
+     */
+    public void record(SqlFingerprint sqlFingerprint, long elapsedTime) {
+        if (0 == capacity || null == sqlFingerprint) return;
+
+        Entry entry = entries.get(sqlFingerprint);
+        if (null != entry) {
+            entry.record(elapsedTime);
+            return;
+        }
+
+        long estimatedCount = addToSketch(sqlFingerprint.getHash());
+        if (estimatedCount <= admissionThreshold) return;
+
+        synchronized (this) {
+            entry = entries.get(sqlFingerprint);
+            if (null != entry) {
+                entry.record(elapsedTime);
+                return;
+            }
+
+            if (heapSize >= capacity) {
+                long victimFrequency = refreshHeapRoot();
+                admissionThreshold = victimFrequency;
+                if (estimatedCount <= victimFrequency) return;
+                entries.remove(heap[0].sqlFingerprint);
+                entry = new Entry(sqlFingerprint, estimatedCount);
+                heap[0] = entry;
+                heapFrequencies[0] = estimatedCount;
+                siftDown(0);
+            } else {
+                entry = new Entry(sqlFingerprint, estimatedCount);
+                heap[heapSize] = entry;
+                heapFrequencies[heapSize] = estimatedCount;
+                siftUp(heapSize++);
+            }
+
+            entry.latencyHistogram.record(elapsedTime);
+            entry.elapsedTime.addAndGet(elapsedTime);
+            entries.put(sqlFingerprint, entry);
+        }
+    }
+
+    /**
+     * Refreshes stale keys until root of the heap holds entry with the lowest recent frequency
+     * @return recent frequency of the root entry
+     */
+    private long refreshHeapRoot() {
+        while (true) {
+            long frequency = heap[0].frequency.get();
+            if (frequency == heapFrequencies[0]) return frequency;
+            heapFrequencies[0] = frequency;
+            siftDown(0);
+        }
+    }
+
+    private void rebuildHeap() {
+        for (int i = 0; i < heapSize; i++) {
+            heapFrequencies[i] = heap[i].frequency.get();
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private void siftUp(int index) {
+        Entry entry = heap[index];
+        long frequency = heapFrequencies[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapFrequencies[parent] <= frequency) break;
+            heap[index] = heap[parent];
+            heapFrequencies[index] = heapFrequencies[parent];
+            index = parent;
+        }
+        heap[index] = entry;
+        heapFrequencies[index] = frequency;
+    }
+
+    private void siftDown(int index) {
+        Entry entry = heap[index];
+        long frequency = heapFrequencies[index];
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && heapFrequencies[child + 1] < heapFrequencies[child]) {
+                child++;
+            }
+            if (frequency <= heapFrequencies[child]) break;
+            heap[index] = heap[child];
+            heapFrequencies[index] = heapFrequencies[child];
+            index = child;
+        }
+        heap[index] = entry;
+        heapFrequencies[index] = frequency;
+    }
+
+    /**
+     * @param sql SQL query or its fingerprint
+     * @return tracked entry for given query or null if it isn't tracked
+     */
+    public Entry get(String sql) {
+        SqlFingerprint sqlFingerprint = SqlFingerprint.of(sql);
+        return null == sqlFingerprint ? null : entries.get(sqlFingerprint);
+    }
+
+    /**
+     * @return tracked entries ordered by count descending; counts are captured once before sorting, so entries
+     * updated concurrently are ordered by their counts at the moment of the call
+     */
+    public List<Entry> getTopSql() {
+        List<EntrySnapshot> snapshots = new ArrayList<EntrySnapshot>(entries.size());
+        for (Entry entry : entries.values()) {
+            snapshots.add(new EntrySnapshot(entry));
+        }
+        Collections.sort(snapshots, new Comparator<EntrySnapshot>() {
+            @Override
+            public int compare(EntrySnapshot o1, EntrySnapshot o2) {
+                return o1.count > o2.count ? -1 : (o1.count == o2.count ? 0 : 1);
+            }
+        });
+        List<Entry> topSql = new ArrayList<Entry>(snapshots.size());
+        for (EntrySnapshot snapshot : snapshots) {
+            topSql.add(snapshot.entry);
+        }
+        return topSql;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        for (int i = 0; i < heapSize; i++) {
+            heap[i] = null;
+        }
+        heapSize = 0;
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.set(i, 0);
+        }
+        sketchSamples.set(0);
+        admissionThreshold = 0;
+    }
+
+    /**
+     * @return estimated number of occurrences of given hash including this one
+     */
+    private long addToSketch(long hash) {
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32) | 1;
+        int mask = sketchWidth - 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            int value = sketch.incrementAndGet(i * sketchWidth + ((hash1 + i * hash2) & mask));
+            if (value > 0 && value < estimate) {
+                estimate = value;
+            }
+        }
+        if (sketchSamples.incrementAndGet() >= sketchWidth) {
+            halveFrequencies();
+        }
+        return estimate;
+    }
+
+    private synchronized void halveFrequencies() {
+        if (sketchSamples.get() < sketchWidth) return;
+        sketchSamples.set(0);
+        // concurrent increments might be lost here; it only makes estimates slightly lower
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.set(i, sketch.get(i) >>> 1);
+        }
+        for (Entry entry : entries.values()) {
+            long frequency;
+            do {
+                frequency = entry.frequency.get();
+            } while (!entry.frequency.compareAndSet(frequency, frequency >>> 1));
+        }
+        rebuildHeap();
+        admissionThreshold = 0;
+    }
+
+    private static final class EntrySnapshot {
+
+        private final Entry entry;
+        private final long count;
+
+        private EntrySnapshot(Entry entry) {
+            this.entry = entry;
+            this.count = entry.getCount();
+        }
+
+    }
+
+    public static class Entry {
+
+        private final SqlFingerprint sqlFingerprint;
+        private final AtomicLong count;
+        private final long error;
+        // executions since admission halved together with the sketch
+        private final AtomicLong frequency;
+        private final AtomicLong elapsedTime = new AtomicLong();
+        private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+        private Entry(SqlFingerprint sqlFingerprint, long count) {
+            this.sqlFingerprint = sqlFingerprint;
+            this.count = new AtomicLong(count);
+            this.error = count - 1;
+            this.frequency = new AtomicLong(count);
+        }
+
+        private void record(long elapsedTime) {
+            count.incrementAndGet();
+            frequency.incrementAndGet();
+            this.elapsedTime.addAndGet(elapsedTime);
+            latencyHistogram.record(elapsedTime);
+        }
+
+        public String getSql() {
+            return sqlFingerprint.getFingerprint();
+        }
+
+        public SqlFingerprint getSqlFingerprint() {
+            return sqlFingerprint;
+        }
+
+        /**
+         * @return number of executions; can exceed the actual one by at most {@link #getError()}
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return maximum overestimation of {@link #getCount()}
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return total elapsed time in nanoseconds of executions recorded in {@link #getLatencyHistogram()}
+         */
+        public long getElapsedTime() {
+            return elapsedTime.get();
+        }
+
+        /**
+         * @return latencies of executions since this query was admitted to the tracker
+         */
+        public LatencyHistogram getLatencyHistogram() {
+            return latencyHistogram;
+        }
+
+    }
+
+}
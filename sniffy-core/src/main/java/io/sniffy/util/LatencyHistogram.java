@@ -0,0 +1,183 @@
+package io.sniffy.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact mergeable histogram of durations
+ *
+ * Values are recorded in nanoseconds and bucketed by microseconds: below 8 microseconds each microsecond has its own
+ * bucket, above that every power of two range is split into 8 buckets, so reported percentiles are at most 12.5% higher
+ * than the actual ones. Durations longer than {@link #MAX_VALUE_MICROS} microseconds (about 71 minutes) are counted
+ * in the last bucket; exact maximum is tracked separately. Each histogram takes 240 counters.
+ *
+ * Thread safe; recording doesn't allocate and doesn't block
+ *
+ * @since 3.1.10
+ */
+public class LatencyHistogram {
+
+    public static final long MAX_VALUE_MICROS = (1L << 32) - 1;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+    private static final int BUCKETS = getIndex(MAX_VALUE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+    }
+
+    /**
+     * @return approximate number of bytes retained by a histogram
+     */
+    public static int getRetainedSize() {
+        return 8 * BUCKETS + 128;
+    }
+
+    public LatencyHistogram(LatencyHistogram that) {
+        merge(that);
+    }
+
+    /**
+     * @param elapsedTimeNanos duration in nanoseconds; negative values are treated as zero
+     */
+    public void record(long elapsedTimeNanos) {
+        record(elapsedTimeNanos, 1);
+    }
+
+    /**
+     * Records given duration several times
+     * @param elapsedTimeNanos duration in nanoseconds; negative values are treated as zero
+     */
+    public void record(long elapsedTimeNanos, int count) {
+        if (elapsedTimeNanos < 0) elapsedTimeNanos = 0;
+        counts.addAndGet(getIndex(Math.min(elapsedTimeNanos / 1000, MAX_VALUE_MICROS)), count);
+        totalCount.addAndGet(count);
+        updateMin(elapsedTimeNanos);
+        updateMax(elapsedTimeNanos);
+    }
+
+    public void merge(LatencyHistogram that) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = that.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(that.totalCount.get());
+        updateMin(that.min.get());
+        updateMax(that.max.get());
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return minimum recorded duration in nanoseconds or 0 if nothing was recorded
+     */
+    public long getMin() {
+        long min = this.min.get();
+        return Long.MAX_VALUE == min ? 0 : min;
+    }
+
+    /**
+     * @return maximum recorded duration in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return median duration in nanoseconds
+     */
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * @return 95th percentile of durations in nanoseconds
+     */
+    public long getP95() {
+        return getValueAtPercentile(95);
+    }
+
+    /**
+     * @return 99th percentile of durations in nanoseconds
+     */
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return duration in nanoseconds such that given percentage of recorded durations are less or equal to it;
+     * 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long totalCount = this.totalCount.get();
+        if (0 == totalCount) return 0;
+
+        long targetCount = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * totalCount));
+        long max = this.max.get();
+
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+            if (count >= targetCount) {
+                // last bucket also holds values above MAX_VALUE_MICROS
+                return BUCKETS - 1 == i ? max : Math.min(getHighestEquivalentValue(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    private void updateMin(long value) {
+        long current;
+        while (value < (current = min.get())) {
+            if (min.compareAndSet(current, value)) break;
+        }
+    }
+
+    private void updateMax(long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) break;
+        }
+    }
+
+    //@VisibleForTesting
+    static int getIndex(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int bucket = msb - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (bucket << SUB_BUCKET_BITS) + (int) ((micros >>> bucket) & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * @return largest value in nanoseconds which falls into bucket with given index
+     */
+    //@VisibleForTesting
+    static long getHighestEquivalentValue(int index) {
+        long lowestMicros;
+        long widthMicros;
+        if (index < SUB_BUCKETS) {
+            lowestMicros = index;
+            widthMicros = 1;
+        } else {
+            int bucket = (index - SUB_BUCKETS) >>> SUB_BUCKET_BITS;
+            int subBucket = (index - SUB_BUCKETS) & SUB_BUCKET_MASK;
+            lowestMicros = ((long) (SUB_BUCKETS + subBucket)) << bucket;
+            widthMicros = 1L << bucket;
+        }
+        return (lowestMicros + widthMicros) * 1000 - 1;
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.sniffy.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue with preallocated mutable events
+ *
+ * Producers claim a slot using {@link #next()}, populate the event returned by {@link #get(long)}
+ * and make it visible to consumer using {@link #publish(long)}.
+ * If there are no free slots, {@link #next()} returns -1 and producer decides whether the event is dropped
+ *
+ * @since 3.1.10
+ */
+public class RingBuffer<E> {
+
+    public interface EventFactory<E> {
+
+        E newInstance();
+
+    }
+
+    public interface EventHandler<E> {
+
+        void onEvent(E event);
+
+    }
+
+    private final int mask;
+    private final Object[] events;
+
+    /**
+     * Sequence of the published event for each slot; -1 if slot was never published
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Last sequence claimed by producers
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /**
+     * Last sequence processed by consumer
+     */
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    public RingBuffer(int capacity, EventFactory<E> eventFactory) {
+
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity should be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+
+        this.mask = size - 1;
+        this.events = new Object[size];
+        this.published = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            events[i] = eventFactory.newInstance();
+            published.set(i, -1);
+        }
+
+    }
+
+    /**
+     * @return claimed sequence or -1 if buffer is full
+     */
+    public long next() {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            if (next - events.length > consumed.get()) {
+                return -1;
+            }
+        } while (!cursor.compareAndSet(current, next));
+        return next;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) events[(int) (sequence & mask)];
+    }
+
+    public void publish(long sequence) {
+        published.lazySet((int) (sequence & mask), sequence);
+    }
+
+    /**
+     * Processes all published events; should be called from a single consumer thread only
+     * @return number of processed events
+     */
+    public int drain(EventHandler<E> eventHandler) {
+        long sequence = consumed.get() + 1;
+        int count = 0;
+        while (published.get((int) (sequence & mask)) == sequence) {
+            try {
+                eventHandler.onEvent(get(sequence));
+            } finally {
+                consumed.lazySet(sequence);
+            }
+            sequence++;
+            count++;
+        }
+        return count;
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    public long size() {
+        return cursor.get() - consumed.get();
+    }
+
+}
@@ -6,11 +6,30 @@ import java.util.Arrays;
 import java.util.List;
 
 public class StackTraceExtractor {
-    
+
+    /**
+     * Default value of HotSpot {@code -XX:MaxJavaStackTraceDepth} which limits {@link Thread#getStackTrace()};
+     * {@link StackWalkerSupport} walks the same number of frames
+     * @since 3.1.10
+     */
+    static final int MAX_STACK_DEPTH = 1024;
+
     private StackTraceExtractor() {
     }
 
     public static List<StackTraceElement> getTraceForProxiedMethod(Method method) throws ClassNotFoundException {
+        return getTraceForProxiedMethod(method, StackWalkerSupport.isSupported());
+    }
+
+    /**
+     * @param stackWalker if false, stack is always captured using {@link Thread#getStackTrace()}
+     * @since 3.1.10
+     */
+    static List<StackTraceElement> getTraceForProxiedMethod(Method method, boolean stackWalker) throws ClassNotFoundException {
+        if (stackWalker) {
+            List<StackTraceElement> trace = StackWalkerSupport.getTraceForProxiedMethod(method);
+            if (null != trace) return trace;
+        }
         StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
         Class<?> baseClass = method.getDeclaringClass();
         // skip all elements until proxied call
@@ -43,6 +62,18 @@ public class StackTraceExtractor {
     }
 
     public static List<StackTraceElement> getTraceForImplementingMethod(Method method, Method methodImpl) throws ClassNotFoundException {
+        return getTraceForImplementingMethod(method, methodImpl, StackWalkerSupport.isSupported());
+    }
+
+    /**
+     * @param stackWalker if false, stack is always captured using {@link Thread#getStackTrace()}
+     * @since 3.1.10
+     */
+    static List<StackTraceElement> getTraceForImplementingMethod(Method method, Method methodImpl, boolean stackWalker) throws ClassNotFoundException {
+        if (stackWalker) {
+            List<StackTraceElement> trace = StackWalkerSupport.getTraceForImplementingMethod(method, methodImpl);
+            if (null != trace) return trace;
+        }
         StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
 
         String implClassName = methodImpl.getDeclaringClass().getCanonicalName();
@@ -67,8 +98,20 @@ public class StackTraceExtractor {
         }
     }
 
-    // TODO: refactor this method
     public static List<StackTraceElement> getTraceTillPackage(String packageName) {
+        return getTraceTillPackage(packageName, StackWalkerSupport.isSupported());
+    }
+
+    // TODO: refactor this method
+    /**
+     * @param stackWalker if false, stack is always captured using {@link Thread#getStackTrace()}
+     * @since 3.1.10
+     */
+    static List<StackTraceElement> getTraceTillPackage(String packageName, boolean stackWalker) {
+        if (stackWalker) {
+            List<StackTraceElement> trace = StackWalkerSupport.getTraceTillPackage(packageName);
+            if (null != trace) return trace;
+        }
         StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
         // skip all elements until proxied call
         int startIndex = 0;
@@ -84,7 +127,8 @@ public class StackTraceExtractor {
                     !"io.sniffy.socket.CompatSnifferSocketImpl".equals(traceElementClassName) &&
                     !"io.sniffy.socket.SnifferInputStream".equals(traceElementClassName) &&
                     !"io.sniffy.socket.SnifferOutputStream".equals(traceElementClassName) &&
-                    !"io.sniffy.util.StackTraceExtractor".equals(traceElementClassName)
+                    !"io.sniffy.util.StackTraceExtractor".equals(traceElementClassName) &&
+                    !"io.sniffy.util.StackWalkerSupport".equals(traceElementClassName)
                     ) {
                 startIndex = i > 1 ? i - 1 : i;
                 break;
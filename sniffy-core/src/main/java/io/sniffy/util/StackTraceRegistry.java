@@ -0,0 +1,285 @@
+package io.sniffy.util;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import io.sniffy.configuration.SniffyConfiguration;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deduplicates captured stack traces into compact integer identifiers
+ *
+ * Each distinct {@link StackTraceElement} is stored once in a frame table and gets a frame id.
+ * Stack traces are stored in a trie which starts from the outermost frame, so traces sharing common callers
+ * share the same trie nodes. Text representation of a trace is rendered when it's requested and softly cached, so it
+ * can be reclaimed by garbage collector and rendered again later.
+ *
+ * Memory consumed by the registry is proportional to the number of distinct call sites and doesn't depend on the
+ * number of captured events. Only the {@value #MAX_RENDERED_TRACES} most recently rendered traces can be resolved
+ * back to their identifiers by {@link #register(String)}, older ones get a new identifier; traces provided in rendered
+ * form by external code are kept as is.
+ *
+ * @see SniffyConfiguration#getStackTraceMaxDepth()
+ * @see SniffyConfiguration#getStackTraceExcludedPackages()
+ * @since 3.1.10
+ */
+public class StackTraceRegistry {
+
+    /**
+     * Identifier of absent (not captured) stack trace
+     */
+    public static final int NO_STACK_TRACE = 0;
+
+    public static final StackTraceRegistry INSTANCE = new StackTraceRegistry();
+
+    static final int MAX_RENDERED_TRACES = 1024;
+
+    private static final class Frame {
+
+        private final int id;
+        private final StackTraceElement element;
+
+        private Frame(int id, StackTraceElement element) {
+            this.id = id;
+            this.element = element;
+        }
+
+    }
+
+    private static final class Node {
+
+        private final int id;
+        private final Node parent;
+        private final Frame frame;
+        private final int depth;
+
+        // Frame has identity equals and hashCode
+        private final ConcurrentMap<Frame, Node> children = new ConcurrentHashMap<Frame, Node>(4);
+
+        // provided in rendered form by external code
+        private volatile String stackTrace;
+
+        private volatile SoftReference<String> renderedStackTrace;
+
+        private Node(int id, Node parent, Frame frame) {
+            this.id = id;
+            this.parent = parent;
+            this.frame = frame;
+            this.depth = null == parent ? 0 : parent.depth + 1;
+        }
+
+    }
+
+    private final AtomicInteger frameIdSequence = new AtomicInteger();
+    private final AtomicInteger traceIdSequence = new AtomicInteger(NO_STACK_TRACE);
+
+    private final ConcurrentMap<StackTraceElement, Frame> frames = new ConcurrentHashMap<StackTraceElement, Frame>();
+
+    private final Node root = new Node(NO_STACK_TRACE, null, null);
+
+    private final ConcurrentMap<Integer, Node> traces = new ConcurrentHashMap<Integer, Node>();
+
+    // traces provided in rendered form by external code
+    private final ConcurrentMap<String, Integer> externalTraces = new ConcurrentHashMap<String, Integer>();
+
+    // recently rendered traces from the trie
+    private final ConcurrentMap<String, Integer> renderedTraces =
+            new ConcurrentLinkedHashMap.Builder<String, Integer>().maximumWeightedCapacity(MAX_RENDERED_TRACES).build();
+
+    private static final class ExcludedPackages {
+
+        private final String property;
+        private final String[] packages;
+
+        private ExcludedPackages(String property) {
+            List<String> packages = new ArrayList<String>();
+            if (null != property) {
+                for (String excludedPackage : property.split(",")) {
+                    excludedPackage = excludedPackage.trim();
+                    if (excludedPackage.length() > 0) packages.add(excludedPackage);
+                }
+            }
+            this.property = property;
+            this.packages = packages.toArray(new String[packages.size()]);
+        }
+
+    }
+
+    private volatile ExcludedPackages excludedPackages = new ExcludedPackages(null);
+
+    //@VisibleForTesting
+    StackTraceRegistry() {
+    }
+
+    /**
+     * Registers given stack trace applying configured max depth and excluded packages
+     * @param stackTraceElements stack trace starting from the innermost frame
+     * @return stack trace identifier or {@link #NO_STACK_TRACE} if there are no frames left
+     */
+    public int register(List<StackTraceElement> stackTraceElements) {
+        return register(
+                stackTraceElements,
+                SniffyConfiguration.INSTANCE.getStackTraceMaxDepth(),
+                getExcludedPackages(SniffyConfiguration.INSTANCE.getStackTraceExcludedPackages())
+        );
+    }
+
+    //@VisibleForTesting
+    int register(List<StackTraceElement> stackTraceElements, int maxDepth, String[] excludedPackages) {
+
+        if (null == stackTraceElements || stackTraceElements.isEmpty()) return NO_STACK_TRACE;
+
+        int lastIndex = stackTraceElements.size() - 1;
+
+        if (maxDepth > 0) {
+            int index = 0;
+            int depth = 0;
+            for (; index <= lastIndex && depth < maxDepth; index++) {
+                if (!isExcluded(stackTraceElements.get(index), excludedPackages)) depth++;
+            }
+            lastIndex = index - 1;
+        }
+
+        Node node = root;
+        for (int i = lastIndex; i >= 0; i--) {
+            StackTraceElement stackTraceElement = stackTraceElements.get(i);
+            if (!isExcluded(stackTraceElement, excludedPackages)) {
+                node = getOrCreateChild(node, getOrCreateFrame(stackTraceElement));
+            }
+        }
+
+        return node.id;
+
+    }
+
+    /**
+     * Registers already rendered stack trace; used for stack traces provided by external code
+     * @return stack trace identifier or {@link #NO_STACK_TRACE} for null
+     */
+    public int register(String stackTrace) {
+        if (null == stackTrace) return NO_STACK_TRACE;
+        Integer id = renderedTraces.get(stackTrace);
+        if (null == id) {
+            id = externalTraces.get(stackTrace);
+        }
+        if (null == id) {
+            Integer newId = traceIdSequence.incrementAndGet();
+            id = externalTraces.putIfAbsent(stackTrace, newId);
+            if (null == id) {
+                Node node = new Node(newId, null, null);
+                node.stackTrace = stackTrace;
+                traces.put(newId, node);
+                id = newId;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return text representation of stack trace in format of {@link StackTraceExtractor#printStackTrace(List)}
+     * or null for {@link #NO_STACK_TRACE} and unknown identifiers
+     */
+    public String getStackTrace(int stackTraceId) {
+        Node node = traces.get(stackTraceId);
+        if (null == node) return null;
+        String stackTrace = node.stackTrace;
+        if (null != stackTrace) return stackTrace;
+        SoftReference<String> renderedStackTrace = node.renderedStackTrace;
+        stackTrace = null == renderedStackTrace ? null : renderedStackTrace.get();
+        if (null == stackTrace) {
+            stackTrace = StackTraceExtractor.printStackTrace(getStackTraceElements(node));
+            // rendered trace passed back by external code should resolve to the same identifier
+            renderedTraces.put(stackTrace, stackTraceId);
+            node.renderedStackTrace = new SoftReference<String>(stackTrace);
+        }
+        return stackTrace;
+    }
+
+    /**
+     * @return stack trace elements starting from the innermost frame; empty list for {@link #NO_STACK_TRACE},
+     * unknown identifiers and traces registered in rendered form
+     */
+    public List<StackTraceElement> getStackTraceElements(int stackTraceId) {
+        Node node = traces.get(stackTraceId);
+        return null == node ? Collections.<StackTraceElement>emptyList() : getStackTraceElements(node);
+    }
+
+    private static List<StackTraceElement> getStackTraceElements(Node node) {
+        List<StackTraceElement> stackTraceElements = new ArrayList<StackTraceElement>(node.depth);
+        for (; null != node.frame; node = node.parent) {
+            stackTraceElements.add(node.frame.element);
+        }
+        return stackTraceElements;
+    }
+
+    /**
+     * @return number of distinct frames
+     */
+    public int getFrameCount() {
+        return frames.size();
+    }
+
+    /**
+     * @return number of distinct stack traces including their common parts
+     */
+    public int getStackTraceCount() {
+        return traces.size();
+    }
+
+    /**
+     * @return frame identifier for given frame or -1 if it has never been registered
+     */
+    public int getFrameId(StackTraceElement stackTraceElement) {
+        Frame frame = frames.get(stackTraceElement);
+        return null == frame ? -1 : frame.id;
+    }
+
+    private Frame getOrCreateFrame(StackTraceElement stackTraceElement) {
+        Frame frame = frames.get(stackTraceElement);
+        if (null == frame) {
+            Frame newFrame = new Frame(frameIdSequence.incrementAndGet(), stackTraceElement);
+            frame = frames.putIfAbsent(stackTraceElement, newFrame);
+            if (null == frame) {
+                frame = newFrame;
+            }
+        }
+        return frame;
+    }
+
+    private Node getOrCreateChild(Node parent, Frame frame) {
+        Node node = parent.children.get(frame);
+        if (null == node) {
+            Node newNode = new Node(traceIdSequence.incrementAndGet(), parent, frame);
+            node = parent.children.putIfAbsent(frame, newNode);
+            if (null == node) {
+                traces.put(newNode.id, newNode);
+                node = newNode;
+            }
+        }
+        return node;
+    }
+
+    private static boolean isExcluded(StackTraceElement stackTraceElement, String[] excludedPackages) {
+        if (excludedPackages.length == 0) return false;
+        String className = stackTraceElement.getClassName();
+        for (String excludedPackage : excludedPackages) {
+            if (className.startsWith(excludedPackage)) return true;
+        }
+        return false;
+    }
+
+    private String[] getExcludedPackages(String property) {
+        ExcludedPackages excludedPackages = this.excludedPackages;
+        //noinspection StringEquality
+        if (property != excludedPackages.property) {
+            this.excludedPackages = excludedPackages = new ExcludedPackages(property);
+        }
+        return excludedPackages.packages;
+    }
+
+}
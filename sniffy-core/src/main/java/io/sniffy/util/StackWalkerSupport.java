@@ -0,0 +1,39 @@
+package io.sniffy.util;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Lazy stack capturing based on {@code java.lang.StackWalker}
+ *
+ * This version is used on Java 6 - 8 and when classes aren't loaded from a multi-release jar; it doesn't walk the
+ * stack at all and methods always return null, so {@link StackTraceExtractor} falls back to
+ * {@link Thread#getStackTrace()}. Java 9+ implementation is located in {@code src/main/java9} and packaged as a
+ * multi-release class
+ *
+ * Methods return null if required frame wasn't found on the stack
+ *
+ * @since 3.1.10
+ */
+class StackWalkerSupport {
+
+    private StackWalkerSupport() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    static List<StackTraceElement> getTraceForProxiedMethod(Method method) {
+        return null;
+    }
+
+    static List<StackTraceElement> getTraceForImplementingMethod(Method method, Method methodImpl) {
+        return null;
+    }
+
+    static List<StackTraceElement> getTraceTillPackage(String packageName) {
+        return null;
+    }
+
+}
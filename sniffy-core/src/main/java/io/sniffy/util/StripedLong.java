@@ -0,0 +1,195 @@
+package io.sniffy.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counter for values updated by many threads and read rarely
+ *
+ * Works like {@code java.util.concurrent.atomic.LongAdder} which isn't available on Java 6: updates go to a single
+ * field until two threads collide on it; after that each thread adds to one of the cells which reside on different
+ * cache lines. The table of cells starts with two slots, cells are created only in slots which are actually used and
+ * the table doubles each time two threads collide on the same cell. Reading the value sums up all cells, so it isn't
+ * an atomic snapshot if updates are running.
+ *
+ * Uncontended counter takes as much memory as {@link java.util.concurrent.atomic.AtomicLong}
+ *
+ * @since 3.1.10
+ */
+public class StripedLong extends Number {
+
+    private static final long serialVersionUID = -4987457120793893457L;
+
+    private static final int INITIAL_CELLS = 2;
+
+    private static final int MAX_CELLS;
+
+    static {
+        int cells = INITIAL_CELLS;
+        while (cells < Runtime.getRuntime().availableProcessors() && cells < 64) {
+            cells <<= 1;
+        }
+        MAX_CELLS = cells;
+    }
+
+    // object header, value and padding on both sides of it
+    private static final int CELL_SIZE = 16 + 15 * 8;
+
+    private static final AtomicLongFieldUpdater<StripedLong> BASE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(StripedLong.class, "base");
+
+    private volatile long base;
+
+    private volatile AtomicReferenceArray<Cell> cells;
+
+    public StripedLong() {
+    }
+
+    public StripedLong(long initialValue) {
+        this.base = initialValue;
+    }
+
+    public void add(long value) {
+        if (null == cells) {
+            long base = this.base;
+            if (BASE_UPDATER.compareAndSet(this, base, base + value)) return;
+        }
+        addToCell(value);
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * @return sum of all updates
+     */
+    public long get() {
+        long sum = base;
+        AtomicReferenceArray<Cell> cells = this.cells;
+        if (null != cells) {
+            for (int i = 0; i < cells.length(); i++) {
+                Cell cell = cells.get(i);
+                if (null != cell) {
+                    sum += cell.value;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return approximate number of bytes retained by this counter including its cells; slots without a cell yet are
+     * counted as if they were used, so the table isn't scanned
+     */
+    public long getRetainedSize() {
+        AtomicReferenceArray<Cell> cells = this.cells;
+        return 32 + (null == cells ? 0 : 32 + (8L + CELL_SIZE) * cells.length());
+    }
+
+    @Override
+    public int intValue() {
+        return (int) get();
+    }
+
+    @Override
+    public long longValue() {
+        return get();
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) get();
+    }
+
+    @Override
+    public double doubleValue() {
+        return (double) get();
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+
+    private void addToCell(long value) {
+        int hash = getThreadHash();
+        for (;;) {
+            AtomicReferenceArray<Cell> cells = this.cells;
+            if (null == cells) {
+                createCells();
+                continue;
+            }
+            int index = hash & (cells.length() - 1);
+            Cell cell = cells.get(index);
+            if (null == cell) {
+                if (createCell(cells, index, value)) return;
+                continue;
+            }
+            long current = cell.value;
+            if (Cell.VALUE_UPDATER.compareAndSet(cell, current, current + value)) return;
+            if (cells.length() < MAX_CELLS) {
+                growCells(cells);
+            }
+        }
+    }
+
+    private synchronized void createCells() {
+        if (null == cells) {
+            cells = new AtomicReferenceArray<Cell>(INITIAL_CELLS);
+        }
+    }
+
+    /**
+     * Cells are installed and the table is grown under the same lock, so a cell can't be added to a table which has
+     * already been copied
+     */
+    private synchronized boolean createCell(AtomicReferenceArray<Cell> cells, int index, long value) {
+        if (this.cells != cells || null != cells.get(index)) return false;
+        cells.set(index, new Cell(value));
+        return true;
+    }
+
+    private synchronized void growCells(AtomicReferenceArray<Cell> cells) {
+        if (this.cells != cells) return;
+        AtomicReferenceArray<Cell> grown = new AtomicReferenceArray<Cell>(cells.length() << 1);
+        for (int i = 0; i < cells.length(); i++) {
+            grown.set(i, cells.get(i));
+        }
+        this.cells = grown;
+    }
+
+    /**
+     * Thread ids are sequential, so they're mixed using the MurmurHash3 finalizer before taking the lower bits
+     */
+    private static int getThreadHash() {
+        long hash = Thread.currentThread().getId();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Cell implements Serializable {
+
+        private static final long serialVersionUID = 7245830265087645092L;
+
+        private static final AtomicLongFieldUpdater<Cell> VALUE_UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Cell.class, "value");
+
+        // 7 longs on each side keep values of different cells on different cache lines
+        private long p0, p1, p2, p3, p4, p5, p6;
+        private volatile long value;
+        private long q0, q1, q2, q3, q4, q5, q6;
+
+        private Cell(long value) {
+            this.value = value;
+        }
+
+    }
+
+}
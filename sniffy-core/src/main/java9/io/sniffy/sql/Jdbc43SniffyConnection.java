@@ -0,0 +1,57 @@
+package io.sniffy.sql;
+
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.ShardingKey;
+
+/**
+ * {@link SniffyConnection} forwarding JDBC 4.3 methods to the driver instead of falling back to default
+ * implementations in {@link Connection} which ignore request boundaries and throw on sharding keys
+ *
+ * @since 3.1.10
+ */
+class Jdbc43SniffyConnection extends SniffyConnection {
+
+    Jdbc43SniffyConnection(Connection delegate, String url, String userName) {
+        super(delegate, url, userName);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    public void beginRequest() throws SQLException {
+        delegate.beginRequest();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    public void endRequest() throws SQLException {
+        delegate.endRequest();
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    public boolean setShardingKeyIfValid(ShardingKey shardingKey, ShardingKey superShardingKey, int timeout) throws SQLException {
+        return delegate.setShardingKeyIfValid(shardingKey, superShardingKey, timeout);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    public boolean setShardingKeyIfValid(ShardingKey shardingKey, int timeout) throws SQLException {
+        return delegate.setShardingKeyIfValid(shardingKey, timeout);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    public void setShardingKey(ShardingKey shardingKey, ShardingKey superShardingKey) throws SQLException {
+        delegate.setShardingKey(shardingKey, superShardingKey);
+    }
+
+    @Override
+    @IgnoreJRERequirement
+    public void setShardingKey(ShardingKey shardingKey) throws SQLException {
+        delegate.setShardingKey(shardingKey);
+    }
+
+}
@@ -0,0 +1,21 @@
+package io.sniffy.sql;
+
+import java.sql.Connection;
+
+/**
+ * Creates delegating {@link SniffyConnection} matching JDBC version of the running JRE
+ *
+ * Java 9+ version which forwards JDBC 4.3 methods to the driver using {@link Jdbc43SniffyConnection}
+ *
+ * @since 3.1.10
+ */
+class JdbcSupport {
+
+    private JdbcSupport() {
+    }
+
+    static SniffyConnection newConnection(Connection delegate, String url, String userName) {
+        return new Jdbc43SniffyConnection(delegate, url, userName);
+    }
+
+}
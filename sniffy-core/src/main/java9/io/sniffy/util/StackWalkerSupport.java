@@ -0,0 +1,130 @@
+package io.sniffy.util;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.lang.StackWalker.Option.RETAIN_CLASS_REFERENCE;
+import static java.lang.StackWalker.Option.SHOW_REFLECT_FRAMES;
+
+/**
+ * Lazy stack capturing based on {@code java.lang.StackWalker}
+ *
+ * Frames are walked lazily: Sniffy and JDK frames on top of the stack are skipped without building
+ * {@link StackTraceElement} instances and proxy classes are resolved using frame class references
+ * instead of {@link Class#forName(String)}
+ *
+ * Results are equal to the ones produced by {@link Thread#getStackTrace()} based implementation in
+ * {@link StackTraceExtractor}; at most {@link StackTraceExtractor#MAX_STACK_DEPTH} frames are walked just like
+ * {@link Thread#getStackTrace()} captures by default. Methods return null if required frame wasn't found on the stack
+ *
+ * @since 3.1.10
+ */
+class StackWalkerSupport {
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(
+            EnumSet.of(RETAIN_CLASS_REFERENCE, SHOW_REFLECT_FRAMES)
+    );
+
+    private StackWalkerSupport() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    static List<StackTraceElement> getTraceForProxiedMethod(Method method) {
+        Class<?> baseClass = method.getDeclaringClass();
+        return STACK_WALKER.walk(frames -> replaceTopFrames(frames.limit(StackTraceExtractor.MAX_STACK_DEPTH), method,
+                frame -> Proxy.isProxyClass(frame.getDeclaringClass()) && baseClass.isAssignableFrom(frame.getDeclaringClass())
+        ));
+    }
+
+    static List<StackTraceElement> getTraceForImplementingMethod(Method method, Method methodImpl) {
+        String implClassName = methodImpl.getDeclaringClass().getCanonicalName();
+        String implMethodName = methodImpl.getName();
+        return STACK_WALKER.walk(frames -> replaceTopFrames(frames.limit(StackTraceExtractor.MAX_STACK_DEPTH), method,
+                frame -> frame.getClassName().equals(implClassName) && frame.getMethodName().equals(implMethodName)
+        ));
+    }
+
+    static List<StackTraceElement> getTraceTillPackage(String packageName) {
+        return STACK_WALKER.walk(frames -> {
+            Iterator<StackWalker.StackFrame> iterator = frames.limit(StackTraceExtractor.MAX_STACK_DEPTH).skip(1).iterator();
+            StackWalker.StackFrame previousFrame = null;
+            List<StackTraceElement> result = new ArrayList<>();
+            while (iterator.hasNext()) {
+                StackWalker.StackFrame frame = iterator.next();
+                if (!result.isEmpty()) {
+                    result.add(frame.toStackTraceElement());
+                } else if (!isSkipped(frame.getClassName(), packageName)) {
+                    if (null != previousFrame) {
+                        result.add(previousFrame.toStackTraceElement());
+                    }
+                    result.add(frame.toStackTraceElement());
+                }
+                previousFrame = frame;
+            }
+            if (result.isEmpty()) {
+                // no application frames, fallback to entire stack trace
+                return null;
+            }
+            removeLastFrame(result);
+            return result;
+        });
+    }
+
+    private interface FramePredicate {
+
+        boolean test(StackWalker.StackFrame frame);
+
+    }
+
+    private static List<StackTraceElement> replaceTopFrames(
+            Stream<StackWalker.StackFrame> frames, Method method, FramePredicate baseFramePredicate) {
+        Iterator<StackWalker.StackFrame> iterator = frames.iterator();
+        List<StackTraceElement> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            StackWalker.StackFrame frame = iterator.next();
+            if (!result.isEmpty()) {
+                result.add(frame.toStackTraceElement());
+            } else if (baseFramePredicate.test(frame)) {
+                result.add(new StackTraceElement(
+                        method.getDeclaringClass().getCanonicalName(),
+                        method.getName(),
+                        frame.getFileName(),
+                        frame.getLineNumber()
+                ));
+            }
+        }
+        if (result.isEmpty()) {
+            // no proxy, return entire collection
+            return null;
+        }
+        removeLastFrame(result);
+        return result;
+    }
+
+    private static void removeLastFrame(List<StackTraceElement> result) {
+        result.remove(result.size() - 1);
+    }
+
+    private static boolean isSkipped(String className, String packageName) {
+        return className.startsWith(packageName) ||
+                className.startsWith("java") ||
+                className.startsWith("com.sun") ||
+                className.startsWith("sun") ||
+                "io.sniffy.Sniffy".equals(className) ||
+                "io.sniffy.socket.SnifferSocketImpl".equals(className) ||
+                "io.sniffy.socket.CompatSnifferSocketImpl".equals(className) ||
+                "io.sniffy.socket.SnifferInputStream".equals(className) ||
+                "io.sniffy.socket.SnifferOutputStream".equals(className) ||
+                "io.sniffy.util.StackTraceExtractor".equals(className) ||
+                "io.sniffy.util.StackWalkerSupport".equals(className);
+    }
+
+}
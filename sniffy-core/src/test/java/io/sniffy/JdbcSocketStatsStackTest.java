@@ -0,0 +1,76 @@
+package io.sniffy;
+
+import io.sniffy.socket.SocketStats;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JdbcSocketStatsStackTest {
+
+    @Test
+    public void testNestedFrames() {
+        JdbcSocketStatsStack stack = new JdbcSocketStatsStack();
+        assertTrue(stack.isEmpty());
+
+        stack.push(null);
+        stack.accumulate(1, 10, 20);
+
+        stack.push(null);
+        stack.accumulate(1, 100, 200);
+        assertEquals(2, stack.getDepth());
+
+        assertTrue(stack.pop());
+        assertEquals(100, stack.getPoppedBytesDown());
+        assertEquals(200, stack.getPoppedBytesUp());
+
+        stack.accumulate(1, 1, 2);
+
+        assertTrue(stack.pop());
+        assertEquals(11, stack.getPoppedBytesDown());
+        assertEquals(22, stack.getPoppedBytesUp());
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void testPopEmptyStack() {
+        JdbcSocketStatsStack stack = new JdbcSocketStatsStack();
+        stack.push(null);
+        stack.accumulate(1, 10, 20);
+        assertTrue(stack.pop());
+
+        assertFalse(stack.pop());
+        assertEquals(0, stack.getPoppedBytesDown());
+        assertEquals(0, stack.getPoppedBytesUp());
+    }
+
+    @Test
+    public void testExternalAccumulator() {
+        JdbcSocketStatsStack stack = new JdbcSocketStatsStack();
+        SocketStats socketStats = new SocketStats(0, 0, 0);
+
+        stack.push(socketStats);
+        stack.accumulate(5, 10, 20);
+        assertTrue(stack.pop());
+
+        assertEquals(0, stack.getPoppedBytesDown());
+        assertEquals(5, socketStats.elapsedTimeNanos.longValue());
+        assertEquals(10, socketStats.bytesDown.longValue());
+        assertEquals(20, socketStats.bytesUp.longValue());
+    }
+
+    @Test
+    public void testGrow() {
+        JdbcSocketStatsStack stack = new JdbcSocketStatsStack();
+        for (int i = 0; i < 100; i++) {
+            stack.push(null);
+            stack.accumulate(0, i, 0);
+        }
+        assertEquals(100, stack.getDepth());
+        for (int i = 99; i >= 0; i--) {
+            assertTrue(stack.pop());
+            assertEquals(i, stack.getPoppedBytesDown());
+        }
+        assertTrue(stack.isEmpty());
+    }
+
+}
@@ -0,0 +1,91 @@
+package io.sniffy;
+
+import io.sniffy.socket.Protocol;
+import io.sniffy.socket.SocketMetaData;
+import io.sniffy.sql.SqlStatement;
+import io.sniffy.sql.StatementMetaData;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MetaDataCacheTest {
+
+    @Test
+    public void testStatementMetaData() {
+        MetaDataCache metaDataCache = new MetaDataCache();
+
+        StatementMetaData statementMetaData = metaDataCache.getStatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 1, 1);
+        assertSame(statementMetaData, metaDataCache.getStatementMetaData(new String("SELECT 1 FROM DUAL"), SqlStatement.SELECT, 1, 1));
+        assertSame(metaDataCache.getThreadMetaData(), statementMetaData.getThreadMetaData());
+
+        StatementMetaData otherStackTrace = metaDataCache.getStatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 2, 1);
+        assertNotSame(statementMetaData, otherStackTrace);
+        assertNotEquals(statementMetaData, otherStackTrace);
+
+        StatementMetaData otherWeight = metaDataCache.getStatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 1, 10);
+        assertEquals(10, otherWeight.getSamplingWeight());
+        assertEquals(statementMetaData, otherWeight);
+
+        assertEquals(
+                new StatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 1, new ThreadMetaData(Thread.currentThread())),
+                statementMetaData
+        );
+    }
+
+    @Test
+    public void testSocketMetaData() {
+        MetaDataCache metaDataCache = new MetaDataCache();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555);
+
+        SocketMetaData socketMetaData = metaDataCache.getSocketMetaData(Protocol.TCP, address, 1, 1, 1);
+        assertSame(socketMetaData, metaDataCache.getSocketMetaData(
+                Protocol.TCP, new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555), 1, 1, 1
+        ));
+        assertNotSame(socketMetaData, metaDataCache.getSocketMetaData(Protocol.TCP, address, 2, 1, 1));
+        assertNotSame(socketMetaData, metaDataCache.getSocketMetaData(Protocol.UDP, address, 1, 1, 1));
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        MetaDataCache metaDataCache = new MetaDataCache();
+
+        ThreadMetaData threadMetaData = metaDataCache.getThreadMetaData();
+        StatementMetaData statementMetaData = metaDataCache.getStatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 1, 1);
+        assertSame(threadMetaData, metaDataCache.getThreadMetaData());
+
+        AtomicReference<ThreadMetaData> otherThreadMetaData = new AtomicReference<>();
+        AtomicReference<StatementMetaData> otherStatementMetaData = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            otherThreadMetaData.set(metaDataCache.getThreadMetaData());
+            otherStatementMetaData.set(metaDataCache.getStatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 1, 1));
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(thread.getId(), otherThreadMetaData.get().getThreadId());
+        assertSame(otherThreadMetaData.get(), otherStatementMetaData.get().getThreadMetaData());
+        assertNotEquals(statementMetaData, otherStatementMetaData.get());
+
+        assertSame(threadMetaData, metaDataCache.getThreadMetaData());
+        assertSame(statementMetaData, metaDataCache.getStatementMetaData("SELECT 1 FROM DUAL", SqlStatement.SELECT, 1, 1));
+    }
+
+    @Test
+    public void testThreadNameIsNotReadForCachedThread() throws Exception {
+        MetaDataCache metaDataCache = new MetaDataCache();
+        String threadName = Thread.currentThread().getName();
+        try {
+            ThreadMetaData threadMetaData = metaDataCache.getThreadMetaData();
+            Thread.currentThread().setName("renamed");
+            assertSame(threadMetaData, metaDataCache.getThreadMetaData());
+            assertEquals(threadName, metaDataCache.getThreadMetaData().getThreadName());
+        } finally {
+            Thread.currentThread().setName(threadName);
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import static org.junit.Assert.*;
@@ -19,7 +20,7 @@ public class SnifferListenersTest extends BaseTest {
         Spy spy = Sniffy.spy();
         spy.close();
 
-        Sniffy.registeredSpies.stream().
+        Arrays.stream(Sniffy.registeredSpies).
                 filter(spyReference -> spyReference.get() == spy).
                 forEach(spyReference -> fail("Spy was not removed from Sniffer observers"));
 
@@ -39,12 +40,12 @@ public class SnifferListenersTest extends BaseTest {
             assertNotNull(e);
             assertEquals(0, e.getMinimumQueries());
             assertEquals(0, e.getMaximumQueries());
-            assertEquals(1, e.getNumQueries());
-            assertEquals(1, e.getExecutedStatements().size());
-            assertEquals(1, e.getExecutedSqls().size());
+            assertEquals(2, e.getNumQueries());
+            assertEquals(2, e.getExecutedStatements().size());
+            assertEquals(2, e.getExecutedSqls().size());
             assertEquals(Threads.CURRENT, e.getThreadMatcher());
-            assertTrue(e.getMessage().contains("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES ('foo')"));
-            assertTrue(e.getMessage().contains("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (LOWER('bar'))"));
+            assertTrue(e.getMessage().contains("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (?)"));
+            assertTrue(e.getMessage().contains("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (LOWER(?))"));
         }
 
     }
@@ -100,11 +101,11 @@ public class SnifferListenersTest extends BaseTest {
             assertEquals(1, e.getExecutedStatements().size());
             assertEquals(1, e.getExecutedSqls().size());
             Iterator<StatementMetaData> statementsIt = e.getExecutedStatements().iterator();
-            assertEquals("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (?) /*2 times*/", statementsIt.next().sql);
+            assertEquals("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (?)", statementsIt.next().sql);
             assertFalse(statementsIt.hasNext());
             assertEquals(Threads.CURRENT, e.getThreadMatcher());
             assertEquals(SqlStatement.ANY, e.getQuery());
-            assertTrue(e.getMessage().contains("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (?) /*2 times*/"));
+            assertTrue(e.getMessage().contains("INSERT INTO TEMPORARY_TABLE (BAZ) VALUES (?)"));
         }
 
     }
@@ -32,8 +32,8 @@ public class SnifferTest extends BaseTest {
         Collection<StatementMetaData> statements = spy.getExecutedStatements(Threads.ANY, false).keySet();
         Iterator<StatementMetaData> statementsIt = statements.iterator();
         StatementMetaData statementMetaData = statementsIt.next();
-        assertNotNull(statementMetaData.stackTrace);
-        assertTrue(statementMetaData.stackTrace.contains("testSpyExecutedStatements_StackTraceTracked"));
+        assertNotNull(statementMetaData.getStackTrace());
+        assertTrue(statementMetaData.getStackTrace().contains("testSpyExecutedStatements_StackTraceTracked"));
         assertFalse(statementsIt.hasNext());
     }
 
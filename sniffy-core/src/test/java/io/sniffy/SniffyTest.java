@@ -2,16 +2,24 @@ package io.sniffy;
 
 import com.codahale.metrics.Timer;
 import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.socket.HostSocketStats;
+import io.sniffy.socket.Protocol;
+import io.sniffy.sql.TopSqlTracker;
 import org.junit.Before;
 import org.junit.Test;
 import ru.yandex.qatools.allure.annotations.Features;
 
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -19,8 +27,57 @@ public class SniffyTest extends BaseTest {
 
     @Before
     public void clearSpies() {
-        Sniffy.registeredSpies.clear();
-        Sniffy.currentThreadSpies.clear();
+        Sniffy.removeAllSpies();
+        Sniffy.removeCurrentThreadSpyReference();
+    }
+
+    @Test
+    public void testEffectiveSpyConfigurationUpdatedOnSpyClose() throws Exception {
+        assertFalse(Sniffy.getEffectiveSpyConfiguration().isCaptureNetworkTraffic());
+        try (@SuppressWarnings("unused") Spy spy = Sniffy.spy(SpyConfiguration.builder().captureNetworkTraffic(true).build())) {
+            assertTrue(Sniffy.getEffectiveSpyConfiguration().isCaptureNetworkTraffic());
+            assertSame(Sniffy.getEffectiveSpyConfiguration(), Sniffy.getEffectiveSpyConfiguration());
+        }
+        assertFalse(Sniffy.getEffectiveSpyConfiguration().isCaptureNetworkTraffic());
+    }
+
+    @Test
+    public void testCollectedSpyIsRemoved() throws Exception {
+        Sniffy.spy(SpyConfiguration.builder().captureNetworkTraffic(true).build());
+        assertEquals(1, Sniffy.registeredSpies.length);
+
+        for (int i = 0; i < 100 && null != Sniffy.registeredSpies[0].get(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        // cleared reference is enqueued asynchronously; until then notification loops just skip it
+        for (int i = 0; i < 100 && 0 != Sniffy.registeredSpies.length; i++) {
+            executeStatements(1);
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, Sniffy.registeredSpies.length);
+        assertFalse(Sniffy.getEffectiveSpyConfiguration().isCaptureNetworkTraffic());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testCollectedSpyIsRemovedOnRegistration() throws Exception {
+        Sniffy.spy(SpyConfiguration.builder().captureNetworkTraffic(true).build());
+        assertEquals(1, Sniffy.registeredSpies.length);
+
+        WeakReference<Spy> spyReference = Sniffy.registeredSpies[0];
+        for (int i = 0; i < 100 && !spyReference.isEnqueued(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(spyReference.isEnqueued());
+
+        try (@SuppressWarnings("unused") Spy spy = Sniffy.spy()) {
+            assertEquals(1, Sniffy.registeredSpies.length);
+            assertFalse(Sniffy.getEffectiveSpyConfiguration().isCaptureNetworkTraffic());
+        }
     }
 
     @Test
@@ -55,15 +112,45 @@ public class SniffyTest extends BaseTest {
         assertEquals(2, spy.getExecutedStatements().values().iterator().next().queries.get());
     }
 
+    @Test
+    public void testCaptureThreadsFilter() throws Exception {
+        try (Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().captureThreads(Threads.CURRENT).build())) {
+            executeStatements(2);
+            executeStatementsInOtherThread(3);
+            assertEquals(1, spy.getExecutedStatements(Threads.ANY, false).size());
+            assertEquals(2, spy.getExecutedStatements(Threads.ANY, false).values().iterator().next().queries.get());
+        }
+    }
+
+    @Test
+    public void testCaptureThreadsFilterAppliedBeforeMetaData() throws Exception {
+        try (@SuppressWarnings("unused") Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().captureThreads(Threads.CURRENT).build())) {
+            assertNotNull(Sniffy.executeStatement("SELECT 1 FROM DUAL", 0, null));
+
+            AtomicReference<Object> statementMetaData = new AtomicReference<>(this);
+            Thread thread = new Thread(() -> statementMetaData.set(Sniffy.executeStatement("SELECT 1 FROM DUAL", 0, null)));
+            thread.start();
+            thread.join();
+            assertNull(statementMetaData.get());
+
+            try (@SuppressWarnings("unused") Spy<?> anyThreadSpy = Sniffy.spy()) {
+                thread = new Thread(() -> statementMetaData.set(Sniffy.executeStatement("SELECT 1 FROM DUAL", 0, null)));
+                thread.start();
+                thread.join();
+                assertNotNull(statementMetaData.get());
+            }
+        }
+    }
+
     @Test
     @Features("issues/292")
     public void testGlobalSqlStatsDisabled() throws Exception {
         int topSqlCapacity = SniffyConfiguration.INSTANCE.getTopSqlCapacity();
         try {
-            Sniffy.getGlobalSqlStats().clear();
+            Sniffy.getTopSqlTracker().clear();
             SniffyConfiguration.INSTANCE.setTopSqlCapacity(0);
             executeStatements(3);
-            assertTrue(Sniffy.getGlobalSqlStats().isEmpty());
+            assertTrue(Sniffy.getTopSqlTracker().isEmpty());
         } finally {
             SniffyConfiguration.INSTANCE.setTopSqlCapacity(topSqlCapacity);
         }
@@ -72,39 +159,106 @@ public class SniffyTest extends BaseTest {
     @Test
     @Features("issues/292")
     public void testGetGlobalSqlStats() throws Exception {
+        Sniffy.getTopSqlTracker().clear();
+        executeStatements(3);
+        List<TopSqlTracker.Entry> topSql = Sniffy.getTopSqlTracker().getTopSql();
+        assertEquals(1, topSql.size());
+        TopSqlTracker.Entry entry = topSql.get(0);
+        assertEquals("SELECT ? FROM DUAL", entry.getSql());
+        assertEquals(3, entry.getCount());
+        assertEquals(0, entry.getError());
+        assertEquals(3, entry.getLatencyHistogram().getCount());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedGlobalSqlStatsBackedByTopSqlTracker() throws Exception {
         Sniffy.getGlobalSqlStats().clear();
+        assertTrue(Sniffy.getTopSqlTracker().isEmpty());
         executeStatements(3);
         ConcurrentMap<String, Timer> globalSqlStats = Sniffy.getGlobalSqlStats();
         assertEquals(1, globalSqlStats.size());
         Map.Entry<String, Timer> entry = globalSqlStats.entrySet().iterator().next();
-        assertEquals("SELECT 1 FROM DUAL", entry.getKey());
+        assertEquals("SELECT ? FROM DUAL", entry.getKey());
         assertEquals(3, entry.getValue().getCount());
+        assertEquals(3, entry.getValue().getSnapshot().size());
+        assertTrue(entry.getValue().getSnapshot().getMax() >= entry.getValue().getSnapshot().getMin());
+        assertEquals(3, globalSqlStats.get("SELECT 1 FROM DUAL").getCount());
     }
 
     @Test
-    @Features("issues/292")
-    public void testLruGlobalSqlStats() throws Exception {
-        Sniffy.getGlobalSqlStats().clear();
-        for (int i = 0; i < Sniffy.TOP_SQL_CAPACITY; i++) {
-            executeSelectStatements(i, 2 + i % 100);
+    public void testLogSqlTimeUnits() {
+        Sniffy.getTopSqlTracker().clear();
+        Sniffy.logSqlTime("SELECT 1 FROM DUAL", 5);
+        Sniffy.logSqlTimeNanos("SELECT 2 FROM DUAL", TimeUnit.MILLISECONDS.toNanos(3));
+        TopSqlTracker.Entry entry = Sniffy.getTopSqlTracker().get("SELECT ? FROM DUAL");
+        assertEquals(2, entry.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(8), entry.getElapsedTime());
+    }
+
+    @Test
+    public void testGetGlobalSqlStatsAsync() throws Exception {
+        Sniffy.getTopSqlTracker().clear();
+        SniffyConfiguration.INSTANCE.setAsyncEventProcessing(true);
+        try {
+            executeStatements(3);
+            TopSqlTracker topSqlTracker = Sniffy.getTopSqlTracker();
+            for (int i = 0; i < 100 && (topSqlTracker.isEmpty() || topSqlTracker.getTopSql().get(0).getCount() < 3); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, topSqlTracker.size());
+            assertEquals(3, topSqlTracker.get("SELECT ? FROM DUAL").getCount());
+            assertEquals(0, Sniffy.getDroppedEventsCount());
+        } finally {
+            SniffyConfiguration.INSTANCE.setAsyncEventProcessing(false);
         }
-        assertEquals(Sniffy.TOP_SQL_CAPACITY, Sniffy.getGlobalSqlStats().size());
+    }
 
-        assertNotNull(Sniffy.getGlobalSqlStats().get(String.format("SELECT %d FROM DUAL", 0)));
+    @Test
+    public void testGlobalSocketStatsAsync() throws Exception {
+        InetSocketAddress address = InetSocketAddress.createUnresolved("async.sniffy.io", 5555);
+        SniffyConfiguration.INSTANCE.setAsyncEventProcessing(true);
+        try {
+            for (int i = 0; i < 3; i++) {
+                Sniffy.logSocket(1, address, 1000, 10, 1, false);
+            }
+            HostSocketStats hostSocketStats = null;
+            for (int i = 0; i < 100 && (null == (hostSocketStats = Sniffy.getGlobalSocketStats().get(Protocol.TCP, address)) ||
+                    hostSocketStats.bytesDown.longValue() < 30); i++) {
+                Thread.sleep(10);
+            }
+            assertNotNull(hostSocketStats);
+            assertEquals(30, hostSocketStats.bytesDown.longValue());
+            assertEquals(3, hostSocketStats.bytesUp.longValue());
+            assertEquals(0, Sniffy.getDroppedEventsCount());
+        } finally {
+            SniffyConfiguration.INSTANCE.setAsyncEventProcessing(false);
+        }
+    }
 
-        executeSelectStatements(Sniffy.TOP_SQL_CAPACITY + 1000, 1);
-        assertEquals(Sniffy.TOP_SQL_CAPACITY, Sniffy.getGlobalSqlStats().size());
+    @Test
+    @Features("issues/292")
+    public void testTopSqlKeepsHeavyHitters() throws Exception {
+        TopSqlTracker topSqlTracker = Sniffy.getTopSqlTracker();
+        topSqlTracker.clear();
+        int heavyHitter = 10 * Sniffy.TOP_SQL_CAPACITY;
+        for (int i = 0; i < 2 * Sniffy.TOP_SQL_CAPACITY; i++) {
+            executeSelectStatements(i, 1);
+            executeSelectStatements(heavyHitter, 1);
+        }
+        assertEquals(Sniffy.TOP_SQL_CAPACITY, topSqlTracker.size());
 
-        assertTrue(Sniffy.getGlobalSqlStats().containsKey(String.format("SELECT %d FROM DUAL", Sniffy.TOP_SQL_CAPACITY + 1000)));
-        assertTrue(Sniffy.getGlobalSqlStats().containsKey(String.format("SELECT %d FROM DUAL", 0)));
-        assertFalse(Sniffy.getGlobalSqlStats().containsKey(String.format("SELECT %d FROM DUAL", 1)));
+        TopSqlTracker.Entry entry = topSqlTracker.getTopSql().get(0);
+        assertEquals(String.format("SELECT ? AS C%d FROM DUAL", heavyHitter), entry.getSql());
+        assertEquals(2 * Sniffy.TOP_SQL_CAPACITY, entry.getCount());
+        assertEquals(0, entry.getError());
     }
 
     private void executeSelectStatements(int index, int count) throws SQLException {
         try (Connection connection = openConnection();
              Statement statement = connection.createStatement()) {
             for (int i = 0; i < count; i++) {
-                statement.execute(String.format("SELECT %d FROM DUAL", index));
+                statement.execute(String.format("SELECT 1 AS C%d FROM DUAL", index));
             }
         }
     }
@@ -0,0 +1,152 @@
+package io.sniffy;
+
+import io.sniffy.socket.NetworkPacket;
+import io.sniffy.socket.Protocol;
+import io.sniffy.socket.SocketMetaData;
+import io.sniffy.socket.SocketStats;
+import io.sniffy.sql.BindParameters;
+import io.sniffy.sql.SqlStatement;
+import io.sniffy.sql.StatementMetaData;
+import io.sniffy.util.StackTraceRegistry;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SpyMemoryBudgetTest {
+
+    @Test
+    public void testUnboundedByDefault() throws Exception {
+        try (Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().captureJdbc(true).build())) {
+            assertFalse(spy.getSpyConfiguration().hasMemoryBudget());
+            for (int i = 0; i < 1000; i++) {
+                spy.addExecutedStatement(statementMetaData("SELECT " + i + " FROM DUAL"), 1000, 0, 0, 0);
+            }
+            assertEquals(1000, spy.executedStatements.size());
+            assertEquals(0, spy.getEvictedEntries());
+        }
+    }
+
+    @Test
+    public void testStatementsEvicted() throws Exception {
+        try (Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().
+                captureJdbc(true).captureNetwork(false).memoryBudget(10 * 1024).build())) {
+            for (int i = 0; i < 1000; i++) {
+                spy.addExecutedStatement(statementMetaData("SELECT " + i + " FROM DUAL"), 1000, 10, 20, 0);
+            }
+
+            int retained = spy.executedStatements.size();
+            assertTrue(retained > 0 && retained < 100);
+            assertEquals(1000 - retained, spy.getEvictedEntries());
+            assertEquals(1000 - retained, spy.getEvictedSqlStats().queries.intValue());
+            assertEquals(10 * (1000 - retained), spy.getEvictedSqlStats().bytesDown.intValue());
+
+            // most recent statements are kept
+            assertNotNull(spy.executedStatements.get(statementMetaData("SELECT 999 FROM DUAL")));
+
+            spy.reset();
+            assertEquals(0, spy.getEvictedSqlStats().queries.intValue());
+        }
+    }
+
+    @Test
+    public void testRetainedBindParametersAreWeighed() throws Exception {
+        try (Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().
+                captureJdbc(true).captureNetwork(false).memoryBudget(64 * 1024).build())) {
+            for (int i = 0; i < 20; i++) {
+                spy.addExecutedStatement(statementMetaData("SELECT " + i + " FROM DUAL"), 1000, 0, 0, 0);
+            }
+            assertEquals(20, spy.executedStatements.size());
+
+            char[] value = new char[4 * 1024];
+            for (int i = 0; i < 20; i++) {
+                spy.addBindParameters(statementMetaData("SELECT " + i + " FROM DUAL"),
+                        new BindParameters(new String[]{new String(value)}, false, 1000));
+            }
+
+            assertTrue(spy.executedStatements.size() < 20);
+            assertEquals(20 - spy.executedStatements.size(), spy.getEvictedEntries());
+        }
+    }
+
+    @Test
+    public void testNetworkTrafficEvicted() throws Exception {
+        try (Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().
+                captureJdbc(false).captureNetworkTraffic(true).memoryBudget(16 * 1024).build())) {
+            byte[] traffic = new byte[1024];
+            for (int i = 0; i < 100; i++) {
+                SocketMetaData socketMetaData = new SocketMetaData(
+                        Protocol.TCP, new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555), i,
+                        StackTraceRegistry.NO_STACK_TRACE, new ThreadMetaData(Thread.currentThread())
+                );
+                spy.addSocketOperation(socketMetaData, 1000, traffic.length, 0);
+                spy.addNetworkTraffic(socketMetaData, true, System.currentTimeMillis(), null, traffic, 0, traffic.length);
+            }
+
+            assertTrue(spy.networkTraffic.size() < 10);
+            assertEquals(1024L * (100 - spy.networkTraffic.size()), spy.getEvictedNetworkTrafficBytes());
+
+            long bytesDown = spy.getEvictedSocketStats().bytesDown.longValue();
+            for (SocketStats socketStats : spy.socketOperations.values()) {
+                bytesDown += socketStats.bytesDown.longValue();
+            }
+            assertEquals(1024L * 100, bytesDown);
+        }
+    }
+
+    @Test
+    public void testNetworkTrafficCapturedConcurrently() throws Exception {
+        try (Spy<?> spy = Sniffy.spy(SpyConfiguration.builder().
+                captureJdbc(false).captureNetworkTraffic(true).memoryBudget(1024 * 1024).build())) {
+            // thread isn't captured, so all threads share the same entry
+            SocketMetaData socketMetaData = new SocketMetaData(
+                    Protocol.TCP, new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555), 1,
+                    StackTraceRegistry.NO_STACK_TRACE, null
+            );
+            byte[] traffic = new byte[16];
+            int threads = 4;
+            int packets = 1000;
+            CountDownLatch startLatch = new CountDownLatch(1);
+            ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executorService.submit(() -> {
+                        startLatch.await();
+                        for (int i = 0; i < packets; i++) {
+                            spy.addNetworkTraffic(socketMetaData, 0 == i % 2, i, null, traffic, 0, traffic.length);
+                        }
+                        return null;
+                    }));
+                }
+                startLatch.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executorService.shutdown();
+            }
+
+            assertEquals(1, spy.networkTraffic.size());
+            long bytes = 0;
+            for (NetworkPacket networkPacket : spy.networkTraffic.get(socketMetaData)) {
+                bytes += networkPacket.getBytes().length;
+            }
+            assertEquals((long) threads * packets * traffic.length, bytes);
+            assertEquals(0, spy.getEvictedNetworkTrafficBytes());
+        }
+    }
+
+    private static StatementMetaData statementMetaData(String sql) {
+        return new StatementMetaData(sql, SqlStatement.SELECT, StackTraceRegistry.NO_STACK_TRACE, new ThreadMetaData(Thread.currentThread()));
+    }
+
+}
@@ -0,0 +1,140 @@
+package io.sniffy;
+
+import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.sql.BindParameters;
+import io.sniffy.sql.NPlusOneQueriesError;
+import io.sniffy.sql.SqlQueries;
+import io.sniffy.sql.SqlStatement;
+import io.sniffy.sql.StatementMetaData;
+import io.sniffy.util.StackTraceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpyNPlusOneTest {
+
+    private int nPlusOneThreshold;
+
+    @Before
+    public void enableNPlusOneDetection() {
+        nPlusOneThreshold = SniffyConfiguration.INSTANCE.getNPlusOneThreshold();
+        SniffyConfiguration.INSTANCE.setNPlusOneThreshold(10);
+    }
+
+    @After
+    public void restoreNPlusOneThreshold() {
+        SniffyConfiguration.INSTANCE.setNPlusOneThreshold(nPlusOneThreshold);
+    }
+
+    @Test
+    public void testNoNPlusOneExpectation() throws Exception {
+        try (Spy<?> spy = Sniffy.spy()) {
+            executeInLoop(spy, 5);
+
+            assertEquals(1, spy.getNPlusOneQueries().size());
+            assertEquals(5, spy.getNPlusOneQueries().get(0).getCount());
+
+            spy.verify(SqlQueries.noNPlusOne(5));
+            spy.verify(SqlQueries.noNPlusOne(4).otherThreads());
+
+            try {
+                spy.verify(SqlQueries.noNPlusOne(4));
+                fail();
+            } catch (NPlusOneQueriesError e) {
+                assertEquals(4, e.getThreshold());
+                assertEquals(1, e.getNPlusOneQueries().size());
+                assertTrue(e.getMessage().contains("SELECT * FROM ITEMS WHERE ORDER_ID = ?"));
+            }
+        }
+    }
+
+    @Test
+    public void testSystemStatementsIgnored() throws Exception {
+        try (Spy<?> spy = Sniffy.spy()) {
+            for (int i = 0; i < 10; i++) {
+                spy.addExecutedStatement(statementMetaData("Connection.commit() " + i, SqlStatement.SYSTEM), 1000, 0, 0, 0);
+            }
+            assertTrue(spy.getNPlusOneQueries().isEmpty());
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        try (Spy<?> spy = Sniffy.spy()) {
+            executeInLoop(spy, 5);
+            spy.reset();
+            assertTrue(spy.getNPlusOneQueries().isEmpty());
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        try (Spy<?> spy = Sniffy.spy()) {
+            SniffyConfiguration.INSTANCE.setNPlusOneThreshold(-1);
+            executeInLoop(spy, 5);
+            assertTrue(spy.getNPlusOneQueries().isEmpty());
+            try {
+                spy.verify(SqlQueries.noNPlusOne(4));
+                fail();
+            } catch (IllegalStateException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testSameBindParametersAreNotCounted() throws Exception {
+        try (Spy<?> spy = Sniffy.spy()) {
+            StatementMetaData statementMetaData = statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?", SqlStatement.SELECT);
+            for (int i = 0; i < 5; i++) {
+                spy.addExecutedStatement(statementMetaData, 1000, 0, 0, 0);
+                spy.addBindParameters(statementMetaData, new BindParameters(new String[]{"42"}, false, 1000));
+            }
+            assertTrue(spy.getNPlusOneQueries().isEmpty());
+
+            for (int i = 0; i < 5; i++) {
+                spy.addExecutedStatement(statementMetaData, 1000, 0, 0, 0);
+                spy.addBindParameters(statementMetaData, new BindParameters(new String[]{Integer.toString(i)}, false, 1000));
+            }
+            assertEquals(1, spy.getNPlusOneQueries().size());
+            assertEquals(6, spy.getNPlusOneQueries().get(0).getCount());
+        }
+    }
+
+    @Test
+    public void testPatternsOfEvictedThreadsAreKept() throws Exception {
+        int threads = 1000;
+        try (Spy<?> spy = Sniffy.spy()) {
+            for (int i = 0; i < threads; i++) {
+                executeInLoop(spy, 5, new ThreadMetaData(new Thread("worker-" + i)));
+            }
+
+            assertEquals(1, spy.getNPlusOneQueries().size());
+            assertEquals(threads, spy.getNPlusOneQueries().get(0).getRuns());
+            assertEquals(5L * threads, spy.getNPlusOneQueries().get(0).getTotalCount());
+            assertTrue(spy.getNPlusOneQueries(Threads.CURRENT).isEmpty());
+        }
+    }
+
+    private static void executeInLoop(Spy<?> spy, int times) {
+        executeInLoop(spy, times, new ThreadMetaData(Thread.currentThread()));
+    }
+
+    private static void executeInLoop(Spy<?> spy, int times, ThreadMetaData threadMetaData) {
+        spy.addExecutedStatement(statementMetaData("SELECT * FROM ORDERS", SqlStatement.SELECT, threadMetaData), 1000, 0, 0, 0);
+        for (int i = 0; i < times; i++) {
+            spy.addExecutedStatement(statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = " + i, SqlStatement.SELECT, threadMetaData), 1000, 0, 0, 0);
+        }
+    }
+
+    private static StatementMetaData statementMetaData(String sql, SqlStatement query) {
+        return statementMetaData(sql, query, new ThreadMetaData(Thread.currentThread()));
+    }
+
+    private static StatementMetaData statementMetaData(String sql, SqlStatement query, ThreadMetaData threadMetaData) {
+        return new StatementMetaData(sql, query, StackTraceRegistry.NO_STACK_TRACE, threadMetaData);
+    }
+
+}
@@ -0,0 +1,212 @@
+package io.sniffy;
+
+import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.socket.EchoServerRule;
+import io.sniffy.socket.SocketMetaData;
+import io.sniffy.socket.SocketStats;
+import io.sniffy.util.JVMUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs JDBC and socket capture on virtual threads; skipped on Java prior to 21
+ */
+public class VirtualThreadsTest extends BaseTest {
+
+    private static final int THREADS = 100;
+
+    private static final byte[] REQUEST = new byte[]{1, 2, 3, 4};
+    private static final byte[] RESPONSE = new byte[]{9, 8, 7, 6, 5, 4, 3, 2};
+
+    @Rule
+    public EchoServerRule echoServerRule = new EchoServerRule(RESPONSE);
+
+    @Before
+    public void assumeVirtualThreads() {
+        assumeTrue(JVMUtil.getVersion() >= 21);
+        SniffyConfiguration.INSTANCE.setMonitorSocket(true);
+    }
+
+    @Test
+    public void testCurrentThreadSpyCapturesStatements() throws Exception {
+        runOnVirtualThreads(() -> {
+            try (CurrentThreadSpy spy = Sniffy.spyCurrentThread()) {
+                executeStatements(2);
+                assertEquals(2, spy.executedStatements());
+            }
+        });
+    }
+
+    @Test
+    public void testCurrentThreadSpyCapturesSocketOperations() throws Exception {
+        runOnVirtualThreads(() -> {
+            try (CurrentThreadSpy spy = Sniffy.spyCurrentThread()) {
+                performSocketOperation();
+                assertSingleConnection(spy.getSocketOperations());
+            }
+        });
+    }
+
+    @Test
+    public void testUnclosedSpyIsNotVisibleToOtherThreads() throws Exception {
+        SpyConfiguration globalSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
+        // spy is never closed and its binding is discarded together with the virtual thread
+        runOnVirtualThreads(Sniffy::spyCurrentThread);
+        runOnVirtualThreads(() -> assertSame(globalSpyConfiguration, Sniffy.getEffectiveSpyConfiguration()));
+    }
+
+    @Test
+    public void testNoCarrierPinning() throws Exception {
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Class<?> eventSettingsClass = Class.forName("jdk.jfr.EventSettings");
+        Object recording = recordingClass.getConstructor().newInstance();
+        Object eventSettings = recordingClass.getMethod("enable", String.class).invoke(recording, "jdk.VirtualThreadPinned");
+        eventSettingsClass.getMethod("withThreshold", Duration.class).invoke(eventSettings, Duration.ZERO);
+        eventSettingsClass.getMethod("withStackTrace").invoke(eventSettings);
+
+        Path file = Files.createTempFile("sniffy", ".jfr");
+        try {
+            recordingClass.getMethod("start").invoke(recording);
+            try {
+                runOnVirtualThreads(() -> {
+                    try (CurrentThreadSpy spy = Sniffy.spyCurrentThread()) {
+                        performSocketOperation();
+                        assertSingleConnection(spy.getSocketOperations());
+                    }
+                });
+                // blocking inside synchronized block pins carrier prior to Java 24 and proves that recording works
+                runOnVirtualThreads(VirtualThreadsTest::sleepWhileHoldingMonitor);
+            } finally {
+                recordingClass.getMethod("stop").invoke(recording);
+            }
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+            recordingClass.getMethod("close").invoke(recording);
+
+            List<String> pinnedStackTraces = new ArrayList<>();
+            boolean monitorPinned = false;
+            for (Object event : (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").
+                    getMethod("readAllEvents", Path.class).invoke(null, file)) {
+                String stackTrace = getStackTrace(event);
+                if (stackTrace.contains("io.sniffy.socket")) {
+                    pinnedStackTraces.add(stackTrace);
+                }
+                if (stackTrace.contains("sleepWhileHoldingMonitor")) {
+                    monitorPinned = true;
+                }
+            }
+            assertEquals(pinnedStackTraces.toString(), 0, pinnedStackTraces.size());
+            if (JVMUtil.getVersion() < 24) {
+                assertTrue(monitorPinned);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static synchronized void sleepWhileHoldingMonitor() throws InterruptedException {
+        Thread.sleep(1);
+    }
+
+    private static String getStackTrace(Object recordedEvent) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        Object stackTrace = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getStackTrace").invoke(recordedEvent);
+        if (null != stackTrace) {
+            Method getMethod = Class.forName("jdk.jfr.consumer.RecordedFrame").getMethod("getMethod");
+            Method getType = Class.forName("jdk.jfr.consumer.RecordedMethod").getMethod("getType");
+            Method getName = Class.forName("jdk.jfr.consumer.RecordedMethod").getMethod("getName");
+            Method getClassName = Class.forName("jdk.jfr.consumer.RecordedClass").getMethod("getName");
+            for (Object frame : (List<?>) Class.forName("jdk.jfr.consumer.RecordedStackTrace").getMethod("getFrames").invoke(stackTrace)) {
+                Object method = getMethod.invoke(frame);
+                sb.append(getClassName.invoke(getType.invoke(method))).append('.').append(getName.invoke(method)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private void performSocketOperation() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getByName(null), echoServerRule.getBoundPort())) {
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(REQUEST);
+            outputStream.flush();
+            socket.shutdownOutput();
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            InputStream inputStream = socket.getInputStream();
+            int read;
+            while ((read = inputStream.read()) != -1) {
+                baos.write(read);
+            }
+
+            assertArrayEquals(RESPONSE, baos.toByteArray());
+        }
+    }
+
+    /**
+     * Operations are grouped by stack trace, so a single connection is reported once per call site
+     * (connect, write, read, close and so on)
+     */
+    private static void assertSingleConnection(Map<SocketMetaData, SocketStats> socketOperations) {
+        assertFalse(socketOperations.isEmpty());
+        int bytesUp = 0;
+        int bytesDown = 0;
+        SocketMetaData connection = socketOperations.keySet().iterator().next();
+        for (Map.Entry<SocketMetaData, SocketStats> entry : socketOperations.entrySet()) {
+            assertEquals(connection.getAddress(), entry.getKey().getAddress());
+            assertEquals(connection.getConnectionId(), entry.getKey().getConnectionId());
+            bytesUp += entry.getValue().bytesUp.intValue();
+            bytesDown += entry.getValue().bytesDown.intValue();
+        }
+        assertEquals(REQUEST.length, bytesUp);
+        assertEquals(RESPONSE.length, bytesDown);
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static void runOnVirtualThreads(Task task) throws Exception {
+        Method startVirtualThread = Thread.class.getMethod("startVirtualThread", Runnable.class);
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add((Thread) startVirtualThread.invoke(null, (Runnable) () -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!failures.isEmpty()) {
+            AssertionError assertionError = new AssertionError(failures.size() + " virtual threads failed");
+            assertionError.initCause(failures.peek());
+            throw assertionError;
+        }
+    }
+
+}
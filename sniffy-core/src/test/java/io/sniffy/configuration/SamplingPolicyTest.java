@@ -0,0 +1,101 @@
+package io.sniffy.configuration;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+public class SamplingPolicyTest {
+
+    @Test
+    public void testAll() {
+        SamplingPolicy samplingPolicy = SamplingPolicy.all();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1, samplingPolicy.sampleStatement("SELECT " + i + " FROM DUAL"));
+        }
+        assertEquals(0, samplingPolicy.getUnsampledCount());
+    }
+
+    @Test
+    public void testFirstThenOneIn() {
+        SamplingPolicy samplingPolicy = SamplingPolicy.firstThenOneIn(3, 10);
+
+        long totalWeight = 0;
+        int samples = 0;
+        for (int i = 0; i < 103; i++) {
+            // literals are replaced in fingerprint, so all statements share the same counter
+            int samplingWeight = samplingPolicy.sampleStatement("SELECT " + i + " FROM DUAL");
+            if (i < 3) {
+                assertEquals(1, samplingWeight);
+            }
+            if (SamplingPolicy.NOT_SAMPLED != samplingWeight) {
+                samples++;
+                totalWeight += samplingWeight;
+            }
+        }
+
+        assertEquals(13, samples);
+        assertEquals(103, totalWeight);
+        assertEquals(13, samplingPolicy.getSampledCount());
+        assertEquals(90, samplingPolicy.getUnsampledCount());
+
+        // other fingerprints have their own counters
+        assertEquals(1, samplingPolicy.sampleStatement("SELECT * FROM USERS"));
+    }
+
+    @Test
+    public void testReservoir() {
+        SamplingPolicy samplingPolicy = SamplingPolicy.reservoir(10);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555);
+
+        long totalWeight = 0;
+        int samples = 0;
+        for (int i = 0; i < 100000; i++) {
+            int samplingWeight = samplingPolicy.sampleSocket(address);
+            if (SamplingPolicy.NOT_SAMPLED != samplingWeight) {
+                samples++;
+                totalWeight += samplingWeight;
+            }
+        }
+
+        // about 10 * (1 + ln(10000)) samples
+        assertTrue(samples + " samples", samples > 50 && samples < 250);
+        // estimate is unbiased yet has high variance with so few samples
+        assertTrue(totalWeight + " total weight", totalWeight > 30000 && totalWeight < 300000);
+    }
+
+    @Test
+    public void testRate() {
+        SamplingPolicy samplingPolicy = SamplingPolicy.rate(0.1);
+
+        long totalWeight = 0;
+        for (int i = 0; i < 100000; i++) {
+            int samplingWeight = samplingPolicy.sampleStatement("SELECT 1 FROM DUAL");
+            assertTrue(SamplingPolicy.NOT_SAMPLED == samplingWeight || 10 == samplingWeight);
+            totalWeight += samplingWeight;
+        }
+
+        assertTrue(totalWeight + " total weight", totalWeight > 90000 && totalWeight < 110000);
+        assertSame(SamplingPolicy.all(), SamplingPolicy.rate(1));
+    }
+
+    @Test
+    public void testParse() {
+        assertSame(SamplingPolicy.all(), SamplingPolicy.parse("all"));
+        assertEquals("rate:0.01", SamplingPolicy.parse("rate:0.01").toString());
+        assertEquals("reservoir:10", SamplingPolicy.parse("reservoir:10").toString());
+        assertEquals("first:100:1000", SamplingPolicy.parse("FIRST:100:1000").toString());
+
+        for (String invalid : new String[]{"bla", "rate", "rate:x", "reservoir:0", "first:1", "all:1"}) {
+            try {
+                SamplingPolicy.parse(invalid);
+                fail("Should have failed to parse " + invalid);
+            } catch (IllegalArgumentException e) {
+                assertNotNull(e);
+            }
+        }
+    }
+
+}
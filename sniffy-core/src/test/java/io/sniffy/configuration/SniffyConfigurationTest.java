@@ -143,6 +143,212 @@ public class SniffyConfigurationTest {
 
     }
 
+    @Test
+    public void testTopSocketCapacity() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.topSocketCapacity", "42");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(42, sniffyConfiguration.getTopSocketCapacity());
+
+        // incorrect value
+        System.setProperty("io.sniffy.topSocketCapacity", "bla");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(0, sniffyConfiguration.getTopSocketCapacity());
+
+        // default value
+        System.getProperties().remove("io.sniffy.topSocketCapacity");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(Sniffy.TOP_SOCKET_CAPACITY, sniffyConfiguration.getTopSocketCapacity());
+
+    }
+
+    @Test
+    public void testAsyncEventProcessing() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.asyncEventProcessing", "true");
+        System.setProperty("io.sniffy.asyncEventQueueCapacity", "42");
+        System.setProperty("io.sniffy.asyncEventDropOnFull", "false");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertTrue(sniffyConfiguration.isAsyncEventProcessing());
+        assertEquals(42, sniffyConfiguration.getAsyncEventQueueCapacity());
+        assertFalse(sniffyConfiguration.isAsyncEventDropOnFull());
+
+        // invalid value
+        System.setProperty("io.sniffy.asyncEventQueueCapacity", "0");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(16384, sniffyConfiguration.getAsyncEventQueueCapacity());
+
+        // default value
+        System.getProperties().remove("io.sniffy.asyncEventProcessing");
+        System.getProperties().remove("io.sniffy.asyncEventQueueCapacity");
+        System.getProperties().remove("io.sniffy.asyncEventDropOnFull");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertFalse(sniffyConfiguration.isAsyncEventProcessing());
+        assertEquals(16384, sniffyConfiguration.getAsyncEventQueueCapacity());
+        assertTrue(sniffyConfiguration.isAsyncEventDropOnFull());
+
+    }
+
+    @Test
+    public void testStackTraceProperties() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.stackTraceMaxDepth", "42");
+        System.setProperty("io.sniffy.stackTraceExcludedPackages", "org.junit.,sun.reflect.");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(42, sniffyConfiguration.getStackTraceMaxDepth());
+        assertEquals("org.junit.,sun.reflect.", sniffyConfiguration.getStackTraceExcludedPackages());
+
+        // default value
+        System.getProperties().remove("io.sniffy.stackTraceMaxDepth");
+        System.getProperties().remove("io.sniffy.stackTraceExcludedPackages");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(0, sniffyConfiguration.getStackTraceMaxDepth());
+        assertNull(sniffyConfiguration.getStackTraceExcludedPackages());
+
+    }
+
+    @Test
+    public void testJdbcWrappers() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.jdbcWrappers", "true");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertTrue(sniffyConfiguration.isJdbcWrappers());
+
+        // default value
+        System.getProperties().remove("io.sniffy.jdbcWrappers");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertFalse(sniffyConfiguration.isJdbcWrappers());
+
+    }
+
+    @Test
+    public void testLatencyHistograms() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.latencyHistograms", "true");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertTrue(sniffyConfiguration.isLatencyHistograms());
+
+        // default value
+        System.getProperties().remove("io.sniffy.latencyHistograms");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertFalse(sniffyConfiguration.isLatencyHistograms());
+
+    }
+
+    @Test
+    public void testSampling() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.sampling", "first:100:1000");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals("first:100:1000", sniffyConfiguration.getSamplingPolicy().toString());
+
+        // incorrect value
+        System.setProperty("io.sniffy.sampling", "bla");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertSame(SamplingPolicy.all(), sniffyConfiguration.getSamplingPolicy());
+
+        // default value
+        System.getProperties().remove("io.sniffy.sampling");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertSame(SamplingPolicy.all(), sniffyConfiguration.getSamplingPolicy());
+
+    }
+
+    @Test
+    public void testCaptureParameters() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.captureParameters", "true");
+        System.setProperty("io.sniffy.parametersThreshold", "50");
+        System.setProperty("io.sniffy.parametersSampling", "rate:0.01");
+        System.setProperty("io.sniffy.parameterMaxLength", "16");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertTrue(sniffyConfiguration.isCaptureParameters());
+        assertEquals(50, sniffyConfiguration.getParametersThreshold());
+        assertEquals("rate:0.01", sniffyConfiguration.getParametersSamplingPolicy().toString());
+        assertEquals(16, sniffyConfiguration.getParameterMaxLength());
+
+        // incorrect value
+        System.setProperty("io.sniffy.parametersThreshold", "bla");
+        System.setProperty("io.sniffy.parametersSampling", "bla");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(1000, sniffyConfiguration.getParametersThreshold());
+        assertNull(sniffyConfiguration.getParametersSamplingPolicy());
+
+        // default value
+        System.getProperties().remove("io.sniffy.captureParameters");
+        System.getProperties().remove("io.sniffy.parametersThreshold");
+        System.getProperties().remove("io.sniffy.parametersSampling");
+        System.getProperties().remove("io.sniffy.parameterMaxLength");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertFalse(sniffyConfiguration.isCaptureParameters());
+        assertEquals(1000, sniffyConfiguration.getParametersThreshold());
+        assertNull(sniffyConfiguration.getParametersSamplingPolicy());
+        assertEquals(256, sniffyConfiguration.getParameterMaxLength());
+
+    }
+
+    @Test
+    public void testSlowQueryJournal() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.slowQueryThreshold", "200");
+        System.setProperty("io.sniffy.slowQueryJournalSize", "65536");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(200, sniffyConfiguration.getSlowQueryThreshold());
+        assertEquals(65536, sniffyConfiguration.getSlowQueryJournalSize());
+
+        // incorrect value
+        System.setProperty("io.sniffy.slowQueryThreshold", "bla");
+        System.setProperty("io.sniffy.slowQueryJournalSize", "bla");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(-1, sniffyConfiguration.getSlowQueryThreshold());
+        assertEquals(16777216, sniffyConfiguration.getSlowQueryJournalSize());
+
+        // default value
+        System.getProperties().remove("io.sniffy.slowQueryThreshold");
+        System.getProperties().remove("io.sniffy.slowQueryJournalSize");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(-1, sniffyConfiguration.getSlowQueryThreshold());
+        assertEquals(16777216, sniffyConfiguration.getSlowQueryJournalSize());
+
+    }
+
+    @Test
+    public void testNPlusOneThreshold() {
+
+        SniffyConfiguration sniffyConfiguration = SniffyConfiguration.INSTANCE;
+
+        System.setProperty("io.sniffy.nPlusOneThreshold", "3");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(3, sniffyConfiguration.getNPlusOneThreshold());
+
+        // incorrect value
+        System.setProperty("io.sniffy.nPlusOneThreshold", "bla");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(-1, sniffyConfiguration.getNPlusOneThreshold());
+
+        // default value
+        System.getProperties().remove("io.sniffy.nPlusOneThreshold");
+        sniffyConfiguration.loadSniffyConfiguration();
+        assertEquals(-1, sniffyConfiguration.getNPlusOneThreshold());
+
+    }
+
     @Test
     public void testFilterEnabled() {
 
@@ -0,0 +1,98 @@
+package io.sniffy.socket;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GlobalSocketStatsTest {
+
+    @Test
+    public void testAccumulate() {
+        GlobalSocketStats globalSocketStats = new GlobalSocketStats(10);
+        InetSocketAddress slowAddress = address(1000);
+        InetSocketAddress fastAddress = address(2000);
+
+        globalSocketStats.accumulate(Protocol.TCP, slowAddress, 1, TimeUnit.MILLISECONDS.toNanos(5), 100, 10);
+        globalSocketStats.accumulate(Protocol.TCP, slowAddress, 1, TimeUnit.MILLISECONDS.toNanos(5), 100, 10);
+        globalSocketStats.accumulate(Protocol.TCP, slowAddress, 3, TimeUnit.MILLISECONDS.toNanos(5), 100, 10);
+        globalSocketStats.accumulate(Protocol.TCP, fastAddress, 2, TimeUnit.MILLISECONDS.toNanos(1), 1, 1);
+        globalSocketStats.accumulate(Protocol.UDP, fastAddress, 4, TimeUnit.MILLISECONDS.toNanos(1), 1, 1);
+
+        assertEquals(3, globalSocketStats.size());
+
+        List<HostSocketStats> hostSocketStats = globalSocketStats.getHostSocketStats();
+        HostSocketStats slowest = hostSocketStats.get(0);
+        assertEquals(slowAddress, slowest.getAddress());
+        assertEquals(Protocol.TCP, slowest.getProtocol());
+        assertEquals(2, slowest.getConnections());
+        assertEquals(15, slowest.elapsedTime.longValue());
+        assertEquals(300, slowest.bytesDown.longValue());
+        assertEquals(30, slowest.bytesUp.longValue());
+        assertEquals(3, slowest.getLatencyHistogram().getCount());
+
+        assertEquals(1, globalSocketStats.get(Protocol.UDP, fastAddress).getConnections());
+    }
+
+    @Test
+    public void testOverflow() {
+        GlobalSocketStats globalSocketStats = new GlobalSocketStats(2);
+        for (int i = 0; i < 5; i++) {
+            globalSocketStats.accumulate(Protocol.TCP, address(1000 + i), i, 1000, 10, 0);
+        }
+
+        assertEquals(2, globalSocketStats.size());
+        assertNull(globalSocketStats.get(Protocol.TCP, address(1000)));
+        assertNotNull(globalSocketStats.get(Protocol.TCP, address(1004)));
+        assertEquals(30, globalSocketStats.getOverflowStats().bytesDown.longValue());
+        assertEquals(3, globalSocketStats.getOverflowStats().getLatencyHistogram().getCount());
+
+        GlobalSocketStats copy = new GlobalSocketStats(1, globalSocketStats);
+        assertEquals(1, copy.size());
+        assertEquals(40, copy.getOverflowStats().bytesDown.longValue());
+
+        globalSocketStats.clear();
+        assertEquals(0, globalSocketStats.size());
+        assertEquals(0, globalSocketStats.getOverflowStats().bytesDown.longValue());
+    }
+
+    @Test
+    public void testSlowAddressesAreNotEvictedByOneOffAddresses() {
+        GlobalSocketStats globalSocketStats = new GlobalSocketStats(4);
+        InetSocketAddress slowAddress = address(1000);
+        for (int i = 0; i < 1000; i++) {
+            globalSocketStats.accumulate(Protocol.TCP, slowAddress, 1, TimeUnit.MILLISECONDS.toNanos(1), 1, 1);
+            globalSocketStats.accumulate(Protocol.TCP, address(2000 + i), i, 1000, 1, 1);
+        }
+
+        assertEquals(4, globalSocketStats.size());
+        assertEquals(4, globalSocketStats.getHostSocketStats().size());
+        HostSocketStats slowest = globalSocketStats.getHostSocketStats().get(0);
+        assertEquals(slowAddress, slowest.getAddress());
+        assertEquals(1000, slowest.bytesDown.longValue());
+        assertNotNull(globalSocketStats.get(Protocol.TCP, address(2999)));
+
+        long bytesDown = globalSocketStats.getOverflowStats().bytesDown.longValue();
+        for (HostSocketStats hostSocketStats : globalSocketStats.getHostSocketStats()) {
+            bytesDown += hostSocketStats.bytesDown.longValue();
+        }
+        assertEquals(2000, bytesDown);
+    }
+
+    @Test
+    public void testDisabled() {
+        GlobalSocketStats globalSocketStats = new GlobalSocketStats(0);
+        globalSocketStats.accumulate(Protocol.TCP, address(1000), 1, 1000, 10, 0);
+        assertEquals(0, globalSocketStats.size());
+        assertEquals(0, globalSocketStats.getOverflowStats().bytesDown.longValue());
+    }
+
+    private static InetSocketAddress address(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+}
@@ -2,6 +2,7 @@ package io.sniffy.socket;
 
 import io.sniffy.Sniffy;
 import io.sniffy.Spy;
+import io.sniffy.SpyConfiguration;
 import io.sniffy.util.ExceptionUtil;
 import org.junit.Test;
 
@@ -137,6 +138,28 @@ public class SnifferSocketImplFactoryTest extends BaseSocketTest {
 
     }
 
+    @Test
+    public void testCaptureTimeFilters() throws Exception {
+
+        SnifferSocketImplFactory.uninstall();
+        SnifferSocketImplFactory.install();
+
+        try (Spy<?> currentThreadSpy = Sniffy.spy(SpyConfiguration.builder().captureNetwork(true).captureThreads(CURRENT).build());
+             Spy<?> otherAddressSpy = Sniffy.spy(SpyConfiguration.builder().captureNetwork(true).captureAddress("localhost:1").build())) {
+
+            performSocketOperation();
+
+            Thread thread = new Thread(this::performSocketOperation);
+            thread.start();
+            thread.join();
+
+            assertEquals(1, currentThreadSpy.getSocketOperations(ANY, true).size());
+            assertTrue(otherAddressSpy.getSocketOperations(ANY, true).isEmpty());
+
+        }
+
+    }
+
     @Test
     public void testUninstall() throws Exception {
 
@@ -169,7 +169,7 @@ public class SnifferSocketImplTest {
     @Test
     public void testGetInetAddress() throws Exception {
 
-        InetAddress expected = mock(InetAddress.class);
+        InetAddress expected = InetAddress.getLoopbackAddress();
 
         when(delegate.getInetAddress()).thenReturn(expected);
 
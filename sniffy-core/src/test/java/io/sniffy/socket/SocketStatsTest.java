@@ -0,0 +1,69 @@
+package io.sniffy.socket;
+
+import io.sniffy.sql.SqlStats;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SocketStatsTest {
+
+    @Test
+    public void testSubMillisecondOperationsAddUp() {
+        SocketStats socketStats = new SocketStats(0, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            socketStats.accumulateNanos(TimeUnit.MICROSECONDS.toNanos(300), 1, 2);
+        }
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(3000), socketStats.elapsedTimeNanos.longValue());
+        assertEquals(3, socketStats.elapsedTime.longValue());
+        assertEquals(10, socketStats.bytesDown.longValue());
+        assertEquals(20, socketStats.bytesUp.longValue());
+        assertNull(socketStats.getLatencyHistogram());
+    }
+
+    @Test
+    public void testMillisecondsApi() {
+        SocketStats socketStats = new SocketStats(5, 0, 0);
+        socketStats.accumulate(2, 0, 0);
+        assertEquals(7, socketStats.elapsedTime.longValue());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(7), socketStats.elapsedTimeNanos.longValue());
+    }
+
+    @Test
+    public void testCopyWithLatencyHistogram() {
+        SqlStats sqlStats = new SqlStats(0, 0, 0, 0, 0);
+        sqlStats.enableLatencyHistogram();
+        sqlStats.accumulateNanos(TimeUnit.MICROSECONDS.toNanos(100), 0, 0, 0, 1);
+        sqlStats.accumulateNanos(TimeUnit.MICROSECONDS.toNanos(900), 0, 0, 0, 1);
+        sqlStats.addRows(5);
+
+        SqlStats copy = new SqlStats(sqlStats);
+        assertEquals(2, copy.queries.intValue());
+        assertEquals(5, copy.rows.intValue());
+        assertEquals(1, copy.elapsedTime.longValue());
+        assertNotNull(copy.getLatencyHistogram());
+        assertEquals(2, copy.getLatencyHistogram().getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(900), copy.getLatencyHistogram().getMax());
+
+        copy.accumulate(sqlStats);
+        assertEquals(4, copy.getLatencyHistogram().getCount());
+        assertEquals(2, copy.elapsedTime.longValue());
+    }
+
+    @Test
+    public void testAccumulateSample() {
+        SqlStats sqlStats = new SqlStats(0, 0, 0, 0, 0);
+        sqlStats.enableLatencyHistogram();
+        sqlStats.accumulateSample(TimeUnit.MILLISECONDS.toNanos(2), 10, 20, 3, 100);
+
+        assertEquals(100, sqlStats.queries.longValue());
+        assertEquals(300, sqlStats.rows.longValue());
+        assertEquals(200, sqlStats.elapsedTime.longValue());
+        assertEquals(1000, sqlStats.bytesDown.longValue());
+        assertEquals(2000, sqlStats.bytesUp.longValue());
+        assertEquals(100, sqlStats.getLatencyHistogram().getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2), sqlStats.getLatencyHistogram().getMax());
+    }
+
+}
@@ -0,0 +1,85 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchStatsTest {
+
+    @Test
+    public void testRecord() {
+        BatchStats batchStats = new BatchStats();
+        batchStats.record(1, 0, 0, 1);
+        batchStats.record(10, 2, 1, 1);
+        batchStats.record(1000, 0, 0, 1);
+
+        assertEquals(3, batchStats.getBatches());
+        assertEquals(1011, batchStats.getStatements());
+        assertEquals(2, batchStats.getSuccessNoInfoStatements());
+        assertEquals(1, batchStats.getFailedStatements());
+        assertEquals(1000, batchStats.getMaxBatchSize());
+        assertEquals(337, batchStats.getMeanBatchSize(), 0.01);
+
+        long[] histogram = batchStats.getBatchSizeHistogram();
+        assertEquals(1, histogram[1]);
+        assertEquals(1, histogram[4]);
+        assertEquals(1, histogram[10]);
+    }
+
+    @Test
+    public void testPercentiles() {
+        BatchStats batchStats = new BatchStats();
+        assertEquals(0, batchStats.getBatchSizePercentile(50));
+
+        for (int i = 0; i < 99; i++) {
+            batchStats.record(100, 0, 0, 1);
+        }
+        batchStats.record(5000, 0, 0, 1);
+
+        assertEquals(127, batchStats.getBatchSizePercentile(50));
+        assertEquals(127, batchStats.getBatchSizePercentile(99));
+        assertEquals(5000, batchStats.getBatchSizePercentile(100));
+    }
+
+    @Test
+    public void testSamplingWeight() {
+        BatchStats batchStats = new BatchStats();
+        batchStats.record(10, 1, 0, 5);
+
+        assertEquals(5, batchStats.getBatches());
+        assertEquals(50, batchStats.getStatements());
+        assertEquals(5, batchStats.getSuccessNoInfoStatements());
+        assertEquals(10, batchStats.getMaxBatchSize());
+    }
+
+    @Test
+    public void testAccumulate() {
+        BatchStats batchStats = new BatchStats();
+        batchStats.record(10, 0, 0, 1);
+
+        BatchStats otherBatchStats = new BatchStats();
+        otherBatchStats.record(20, 0, 1, 1);
+
+        batchStats.accumulate(otherBatchStats);
+        assertEquals(2, batchStats.getBatches());
+        assertEquals(30, batchStats.getStatements());
+        assertEquals(1, batchStats.getFailedStatements());
+        assertEquals(20, batchStats.getMaxBatchSize());
+
+        BatchStats copy = new BatchStats(batchStats);
+        assertArrayEquals(batchStats.getBatchSizeHistogram(), copy.getBatchSizeHistogram());
+    }
+
+    @Test
+    public void testSqlStatsAccumulate() {
+        SqlStats sqlStats = new SqlStats(0, 0, 0, 0, 0);
+        SqlStats batchSqlStats = new SqlStats(0, 0, 0, 0, 0);
+        batchSqlStats.enableBatchStats().record(10, 0, 0, 1);
+
+        sqlStats.accumulate(batchSqlStats);
+        assertEquals(1, sqlStats.getBatchStats().getBatches());
+        assertEquals(10, new SqlStats(sqlStats).getBatchStats().getMaxBatchSize());
+    }
+
+}
@@ -0,0 +1,68 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.sql.Connection;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs against packaged multi-release jar and checks that JDBC 4.3 methods are forwarded to the driver on Java 9+
+ *
+ * JDBC 4.3 methods are invoked using reflection since tests are compiled for Java 8
+ */
+public class Jdbc43SniffyConnectionIT {
+
+    @Test
+    public void testJava9VersionLoadedFromMultiReleaseJar() {
+        URL classUrl = JdbcSupport.class.getResource("JdbcSupport.class");
+        assertNotNull(classUrl);
+        assertEquals("jar", classUrl.getProtocol());
+        assertTrue(classUrl.toString(), classUrl.toString().contains("META-INF/versions/9/"));
+        assertEquals("io.sniffy.sql.Jdbc43SniffyConnection",
+                JdbcSupport.newConnection(mock(Connection.class), "jdbc:h2:mem:", "sa").getClass().getName());
+    }
+
+    @Test
+    public void testRequestBoundariesForwarded() throws Exception {
+        Connection delegate = mock(Connection.class);
+        Connection connection = JdbcSupport.newConnection(delegate, "jdbc:h2:mem:", "sa");
+
+        Connection.class.getMethod("beginRequest").invoke(connection);
+        Connection.class.getMethod("endRequest").invoke(connection);
+
+        Connection.class.getMethod("beginRequest").invoke(verify(delegate));
+        Connection.class.getMethod("endRequest").invoke(verify(delegate));
+    }
+
+    @Test
+    public void testShardingKeysForwarded() throws Exception {
+        Class<?> shardingKeyClass = Class.forName("java.sql.ShardingKey");
+        Object shardingKey = mock(shardingKeyClass);
+        Object superShardingKey = mock(shardingKeyClass);
+
+        Connection delegate = mock(Connection.class);
+        Method setShardingKeyIfValid = Connection.class.getMethod("setShardingKeyIfValid", shardingKeyClass, int.class);
+        setShardingKeyIfValid.invoke(doReturn(true).when(delegate), shardingKey, 5);
+
+        Connection connection = JdbcSupport.newConnection(delegate, "jdbc:h2:mem:", "sa");
+
+        Method setShardingKey = Connection.class.getMethod("setShardingKey", shardingKeyClass);
+        Method setShardingKeys = Connection.class.getMethod("setShardingKey", shardingKeyClass, shardingKeyClass);
+        Method setShardingKeysIfValid = Connection.class.getMethod("setShardingKeyIfValid", shardingKeyClass, shardingKeyClass, int.class);
+
+        setShardingKey.invoke(connection, shardingKey);
+        setShardingKeys.invoke(connection, shardingKey, superShardingKey);
+        assertEquals(true, setShardingKeyIfValid.invoke(connection, shardingKey, 5));
+        assertEquals(false, setShardingKeysIfValid.invoke(connection, shardingKey, superShardingKey, 5));
+
+        setShardingKey.invoke(verify(delegate), shardingKey);
+        setShardingKeys.invoke(verify(delegate), shardingKey, superShardingKey);
+        setShardingKeyIfValid.invoke(verify(delegate), shardingKey, 5);
+        setShardingKeysIfValid.invoke(verify(delegate), shardingKey, superShardingKey, 5);
+    }
+
+}
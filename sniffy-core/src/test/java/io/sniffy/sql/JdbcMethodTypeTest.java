@@ -0,0 +1,53 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.sql.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class JdbcMethodTypeTest {
+
+    @Test
+    public void testParse() throws NoSuchMethodException {
+        assertEquals(JdbcMethodType.GET_CONNECTION, JdbcMethodType.parse(Statement.class.getMethod("getConnection")));
+        assertEquals(JdbcMethodType.OTHER, JdbcMethodType.parse(Connection.class.getMethod("getMetaData")));
+        assertEquals(JdbcMethodType.EQUALS, JdbcMethodType.parse(Object.class.getMethod("equals", Object.class)));
+        assertEquals(JdbcMethodType.CREATE_STATEMENT, JdbcMethodType.parse(Connection.class.getMethod("createStatement")));
+        assertEquals(JdbcMethodType.PREPARE_STATEMENT, JdbcMethodType.parse(Connection.class.getMethod("prepareStatement", String.class)));
+        assertEquals(JdbcMethodType.PREPARE_CALL, JdbcMethodType.parse(Connection.class.getMethod("prepareCall", String.class)));
+        assertEquals(JdbcMethodType.EXECUTE_SQL, JdbcMethodType.parse(PreparedStatement.class.getMethod("executeQuery")));
+        assertEquals(JdbcMethodType.EXECUTE_UPDATE, JdbcMethodType.parse(Statement.class.getMethod("executeLargeUpdate", String.class)));
+        assertEquals(JdbcMethodType.ADD_BATCH, JdbcMethodType.parse(PreparedStatement.class.getMethod("addBatch")));
+        assertEquals(JdbcMethodType.CLEAR_BATCH, JdbcMethodType.parse(Statement.class.getMethod("clearBatch")));
+        assertEquals(JdbcMethodType.EXECUTE_BATCH, JdbcMethodType.parse(Statement.class.getMethod("executeBatch")));
+        assertEquals(JdbcMethodType.SET_PARAMETER, JdbcMethodType.parse(PreparedStatement.class.getMethod("setString", Integer.TYPE, String.class)));
+        assertEquals(JdbcMethodType.OTHER, JdbcMethodType.parse(Statement.class.getMethod("setFetchSize", Integer.TYPE)));
+        assertEquals(JdbcMethodType.OTHER, JdbcMethodType.parse(CallableStatement.class.getMethod("setString", String.class, String.class)));
+        assertEquals(JdbcMethodType.CLEAR_PARAMETERS, JdbcMethodType.parse(PreparedStatement.class.getMethod("clearParameters")));
+        assertEquals(JdbcMethodType.READ_ROW, JdbcMethodType.parse(ResultSet.class.getMethod("absolute", Integer.TYPE)));
+        assertEquals(JdbcMethodType.OTHER, JdbcMethodType.parse(ResultSet.class.getMethod("getString", Integer.TYPE)));
+    }
+
+    @Test
+    public void testOfCopiesOfSameMethod() throws NoSuchMethodException {
+        Method method = ResultSet.class.getMethod("next");
+        Method copy = ResultSet.class.getMethod("next");
+        assertSame(JdbcMethodType.READ_ROW, JdbcMethodType.of(method));
+        assertSame(JdbcMethodType.READ_ROW, JdbcMethodType.of(method));
+        assertSame(JdbcMethodType.READ_ROW, JdbcMethodType.of(copy));
+    }
+
+    @Test
+    public void testParameterTypeComputedOnce() throws NoSuchMethodException {
+        Method method = PreparedStatement.class.getMethod("setString", Integer.TYPE, String.class);
+        assertEquals("String", JdbcMethodType.parameterType(method));
+        assertSame(JdbcMethodType.parameterType(method), JdbcMethodType.parameterType(method));
+        assertEquals("BinaryStream", JdbcMethodType.parameterType(
+                PreparedStatement.class.getMethod("setBinaryStream", Integer.TYPE, java.io.InputStream.class, Long.TYPE)
+        ));
+    }
+
+}
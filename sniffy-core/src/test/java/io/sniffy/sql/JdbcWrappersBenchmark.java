@@ -0,0 +1,92 @@
+package io.sniffy.sql;
+
+import io.sniffy.Sniffy;
+import io.sniffy.Spy;
+import io.sniffy.configuration.SniffyConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dynamic proxies with delegating wrapper classes on a typical read loop:
+ * execute a prepared statement and read all columns of all rows
+ *
+ * Not executed during the build; run {@link #main(String[])} from IDE or test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcWrappersBenchmark {
+
+    private static final int ROWS = 100;
+
+    @Param({"false", "true"})
+    public boolean jdbcWrappers;
+
+    @Param({"false", "true"})
+    public boolean spy;
+
+    private Connection keepAlive;
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private Spy<?> sniffySpy;
+
+    @Setup
+    public void setUp() throws SQLException {
+        keepAlive = DriverManager.getConnection("jdbc:h2:mem:benchmark", "sa", "sa");
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS BENCHMARK (ID NUMBER PRIMARY KEY, NAME VARCHAR(255), VAL DOUBLE)");
+            statement.execute("DELETE FROM BENCHMARK");
+            for (int i = 0; i < ROWS; i++) {
+                statement.execute("INSERT INTO BENCHMARK VALUES (" + i + ", 'name" + i + "', " + i * 1.5 + ")");
+            }
+        }
+
+        SniffyConfiguration.INSTANCE.setJdbcWrappers(jdbcWrappers);
+        connection = DriverManager.getConnection("sniffy:jdbc:h2:mem:benchmark", "sa", "sa");
+        preparedStatement = connection.prepareStatement("SELECT ID, NAME, VAL FROM BENCHMARK WHERE ID >= ?");
+
+        if (spy) {
+            sniffySpy = Sniffy.spy();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        if (null != sniffySpy) {
+            sniffySpy.close();
+        }
+        preparedStatement.close();
+        connection.close();
+        keepAlive.close();
+        SniffyConfiguration.INSTANCE.setJdbcWrappers(false);
+    }
+
+    @Benchmark
+    public void executeQueryAndReadRows(Blackhole blackhole) throws SQLException {
+        preparedStatement.setInt(1, 0);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+                blackhole.consume(resultSet.getString(2));
+                blackhole.consume(resultSet.getDouble(3));
+            }
+        }
+        if (null != sniffySpy) {
+            sniffySpy.reset();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JdbcWrappersBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,199 @@
+package io.sniffy.sql;
+
+import io.sniffy.ThreadMetaData;
+import io.sniffy.util.StackTraceRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NPlusOneDetectorTest {
+
+    private final ThreadMetaData threadMetaData = new ThreadMetaData(Thread.currentThread());
+
+    @Test
+    public void testLiteralsInLoop() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        nPlusOneDetector.record(statementMetaData("SELECT * FROM ORDERS"));
+        for (int i = 0; i < 20; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = " + i));
+        }
+
+        List<NPlusOneDetector.Entry> entries = nPlusOneDetector.getEntries();
+        assertEquals(1, entries.size());
+        assertEquals("SELECT * FROM ITEMS WHERE ORDER_ID = ?", entries.get(0).getSql());
+        assertEquals(20, entries.get(0).getCount());
+        assertEquals(1, entries.get(0).getRuns());
+    }
+
+    @Test
+    public void testInterleavedStatements() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?"));
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM PRICES WHERE ITEM_ID = ?"));
+        }
+
+        List<NPlusOneDetector.Entry> entries = nPlusOneDetector.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals(10, entries.get(0).getCount());
+        assertEquals(10, entries.get(1).getCount());
+    }
+
+    @Test
+    public void testSameLiteralStatementIsNotCounted() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT 1 FROM DUAL"));
+        }
+
+        assertTrue(nPlusOneDetector.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testSameLiteralStatementBuiltDynamicallyIsNotCounted() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT " + 1 + " FROM DUAL WHERE ID = " + 42));
+        }
+
+        assertTrue(nPlusOneDetector.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testQuestionMarkInLiteralOrCommentIsNotParameter() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM FAQ WHERE QUESTION = 'why?' /* or not? */"));
+        }
+
+        assertTrue(nPlusOneDetector.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testSameBindParametersAreNotCounted() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        StatementMetaData statementMetaData = statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?");
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData);
+            nPlusOneDetector.recordBindParameters(statementMetaData, bindParameters("42"));
+        }
+
+        assertTrue(nPlusOneDetector.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testDifferentBindParametersAreCounted() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        StatementMetaData statementMetaData = statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?");
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData);
+            nPlusOneDetector.recordBindParameters(statementMetaData, bindParameters(Integer.toString(i % 2)));
+        }
+
+        assertEquals(10, nPlusOneDetector.getEntries().get(0).getCount());
+    }
+
+    @Test
+    public void testUnknownBindParametersAreCounted() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        StatementMetaData statementMetaData = statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?");
+        for (int i = 0; i < 10; i++) {
+            nPlusOneDetector.record(statementMetaData);
+            // parameters are retained for every other execution only
+            if (i % 2 == 0) {
+                nPlusOneDetector.recordBindParameters(statementMetaData, bindParameters("42"));
+            }
+        }
+
+        assertEquals(10, nPlusOneDetector.getEntries().get(0).getCount());
+    }
+
+    @Test
+    public void testRunFinishedWhenEvictedFromWindow() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        for (int run = 0; run < 2; run++) {
+            for (int i = 0; i < 5; i++) {
+                nPlusOneDetector.record(statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = " + i));
+            }
+            for (int i = 0; i < NPlusOneDetector.WINDOW_SIZE; i++) {
+                nPlusOneDetector.record(statementMetaData("SELECT * FROM TABLE_" + i));
+            }
+        }
+
+        List<NPlusOneDetector.Entry> entries = nPlusOneDetector.getEntries();
+        assertEquals(1, entries.size());
+        assertEquals(5, entries.get(0).getCount());
+        assertEquals(2, entries.get(0).getRuns());
+        assertEquals(10, entries.get(0).getTotalCount());
+    }
+
+    @Test
+    public void testGroupedByStackTrace() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        int firstStackTraceId = StackTraceRegistry.INSTANCE.register("at io.sniffy.Foo.first(Foo.java:1)");
+        int secondStackTraceId = StackTraceRegistry.INSTANCE.register("at io.sniffy.Foo.second(Foo.java:2)");
+        for (int i = 0; i < 3; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?", firstStackTraceId));
+        }
+        nPlusOneDetector.record(statementMetaData("SELECT * FROM ORDERS"));
+        for (int i = 0; i < NPlusOneDetector.WINDOW_SIZE; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM TABLE_" + i));
+        }
+        for (int i = 0; i < 4; i++) {
+            nPlusOneDetector.record(statementMetaData("SELECT * FROM ITEMS WHERE ORDER_ID = ?", secondStackTraceId));
+        }
+
+        List<NPlusOneDetector.Entry> entries = nPlusOneDetector.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals("at io.sniffy.Foo.first(Foo.java:1)", entries.get(0).getStackTrace());
+        assertEquals(3, entries.get(0).getCount());
+        assertEquals("at io.sniffy.Foo.second(Foo.java:2)", entries.get(1).getStackTrace());
+        assertEquals(4, entries.get(1).getCount());
+    }
+
+    @Test
+    public void testSamplingWeight() {
+        NPlusOneDetector nPlusOneDetector = new NPlusOneDetector(threadMetaData);
+        for (int i = 0; i < 3; i++) {
+            nPlusOneDetector.record(new StatementMetaData(
+                    "SELECT * FROM ITEMS WHERE ORDER_ID = ?", SqlStatement.SELECT, StackTraceRegistry.NO_STACK_TRACE, threadMetaData, 10
+            ));
+        }
+
+        assertEquals(30, nPlusOneDetector.getEntries().get(0).getCount());
+    }
+
+    @Test
+    public void testMerge() {
+        List<NPlusOneDetector.Entry> entries = new ArrayList<NPlusOneDetector.Entry>();
+        NPlusOneDetector.Entry first = new NPlusOneDetector.Entry("SELECT ?", null);
+        first.addRun(5);
+        entries.add(first);
+        NPlusOneDetector.Entry second = new NPlusOneDetector.Entry("SELECT ?", null);
+        second.addRun(7);
+        entries.add(second);
+
+        List<NPlusOneDetector.Entry> merged = NPlusOneDetector.merge(entries);
+        assertEquals(1, merged.size());
+        assertEquals(7, merged.get(0).getCount());
+        assertEquals(2, merged.get(0).getRuns());
+        assertEquals(12, merged.get(0).getTotalCount());
+        assertEquals(5, first.getCount());
+    }
+
+    private static BindParameters bindParameters(String... values) {
+        return new BindParameters(values, false, 1000);
+    }
+
+    private StatementMetaData statementMetaData(String sql) {
+        return statementMetaData(sql, StackTraceRegistry.NO_STACK_TRACE);
+    }
+
+    private StatementMetaData statementMetaData(String sql, int stackTraceId) {
+        return new StatementMetaData(sql, SqlStatement.SELECT, stackTraceId, threadMetaData);
+    }
+
+}
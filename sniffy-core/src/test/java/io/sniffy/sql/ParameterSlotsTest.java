@@ -0,0 +1,93 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ParameterSlotsTest {
+
+    @Test
+    public void testSnapshot() {
+        ParameterSlots parameterSlots = new ParameterSlots();
+        assertTrue(parameterSlots.isEmpty());
+
+        parameterSlots.setLong(1, 42);
+        parameterSlots.setDouble(2, 0.5);
+        parameterSlots.setBoolean(3, true);
+        parameterSlots.setNull(4);
+        parameterSlots.setObject(5, "foo");
+        parameterSlots.setObject(6, new BigDecimal("1.10"));
+        parameterSlots.setObject(8, new byte[]{1, (byte) 0xAB});
+        assertFalse(parameterSlots.isEmpty());
+
+        BindParameters bindParameters = parameterSlots.snapshot(1000, 256);
+        assertEquals(Arrays.asList("42", "0.5", "true", "NULL", "'foo'", "1.10", null, "0x01AB"), bindParameters.getValues());
+        assertEquals("[42, 0.5, true, NULL, 'foo', 1.10, ?, 0x01AB]", bindParameters.toString());
+        assertEquals(1000, bindParameters.getElapsedTime());
+        assertFalse(bindParameters.isTruncated());
+    }
+
+    @Test
+    public void testTruncation() {
+        ParameterSlots parameterSlots = new ParameterSlots();
+        parameterSlots.setObject(1, "abcdefghij");
+        parameterSlots.setObject(2, new byte[10]);
+        parameterSlots.setObject(ParameterSlots.CAPACITY + 1, "ignored");
+
+        BindParameters bindParameters = parameterSlots.snapshot(0, 4);
+        assertEquals(Arrays.asList("'abcd...'", "0x00000000... (10 bytes)"), bindParameters.getValues());
+        assertTrue(bindParameters.isTruncated());
+        assertEquals("['abcd...', 0x00000000... (10 bytes), ...]", bindParameters.toString());
+    }
+
+    @Test
+    public void testStreamsAndLobsAreNotRead() throws NoSuchMethodException {
+        ParameterSlots parameterSlots = new ParameterSlots();
+        parameterSlots.set(PreparedStatement.class.getMethod("setBinaryStream", Integer.TYPE, InputStream.class, Long.TYPE), new Object[]{1, null, 100L});
+        parameterSlots.set(PreparedStatement.class.getMethod("setCharacterStream", Integer.TYPE, Reader.class), new Object[]{2, null});
+        parameterSlots.set(PreparedStatement.class.getMethod("setBlob", Integer.TYPE, Blob.class), new Object[]{3, null});
+        parameterSlots.set(PreparedStatement.class.getMethod("setNull", Integer.TYPE, Integer.TYPE), new Object[]{4, Types.VARCHAR});
+        parameterSlots.set(PreparedStatement.class.getMethod("setInt", Integer.TYPE, Integer.TYPE), new Object[]{5, 7});
+
+        assertEquals(
+                Arrays.asList("<BinaryStream length=100>", "<CharacterStream>", "<Blob>", "NULL", "7"),
+                parameterSlots.snapshot(0, 256).getValues()
+        );
+    }
+
+    @Test
+    public void testClear() {
+        ParameterSlots parameterSlots = new ParameterSlots();
+        parameterSlots.setObject(2, "foo");
+        parameterSlots.clear();
+        assertTrue(parameterSlots.isEmpty());
+
+        parameterSlots.setLong(1, 1);
+        assertEquals(Arrays.asList("1"), parameterSlots.snapshot(0, 256).getValues());
+    }
+
+    @Test
+    public void testRetainSlowest() {
+        SqlStats sqlStats = new SqlStats(0, 0, 0, 0, 0);
+        BindParameters fast = new BindParameters(new String[]{"1"}, false, 10);
+        BindParameters slow = new BindParameters(new String[]{"2"}, false, 20);
+
+        sqlStats.retainBindParameters(fast);
+        sqlStats.retainBindParameters(slow);
+        sqlStats.retainBindParameters(fast);
+        assertSame(slow, sqlStats.getBindParameters());
+
+        SqlStats copy = new SqlStats(0, 0, 0, 0, 0);
+        copy.accumulate(sqlStats);
+        assertSame(slow, copy.getBindParameters());
+    }
+
+}
@@ -4,6 +4,7 @@ import io.sniffy.BaseTest;
 import io.sniffy.CurrentThreadSpy;
 import io.sniffy.Sniffy;
 import io.sniffy.Spy;
+import io.sniffy.configuration.SniffyConfiguration;
 import org.junit.Test;
 import ru.yandex.qatools.allure.annotations.Issue;
 
@@ -16,6 +17,7 @@ import java.util.List;
 import java.util.OptionalInt;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -47,6 +49,12 @@ public class PreparedStatementInvocationHandlerTest extends BaseTest {
             assertEquals(1, sqlStats.queries.intValue());
             assertEquals(0, sqlStats.rows.intValue());
 
+            BatchStats batchStats = sqlStats.getBatchStats();
+            assertEquals(1, batchStats.getBatches());
+            assertEquals(2, batchStats.getMaxBatchSize());
+            assertEquals(1, batchStats.getSuccessNoInfoStatements());
+            assertEquals(1, batchStats.getFailedStatements());
+
         }
 
     }
@@ -76,6 +84,71 @@ public class PreparedStatementInvocationHandlerTest extends BaseTest {
             assertEquals(1, sqlStats.queries.intValue());
             assertEquals(0, sqlStats.rows.intValue());
 
+            BatchStats batchStats = sqlStats.getBatchStats();
+            assertEquals(1, batchStats.getBatches());
+            assertEquals(2, batchStats.getMaxBatchSize());
+            assertEquals(1, batchStats.getSuccessNoInfoStatements());
+            assertEquals(1, batchStats.getFailedStatements());
+
+        }
+
+    }
+
+    @Test
+    public void testBindParametersRetained() throws SQLException, IOException {
+
+        PreparedStatement target = mock(PreparedStatement.class);
+        when(target.executeUpdate()).thenReturn(1);
+
+        PreparedStatement sniffyPreparedStatement = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatementInvocationHandlerTest.class.getClassLoader(),
+                new Class[]{PreparedStatement.class},
+                new PreparedStatementInvocationHandler(target, null, "jdbc:test:connection:url", "sa", "UPDATE TAB SET FOO = ? WHERE BAR = ?")
+        );
+
+        boolean captureParameters = SniffyConfiguration.INSTANCE.isCaptureParameters();
+        int parametersThreshold = SniffyConfiguration.INSTANCE.getParametersThreshold();
+        SniffyConfiguration.INSTANCE.setCaptureParameters(true);
+        SniffyConfiguration.INSTANCE.setParametersThreshold(0);
+        try (CurrentThreadSpy spy = Sniffy.spyCurrentThread()) {
+
+            sniffyPreparedStatement.setString(1, "foo");
+            sniffyPreparedStatement.setInt(2, 42);
+            sniffyPreparedStatement.executeUpdate();
+
+            SqlStats sqlStats = spy.getExecutedStatements().values().iterator().next();
+            assertEquals("['foo', 42]", sqlStats.getBindParameters().toString());
+
+        } finally {
+            SniffyConfiguration.INSTANCE.setCaptureParameters(captureParameters);
+            SniffyConfiguration.INSTANCE.setParametersThreshold(parametersThreshold);
+        }
+
+    }
+
+    @Test
+    public void testBindParametersNotRetainedForFastExecutions() throws SQLException, IOException {
+
+        PreparedStatement target = mock(PreparedStatement.class);
+
+        PreparedStatement sniffyPreparedStatement = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatementInvocationHandlerTest.class.getClassLoader(),
+                new Class[]{PreparedStatement.class},
+                new PreparedStatementInvocationHandler(target, null, "jdbc:test:connection:url", "sa", "SELECT * FROM TAB WHERE FOO = ?")
+        );
+
+        boolean captureParameters = SniffyConfiguration.INSTANCE.isCaptureParameters();
+        SniffyConfiguration.INSTANCE.setCaptureParameters(true);
+        try (CurrentThreadSpy spy = Sniffy.spyCurrentThread()) {
+
+            sniffyPreparedStatement.setString(1, "foo");
+            sniffyPreparedStatement.executeQuery();
+
+            SqlStats sqlStats = spy.getExecutedStatements().values().iterator().next();
+            assertNull(sqlStats.getBindParameters());
+
+        } finally {
+            SniffyConfiguration.INSTANCE.setCaptureParameters(captureParameters);
         }
 
     }
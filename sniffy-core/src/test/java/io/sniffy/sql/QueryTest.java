@@ -31,4 +31,16 @@ public class QueryTest {
                 "LONG_W REAL);"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testParseCommentsAndCommonTableExpressions() throws Exception {
+        Assert.assertEquals(SqlStatement.SELECT, SqlUtil.guessQueryType("/* load stations */ -- by id\nselect\tID FROM STATION"));
+        Assert.assertEquals(SqlStatement.SELECT, SqlUtil.guessQueryType("(SELECT ID FROM STATION) UNION (SELECT ID FROM STATS)"));
+        Assert.assertEquals(SqlStatement.SELECT, SqlUtil.guessQueryType("WITH RECURSIVE T(N) AS (SELECT 1 UNION ALL SELECT N + 1 FROM T WHERE N < 10) SELECT N FROM T"));
+        Assert.assertEquals(SqlStatement.DELETE, SqlUtil.guessQueryType("with old as (select ID from STATION where LONG_W < 90), \"new\" as (select 1)\ndelete from STATS where ID in (select ID from old)"));
+        Assert.assertEquals(SqlStatement.INSERT, SqlUtil.guessQueryType("WITH S AS (SELECT ID FROM STATION) INSERT INTO STATS SELECT * FROM S"));
+        Assert.assertEquals(SqlStatement.OTHER, SqlUtil.guessQueryType("SELECTED"));
+        Assert.assertEquals(SqlStatement.OTHER, SqlUtil.guessQueryType("/* SELECT */"));
+        Assert.assertEquals(SqlStatement.OTHER, SqlUtil.guessQueryType(null));
+    }
+
+}
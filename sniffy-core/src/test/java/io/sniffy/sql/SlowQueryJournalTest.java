@@ -0,0 +1,256 @@
+package io.sniffy.sql;
+
+import io.sniffy.util.StackTraceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SlowQueryJournalTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("sniffy", ".journal");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void deleteFile() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 64 * 1024);
+        try {
+            int stackTraceId = StackTraceRegistry.INSTANCE.register("at io.sniffy.Foo.bar(Foo.java:42)");
+            BindParameters bindParameters = new BindParameters(new String[]{"'foo'", "42"}, false, 0);
+
+            journal.append(1000L, "SELECT * FROM USERS WHERE NAME = 'foo'", TimeUnit.MILLISECONDS.toNanos(1500),
+                    3, 100, 200, Thread.currentThread(), stackTraceId, bindParameters);
+            journal.append(2000L, "SELECT * FROM USERS WHERE NAME = 'bar'", TimeUnit.MILLISECONDS.toNanos(2500),
+                    5, 300, 400, Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+
+            List<SlowQueryJournal.Entry> entries = journal.getEntries();
+            assertEquals(2, entries.size());
+
+            SlowQueryJournal.Entry entry = entries.get(0);
+            assertEquals(1000L, entry.getTimestamp());
+            assertEquals("SELECT * FROM USERS WHERE NAME = ?", entry.getSql());
+            assertEquals(SqlFingerprint.of("SELECT * FROM USERS WHERE NAME = 'foo'").getHash(), entry.getFingerprintId());
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(1500), entry.getElapsedTime());
+            assertEquals(3, entry.getRowsUpdated());
+            assertEquals(100, entry.getBytesDown());
+            assertEquals(200, entry.getBytesUp());
+            assertEquals(Thread.currentThread().getId(), entry.getThreadId());
+            assertEquals(Thread.currentThread().getName(), entry.getThreadName());
+            assertEquals("at io.sniffy.Foo.bar(Foo.java:42)", entry.getStackTrace());
+            assertEquals("['foo', 42]", entry.getParameters());
+
+            entry = entries.get(1);
+            assertEquals(2000L, entry.getTimestamp());
+            assertEquals("SELECT * FROM USERS WHERE NAME = ?", entry.getSql());
+            assertEquals(5, entry.getRowsUpdated());
+            assertNull(entry.getStackTrace());
+            assertNull(entry.getParameters());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testRingKeepsNewestEntries() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 4 * 1024);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                journal.append(i, "SELECT " + i + " FROM DUAL", i, 0, 0, 0,
+                        Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+            }
+
+            List<SlowQueryJournal.Entry> entries = journal.getEntries();
+            assertTrue(entries.size() > 1);
+            assertTrue(entries.size() < 1000);
+
+            long timestamp = 1000 - entries.size();
+            for (SlowQueryJournal.Entry entry : entries) {
+                assertEquals(timestamp++, entry.getTimestamp());
+                // fingerprint text is written again before it is overwritten
+                assertEquals("SELECT ? FROM DUAL", entry.getSql());
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testEntriesSurviveReopen() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 4 * 1024);
+        for (int i = 0; i < 100; i++) {
+            journal.append(i, "SELECT " + i + " FROM DUAL", i, 0, 0, 0,
+                    Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+        }
+        List<SlowQueryJournal.Entry> entries = journal.getEntries();
+        journal.close();
+
+        journal = new SlowQueryJournal(file, 4 * 1024);
+        try {
+            List<SlowQueryJournal.Entry> reopenedEntries = journal.getEntries();
+            assertEquals(entries.size(), reopenedEntries.size());
+            assertEquals(99, reopenedEntries.get(reopenedEntries.size() - 1).getTimestamp());
+
+            journal.append(100, "SELECT 100 FROM DUAL", 100, 0, 0, 0,
+                    Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+            reopenedEntries = journal.getEntries();
+            assertEquals(100, reopenedEntries.get(reopenedEntries.size() - 1).getTimestamp());
+            assertEquals("SELECT ? FROM DUAL", reopenedEntries.get(reopenedEntries.size() - 1).getSql());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testReopenWithDifferentSizeResetsJournal() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 4 * 1024);
+        journal.append(1, "SELECT 1 FROM DUAL", 1, 0, 0, 0,
+                Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+        journal.close();
+
+        journal = new SlowQueryJournal(file, 8 * 1024);
+        try {
+            assertTrue(journal.getEntries().isEmpty());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 4 * 1024);
+        try {
+            journal.append(1, "SELECT 1 FROM DUAL", 1, 0, 0, 0,
+                    Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+            assertEquals(1, journal.getEntries().size());
+
+            journal.clear();
+            assertTrue(journal.getEntries().isEmpty());
+
+            journal.append(2, "SELECT 2 FROM DUAL", 2, 0, 0, 0,
+                    Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, null);
+            List<SlowQueryJournal.Entry> entries = journal.getEntries();
+            assertEquals(1, entries.size());
+            assertEquals(2, entries.get(0).getTimestamp());
+            assertEquals("SELECT ? FROM DUAL", entries.get(0).getSql());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testLongTextsAreTruncated() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 256 * 1024);
+        try {
+            StringBuilder threadName = new StringBuilder();
+            for (int i = 0; i < 2 * SlowQueryJournal.MAX_THREAD_NAME_LENGTH; i++) {
+                threadName.append('t');
+            }
+            Thread thread = new Thread(threadName.toString());
+
+            String[] values = new String[SlowQueryJournal.MAX_PARAMETERS_LENGTH];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = "1";
+            }
+
+            journal.append(1, "SELECT 1 FROM DUAL", 1, 0, 0, 0,
+                    thread, StackTraceRegistry.NO_STACK_TRACE, new BindParameters(values, false, 0));
+
+            SlowQueryJournal.Entry entry = journal.getEntries().get(0);
+            assertEquals(SlowQueryJournal.MAX_THREAD_NAME_LENGTH, entry.getThreadName().length());
+            assertEquals(SlowQueryJournal.MAX_PARAMETERS_LENGTH, entry.getParameters().length());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testRecordLargerThanQuarterOfJournalIsTruncated() throws IOException {
+        SlowQueryJournal journal = new SlowQueryJournal(file, 4 * 1024);
+        try {
+            StringBuilder stackTrace = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                stackTrace.append("at io.sniffy.Foo.bar").append(i).append("(Foo.java:42)\n");
+            }
+            int stackTraceId = StackTraceRegistry.INSTANCE.register(stackTrace.toString());
+
+            String[] values = new String[SlowQueryJournal.MAX_PARAMETERS_LENGTH];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = "1";
+            }
+
+            journal.append(1, "SELECT 1 FROM DUAL", 1, 0, 0, 0,
+                    Thread.currentThread(), stackTraceId, new BindParameters(values, false, 0));
+
+            List<SlowQueryJournal.Entry> entries = journal.getEntries();
+            assertEquals(1, entries.size());
+            SlowQueryJournal.Entry entry = entries.get(0);
+            assertEquals("SELECT ? FROM DUAL", entry.getSql());
+            assertTrue(entry.getParameters().length() < 1024);
+            assertTrue(stackTrace.toString().startsWith(entry.getStackTrace()));
+            assertTrue(entry.getStackTrace().length() < 1024);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsSkipOverwrittenRecords() throws Exception {
+        final SlowQueryJournal journal = new SlowQueryJournal(file, 4 * 1024);
+        try {
+            final AtomicBoolean stopped = new AtomicBoolean();
+            Thread[] writers = new Thread[4];
+            for (int i = 0; i < writers.length; i++) {
+                final int writer = i;
+                writers[i] = new Thread(() -> {
+                    String[] values = new String[writer * 10];
+                    Arrays.fill(values, "'" + writer + "'");
+                    for (int j = 0; !stopped.get(); j++) {
+                        journal.append(j, "SELECT " + writer + " FROM DUAL", j, writer, 0, 0,
+                                Thread.currentThread(), StackTraceRegistry.NO_STACK_TRACE, new BindParameters(values, false, 0));
+                    }
+                });
+                writers[i].start();
+            }
+
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    for (SlowQueryJournal.Entry entry : journal.getEntries()) {
+                        int writer = entry.getRowsUpdated();
+                        assertTrue(writer >= 0 && writer < writers.length);
+                        // fingerprint might have been overwritten already
+                        assertTrue(null == entry.getSql() || "SELECT ? FROM DUAL".equals(entry.getSql()));
+                        String expected = Arrays.toString(new String[writer * 10]).replace("null", "'" + writer + "'");
+                        assertEquals(expected, entry.getParameters());
+                    }
+                }
+            } finally {
+                stopped.set(true);
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+            }
+        } finally {
+            journal.close();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package io.sniffy.sql;
+
+import io.sniffy.BaseTest;
+import io.sniffy.CurrentThreadSpy;
+import io.sniffy.Query;
+import io.sniffy.Sniffy;
+import io.sniffy.Spy;
+import io.sniffy.configuration.SniffyConfiguration;
+import io.sniffy.registry.ConnectionsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SniffyConnectionTest extends BaseTest {
+
+    @Before
+    public void enableJdbcWrappers() {
+        SniffyConfiguration.INSTANCE.setJdbcWrappers(true);
+    }
+
+    @After
+    public void disableJdbcWrappers() {
+        SniffyConfiguration.INSTANCE.setJdbcWrappers(false);
+        ConnectionsRegistry.INSTANCE.clear();
+    }
+
+    @Test
+    public void testGetConnection() throws SQLException {
+        try (Connection connection = openConnection();
+             Statement statement = connection.createStatement();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT 1 FROM DUAL");
+             CallableStatement callableStatement = connection.prepareCall("SELECT 1 FROM DUAL")) {
+            assertTrue(connection instanceof SniffyConnection);
+            assertFalse(Proxy.isProxyClass(connection.getClass()));
+            assertTrue(statement instanceof SniffyStatement);
+            assertTrue(preparedStatement instanceof SniffyPreparedStatement);
+            assertTrue(callableStatement instanceof SniffyCallableStatement);
+            assertSame(connection, statement.getConnection());
+            assertSame(connection, preparedStatement.getConnection());
+        }
+    }
+
+    @Test
+    public void testExecuteStatement() throws Exception {
+        try (CurrentThreadSpy spy = Sniffy.spyCurrentThread();
+             Connection connection = openConnection();
+             Statement statement = connection.createStatement()) {
+            assertTrue(statement.execute("SELECT 1 FROM DUAL"));
+            ResultSet resultSet = statement.getResultSet();
+            assertTrue(resultSet instanceof SniffyResultSet);
+            assertSame(statement, resultSet.getStatement());
+            assertTrue(resultSet.next());
+            assertEquals(1, resultSet.getInt(1));
+            assertFalse(resultSet.next());
+
+            List<SqlStats> sqlStatsList = new ArrayList<>(spy.getExecutedStatements().values());
+            assertEquals(1, sqlStatsList.size());
+            assertEquals(1, sqlStatsList.get(0).queries.intValue());
+            assertEquals(1, sqlStatsList.get(0).rows.intValue());
+        }
+    }
+
+    @Test
+    public void testExecuteUpdateAndBatch() throws SQLException {
+        executeStatement(Query.DELETE);
+        try (Spy spy = Sniffy.expect(SqlQueries.exactQueries(2).insert().exactRows(3));
+             Connection connection = openConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_PREPARED_STATEMENT)) {
+            preparedStatement.setString(1, "foo");
+            assertEquals(1, preparedStatement.executeUpdate());
+            preparedStatement.setString(1, "bar");
+            preparedStatement.addBatch();
+            preparedStatement.setString(1, "baz");
+            preparedStatement.addBatch();
+            assertArrayEquals(new int[]{1, 1}, preparedStatement.executeBatch());
+
+            assertEquals(2, spy.executedStatements());
+        }
+    }
+
+    @Test
+    public void testConnectionRefused() throws SQLException {
+        try (Connection connection = openConnection();
+             Statement statement = connection.createStatement()) {
+            ConnectionsRegistry.INSTANCE.setDataSourceStatus("jdbc:h2:mem:project", "sa", -1);
+            try {
+                statement.executeQuery("SELECT 1 FROM DUAL");
+                fail();
+            } catch (SQLException e) {
+                assertNotNull(e);
+            }
+        }
+    }
+
+    @Test
+    public void testEquals() throws SQLException {
+        try (Connection connection = openConnection();
+             Connection otherConnection = openConnection()) {
+            assertEquals(connection, connection.createStatement().getConnection());
+            assertNotEquals(connection, otherConnection);
+            assertEquals(connection.unwrap(Connection.class).hashCode(), connection.hashCode());
+        }
+    }
+
+}
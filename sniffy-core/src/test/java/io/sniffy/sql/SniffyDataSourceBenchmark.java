@@ -0,0 +1,58 @@
+package io.sniffy.sql;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures connection checkout from a pooled data source with and without {@link SniffyDataSource} wrapper:
+ * get a connection from the pool and return it back
+ *
+ * Not executed during the build; run {@link #main(String[])} from IDE or test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SniffyDataSourceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean sniffy;
+
+    private JdbcConnectionPool connectionPool;
+    private DataSource dataSource;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connectionPool = JdbcConnectionPool.create("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1", "sa", "sa");
+        dataSource = sniffy ? new SniffyDataSource(connectionPool) : connectionPool;
+        // warm up the pool so that the benchmark doesn't measure physical connections
+        dataSource.getConnection().close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionPool.dispose();
+    }
+
+    @Benchmark
+    public Connection getConnection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        return connection;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SniffyDataSourceBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -20,6 +20,7 @@ import java.net.InetSocketAddress;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
@@ -119,6 +120,52 @@ public class SniffyDataSourceTest extends BaseTest {
         }
     }
 
+    @Test
+    public void testGetConnectionMetaDataCached() throws Exception {
+        JdbcDataSource h2DataSource = new JdbcDataSource();
+        h2DataSource.setURL("jdbc:h2:mem:");
+
+        JdbcDataSource targetDataSource = Mockito.spy(h2DataSource);
+
+        AtomicInteger metaDataInvocations = new AtomicInteger();
+        Answer<Connection> countingAnswer = invocation -> {
+            Connection connection = Mockito.spy((Connection) invocation.callRealMethod());
+            when(connection.getMetaData()).then(metaDataInvocation -> {
+                metaDataInvocations.incrementAndGet();
+                return metaDataInvocation.callRealMethod();
+            });
+            return connection;
+        };
+        when(targetDataSource.getConnection()).then(countingAnswer);
+        when(targetDataSource.getConnection(anyString(), anyString())).then(countingAnswer);
+
+        SniffyDataSource sniffyDataSource = new SniffyDataSource(targetDataSource);
+
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = sniffyDataSource.getConnection()) {
+                assertNotNull(connection);
+            }
+        }
+        assertEquals(1, metaDataInvocations.getAndSet(0));
+
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = sniffyDataSource.getConnection("sa", "sa")) {
+                assertNotNull(connection);
+            }
+        }
+        assertEquals(1, metaDataInvocations.getAndSet(0));
+
+        sniffyDataSource.invalidateMetaDataCache();
+
+        try (Connection connection = sniffyDataSource.getConnection()) {
+            assertNotNull(connection);
+        }
+        try (Connection connection = sniffyDataSource.getConnection("sa", "sa")) {
+            assertNotNull(connection);
+        }
+        assertEquals(2, metaDataInvocations.get());
+    }
+
     @Test
     public void testGetConnectionWithCredentialsWithSocketOperation() throws Exception {
         JdbcDataSource h2DataSource = new JdbcDataSource();
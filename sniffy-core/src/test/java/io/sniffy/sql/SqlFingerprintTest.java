@@ -0,0 +1,86 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SqlFingerprintTest {
+
+    private static String fingerprint(String sql) {
+        return SqlFingerprint.of(sql).getFingerprint();
+    }
+
+    @Test
+    public void testCollapseInList() {
+        assertEquals(
+                "select * from ORDERS where customer_id in (?) or id IN (?)",
+                fingerprint("select * from ORDERS where customer_id in (?, ?, ?) or id IN(1, 2,3)")
+        );
+        assertEquals(
+                "select * from ORDERS where customer_id in (select id from CUSTOMERS where name = ?)",
+                fingerprint("select * from ORDERS where customer_id in (select id from CUSTOMERS where name = 'John')")
+        );
+    }
+
+    @Test
+    public void testCollapseValuesList() {
+        assertEquals(
+                "insert into ORDERS (id, name) values (?, ?)",
+                fingerprint("insert into ORDERS (id, name) values (?, ?), (?, ?),(?, ?)")
+        );
+        assertEquals(
+                "INSERT INTO ORDERS VALUES (?, ?) RETURNING id",
+                fingerprint("INSERT INTO ORDERS VALUES (1, 'a'), (2, 'b') RETURNING id")
+        );
+    }
+
+    @Test
+    public void testReplaceLiterals() {
+        assertEquals(
+                "SELECT ? FROM DUAL WHERE a = ? AND b = ? AND c = ? AND d > ? AND e = ?",
+                fingerprint("SELECT 1 FROM DUAL WHERE a = 'it''s' AND b = -42 AND c = 1.5e10 AND d > 0x1F AND e = ?")
+        );
+        assertEquals(
+                "SELECT column1, \"Column 2\" FROM table2 t2",
+                fingerprint("SELECT column1, \"Column 2\" FROM table2 t2")
+        );
+    }
+
+    @Test
+    public void testStripCommentsAndWhitespace() {
+        assertEquals(
+                "SELECT id FROM ORDERS WHERE id = ?",
+                fingerprint("  /* load order */ SELECT  id\n\tFROM ORDERS -- by id\n WHERE id = ?  ")
+        );
+    }
+
+    @Test
+    public void testHash() {
+        SqlFingerprint sqlFingerprint = SqlFingerprint.of("SELECT 1 FROM DUAL");
+        SqlFingerprint otherSqlFingerprint = SqlFingerprint.of("SELECT  2  FROM DUAL");
+        assertEquals(sqlFingerprint, otherSqlFingerprint);
+        assertEquals(sqlFingerprint.getHash(), otherSqlFingerprint.getHash());
+        assertNotEquals(sqlFingerprint.getHash(), SqlFingerprint.of("SELECT 1 FROM DUAL2").getHash());
+    }
+
+    @Test
+    public void testParameterCount() {
+        assertEquals(2, SqlFingerprint.of("SELECT * FROM ORDERS WHERE id IN (?, ?)").getParameterCount());
+        assertEquals(1, SqlFingerprint.of("SELECT 'why?' FROM \"what?\" WHERE id = ? -- or ?\n/* ? */").getParameterCount());
+        assertEquals(0, SqlFingerprint.of("SELECT * FROM ORDERS WHERE id = 42").getParameterCount());
+    }
+
+    @Test
+    public void testCachedByIdentity() {
+        String sql = "SELECT * FROM ORDERS WHERE id IN (?, ?)";
+        assertSame(SqlFingerprint.of(sql), SqlFingerprint.of(sql));
+        assertNull(SqlFingerprint.of(null));
+    }
+
+    @Test
+    public void testCachedByValue() {
+        String sql = "SELECT * FROM ORDERS WHERE id IN (?, ?)";
+        assertSame(SqlFingerprint.of(sql), SqlFingerprint.of(new String(sql)));
+    }
+
+}
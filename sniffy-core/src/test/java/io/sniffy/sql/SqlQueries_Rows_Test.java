@@ -1,6 +1,7 @@
 package io.sniffy.sql;
 
 import io.sniffy.BaseTest;
+import io.sniffy.CurrentThreadSpy;
 import io.sniffy.Query;
 import io.sniffy.Sniffy;
 import io.sniffy.Spy;
@@ -10,6 +11,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class SqlQueries_Rows_Test extends BaseTest {
@@ -78,9 +80,10 @@ public class SqlQueries_Rows_Test extends BaseTest {
     public void testResultSetMethods() throws Exception {
         executeStatements(10, Query.INSERT);
 
-        try (Connection connection = openConnection();
-             Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-             @SuppressWarnings("unused") Spy $= Sniffy.expect(SqlQueries.exactRows(6))) {
+        // rows are published when statement is closed so spy must be closed after it
+        try (@SuppressWarnings("unused") Spy $= Sniffy.expect(SqlQueries.exactRows(6));
+             Connection connection = openConnection();
+             Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
 
             ResultSet resultSet = statement.executeQuery("SELECT * FROM PUBLIC.PROJECT");
 
@@ -94,6 +97,42 @@ public class SqlQueries_Rows_Test extends BaseTest {
         }
     }
 
+    @Test
+    public void testRowsPublishedOnCloseAndExhaustion() throws Exception {
+        executeStatement(Query.DELETE);
+        executeStatements(10, Query.INSERT);
+
+        try (CurrentThreadSpy spy = Sniffy.spyCurrentThread();
+             Connection connection = openConnection();
+             Statement statement = connection.createStatement()) {
+
+            ResultSet resultSet = statement.executeQuery("SELECT * FROM PUBLIC.PROJECT");
+            assertTrue(resultSet.next());
+            assertTrue(resultSet.next());
+            assertEquals(0, getReturnedRows(spy));
+            resultSet.close();
+            assertEquals(2, getReturnedRows(spy));
+
+            resultSet = statement.executeQuery("SELECT * FROM PUBLIC.PROJECT");
+            //noinspection StatementWithEmptyBody
+            while (resultSet.next());
+            assertEquals(12, getReturnedRows(spy));
+
+            resultSet = statement.executeQuery("SELECT * FROM PUBLIC.PROJECT");
+            assertTrue(resultSet.next());
+            statement.executeQuery("SELECT * FROM PUBLIC.PROJECT");
+            assertEquals(13, getReturnedRows(spy));
+        }
+    }
+
+    private static int getReturnedRows(CurrentThreadSpy spy) {
+        int rows = 0;
+        for (SqlStats sqlStats : spy.getExecutedStatements().values()) {
+            rows += sqlStats.rows.intValue();
+        }
+        return rows;
+    }
+
     @Test(expected = WrongNumberOfRowsError.class)
     public void testMaxMinRows_Exception() {
         try (@SuppressWarnings("unused") Spy $= Sniffy.expect(SqlQueries.maxRows(5).minRows(4))) {
@@ -0,0 +1,87 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StatementBatchTest {
+
+    @Test
+    public void testSameSql() {
+        StatementBatch batch = new StatementBatch();
+        assertEquals(0, batch.getGroups());
+        assertNull(batch.getSql(0));
+
+        for (int i = 0; i < 1000; i++) {
+            batch.add(new String("INSERT INTO TAB (FOO) VALUES (?)"));
+        }
+        assertEquals(1000, batch.size());
+        assertEquals(1, batch.getGroups());
+        assertEquals("INSERT INTO TAB (FOO) VALUES (?)", batch.getSql(0));
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertNull(batch.getSql(0));
+    }
+
+    @Test
+    public void testSameFingerprint() {
+        StatementBatch batch = new StatementBatch();
+        for (int i = 0; i < 1000; i++) {
+            batch.add("INSERT INTO TAB (FOO) VALUES (" + i + ")");
+        }
+        assertEquals(1000, batch.size());
+        assertEquals(1, batch.getGroups());
+        assertEquals("INSERT INTO TAB (FOO) VALUES (?)", batch.getSql(0));
+        assertEquals(1000, batch.size(0));
+    }
+
+    @Test
+    public void testDifferentFingerprints() {
+        StatementBatch batch = new StatementBatch();
+        batch.add("INSERT INTO TAB (FOO) VALUES (1)");
+        batch.add("INSERT INTO TAB (FOO) VALUES (2)");
+        batch.add("DELETE FROM TAB WHERE FOO = 3");
+        assertEquals(3, batch.size());
+        assertEquals(2, batch.getGroups());
+        assertEquals("INSERT INTO TAB (FOO) VALUES (?)", batch.getSql(0));
+        assertEquals(2, batch.size(0));
+        assertEquals("DELETE FROM TAB WHERE FOO = ?", batch.getSql(1));
+        assertEquals(1, batch.size(1));
+    }
+
+    @Test
+    public void testUpdateCountsSummarizedPerGroup() {
+        StatementBatch batch = new StatementBatch();
+        for (int i = 0; i < 20; i++) {
+            batch.add("INSERT INTO TAB (FOO) VALUES (?)");
+        }
+        batch.add("DELETE FROM TAB WHERE FOO = 1");
+        batch.add("INSERT INTO TAB (FOO) VALUES (?)");
+        batch.add("UPDATE TAB SET FOO = 2");
+
+        for (int i = 0; i < 21; i++) {
+            batch.addUpdateCount(i, 1);
+        }
+        batch.addUpdateCount(20, Statement.EXECUTE_FAILED);
+        batch.addUpdateCount(22, Statement.SUCCESS_NO_INFO);
+        batch.addUpdateCount(21, 1);
+
+        assertEquals(3, batch.getGroups());
+        assertEquals(21, batch.size(0));
+        assertEquals(21, batch.getRowsUpdated(0));
+        assertEquals(1, batch.getRowsUpdated(1));
+        assertEquals(1, batch.getFailedStatements(1));
+        assertEquals(0, batch.getRowsUpdated(2));
+        assertEquals(1, batch.getSuccessNoInfoStatements(2));
+
+        batch.clear();
+        assertEquals(0, batch.getGroups());
+        assertEquals(0, batch.getRowsUpdated(0));
+        assertEquals(0, batch.getFailedStatements(1));
+    }
+
+}
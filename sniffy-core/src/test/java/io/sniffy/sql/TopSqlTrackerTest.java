@@ -0,0 +1,175 @@
+package io.sniffy.sql;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TopSqlTrackerTest {
+
+    @Test
+    public void testCountsAndLatencies() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(10);
+        topSqlTracker.record(SqlFingerprint.of("SELECT 1 FROM DUAL"), TimeUnit.MILLISECONDS.toNanos(1));
+        topSqlTracker.record(SqlFingerprint.of("SELECT 2 FROM DUAL"), TimeUnit.MILLISECONDS.toNanos(3));
+        topSqlTracker.record(SqlFingerprint.of("SELECT * FROM USERS"), TimeUnit.MILLISECONDS.toNanos(5));
+
+        List<TopSqlTracker.Entry> topSql = topSqlTracker.getTopSql();
+        assertEquals(2, topSql.size());
+
+        TopSqlTracker.Entry entry = topSql.get(0);
+        assertEquals("SELECT ? FROM DUAL", entry.getSql());
+        assertEquals(2, entry.getCount());
+        assertEquals(0, entry.getError());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4), entry.getElapsedTime());
+        assertEquals(2, entry.getLatencyHistogram().getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), entry.getLatencyHistogram().getMin());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), entry.getLatencyHistogram().getMax());
+
+        assertSame(entry, topSqlTracker.get("SELECT 3 FROM DUAL"));
+        assertEquals(1, topSqlTracker.get("SELECT * FROM USERS").getCount());
+    }
+
+    @Test
+    public void testOneOffQueriesDontEvictHeavyHitters() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(16);
+        for (int i = 0; i < 10000; i++) {
+            topSqlTracker.record(fingerprint(1000 + i), 1000);
+            topSqlTracker.record(fingerprint(i % 16), 1000);
+        }
+
+        assertEquals(16, topSqlTracker.size());
+        for (int i = 0; i < 16; i++) {
+            TopSqlTracker.Entry entry = topSqlTracker.get(fingerprint(i).getFingerprint());
+            assertNotNull(entry);
+            assertTrue(entry.getCount() >= 625);
+            assertTrue(entry.getCount() <= 625 + entry.getError());
+        }
+    }
+
+    @Test
+    public void testStaleQueriesAreReplaced() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(4);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 10; j++) {
+                topSqlTracker.record(fingerprint(i), 1000);
+            }
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            topSqlTracker.record(fingerprint(100 + i % 2), 1000);
+            topSqlTracker.record(fingerprint(1000 + i), 1000);
+        }
+
+        assertNotNull(topSqlTracker.get(fingerprint(100).getFingerprint()));
+        assertNotNull(topSqlTracker.get(fingerprint(101).getFingerprint()));
+    }
+
+    @Test
+    public void testLeastFrequentQueryIsEvicted() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(4);
+        for (int i = 0; i < 4; i++) {
+            topSqlTracker.record(fingerprint(i), 1000);
+        }
+        // entries become more frequent after admission, so their keys in the heap are stale
+        for (int j = 0; j < 20; j++) {
+            for (int i = 1; i < 4; i++) {
+                topSqlTracker.record(fingerprint(i), 1000);
+            }
+        }
+
+        topSqlTracker.record(fingerprint(100), 1000);
+        topSqlTracker.record(fingerprint(100), 1000);
+
+        assertEquals(4, topSqlTracker.size());
+        assertNull(topSqlTracker.get(fingerprint(0).getFingerprint()));
+        assertNotNull(topSqlTracker.get(fingerprint(100).getFingerprint()));
+        for (int i = 1; i < 4; i++) {
+            assertNotNull(topSqlTracker.get(fingerprint(i).getFingerprint()));
+        }
+    }
+
+    @Test
+    public void testFrequentQueryIsAdmittedWithBoundedError() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(4);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 3; j++) {
+                topSqlTracker.record(fingerprint(i), 1000);
+            }
+        }
+
+        SqlFingerprint heavyHitter = fingerprint(100);
+        for (int i = 0; i < 10; i++) {
+            topSqlTracker.record(heavyHitter, 1000);
+        }
+
+        assertEquals(4, topSqlTracker.size());
+        TopSqlTracker.Entry entry = topSqlTracker.getTopSql().get(0);
+        assertEquals(heavyHitter, entry.getSqlFingerprint());
+        assertEquals(10, entry.getCount());
+        assertEquals(3, entry.getError());
+        assertEquals(7, entry.getLatencyHistogram().getCount());
+    }
+
+    @Test
+    public void testCopyToSmallerCapacity() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(10);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i; j++) {
+                topSqlTracker.record(fingerprint(i), 1000);
+            }
+        }
+
+        TopSqlTracker copy = new TopSqlTracker(2, topSqlTracker);
+        assertEquals(2, copy.getCapacity());
+        assertEquals(2, copy.size());
+        assertNotNull(copy.get(fingerprint(4).getFingerprint()));
+        assertNotNull(copy.get(fingerprint(3).getFingerprint()));
+    }
+
+    @Test
+    public void testClearAndZeroCapacity() {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(10);
+        topSqlTracker.record(fingerprint(1), 1000);
+        assertFalse(topSqlTracker.isEmpty());
+        topSqlTracker.clear();
+        assertTrue(topSqlTracker.isEmpty());
+
+        TopSqlTracker disabled = new TopSqlTracker(0);
+        disabled.record(fingerprint(1), 1000);
+        assertTrue(disabled.isEmpty());
+    }
+
+    @Test
+    public void testGetTopSqlWhileRecording() throws Exception {
+        TopSqlTracker topSqlTracker = new TopSqlTracker(64);
+        AtomicBoolean stopped = new AtomicBoolean();
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(() -> {
+                for (int j = 0; !stopped.get(); j++) {
+                    topSqlTracker.record(fingerprint(j % 64), 1000);
+                }
+            });
+            writers[i].start();
+        }
+        try {
+            for (int i = 0; i < 1000; i++) {
+                assertFalse(topSqlTracker.getTopSql().size() > 64);
+            }
+        } finally {
+            stopped.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+
+    private static SqlFingerprint fingerprint(int index) {
+        return SqlFingerprint.of("SELECT C" + index + " FROM DUAL");
+    }
+
+}
@@ -0,0 +1,89 @@
+package io.sniffy.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        assertEquals(0, latencyHistogram.getCount());
+        assertEquals(0, latencyHistogram.getP50());
+        assertEquals(0, latencyHistogram.getMin());
+        assertEquals(0, latencyHistogram.getMax());
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(i * 100));
+        }
+
+        assertEquals(100, latencyHistogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(10000), latencyHistogram.getMax());
+
+        assertWithinError(TimeUnit.MICROSECONDS.toNanos(5000), latencyHistogram.getP50());
+        assertWithinError(TimeUnit.MICROSECONDS.toNanos(9500), latencyHistogram.getP95());
+        assertWithinError(TimeUnit.MICROSECONDS.toNanos(9900), latencyHistogram.getP99());
+        assertEquals(latencyHistogram.getMax(), latencyHistogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSubMillisecondValues() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        latencyHistogram.record(300);
+        latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(250));
+
+        assertEquals(999, latencyHistogram.getP50());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(250), latencyHistogram.getP99());
+    }
+
+    @Test
+    public void testMerge() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            first.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        second.record(TimeUnit.SECONDS.toNanos(1));
+
+        LatencyHistogram merged = new LatencyHistogram(first);
+        merged.merge(second);
+
+        assertEquals(100, merged.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), merged.getMin());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), merged.getMax());
+        assertWithinError(TimeUnit.MILLISECONDS.toNanos(1), merged.getP99());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), merged.getValueAtPercentile(99.5));
+    }
+
+    @Test
+    public void testValuesAboveMaximum() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+        latencyHistogram.record(TimeUnit.HOURS.toNanos(10));
+        assertEquals(TimeUnit.HOURS.toNanos(10), latencyHistogram.getMax());
+        assertEquals(TimeUnit.HOURS.toNanos(10), latencyHistogram.getP50());
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long micros = 0; micros < 100000; micros++) {
+            int index = LatencyHistogram.getIndex(micros);
+            long highestEquivalentValue = LatencyHistogram.getHighestEquivalentValue(index);
+            assertTrue(TimeUnit.MICROSECONDS.toNanos(micros) <= highestEquivalentValue);
+            assertTrue(TimeUnit.MICROSECONDS.toNanos(micros) * 1.125 + 1000 > highestEquivalentValue);
+        }
+        assertEquals(239, LatencyHistogram.getIndex(LatencyHistogram.MAX_VALUE_MICROS));
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue(actual + " < " + expected, actual >= expected);
+        assertTrue(actual + " > " + expected, actual <= expected * 1.125 + 1000);
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.sniffy.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    private static class LongEvent {
+        private long value;
+    }
+
+    private static RingBuffer<LongEvent> createRingBuffer(int capacity) {
+        return new RingBuffer<>(capacity, LongEvent::new);
+    }
+
+    @Test
+    public void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(8, createRingBuffer(5).getCapacity());
+        assertEquals(8, createRingBuffer(8).getCapacity());
+    }
+
+    @Test
+    public void testPublishAndDrain() {
+        RingBuffer<LongEvent> ringBuffer = createRingBuffer(4);
+
+        for (int i = 0; i < 3; i++) {
+            long sequence = ringBuffer.next();
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+
+        List<Long> values = new ArrayList<>();
+        assertEquals(3, ringBuffer.drain(event -> values.add(event.value)));
+        assertEquals(3, values.size());
+        assertEquals(0L, values.get(0).longValue());
+        assertEquals(2L, values.get(2).longValue());
+        assertEquals(0, ringBuffer.size());
+    }
+
+    @Test
+    public void testNextReturnsMinusOneOnFull() {
+        RingBuffer<LongEvent> ringBuffer = createRingBuffer(2);
+
+        ringBuffer.publish(ringBuffer.next());
+        ringBuffer.publish(ringBuffer.next());
+        assertEquals(-1, ringBuffer.next());
+        assertEquals(2, ringBuffer.size());
+
+        assertEquals(2, ringBuffer.drain(event -> {}));
+        assertNotEquals(-1, ringBuffer.next());
+    }
+
+    @Test
+    public void testUnpublishedSlotBlocksConsumer() {
+        RingBuffer<LongEvent> ringBuffer = createRingBuffer(4);
+
+        long first = ringBuffer.next();
+        long second = ringBuffer.next();
+        ringBuffer.publish(second);
+
+        assertEquals(0, ringBuffer.drain(event -> {}));
+        ringBuffer.publish(first);
+        assertEquals(2, ringBuffer.drain(event -> {}));
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        RingBuffer<LongEvent> ringBuffer = createRingBuffer(1024);
+
+        int producers = 4;
+        int eventsPerProducer = 10000;
+        CountDownLatch latch = new CountDownLatch(producers);
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 1; i <= eventsPerProducer; i++) {
+                    long sequence;
+                    while (-1 == (sequence = ringBuffer.next())) {
+                        Thread.yield();
+                    }
+                    ringBuffer.get(sequence).value = i;
+                    ringBuffer.publish(sequence);
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        while (count.get() < (long) producers * eventsPerProducer) {
+            ringBuffer.drain(event -> {
+                sum.addAndGet(event.value);
+                count.incrementAndGet();
+            });
+        }
+
+        latch.await();
+        assertEquals((long) producers * eventsPerProducer * (eventsPerProducer + 1) / 2, sum.get());
+    }
+
+}
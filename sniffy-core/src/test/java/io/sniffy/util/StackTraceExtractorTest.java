@@ -38,6 +38,16 @@ public class StackTraceExtractorTest {
 
     }
 
+    @Test
+    public void testGetTraceTillPackage() {
+        List<StackTraceElement> traceElements = StackTraceExtractor.getTraceTillPackage("io.sniffy.socket");
+        Assert.assertTrue(traceElements.size() > 1);
+        Assert.assertEquals("Should start with frame preceding application code",
+                "getTraceTillPackage", traceElements.get(0).getMethodName());
+        Assert.assertEquals("Should be followed by unit test name",
+                "testGetTraceTillPackage", traceElements.get(1).getMethodName());
+    }
+
     @Test
     public void testPrintStackTrace() {
         TestTraceExtractor traceExtractor = new TestTraceExtractor();
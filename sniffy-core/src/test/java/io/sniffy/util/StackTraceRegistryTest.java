@@ -0,0 +1,121 @@
+package io.sniffy.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StackTraceRegistryTest {
+
+    private static final String[] NO_EXCLUDED_PACKAGES = new String[0];
+
+    private static StackTraceElement frame(String className, String methodName, int lineNumber) {
+        return new StackTraceElement(className, methodName, className.substring(className.lastIndexOf('.') + 1) + ".java", lineNumber);
+    }
+
+    private static final StackTraceElement MAIN = frame("com.acme.Main", "main", 10);
+    private static final StackTraceElement SERVICE = frame("com.acme.Service", "handle", 20);
+    private static final StackTraceElement FRAMEWORK = frame("org.framework.Invoker", "invoke", 30);
+    private static final StackTraceElement DAO = frame("com.acme.Dao", "find", 40);
+    private static final StackTraceElement OTHER_DAO = frame("com.acme.Dao", "save", 50);
+
+    @Test
+    public void testSameTraceHasSameId() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        int id = registry.register(Arrays.asList(DAO, SERVICE, MAIN), 0, NO_EXCLUDED_PACKAGES);
+        int sameId = registry.register(Arrays.asList(
+                frame("com.acme.Dao", "find", 40), frame("com.acme.Service", "handle", 20), frame("com.acme.Main", "main", 10)
+        ), 0, NO_EXCLUDED_PACKAGES);
+
+        assertNotEquals(StackTraceRegistry.NO_STACK_TRACE, id);
+        assertEquals(id, sameId);
+        assertEquals(3, registry.getFrameCount());
+        assertEquals(Arrays.asList(DAO, SERVICE, MAIN), registry.getStackTraceElements(id));
+    }
+
+    @Test
+    public void testCommonCallersAreShared() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        int id = registry.register(Arrays.asList(DAO, SERVICE, MAIN), 0, NO_EXCLUDED_PACKAGES);
+        int otherId = registry.register(Arrays.asList(OTHER_DAO, SERVICE, MAIN), 0, NO_EXCLUDED_PACKAGES);
+
+        assertNotEquals(id, otherId);
+        assertEquals(4, registry.getFrameCount());
+        assertEquals(4, registry.getStackTraceCount());
+        assertEquals(registry.getFrameId(SERVICE), registry.getFrameId(frame("com.acme.Service", "handle", 20)));
+        assertEquals(-1, registry.getFrameId(FRAMEWORK));
+    }
+
+    @Test
+    public void testGetStackTrace() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        List<StackTraceElement> stackTraceElements = Arrays.asList(DAO, SERVICE, MAIN);
+        int id = registry.register(stackTraceElements, 0, NO_EXCLUDED_PACKAGES);
+
+        String stackTrace = registry.getStackTrace(id);
+        assertEquals(StackTraceExtractor.printStackTrace(stackTraceElements), stackTrace);
+        assertSame(stackTrace, registry.getStackTrace(id));
+        assertEquals(id, registry.register(stackTrace));
+
+        assertNull(registry.getStackTrace(StackTraceRegistry.NO_STACK_TRACE));
+        assertTrue(registry.getStackTraceElements(StackTraceRegistry.NO_STACK_TRACE).isEmpty());
+    }
+
+    @Test
+    public void testRegisterRenderedStackTrace() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        int id = registry.register(new String("custom stack trace"));
+
+        assertEquals(id, registry.register(new String("custom stack trace")));
+        assertEquals("custom stack trace", registry.getStackTrace(id));
+        assertEquals(StackTraceRegistry.NO_STACK_TRACE, registry.register((String) null));
+    }
+
+    @Test
+    public void testRenderedTracesIndexIsBounded() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        int firstId = registry.register(Arrays.asList(frame("com.acme.Dao", "find", 0), MAIN), 0, NO_EXCLUDED_PACKAGES);
+        String firstStackTrace = registry.getStackTrace(firstId);
+        int lastId = firstId;
+        for (int i = 1; i <= StackTraceRegistry.MAX_RENDERED_TRACES; i++) {
+            lastId = registry.register(Arrays.asList(frame("com.acme.Dao", "find", i), MAIN), 0, NO_EXCLUDED_PACKAGES);
+            registry.getStackTrace(lastId);
+        }
+
+        assertEquals(lastId, registry.register(registry.getStackTrace(lastId)));
+        int newId = registry.register(firstStackTrace);
+        assertNotEquals(firstId, newId);
+        assertEquals(firstStackTrace, registry.getStackTrace(newId));
+        assertEquals(firstStackTrace, registry.getStackTrace(firstId));
+    }
+
+    @Test
+    public void testMaxDepth() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        int id = registry.register(Arrays.asList(DAO, SERVICE, MAIN), 2, NO_EXCLUDED_PACKAGES);
+
+        assertEquals(Arrays.asList(DAO, SERVICE), registry.getStackTraceElements(id));
+        assertEquals(id, registry.register(Arrays.asList(DAO, SERVICE, FRAMEWORK, MAIN), 2, NO_EXCLUDED_PACKAGES));
+    }
+
+    @Test
+    public void testExcludedPackages() {
+        StackTraceRegistry registry = new StackTraceRegistry();
+
+        String[] excludedPackages = {"org.framework."};
+        int id = registry.register(Arrays.asList(DAO, FRAMEWORK, SERVICE, FRAMEWORK, MAIN), 2, excludedPackages);
+
+        assertEquals(Arrays.asList(DAO, SERVICE), registry.getStackTraceElements(id));
+        assertEquals(StackTraceRegistry.NO_STACK_TRACE,
+                registry.register(Arrays.asList(FRAMEWORK, FRAMEWORK), 0, excludedPackages));
+    }
+
+}
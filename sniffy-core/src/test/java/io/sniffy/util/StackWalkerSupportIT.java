@@ -0,0 +1,93 @@
+package io.sniffy.util;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs against packaged multi-release jar and checks that {@code StackWalker} based implementation is picked up on
+ * Java 9+ and produces the same traces as {@link Thread#getStackTrace()} based fallback in {@link StackTraceExtractor}
+ */
+public class StackWalkerSupportIT {
+
+    interface TestBase {
+        void testBaseMethod();
+    }
+
+    @Test
+    public void testJava9VersionLoadedFromMultiReleaseJar() {
+        URL classUrl = StackWalkerSupport.class.getResource("StackWalkerSupport.class");
+        assertNotNull(classUrl);
+        assertEquals("jar", classUrl.getProtocol());
+        assertTrue(classUrl.toString(), classUrl.toString().contains("META-INF/versions/9/"));
+        assertTrue(StackWalkerSupport.isSupported());
+    }
+
+    @Test
+    public void testGetTraceForProxiedMethod() {
+        final List<?>[] traces = new List<?>[2];
+        TestBase testProxy = (TestBase) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{TestBase.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                traces[0] = StackTraceExtractor.getTraceForProxiedMethod(method, true);
+                traces[1] = StackTraceExtractor.getTraceForProxiedMethod(method, false);
+                return null;
+            }
+        });
+        testProxy.testBaseMethod();
+
+        assertNotNull(traces[0]);
+        StackTraceElement first = (StackTraceElement) traces[0].get(0);
+        assertEquals(TestBase.class.getCanonicalName(), first.getClassName());
+        assertEquals("testBaseMethod", first.getMethodName());
+        assertEquals("testGetTraceForProxiedMethod", ((StackTraceElement) traces[0].get(1)).getMethodName());
+        assertEquals(traces[1], traces[0]);
+    }
+
+    @Test
+    public void testGetTraceTillPackage() {
+        List<?>[] traces = getTraceTillPackageAtDepth(0);
+        List<?> stackWalkerTrace = traces[0];
+        List<?> trace = traces[1];
+
+        assertNotNull(stackWalkerTrace);
+        StackTraceElement first = (StackTraceElement) stackWalkerTrace.get(0);
+        assertEquals(StackTraceExtractor.class.getName(), first.getClassName());
+        assertEquals("getTraceTillPackage", first.getMethodName());
+        assertEquals("getTraceTillPackage", ((StackTraceElement) stackWalkerTrace.get(1)).getMethodName());
+        assertEquals("testGetTraceTillPackage", ((StackTraceElement) stackWalkerTrace.get(3)).getMethodName());
+
+        // first frame points to different lines of StackTraceExtractor
+        assertEquals(((StackTraceElement) trace.get(0)).getClassName(), first.getClassName());
+        assertEquals(((StackTraceElement) trace.get(0)).getMethodName(), first.getMethodName());
+        assertEquals(trace.subList(1, trace.size()), stackWalkerTrace.subList(1, stackWalkerTrace.size()));
+    }
+
+    @Test
+    public void testStackDepthIsLimited() {
+        List<?>[] traces = getTraceTillPackageAtDepth(2 * StackTraceExtractor.MAX_STACK_DEPTH);
+
+        assertNotNull(traces[0]);
+        assertEquals(traces[1].size(), traces[0].size());
+        assertTrue(traces[0].size() < StackTraceExtractor.MAX_STACK_DEPTH);
+    }
+
+    private static List<StackTraceElement> getTraceTillPackage(boolean stackWalker) {
+        return StackTraceExtractor.getTraceTillPackage("io.sniffy.socket", stackWalker);
+    }
+
+    /**
+     * Both traces are captured at the same line so that they differ only in the top frame
+     */
+    private static List<?>[] getTraceTillPackageAtDepth(int depth) {
+        if (depth > 0) return getTraceTillPackageAtDepth(depth - 1);
+        return new List<?>[]{getTraceTillPackage(true), getTraceTillPackage(false)};
+    }
+
+}
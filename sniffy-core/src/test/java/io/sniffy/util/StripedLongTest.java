@@ -0,0 +1,68 @@
+package io.sniffy.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class StripedLongTest {
+
+    @Test
+    public void testAddAndGet() {
+        StripedLong stripedLong = new StripedLong(5);
+        stripedLong.add(10);
+        stripedLong.increment();
+        assertEquals(16, stripedLong.get());
+        assertEquals(16, stripedLong.intValue());
+        assertEquals("16", stripedLong.toString());
+    }
+
+    @Test
+    public void testLargeValues() {
+        StripedLong stripedLong = new StripedLong();
+        stripedLong.add(Integer.MAX_VALUE);
+        stripedLong.add(Integer.MAX_VALUE);
+        assertEquals(2L * Integer.MAX_VALUE, stripedLong.longValue());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final StripedLong stripedLong = new StripedLong();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                for (int j = 0; j < 100000; j++) {
+                    stripedLong.increment();
+                }
+            });
+            threads[i].start();
+        }
+
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(800000, stripedLong.get());
+        assertTrue(stripedLong.getRetainedSize() <= 32 + 32 + (8 + 136) * 64);
+    }
+
+    @Test
+    public void testUncontendedCounterHasNoCells() {
+        StripedLong stripedLong = new StripedLong();
+        for (int i = 0; i < 1000; i++) {
+            stripedLong.increment();
+        }
+        assertEquals(1000, stripedLong.get());
+        assertEquals(32, stripedLong.getRetainedSize());
+    }
+
+}
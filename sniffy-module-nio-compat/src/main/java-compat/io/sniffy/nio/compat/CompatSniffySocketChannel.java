@@ -143,20 +143,19 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
     @IgnoreJRERequirement
     private void estimateReceiveBuffer() {
         if (-1 == receiveBufferSize) {
+            Integer defaultReceiveBufferSize = CompatSniffySocketChannel.defaultReceiveBufferSize;
             if (null == defaultReceiveBufferSize) {
-                synchronized (CompatSniffySocketChannel.class) {
-                    if (null == defaultReceiveBufferSize) {
-                        try {
-                            defaultReceiveBufferSize = JVMUtil.getVersion() > 6 ?
-                                    (Integer) delegate.getOption(StandardSocketOptions.SO_RCVBUF) :
-                                    socket().getReceiveBufferSize();
-                        } catch (SocketException e) {
-                            defaultReceiveBufferSize = 0;
-                        } catch (IOException e) {
-                            defaultReceiveBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultReceiveBufferSize = JVMUtil.getVersion() > 6 ?
+                            (Integer) delegate.getOption(StandardSocketOptions.SO_RCVBUF) :
+                            socket().getReceiveBufferSize();
+                } catch (SocketException e) {
+                    defaultReceiveBufferSize = 0;
+                } catch (IOException e) {
+                    defaultReceiveBufferSize = 0;
                 }
+                CompatSniffySocketChannel.defaultReceiveBufferSize = defaultReceiveBufferSize;
             }
             receiveBufferSize = defaultReceiveBufferSize;
         }
@@ -165,38 +164,37 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
     @IgnoreJRERequirement
     private void estimateSendBuffer() {
         if (-1 == sendBufferSize) {
+            Integer defaultSendBufferSize = CompatSniffySocketChannel.defaultSendBufferSize;
             if (null == defaultSendBufferSize) {
-                synchronized (CompatSniffySocketChannel.class) {
-                    if (null == defaultSendBufferSize) {
-                        try {
-                            defaultSendBufferSize = JVMUtil.getVersion() > 6 ?
-                                    (Integer) delegate.getOption(StandardSocketOptions.SO_SNDBUF) :
-                                    socket().getSendBufferSize();
-                        } catch (SocketException e) {
-                            defaultSendBufferSize = 0;
-                        } catch (IOException e) {
-                            defaultSendBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultSendBufferSize = JVMUtil.getVersion() > 6 ?
+                            (Integer) delegate.getOption(StandardSocketOptions.SO_SNDBUF) :
+                            socket().getSendBufferSize();
+                } catch (SocketException e) {
+                    defaultSendBufferSize = 0;
+                } catch (IOException e) {
+                    defaultSendBufferSize = 0;
                 }
+                CompatSniffySocketChannel.defaultSendBufferSize = defaultSendBufferSize;
             }
             sendBufferSize = defaultSendBufferSize;
         }
     }
 
     @Deprecated
-    public void logSocket(long millis) {
-        logSocket(millis, 0, 0);
+    public void logSocket(long elapsedTimeNanos) {
+        logSocket(elapsedTimeNanos, 0, 0);
     }
 
     @Deprecated
-    public void logSocket(long millis, int bytesDown, int bytesUp) {
+    public void logSocket(long elapsedTimeNanos, int bytesDown, int bytesUp) {
 
         if (!SniffyConfiguration.INSTANCE.getSocketCaptureEnabled()) return;
 
         Sniffy.SniffyMode sniffyMode = Sniffy.getSniffyMode();
-        if (sniffyMode.isEnabled() && null != getInetSocketAddress() && (millis > 0 || bytesDown > 0 || bytesUp > 0)) {
-            Sniffy.logSocket(id, getInetSocketAddress(), millis, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
+        if (sniffyMode.isEnabled() && null != getInetSocketAddress() && (elapsedTimeNanos > 0 || bytesDown > 0 || bytesUp > 0)) {
+            Sniffy.logSocketNanos(id, getInetSocketAddress(), elapsedTimeNanos, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
         }
     }
 
@@ -255,12 +253,12 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
 
     @Override
     public boolean connect(SocketAddress remote) throws IOException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             checkConnectionAllowed((InetSocketAddress) remote, 1);
             return super.connect(remote);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
@@ -268,14 +266,14 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
     public int read(ByteBuffer dst) throws IOException {
         estimateReceiveBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int bytesDown = 0;
         int position = dst.position();
         try {
             return bytesDown = super.read(dst);
         } finally {
             sleepIfRequired(bytesDown);
-            logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+            logSocket(System.nanoTime() - start, bytesDown, 0);
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
                 dst.position(position);
@@ -290,7 +288,7 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
     public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
         estimateReceiveBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long bytesDown = 0;
 
         int[] positions = new int[length];
@@ -307,10 +305,10 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
         } finally {
             while (bytesDown > Integer.MAX_VALUE) {
                 sleepIfRequiredForWrite(Integer.MAX_VALUE);
-                logSocket(System.currentTimeMillis() - start, Integer.MAX_VALUE, 0);
+                logSocket(System.nanoTime() - start, Integer.MAX_VALUE, 0);
                 bytesDown -= Integer.MAX_VALUE;
             }
-            logSocket(System.currentTimeMillis() - start, (int) bytesDown, 0);
+            logSocket(System.nanoTime() - start, (int) bytesDown, 0);
 
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
@@ -329,7 +327,7 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
     public int write(ByteBuffer src) throws IOException {
         estimateSendBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int length = 0;
 
         int position = src.position();
@@ -339,7 +337,7 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
             return length;
         } finally {
             sleepIfRequiredForWrite(length);
-            logSocket(System.currentTimeMillis() - start, 0, length);
+            logSocket(System.nanoTime() - start, 0, length);
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
                 src.position(position);
@@ -354,7 +352,7 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
     public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
         estimateSendBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long bytesUp = 0;
 
         int[] positions = new int[length];
@@ -371,11 +369,11 @@ public class CompatSniffySocketChannel extends CompatSniffySocketChannelAdapter
         } finally {
             while (bytesUp > Integer.MAX_VALUE) {
                 sleepIfRequiredForWrite(Integer.MAX_VALUE);
-                logSocket(System.currentTimeMillis() - start, 0, Integer.MAX_VALUE);
+                logSocket(System.nanoTime() - start, 0, Integer.MAX_VALUE);
                 bytesUp -= Integer.MAX_VALUE;
             }
             sleepIfRequiredForWrite((int) bytesUp);
-            logSocket(System.currentTimeMillis() - start, 0, (int) bytesUp);
+            logSocket(System.nanoTime() - start, 0, (int) bytesUp);
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
                 for (int i = 0; i < length; i++) {
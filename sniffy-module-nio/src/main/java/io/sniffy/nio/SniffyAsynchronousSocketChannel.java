@@ -148,19 +148,18 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
 
     private void estimateReceiveBuffer() {
         if (-1 == receiveBufferSize) {
+            Integer defaultReceiveBufferSize = SniffyAsynchronousSocketChannel.defaultReceiveBufferSize;
             if (null == defaultReceiveBufferSize) {
-                synchronized (SniffySocketChannel.class) {
-                    if (null == defaultReceiveBufferSize) {
-                        try {
-                            defaultReceiveBufferSize = (Integer) delegate.getOption(StandardSocketOptions.SO_RCVBUF);
-                            if (null == defaultReceiveBufferSize) defaultReceiveBufferSize = 0;
-                        } catch (SocketException e) {
-                            defaultReceiveBufferSize = 0;
-                        } catch (IOException e) {
-                            defaultReceiveBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultReceiveBufferSize = (Integer) delegate.getOption(StandardSocketOptions.SO_RCVBUF);
+                    if (null == defaultReceiveBufferSize) defaultReceiveBufferSize = 0;
+                } catch (SocketException e) {
+                    defaultReceiveBufferSize = 0;
+                } catch (IOException e) {
+                    defaultReceiveBufferSize = 0;
                 }
+                SniffyAsynchronousSocketChannel.defaultReceiveBufferSize = defaultReceiveBufferSize;
             }
             receiveBufferSize = defaultReceiveBufferSize;
         }
@@ -168,19 +167,18 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
 
     private void estimateSendBuffer() {
         if (-1 == sendBufferSize) {
+            Integer defaultSendBufferSize = SniffyAsynchronousSocketChannel.defaultSendBufferSize;
             if (null == defaultSendBufferSize) {
-                synchronized (SniffySocketChannel.class) {
-                    if (null == defaultSendBufferSize) {
-                        try {
-                            defaultSendBufferSize = (Integer) delegate.getOption(StandardSocketOptions.SO_SNDBUF);
-                            if (null == defaultSendBufferSize) defaultSendBufferSize = 0;
-                        } catch (SocketException e) {
-                            defaultSendBufferSize = 0;
-                        } catch (IOException e) {
-                            defaultSendBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultSendBufferSize = (Integer) delegate.getOption(StandardSocketOptions.SO_SNDBUF);
+                    if (null == defaultSendBufferSize) defaultSendBufferSize = 0;
+                } catch (SocketException e) {
+                    defaultSendBufferSize = 0;
+                } catch (IOException e) {
+                    defaultSendBufferSize = 0;
                 }
+                SniffyAsynchronousSocketChannel.defaultSendBufferSize = defaultSendBufferSize;
             }
             sendBufferSize = defaultSendBufferSize;
         }
@@ -191,18 +189,18 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
     }
 
     @Deprecated
-    public void logSocket(long millis) {
-        logSocket(millis, 0, 0);
+    public void logSocket(long elapsedTimeNanos) {
+        logSocket(elapsedTimeNanos, 0, 0);
     }
 
     @Deprecated
-    public void logSocket(long millis, int bytesDown, int bytesUp) {
+    public void logSocket(long elapsedTimeNanos, int bytesDown, int bytesUp) {
 
         if (!SniffyConfiguration.INSTANCE.getSocketCaptureEnabled()) return;
 
         Sniffy.SniffyMode sniffyMode = Sniffy.getSniffyMode();
-        if (sniffyMode.isEnabled() && null != getInetSocketAddress() && (millis > 0 || bytesDown > 0 || bytesUp > 0)) {
-            Sniffy.logSocket(id, getInetSocketAddress(), millis, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
+        if (sniffyMode.isEnabled() && null != getInetSocketAddress() && (elapsedTimeNanos > 0 || bytesDown > 0 || bytesUp > 0)) {
+            Sniffy.logSocketNanos(id, getInetSocketAddress(), elapsedTimeNanos, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces());
         }
     }
 
@@ -295,14 +293,14 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
 
     @Override
     public Future<Void> connect(SocketAddress remote) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         try {
             checkConnectionAllowed(1);
             return delegate.connect(remote);
         } catch (Exception e) {
             throw ExceptionUtil.processException(e);
         } finally {
-            logSocket(System.currentTimeMillis() - start);
+            logSocket(System.nanoTime() - start);
         }
     }
 
@@ -315,7 +313,7 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
     public Future<Integer> read(ByteBuffer dst)  {
         estimateReceiveBuffer();
 
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         final Future<Integer> integerFuture = delegate.read(dst);
 
@@ -345,7 +343,7 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
                 } catch (ConnectException e) {
                     throw new ExecutionException(new AsynchronousCloseException()); // TODO: this is all wrong
                 }
-                logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+                logSocket(System.nanoTime() - start, bytesDown, 0);
                 return bytesDown;
             }
 
@@ -358,7 +356,7 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
                 } catch (ConnectException e) {
                     throw new ExecutionException(new AsynchronousCloseException()); // TODO: this is all wrong
                 }
-                logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+                logSocket(System.nanoTime() - start, bytesDown, 0);
                 return bytesDown;
             }
 
@@ -380,7 +378,7 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
     public Future<Integer> write(ByteBuffer src) {
         estimateSendBuffer();
 
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         final Future<Integer> integerFuture = delegate.write(src);
 
@@ -410,7 +408,7 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
                 } catch (ConnectException e) {
                     throw new ExecutionException(new AsynchronousCloseException()); // TODO: this is all wrong
                 }
-                logSocket(System.currentTimeMillis() - start, 0, bytesUp);
+                logSocket(System.nanoTime() - start, 0, bytesUp);
                 return bytesUp;
             }
 
@@ -423,7 +421,7 @@ public class SniffyAsynchronousSocketChannel extends AsynchronousSocketChannel i
                 } catch (ConnectException e) {
                     throw new ExecutionException(new AsynchronousCloseException()); // TODO: this is all wrong
                 }
-                logSocket(System.currentTimeMillis() - start, 0, bytesUp);
+                logSocket(System.nanoTime() - start, 0, bytesUp);
                 return bytesUp;
             }
 
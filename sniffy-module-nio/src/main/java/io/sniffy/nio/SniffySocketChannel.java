@@ -111,18 +111,17 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
     @IgnoreJRERequirement
     private void estimateReceiveBuffer() {
         if (-1 == receiveBufferSize) {
+            Integer defaultReceiveBufferSize = SniffySocketChannel.defaultReceiveBufferSize;
             if (null == defaultReceiveBufferSize) {
-                synchronized (SniffySocketChannel.class) {
-                    if (null == defaultReceiveBufferSize) {
-                        try {
-                            defaultReceiveBufferSize = super.getOption(StandardSocketOptions.SO_RCVBUF);
-                        } catch (SocketException e) {
-                            defaultReceiveBufferSize = 0;
-                        } catch (IOException e) {
-                            defaultReceiveBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultReceiveBufferSize = super.getOption(StandardSocketOptions.SO_RCVBUF);
+                } catch (SocketException e) {
+                    defaultReceiveBufferSize = 0;
+                } catch (IOException e) {
+                    defaultReceiveBufferSize = 0;
                 }
+                SniffySocketChannel.defaultReceiveBufferSize = defaultReceiveBufferSize;
             }
             receiveBufferSize = defaultReceiveBufferSize;
         }
@@ -131,37 +130,36 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
     @IgnoreJRERequirement
     private void estimateSendBuffer() {
         if (-1 == sendBufferSize) {
+            Integer defaultSendBufferSize = SniffySocketChannel.defaultSendBufferSize;
             if (null == defaultSendBufferSize) {
-                synchronized (SniffySocketChannel.class) {
-                    if (null == defaultSendBufferSize) {
-                        try {
-                            defaultSendBufferSize = super.getOption(StandardSocketOptions.SO_SNDBUF);
-                        } catch (SocketException e) {
-                            defaultSendBufferSize = 0;
-                        } catch (IOException e) {
-                            defaultSendBufferSize = 0;
-                        }
-                    }
+                // racing threads compute the same value, so no lock is held while querying the socket
+                try {
+                    defaultSendBufferSize = super.getOption(StandardSocketOptions.SO_SNDBUF);
+                } catch (SocketException e) {
+                    defaultSendBufferSize = 0;
+                } catch (IOException e) {
+                    defaultSendBufferSize = 0;
                 }
+                SniffySocketChannel.defaultSendBufferSize = defaultSendBufferSize;
             }
             sendBufferSize = defaultSendBufferSize;
         }
     }
 
     @Deprecated
-    public void logSocket(long millis) {
-        logSocket(millis, 0, 0);
+    public void logSocket(long elapsedTimeNanos) {
+        logSocket(elapsedTimeNanos, 0, 0);
     }
 
     @Deprecated
-    public void logSocket(long millis, int bytesDown, int bytesUp) {
+    public void logSocket(long elapsedTimeNanos, int bytesDown, int bytesUp) {
 
         if (!SniffyConfiguration.INSTANCE.getSocketCaptureEnabled()) return;
 
-        if (null != getInetSocketAddress() && (millis > 0 || bytesDown > 0 || bytesUp > 0)) {
+        if (null != getInetSocketAddress() && (elapsedTimeNanos > 0 || bytesDown > 0 || bytesUp > 0)) {
             Sniffy.SniffyMode sniffyMode = Sniffy.getSniffyMode();
             if (sniffyMode.isEnabled()) {
-                Sniffy.logSocket(connectionId, getInetSocketAddress(), millis, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces()); // TODO: stack trace here should be calculated till another package
+                Sniffy.logSocketNanos(connectionId, getInetSocketAddress(), elapsedTimeNanos, bytesDown, bytesUp, sniffyMode.isCaptureStackTraces()); // TODO: stack trace here should be calculated till another package
             }
         }
     }
@@ -223,14 +221,14 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
     public int read(ByteBuffer dst) throws IOException {
         estimateReceiveBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int bytesDown = 0;
         int position = dst.position();
         try {
             return bytesDown = super.read(dst);
         } finally {
             sleepIfRequired(bytesDown);
-            logSocket(System.currentTimeMillis() - start, bytesDown, 0);
+            logSocket(System.nanoTime() - start, bytesDown, 0);
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
                 dst.position(position);
@@ -245,7 +243,7 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
     public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
         estimateReceiveBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long bytesDown = 0;
 
         int[] positions = new int[length];
@@ -262,10 +260,10 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
         } finally {
             while (bytesDown > Integer.MAX_VALUE) {
                 sleepIfRequiredForWrite(Integer.MAX_VALUE);
-                logSocket(System.currentTimeMillis() - start, Integer.MAX_VALUE, 0);
+                logSocket(System.nanoTime() - start, Integer.MAX_VALUE, 0);
                 bytesDown -= Integer.MAX_VALUE;
             }
-            logSocket(System.currentTimeMillis() - start, (int) bytesDown, 0);
+            logSocket(System.nanoTime() - start, (int) bytesDown, 0);
 
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
@@ -284,7 +282,7 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
     public int write(ByteBuffer src) throws IOException {
         estimateSendBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int length = 0;
 
         int position = src.position();
@@ -294,7 +292,7 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
             return length;
         } finally {
             sleepIfRequiredForWrite(length);
-            logSocket(System.currentTimeMillis() - start, 0, length);
+            logSocket(System.nanoTime() - start, 0, length);
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
                 src.position(position);
@@ -309,7 +307,7 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
     public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
         estimateSendBuffer();
         checkConnectionAllowed(0);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long bytesUp = 0;
 
         int[] positions = new int[length];
@@ -326,11 +324,11 @@ public class SniffySocketChannel extends SniffySocketChannelAdapter implements S
         } finally {
             while (bytesUp > Integer.MAX_VALUE) {
                 sleepIfRequiredForWrite(Integer.MAX_VALUE);
-                logSocket(System.currentTimeMillis() - start, 0, Integer.MAX_VALUE);
+                logSocket(System.nanoTime() - start, 0, Integer.MAX_VALUE);
                 bytesUp -= Integer.MAX_VALUE;
             }
             sleepIfRequiredForWrite((int) bytesUp);
-            logSocket(System.currentTimeMillis() - start, 0, (int) bytesUp);
+            logSocket(System.nanoTime() - start, 0, (int) bytesUp);
             SpyConfiguration effectiveSpyConfiguration = Sniffy.getEffectiveSpyConfiguration();
             if (effectiveSpyConfiguration.isCaptureNetworkTraffic()) {
                 for (int i = 0; i < length; i++) {
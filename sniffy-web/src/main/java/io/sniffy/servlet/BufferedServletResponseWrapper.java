@@ -122,7 +122,7 @@ class BufferedServletResponseWrapper extends HttpServletResponseWrapper {
 
     protected void addCorsHeadersHeaderIfRequired() {
         if (!corsHeadersHeaderAdded) {
-            super.setHeader(HEADER_CORS_HEADERS, format("%s, %s, %s", HEADER_NUMBER_OF_QUERIES, HEADER_REQUEST_DETAILS, HEADER_TIME_TO_FIRST_BYTE));
+            super.setHeader(HEADER_CORS_HEADERS, format("%s, %s, %s, %s", HEADER_NUMBER_OF_QUERIES, HEADER_REQUEST_DETAILS, HEADER_TIME_TO_FIRST_BYTE, HEADER_N_PLUS_ONE_QUERIES));
         }
     }
 
@@ -164,7 +164,7 @@ class BufferedServletResponseWrapper extends HttpServletResponseWrapper {
     private String addCorsHeadersIfNecessary(String name, String value) {
         String processedValue = value;
         if (HEADER_CORS_HEADERS.equals(name)) {
-            processedValue = format("%s, %s, %s, %s", HEADER_NUMBER_OF_QUERIES, HEADER_REQUEST_DETAILS, HEADER_TIME_TO_FIRST_BYTE, processedValue);
+            processedValue = format("%s, %s, %s, %s, %s", HEADER_NUMBER_OF_QUERIES, HEADER_REQUEST_DETAILS, HEADER_TIME_TO_FIRST_BYTE, HEADER_N_PLUS_ONE_QUERIES, processedValue);
             corsHeadersHeaderAdded = true;
         }
         return processedValue;
@@ -2,9 +2,12 @@ package io.sniffy.servlet;
 
 import io.sniffy.socket.SocketMetaData;
 import io.sniffy.socket.SocketStats;
+import io.sniffy.sql.NPlusOneDetector;
 import io.sniffy.sql.SqlStats;
 import io.sniffy.sql.StatementMetaData;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -19,6 +22,7 @@ class RequestStats {
     private long elapsedTime;
     private Map<StatementMetaData, SqlStats> executedStatements;
     private Map<SocketMetaData, SocketStats> socketOperations;
+    private Map<NPlusOneDetector.Entry, NPlusOneDetector.Entry> nPlusOneQueries;
     private final List<Throwable> exceptions = new CopyOnWriteArrayList<Throwable>();
 
     public RequestStats() {
@@ -83,6 +87,40 @@ class RequestStats {
         }
     }
 
+    /**
+     * @since 3.1.10
+     */
+    public Collection<NPlusOneDetector.Entry> getNPlusOneQueries() {
+        return null == nPlusOneQueries ? null : nPlusOneQueries.values();
+    }
+
+    /**
+     * @return number of distinct N+1 queries in this request including given ones which weren't added yet
+     * @since 3.1.10
+     */
+    public int nPlusOneQueries(List<NPlusOneDetector.Entry> nPlusOneQueries) {
+        int count = null == this.nPlusOneQueries ? 0 : this.nPlusOneQueries.size();
+        for (NPlusOneDetector.Entry entry : nPlusOneQueries) {
+            if (null == this.nPlusOneQueries || !this.nPlusOneQueries.containsKey(entry)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds or replaces N+1 queries; entries are replaced since the same spy can be reported more than once
+     * @since 3.1.10
+     */
+    public void addNPlusOneQueries(List<NPlusOneDetector.Entry> nPlusOneQueries) {
+        if (null == this.nPlusOneQueries) {
+            this.nPlusOneQueries = new LinkedHashMap<NPlusOneDetector.Entry, NPlusOneDetector.Entry>();
+        }
+        for (NPlusOneDetector.Entry entry : nPlusOneQueries) {
+            this.nPlusOneQueries.put(entry, entry);
+        }
+    }
+
     public List<Throwable> getExceptions() {
         return exceptions;
     }
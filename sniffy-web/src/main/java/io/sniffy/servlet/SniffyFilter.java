@@ -64,6 +64,10 @@ public class SniffyFilter implements Filter {
     public static final String HEADER_NUMBER_OF_QUERIES = "Sniffy-Sql-Queries";
     public static final String HEADER_TIME_TO_FIRST_BYTE = "Sniffy-Time-To-First-Byte";
     public static final String HEADER_REQUEST_DETAILS = "Sniffy-Request-Details";
+    /**
+     * @since 3.1.10
+     */
+    public static final String HEADER_N_PLUS_ONE_QUERIES = "Sniffy-N-Plus-One-Queries";
 
     public static final String SNIFFY_URI_PREFIX =
             "sniffy/" +
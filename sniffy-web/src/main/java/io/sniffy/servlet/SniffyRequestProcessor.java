@@ -2,8 +2,10 @@ package io.sniffy.servlet;
 
 import io.sniffy.CurrentThreadSpy;
 import io.sniffy.Sniffy;
+import io.sniffy.configuration.SniffyConfiguration;
 import io.sniffy.socket.SocketMetaData;
 import io.sniffy.socket.SocketStats;
+import io.sniffy.sql.NPlusOneDetector;
 import io.sniffy.sql.SqlStats;
 import io.sniffy.sql.StatementMetaData;
 import io.sniffy.util.ExceptionUtil;
@@ -15,6 +17,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -210,6 +214,7 @@ class SniffyRequestProcessor implements BufferedServletResponseListener {
     private void updateRequestCache() {
         Map<StatementMetaData, SqlStats> executedStatements = spy.getExecutedStatements();
         Map<SocketMetaData, SocketStats> socketOperations = spy.getSocketOperations();
+        List<NPlusOneDetector.Entry> nPlusOneQueries = getNPlusOneQueries();
         if ((null != executedStatements && !executedStatements.isEmpty()) ||
                 (null != socketOperations && !socketOperations.isEmpty()) ||
                 (null != requestStats.getExceptions() && !requestStats.getExceptions().isEmpty())) {
@@ -219,11 +224,30 @@ class SniffyRequestProcessor implements BufferedServletResponseListener {
             if (null != socketOperations && !socketOperations.isEmpty()) {
                 requestStats.addSocketOperations(socketOperations);
             }
+            if (!nPlusOneQueries.isEmpty()) {
+                requestStats.addNPlusOneQueries(nPlusOneQueries);
+            }
             sniffyFilter.cache.put(requestId, requestStats);
         }
         httpServletRequest.setAttribute(SNIFFY_REQUEST_STATS_REQUEST_ATTRIBUTE_NAME, requestStats);
     }
 
+    /**
+     * @return statements executed in N+1 pattern more than {@link SniffyConfiguration#getNPlusOneThreshold()} times
+     */
+    private List<NPlusOneDetector.Entry> getNPlusOneQueries() {
+        List<NPlusOneDetector.Entry> nPlusOneQueries = new ArrayList<NPlusOneDetector.Entry>();
+        int threshold = SniffyConfiguration.INSTANCE.getNPlusOneThreshold();
+        if (threshold >= 0) {
+            for (NPlusOneDetector.Entry entry : spy.getNPlusOneQueries()) {
+                if (entry.getCount() > threshold) {
+                    nPlusOneQueries.add(entry);
+                }
+            }
+        }
+        return nPlusOneQueries;
+    }
+
     /**
      * Flag indicating that current response looks like HTML and capable of injecting sniffer widget
      */
@@ -234,6 +258,9 @@ class SniffyRequestProcessor implements BufferedServletResponseListener {
         wrapper.addCorsHeadersHeaderIfRequired();
         wrapper.setIntHeader(HEADER_NUMBER_OF_QUERIES, requestStats.executedStatements() + spy.executedStatements());
         wrapper.setHeader(HEADER_TIME_TO_FIRST_BYTE, Long.toString(getTimeToFirstByte()));
+        if (SniffyConfiguration.INSTANCE.getNPlusOneThreshold() >= 0) {
+            wrapper.setIntHeader(HEADER_N_PLUS_ONE_QUERIES, requestStats.nPlusOneQueries(getNPlusOneQueries()));
+        }
         // TODO: store startTime of first request processor somewhere
 
         StringBuilder sb = new StringBuilder();
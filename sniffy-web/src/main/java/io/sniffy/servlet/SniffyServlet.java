@@ -1,15 +1,23 @@
 package io.sniffy.servlet;
 
-import com.codahale.metrics.Timer;
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import io.sniffy.Sniffy;
 import io.sniffy.registry.ConnectionsRegistry;
 import io.sniffy.registry.ConnectionsRegistryStorage;
+import io.sniffy.socket.GlobalSocketStats;
+import io.sniffy.socket.HostSocketStats;
 import io.sniffy.socket.SocketMetaData;
 import io.sniffy.socket.SocketStats;
+import io.sniffy.sql.BatchStats;
+import io.sniffy.sql.BindParameters;
+import io.sniffy.sql.NPlusOneDetector;
+import io.sniffy.sql.SlowQueryJournal;
 import io.sniffy.sql.SqlStats;
 import io.sniffy.sql.StatementMetaData;
+import io.sniffy.sql.TopSqlTracker;
+import io.sniffy.util.LatencyHistogram;
+import io.sniffy.util.StackTraceRegistry;
 import io.sniffy.util.StringUtil;
 
 import javax.servlet.ServletException;
@@ -36,6 +44,8 @@ public class SniffyServlet extends HttpServlet {
     public static final String JSON_MIME_TYPE = "application/json";
 
     public static final String TOP_SQL_URI_PREFIX = SNIFFY_URI_PREFIX + "/topsql/";
+    public static final String TOP_SOCKET_URI_PREFIX = SNIFFY_URI_PREFIX + "/topsocket/";
+    public static final String SLOW_SQL_URI_PREFIX = SNIFFY_URI_PREFIX + "/slowsql/";
 
     public static final String CONNECTION_REGISTRY_URI_PREFIX = SNIFFY_URI_PREFIX + "/connectionregistry/";
     public static final String SOCKET_REGISTRY_URI_PREFIX = SNIFFY_URI_PREFIX + "/connectionregistry/socket/";
@@ -159,7 +169,7 @@ public class SniffyServlet extends HttpServlet {
 
             if ("DELETE".equalsIgnoreCase(request.getMethod())) {
 
-                Sniffy.getGlobalSqlStats().clear();
+                Sniffy.getTopSqlTracker().clear();
 
                 response.setStatus(HttpServletResponse.SC_CREATED);
                 response.flushBuffer();
@@ -171,22 +181,24 @@ public class SniffyServlet extends HttpServlet {
 
                 JsonArray arrayJson = new JsonArray();
 
-                for (Map.Entry<String, Timer> entry : Sniffy.getGlobalSqlStats().entrySet()) {
+                for (TopSqlTracker.Entry entry : Sniffy.getTopSqlTracker().getTopSql()) {
 
-                    Timer timer = entry.getValue();
+                    LatencyHistogram latencyHistogram = entry.getLatencyHistogram();
+                    long recordedCount = latencyHistogram.getCount();
 
                     JsonObject timerJson = new JsonObject();
-                    timerJson.add("count", timer.getCount());
-                    timerJson.add("min", timer.getSnapshot().getMin());
-                    timerJson.add("median", timer.getSnapshot().getMedian());
-                    timerJson.add("mean", timer.getSnapshot().getMean());
-                    timerJson.add("max", timer.getSnapshot().getMax());
-                    timerJson.add("p75", timer.getSnapshot().get75thPercentile());
-                    timerJson.add("p95", timer.getSnapshot().get95thPercentile());
-                    timerJson.add("p99", timer.getSnapshot().get99thPercentile());
+                    timerJson.add("count", entry.getCount());
+                    timerJson.add("error", entry.getError());
+                    timerJson.add("min", latencyHistogram.getMin());
+                    timerJson.add("median", latencyHistogram.getP50());
+                    timerJson.add("mean", 0 == recordedCount ? 0 : (double) entry.getElapsedTime() / recordedCount);
+                    timerJson.add("max", latencyHistogram.getMax());
+                    timerJson.add("p75", latencyHistogram.getValueAtPercentile(75));
+                    timerJson.add("p95", latencyHistogram.getP95());
+                    timerJson.add("p99", latencyHistogram.getP99());
 
                     JsonObject objectJson = new JsonObject();
-                    objectJson.add("sql", entry.getKey());
+                    objectJson.add("sql", entry.getSql());
                     objectJson.add("timer", timerJson);
 
                     arrayJson.add(objectJson);
@@ -197,10 +209,127 @@ public class SniffyServlet extends HttpServlet {
                 response.flushBuffer();
             }
 
+        } else if (path.equals(TOP_SOCKET_URI_PREFIX)) {
+
+            addCorsHeaders(response);
+
+            if ("DELETE".equalsIgnoreCase(request.getMethod())) {
+
+                Sniffy.getGlobalSocketStats().clear();
+
+                response.setStatus(HttpServletResponse.SC_CREATED);
+                response.flushBuffer();
+
+            } else {
+
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentType(JSON_MIME_TYPE);
+
+                GlobalSocketStats globalSocketStats = Sniffy.getGlobalSocketStats();
+
+                JsonArray arrayJson = new JsonArray();
+
+                for (HostSocketStats hostSocketStats : globalSocketStats.getHostSocketStats()) {
+                    arrayJson.add(getHostSocketStatsJson(hostSocketStats));
+                }
+
+                HostSocketStats overflowStats = globalSocketStats.getOverflowStats();
+                if (overflowStats.getLatencyHistogram().getCount() > 0) {
+                    arrayJson.add(getHostSocketStatsJson(overflowStats));
+                }
+
+                arrayJson.writeTo(response.getWriter());
+
+                response.flushBuffer();
+            }
+
+        } else if (path.equals(SLOW_SQL_URI_PREFIX)) {
+
+            addCorsHeaders(response);
+
+            SlowQueryJournal slowQueryJournal = Sniffy.getSlowQueryJournal();
+
+            if ("DELETE".equalsIgnoreCase(request.getMethod())) {
+
+                if (null != slowQueryJournal) {
+                    slowQueryJournal.clear();
+                }
+
+                response.setStatus(HttpServletResponse.SC_CREATED);
+                response.flushBuffer();
+
+            } else if (null == slowQueryJournal && null != Sniffy.getSlowQueryJournalFailure()) {
+
+                response.sendError(
+                        HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                        "Slow query journal cannot be opened: " + Sniffy.getSlowQueryJournalFailure()
+                );
+
+            } else {
+
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentType(JSON_MIME_TYPE);
+
+                JsonArray arrayJson = new JsonArray();
+
+                if (null != slowQueryJournal) {
+                    for (SlowQueryJournal.Entry entry : slowQueryJournal.getEntries()) {
+
+                        JsonObject objectJson = new JsonObject();
+                        objectJson.add("timestamp", entry.getTimestamp());
+                        objectJson.add("sql", entry.getSql());
+                        objectJson.add("fingerprint", Long.toHexString(entry.getFingerprintId()));
+                        objectJson.add("time", entry.getElapsedTime());
+                        objectJson.add("rowsUpdated", entry.getRowsUpdated());
+                        objectJson.add("bytesDown", entry.getBytesDown());
+                        objectJson.add("bytesUp", entry.getBytesUp());
+                        objectJson.add("thread", entry.getThreadName());
+                        if (null != entry.getStackTrace()) {
+                            objectJson.add("stackTrace", entry.getStackTrace());
+                        }
+                        if (null != entry.getParameters()) {
+                            objectJson.add("parameters", entry.getParameters());
+                        }
+
+                        arrayJson.add(objectJson);
+                    }
+                }
+
+                arrayJson.writeTo(response.getWriter());
+
+                response.flushBuffer();
+            }
+
         }
 
     }
 
+    private static JsonObject getHostSocketStatsJson(HostSocketStats hostSocketStats) {
+
+        LatencyHistogram latencyHistogram = hostSocketStats.getLatencyHistogram();
+
+        JsonObject latencyJson = new JsonObject();
+        latencyJson.add("count", latencyHistogram.getCount());
+        latencyJson.add("p50", latencyHistogram.getP50());
+        latencyJson.add("p95", latencyHistogram.getP95());
+        latencyJson.add("p99", latencyHistogram.getP99());
+        latencyJson.add("max", latencyHistogram.getMax());
+
+        JsonObject objectJson = new JsonObject();
+        // operations with addresses which didn't fit into global socket stats have neither address nor protocol
+        objectJson.add("host", null == hostSocketStats.getAddress() ? "other" : hostSocketStats.getAddress().toString());
+        if (null != hostSocketStats.getProtocol()) {
+            objectJson.add("protocol", hostSocketStats.getProtocol().name());
+        }
+        objectJson.add("connections", hostSocketStats.getConnections());
+        objectJson.add("time", hostSocketStats.elapsedTime.longValue());
+        objectJson.add("bytesDown", hostSocketStats.bytesDown.longValue());
+        objectJson.add("bytesUp", hostSocketStats.bytesUp.longValue());
+        objectJson.add("latency", latencyJson);
+
+        return objectJson;
+    }
+
     // TODO: stream JSON instead; otherwise we are creating unnecessary garbage out of interned strings mostly
     private byte[] getRequestStatsJson(String requestId) {
         RequestStats requestStats = cache.get(requestId);
@@ -227,7 +356,7 @@ public class SniffyServlet extends HttpServlet {
                             append(StringUtil.escapeJsonString(statement.sql)).
                             append(",").
                             append("\"stackTrace\":").
-                            append(StringUtil.escapeJsonString(statement.stackTrace)).
+                            append(StringUtil.escapeJsonString(statement.getStackTrace())).
                             append(",").
                             append("\"time\":").
                             append(sqlStats.elapsedTime.longValue()).
@@ -245,14 +374,47 @@ public class SniffyServlet extends HttpServlet {
                             append(sqlStats.bytesDown.longValue()).
                             append(",").
                             append("\"bytesUp\":").
-                            append(sqlStats.bytesUp.longValue()).
-                            append("}");
+                            append(sqlStats.bytesUp.longValue());
+                    appendLatencyHistogram(sb, sqlStats);
+                    appendBatchStats(sb, sqlStats);
+                    BindParameters bindParameters = sqlStats.getBindParameters();
+                    if (null != bindParameters) {
+                        sb.
+                                append(",\"parameters\":").
+                                append(StringUtil.escapeJsonString(bindParameters.toString()));
+                    }
+                    sb.append("}");
                     if (statementsIt.hasNext()) {
                         sb.append(",");
                     }
                 }
                 sb.append("]");
             }
+            if (null != requestStats.getNPlusOneQueries() && !requestStats.getNPlusOneQueries().isEmpty()) {
+                sb.append(",\"nPlusOneQueries\":[");
+                Iterator<NPlusOneDetector.Entry> nPlusOneQueriesIt = requestStats.getNPlusOneQueries().iterator();
+                while (nPlusOneQueriesIt.hasNext()) {
+                    NPlusOneDetector.Entry entry = nPlusOneQueriesIt.next();
+                    sb.
+                            append("{").
+                            append("\"query\":").
+                            append(StringUtil.escapeJsonString(entry.getSql())).
+                            append(",").
+                            append("\"stackTrace\":").
+                            append(StringUtil.escapeJsonString(entry.getStackTrace())).
+                            append(",").
+                            append("\"count\":").
+                            append(entry.getCount()).
+                            append(",").
+                            append("\"runs\":").
+                            append(entry.getRuns()).
+                            append("}");
+                    if (nPlusOneQueriesIt.hasNext()) {
+                        sb.append(",");
+                    }
+                }
+                sb.append("]");
+            }
             if (null != requestStats.getSocketOperations()) {
                 sb.append(",\"networkConnections\":[");
                 Iterator<Map.Entry<SocketMetaData, SocketStats>> statementsIt = requestStats.getSocketOperations().entrySet().iterator();
@@ -267,7 +429,7 @@ public class SniffyServlet extends HttpServlet {
                             append(StringUtil.escapeJsonString(socketMetaData.address.toString())).
                             append(",").
                             append("\"stackTrace\":").
-                            append(StringUtil.escapeJsonString(socketMetaData.stackTrace)).
+                            append(StringUtil.escapeJsonString(StackTraceRegistry.INSTANCE.getStackTrace(socketMetaData.getStackTraceId()))).
                             append(",").
                             append("\"time\":").
                             append(socketStats.elapsedTime.longValue()).
@@ -276,8 +438,9 @@ public class SniffyServlet extends HttpServlet {
                             append(socketStats.bytesDown.longValue()).
                             append(",").
                             append("\"bytesUp\":").
-                            append(socketStats.bytesUp.longValue()).
-                            append("}");
+                            append(socketStats.bytesUp.longValue());
+                    appendLatencyHistogram(sb, socketStats);
+                    sb.append("}");
                     if (statementsIt.hasNext()) {
                         sb.append(",");
                     }
@@ -316,6 +479,61 @@ public class SniffyServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Appends percentiles of operation durations in nanoseconds if latency histograms are enabled
+     */
+    private static void appendLatencyHistogram(StringBuilder sb, SocketStats socketStats) {
+        LatencyHistogram latencyHistogram = socketStats.getLatencyHistogram();
+        if (null != latencyHistogram) {
+            sb.
+                    append(",\"latency\":{").
+                    append("\"p50\":").
+                    append(latencyHistogram.getP50()).
+                    append(",").
+                    append("\"p95\":").
+                    append(latencyHistogram.getP95()).
+                    append(",").
+                    append("\"p99\":").
+                    append(latencyHistogram.getP99()).
+                    append(",").
+                    append("\"max\":").
+                    append(latencyHistogram.getMax()).
+                    append("}");
+        }
+    }
+
+    /**
+     * Appends batch size distribution if statement was executed using {@link java.sql.Statement#executeBatch()}
+     */
+    private static void appendBatchStats(StringBuilder sb, SqlStats sqlStats) {
+        BatchStats batchStats = sqlStats.getBatchStats();
+        if (null != batchStats) {
+            sb.
+                    append(",\"batch\":{").
+                    append("\"batches\":").
+                    append(batchStats.getBatches()).
+                    append(",").
+                    append("\"statements\":").
+                    append(batchStats.getStatements()).
+                    append(",").
+                    append("\"p50\":").
+                    append(batchStats.getBatchSizePercentile(50)).
+                    append(",").
+                    append("\"p95\":").
+                    append(batchStats.getBatchSizePercentile(95)).
+                    append(",").
+                    append("\"max\":").
+                    append(batchStats.getMaxBatchSize()).
+                    append(",").
+                    append("\"successNoInfo\":").
+                    append(batchStats.getSuccessNoInfoStatements()).
+                    append(",").
+                    append("\"failed\":").
+                    append(batchStats.getFailedStatements()).
+                    append("}");
+        }
+    }
+
     /**
      * @todo support gzip encoding
      * @param response
@@ -1,6 +1,5 @@
 package io.sniffy.boot;
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 import io.sniffy.Sniffy;
 import io.sniffy.Spy;
 import io.sniffy.Threads;
@@ -86,7 +85,7 @@ public class EnableSniffyTest {
 
     @Test
     public void testTopSqlCapacitySet() {
-        assertEquals(topSqlCapacity(), ((ConcurrentLinkedHashMap) Sniffy.getGlobalSqlStats()).capacity());
+        assertEquals(topSqlCapacity(), Sniffy.getTopSqlTracker().getCapacity());
     }
 
     @Test
@@ -135,7 +134,7 @@ public class EnableSniffyTest {
             assertEquals(1, executedStatements.size());
             StatementMetaData statementMetaData = executedStatements.keySet().iterator().next();
             assertNotNull(statementMetaData);
-            assertNotNull(statementMetaData.stackTrace);
+            assertNotNull(statementMetaData.getStackTrace());
             assertEquals(SqlStatement.SYSTEM, statementMetaData.query);
 
         }
@@ -439,7 +439,7 @@ public class SniffyServletTest extends BaseTest {
     @Features("issues/292")
     public void testGetTopSql() throws Exception {
 
-        Sniffy.getGlobalSqlStats().clear();
+        Sniffy.getTopSqlTracker().clear();
 
         executeStatement();
 
@@ -457,7 +457,7 @@ public class SniffyServletTest extends BaseTest {
         assertTrue(response.getContentAsByteArray().length > 0);
 
         assertEquals(1, (int) JsonPath.read(response.getContentAsString(), "$.length()"));
-        assertEquals("SELECT 1 FROM DUAL", JsonPath.read(response.getContentAsString(), "$[0].sql"));
+        assertEquals("SELECT ? FROM DUAL", JsonPath.read(response.getContentAsString(), "$[0].sql"));
         assertEquals(1, (int) JsonPath.read(response.getContentAsString(), "$[0].timer.count"));
 
     }
@@ -466,7 +466,7 @@ public class SniffyServletTest extends BaseTest {
     @Features("issues/292")
     public void testResetTopSql() throws Exception {
 
-        Sniffy.getGlobalSqlStats().clear();
+        Sniffy.getTopSqlTracker().clear();
 
         executeStatement();
 
@@ -481,7 +481,58 @@ public class SniffyServletTest extends BaseTest {
 
         assertEquals(HttpServletResponse.SC_CREATED, response.getStatus());
 
-        assertTrue(Sniffy.getGlobalSqlStats().isEmpty());
+        assertTrue(Sniffy.getTopSqlTracker().isEmpty());
+
+    }
+
+    @Test
+    public void testGetTopSocket() throws Exception {
+
+        Sniffy.getGlobalSocketStats().clear();
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555);
+        Sniffy.logSocket(1, address, 3000, 10, 20);
+        Sniffy.logSocket(1, address, 1000, 30, 40);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = MockMvcRequestBuilders.
+                get("/petclinic/" + SniffyServlet.TOP_SOCKET_URI_PREFIX).
+                buildRequest(servletContext);
+
+        request.setContextPath("/petclinic");
+
+        sniffyServlet.service(request, response);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+
+        assertEquals(address.toString(), JsonPath.read(response.getContentAsString(), "$[0].host"));
+        assertEquals("TCP", JsonPath.read(response.getContentAsString(), "$[0].protocol"));
+        assertEquals(1, (int) JsonPath.read(response.getContentAsString(), "$[0].connections"));
+        assertEquals(4000, (int) JsonPath.read(response.getContentAsString(), "$[0].time"));
+        assertEquals(40, (int) JsonPath.read(response.getContentAsString(), "$[0].bytesDown"));
+        assertEquals(60, (int) JsonPath.read(response.getContentAsString(), "$[0].bytesUp"));
+        assertEquals(2, (int) JsonPath.read(response.getContentAsString(), "$[0].latency.count"));
+
+    }
+
+    @Test
+    public void testResetTopSocket() throws Exception {
+
+        Sniffy.logSocket(1, new InetSocketAddress(InetAddress.getLoopbackAddress(), 5555), 1000000, 10, 20);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = MockMvcRequestBuilders.
+                delete("/petclinic/" + SniffyServlet.TOP_SOCKET_URI_PREFIX).
+                buildRequest(servletContext);
+
+        request.setContextPath("/petclinic");
+
+        sniffyServlet.service(request, response);
+
+        assertEquals(HttpServletResponse.SC_CREATED, response.getStatus());
+
+        assertEquals(0, Sniffy.getGlobalSocketStats().size());
 
     }
 